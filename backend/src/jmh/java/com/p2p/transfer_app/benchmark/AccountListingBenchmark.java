@@ -0,0 +1,23 @@
+package com.p2p.transfer_app.benchmark;
+
+import com.p2p.transfer_app.model.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AccountListingBenchmark
+{
+    @Benchmark
+    public List<Account> findAllByUserId(SeededApplicationState state)
+    {
+        Long userId = state.userIds.get(ThreadLocalRandom.current().nextInt(state.userIds.size()));
+        return state.accountRepository.findAllByUserId(userId);
+    }
+}
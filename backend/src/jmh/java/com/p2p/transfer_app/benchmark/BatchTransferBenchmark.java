@@ -0,0 +1,58 @@
+package com.p2p.transfer_app.benchmark;
+
+import com.p2p.transfer_app.dto.BatchTransferMode;
+import com.p2p.transfer_app.dto.BatchTransferResponse;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.service.BatchTransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BatchTransferBenchmark 
+{
+    public static final int BATCH_SIZE = 500;
+
+    private BatchTransferService batchTransferService;
+    private List<TransferRequest> batch;
+    private Long userId;
+
+    @Setup
+    public void setUp(SeededApplicationState state) 
+    {
+        batchTransferService = state.context.getBean(BatchTransferService.class);
+
+        // Пакет от одного пользователя, как у зарплатного проекта: со всех его счетов на случайные счета
+        userId = state.userIds.get(0);
+        List<String> ownAccounts = state.accountNumbers.subList(0, state.accountsPerUser);
+        Random random = new Random(7);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) 
+        {
+            TransferRequest request = new TransferRequest();
+            request.setFromAccountNumber(ownAccounts.get(i % ownAccounts.size()));
+            request.setToAccountNumber(state.accountNumbers.get(state.accountsPerUser + random.nextInt(state.accountNumbers.size() - state.accountsPerUser)));
+            request.setAmount(1L);
+            batch.add(request);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public BatchTransferResponse transferBatch() 
+    {
+        return batchTransferService.transferBatch(batch, BatchTransferMode.ALL_OR_NOTHING, userId);
+    }
+}
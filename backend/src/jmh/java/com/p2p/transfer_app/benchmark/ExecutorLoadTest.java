@@ -0,0 +1,231 @@
+package com.p2p.transfer_app.benchmark;
+
+import com.p2p.transfer_app.security.TokenService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Нагрузочный тест HTTP-слоя: сравнивает пул платформенных потоков Tomcat и виртуальные потоки
+// mvn -Pjmh test-compile exec:exec -Djmh.main=com.p2p.transfer_app.benchmark.ExecutorLoadTest -Djmh.args="--concurrency=16,64,256,1024 --duration=10"
+public class ExecutorLoadTest 
+{
+    private static final double PLATEAU_GAIN = 0.10;
+    private static final int READ_PERCENT = 80;
+
+    private final int[] concurrencyLevels;
+    private final int durationSeconds;
+    private final int users;
+    private final int poolSize;
+
+    public ExecutorLoadTest(int[] concurrencyLevels, int durationSeconds, int users, int poolSize) 
+    {
+        this.concurrencyLevels = concurrencyLevels;
+        this.durationSeconds = durationSeconds;
+        this.users = users;
+        this.poolSize = poolSize;
+    }
+
+    public static void main(String[] args) throws Exception 
+    {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) 
+        {
+            if (arg.startsWith("--") && arg.contains("=")) 
+            {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+
+        int[] levels = Arrays.stream(options.getOrDefault("concurrency", "8,32,128,512,1024").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        ExecutorLoadTest loadTest = new ExecutorLoadTest(levels,
+                Integer.parseInt(options.getOrDefault("duration", "10")),
+                Integer.parseInt(options.getOrDefault("users", "1000")),
+                Integer.parseInt(options.getOrDefault("pool-size", "16")));
+
+        List<String> executors = new ArrayList<>(Arrays.asList(options.getOrDefault("executors", "platform,virtual").split(",")));
+        if (Runtime.version().feature() < 21 && executors.remove("virtual")) 
+        {
+            System.out.println("Виртуальные потоки требуют JDK 21, режим virtual пропущен");
+        }
+
+        for (String executor : executors) 
+        {
+            loadTest.run(executor);
+        }
+    }
+
+    private void run(String executor) throws Exception 
+    {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("server.port", 0);
+        overrides.put("spring.threads.virtual.enabled", "virtual".equals(executor));
+        overrides.put("spring.datasource.hikari.maximum-pool-size", poolSize);
+        overrides.put("transfer.mode", "CONDITIONAL");
+
+        SeededApplicationState state = new SeededApplicationState();
+        state.users = users;
+        state.accountsPerUser = 2;
+        state.transactionsPerAccount = 10;
+
+        ConfigurableApplicationContext context = SeededApplicationState.start(WebApplicationType.SERVLET, overrides);
+        try 
+        {
+            state.seed(context);
+            TokenService tokenService = context.getBean(TokenService.class);
+            List<String> tokens = state.userIds.stream().map(tokenService::issue).toList();
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api/accounts";
+
+            System.out.printf("%nИсполнитель: %s, пул соединений: %d, длительность уровня: %d с%n", executor, poolSize, durationSeconds);
+            System.out.printf("%12s %12s %10s %10s %8s%n", "потоков", "запросов/с", "p50, мс", "p99, мс", "ошибок");
+
+            drive(baseUrl, state, tokens, concurrencyLevels[0], Math.max(1, durationSeconds / 2));
+
+            double previous = 0;
+            Integer plateau = null;
+            for (int concurrency : concurrencyLevels) 
+            {
+                Result result = drive(baseUrl, state, tokens, concurrency, durationSeconds);
+                System.out.printf("%12d %12.0f %10.2f %10.2f %8d%n",
+                        concurrency, result.throughput, result.p50Millis, result.p99Millis, result.errors);
+
+                if (plateau == null && previous > 0 && result.throughput < previous * (1 + PLATEAU_GAIN)) 
+                {
+                    plateau = concurrency;
+                }
+                previous = Math.max(previous, result.throughput);
+            }
+
+            System.out.println(plateau == null
+                    ? "Плато не достигнуто на заданных уровнях"
+                    : "Пропускная способность выходит на плато при " + plateau + " одновременных запросах");
+        }
+        finally 
+        {
+            context.close();
+        }
+    }
+
+    private Result drive(String baseUrl, SeededApplicationState state, List<String> tokens, int concurrency, int seconds) throws Exception 
+    {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        Timer timer = Timer.builder("load.request")
+                .publishPercentiles(0.5, 0.99)
+                .register(new SimpleMeterRegistry());
+        LongAdder errors = new LongAdder();
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        for (int i = 0; i < concurrency; i++) 
+        {
+            workers.execute(() -> 
+            {
+                try 
+                {
+                    while (System.nanoTime() < deadline) 
+                    {
+                        HttpRequest request = nextRequest(baseUrl, state, tokens);
+                        long start = System.nanoTime();
+                        try 
+                        {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 500) 
+                            {
+                                errors.increment();
+                            }
+                        }
+                        catch (Exception e) 
+                        {
+                            errors.increment();
+                        }
+                        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+                finally 
+                {
+                    done.countDown();
+                }
+            });
+        }
+
+        done.await();
+        workers.shutdown();
+
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        ValueAtPercentile[] percentiles = snapshot.percentileValues();
+        return new Result(snapshot.count() / (double) seconds,
+                percentiles[0].value(TimeUnit.MILLISECONDS),
+                percentiles[1].value(TimeUnit.MILLISECONDS),
+                errors.sum());
+    }
+
+    // Смесь из чтения списка счетов и переводов между случайными счетами от имени владельца
+    private static HttpRequest nextRequest(String baseUrl, SeededApplicationState state, List<String> tokens) 
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextInt(100) < READ_PERCENT) 
+        {
+            int user = random.nextInt(state.userIds.size());
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/user/" + state.userIds.get(user)))
+                    .header("Authorization", "Bearer " + tokens.get(user))
+                    .GET()
+                    .build();
+        }
+
+        List<String> accountNumbers = state.accountNumbers;
+        int from = random.nextInt(accountNumbers.size());
+        int to = (from + 1 + random.nextInt(accountNumbers.size() - 1)) % accountNumbers.size();
+        String ownerToken = tokens.get(from / state.accountsPerUser);
+        String body = "{\"fromAccountNumber\":\"" + accountNumbers.get(from)
+                + "\",\"toAccountNumber\":\"" + accountNumbers.get(to) + "\",\"amount\":1}";
+
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/transfer"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + ownerToken)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static class Result 
+    {
+        private final double throughput;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final long errors;
+
+        private Result(double throughput, double p50Millis, double p99Millis, long errors) 
+        {
+            this.throughput = throughput;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.errors = errors;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.p2p.transfer_app.benchmark;
+
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.service.StripedBalanceService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Все потоки зачисляют на один "горячий" счет: одной строкой или через полосы
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class HotAccountBenchmark 
+{
+    @State(Scope.Benchmark)
+    public static class HotAccount 
+    {
+        @Param({"SINGLE", "STRIPED"})
+        public String layout;
+
+        @Param("16")
+        public int slots;
+
+        public String accountNumber;
+
+        @Setup(Level.Trial)
+        public void setUp(SeededApplicationState state) 
+        {
+            accountNumber = state.accountNumbers.get(0);
+            if ("STRIPED".equals(layout)) 
+            {
+                Long accountId = state.accountRepository.findByAccountNumber(accountNumber).orElseThrow().getId();
+                state.context.getBean(StripedBalanceService.class).designate(accountId, slots);
+            }
+        }
+    }
+
+    @Benchmark
+    public void creditHotAccount(SeededApplicationState state, HotAccount hot) 
+    {
+        List<String> accountNumbers = state.accountNumbers;
+        int from = 1 + ThreadLocalRandom.current().nextInt(accountNumbers.size() - 1);
+
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(accountNumbers.get(from));
+        request.setToAccountNumber(hot.accountNumber);
+        request.setAmount(1L);
+
+        state.accountService.transferMoney(request);
+    }
+}
@@ -0,0 +1,36 @@
+package com.p2p.transfer_app.benchmark;
+
+import com.p2p.transfer_app.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность входа при стоимости BCrypt, выбранной калибровкой (или заданной -p passwordStrength=N)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LoginBenchmark 
+{
+    @Benchmark
+    public User authenticateUser(SeededApplicationState state) 
+    {
+        return state.userService.authenticateUser(randomUsername(state), SeededApplicationState.PASSWORD);
+    }
+
+    // Потоков запросов больше, чем ядер: пул хэширования держит нагрузку на CPU в пределах числа ядер
+    @Benchmark
+    @Threads(16)
+    public User authenticateUserContended(SeededApplicationState state) 
+    {
+        return state.userService.authenticateUser(randomUsername(state), SeededApplicationState.PASSWORD);
+    }
+
+    private static String randomUsername(SeededApplicationState state) 
+    {
+        return state.usernames.get(ThreadLocalRandom.current().nextInt(state.usernames.size()));
+    }
+}
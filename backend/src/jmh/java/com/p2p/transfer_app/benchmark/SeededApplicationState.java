@@ -0,0 +1,154 @@
+package com.p2p.transfer_app.benchmark;
+
+import com.p2p.transfer_app.TransferAppApplication;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.security.PasswordHasher;
+import com.p2p.transfer_app.service.AccountService;
+import com.p2p.transfer_app.service.UserService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+@State(Scope.Benchmark)
+public class SeededApplicationState 
+{
+    public static final String PASSWORD = "benchmark-password";
+    public static final long INITIAL_BALANCE = 1_000_000_000L;
+
+    @Param("1000")
+    public int users;
+
+    @Param("2")
+    public int accountsPerUser;
+
+    @Param("10")
+    public int transactionsPerAccount;
+
+    @Param("CONDITIONAL")
+    public String transferMode;
+
+    // 0 - стоимость BCrypt подбирается калибровкой при старте, как в рабочей конфигурации
+    @Param("0")
+    public int passwordStrength;
+
+    public ConfigurableApplicationContext context;
+    public AccountService accountService;
+    public UserService userService;
+    public AccountRepository accountRepository;
+    public List<Long> userIds;
+    public List<String> usernames;
+    public List<String> accountNumbers;
+
+    @Setup(Level.Trial)
+    public void setUp() 
+    {
+        context = start(Map.of("transfer.mode", transferMode, "password.hashing.strength", passwordStrength));
+        seed(context);
+
+        accountService = context.getBean(AccountService.class);
+        userService = context.getBean(UserService.class);
+        accountRepository = context.getBean(AccountRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() 
+    {
+        context.close();
+    }
+
+    public static ConfigurableApplicationContext start(Map<String, Object> overrides) 
+    {
+        return start(WebApplicationType.NONE, overrides);
+    }
+
+    public static ConfigurableApplicationContext start(WebApplicationType webApplicationType, Map<String, Object> overrides) 
+    {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID()
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.p2p.transfer_app", "WARN");
+        properties.putAll(overrides);
+
+        // Передаются аргументами командной строки, чтобы перекрыть application.properties из тестовых ресурсов
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+
+        return new SpringApplicationBuilder(TransferAppApplication.class)
+                .web(webApplicationType)
+                .run(args);
+    }
+
+    public void seed(ConfigurableApplicationContext context) 
+    {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+        // Один хэш на всех пользователей: стоимость проверки та же, а заполнение не тратит время на хэширование
+        String passwordHash = PasswordHasher.await(context.getBean(PasswordHasher.class).hash(PASSWORD));
+
+        usernames = new ArrayList<>(users);
+        List<Object[]> userRows = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) 
+        {
+            String username = "bench-user-" + i;
+            usernames.add(username);
+            userRows.add(new Object[] { username, passwordHash });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, password_hash) VALUES (?, ?)", userRows);
+        userIds = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class);
+
+        accountNumbers = new ArrayList<>(users * accountsPerUser);
+        List<Object[]> accountRows = new ArrayList<>(users * accountsPerUser);
+        for (Long userId : userIds) 
+        {
+            for (int a = 0; a < accountsPerUser; a++) 
+            {
+                String accountNumber = "BENCH" + userId + "X" + a;
+                accountNumbers.add(accountNumber);
+                accountRows.add(new Object[] { accountNumber, INITIAL_BALANCE, userId });
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO accounts (account_number, balance, user_id) VALUES (?, ?, ?)", accountRows);
+        List<Long> accountIds = jdbcTemplate.queryForList("SELECT id FROM accounts ORDER BY id", Long.class);
+
+        List<Object[]> transactionRows = new ArrayList<>();
+        Timestamp createdAt = Timestamp.from(Instant.now());
+        for (Long fromId : accountIds) 
+        {
+            for (int t = 0; t < transactionsPerAccount; t++) 
+            {
+                Long toId = accountIds.get(random.nextInt(accountIds.size()));
+                transactionRows.add(new Object[] { UUID.randomUUID(), fromId, toId, 1L + random.nextInt(1000), "COMPLETED", createdAt });
+                if (transactionRows.size() == 10_000) 
+                {
+                    insertTransactions(jdbcTemplate, transactionRows);
+                    transactionRows.clear();
+                }
+            }
+        }
+        insertTransactions(jdbcTemplate, transactionRows);
+    }
+
+    private static void insertTransactions(JdbcTemplate jdbcTemplate, List<Object[]> rows) 
+    {
+        jdbcTemplate.batchUpdate("INSERT INTO transactions (id, from_account_id, to_account_id, amount, status, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", rows);
+    }
+}
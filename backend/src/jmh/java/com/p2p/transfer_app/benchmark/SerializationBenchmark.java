@@ -0,0 +1,50 @@
+package com.p2p.transfer_app.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p2p.transfer_app.dto.ApiResponse;
+import com.p2p.transfer_app.model.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SerializationBenchmark
+{
+    @Param({ "1", "10", "100" })
+    public int accounts;
+
+    private ObjectMapper objectMapper;
+    private ApiResponse<List<Account>> response;
+
+    @Setup
+    public void setUp()
+    {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        List<Account> data = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++)
+        {
+            data.add(new Account((long) i, "ACC" + String.format("%017d", i), 1_000_000L + i, 1L));
+        }
+        response = ApiResponse.success(data, 3L, "Счета успешно загружены");
+    }
+
+    @Benchmark
+    public byte[] serializeAccounts() throws JsonProcessingException
+    {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,32 @@
+package com.p2p.transfer_app.benchmark;
+
+import com.p2p.transfer_app.dto.TransferRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransferBenchmark
+{
+    @Benchmark
+    public void transferMoney(SeededApplicationState state)
+    {
+        List<String> accountNumbers = state.accountNumbers;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountNumbers.size());
+        int to = (from + 1 + random.nextInt(accountNumbers.size() - 1)) % accountNumbers.size();
+
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(accountNumbers.get(from));
+        request.setToAccountNumber(accountNumbers.get(to));
+        request.setAmount(1L);
+
+        state.accountService.transferMoney(request);
+    }
+}
@@ -0,0 +1,108 @@
+package com.p2p.transfer_app.benchmark;
+
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.engine.TransferEngine;
+import com.p2p.transfer_app.service.AccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Одиночные переводы через движок групповой фиксации и напрямую через AccountService на одном и том же наборе счетов.
+// Поток бенчмарка изображает IN_FLIGHT клиентов: отправляет столько переводов и ждет их фиксации, поэтому результат
+// в операциях в секунду - это переводы в секунду
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class TransferEngineBenchmark 
+{
+    private static final int IN_FLIGHT = 256;
+
+    @State(Scope.Benchmark)
+    public static class EngineState 
+    {
+        @Param("10000")
+        public int users;
+
+        @Param("2")
+        public int accountsPerUser;
+
+        @Param("4096")
+        public int maxBatch;
+
+        public ConfigurableApplicationContext context;
+        public TransferEngine transferEngine;
+        public AccountService accountService;
+        public List<String> accountNumbers;
+
+        @Setup(Level.Trial)
+        public void setUp() 
+        {
+            context = SeededApplicationState.start(Map.of("transfer.engine.enabled", "true", "transfer.engine.max-batch", maxBatch,
+                    "transfer.mode", "CONDITIONAL", "password.hashing.strength", 4));
+            SeededApplicationState seeded = new SeededApplicationState();
+            seeded.users = users;
+            seeded.accountsPerUser = accountsPerUser;
+            seeded.transactionsPerAccount = 0;
+            seeded.seed(context);
+
+            accountNumbers = seeded.accountNumbers;
+            transferEngine = context.getBean(TransferEngine.class);
+            accountService = context.getBean(AccountService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() 
+        {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IN_FLIGHT)
+    public void engine(EngineState state) throws Exception 
+    {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<UUID>[] futures = new CompletableFuture[IN_FLIGHT];
+        for (int i = 0; i < IN_FLIGHT; i++) 
+        {
+            futures[i] = state.transferEngine.submit(randomRequest(state.accountNumbers));
+        }
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public UUID direct(EngineState state) 
+    {
+        return state.accountService.transferMoney(randomRequest(state.accountNumbers));
+    }
+
+    private static TransferRequest randomRequest(List<String> accountNumbers) 
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountNumbers.size());
+        int to = (from + 1 + random.nextInt(accountNumbers.size() - 1)) % accountNumbers.size();
+
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(accountNumbers.get(from));
+        request.setToAccountNumber(accountNumbers.get(to));
+        request.setAmount(1L);
+        return request;
+    }
+}
@@ -1,42 +1,82 @@
 package com.p2p.transfer_app.aop;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 @Aspect
 @Component
 @Slf4j
-public class LoggingAspect 
+public class LoggingAspect
 {
-    private static final ThreadLocal<Long> executionTime = new ThreadLocal<>();
-    
-    @Around("@annotation(LogExecutionTime)")
-    public Object logExecutionTime(ProceedingJoinPoint joinPoint) throws Throwable 
+    public static final String METRIC_NAME = "app.method.execution";
+
+    private static final String NO_EXCEPTION = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Method, Timer> successTimers = new ConcurrentHashMap<>();
+
+    public LoggingAspect(MeterRegistry meterRegistry)
     {
-        long startTime = System.currentTimeMillis();
+        this.meterRegistry = meterRegistry;
+    }
 
-        Object result = joinPoint.proceed();
+    @Around("@annotation(LogExecutionTime)")
+    public Object logExecutionTime(ProceedingJoinPoint joinPoint) throws Throwable
+    {
+        long startTime = System.nanoTime();
+        String exception = NO_EXCEPTION;
 
-        long endTime = System.currentTimeMillis();
-        long executionTimeMs = endTime - startTime;
+        try
+        {
+            return joinPoint.proceed();
+        }
+        catch (Throwable ex)
+        {
+            exception = ex.getClass().getSimpleName();
+            throw ex;
+        }
+        finally
+        {
+            long executionTimeNs = System.nanoTime() - startTime;
+            Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+            timer(method, exception).record(executionTimeNs, TimeUnit.NANOSECONDS);
 
-        log.info("{} выполнено за {} мс", joinPoint.getSignature(), executionTimeMs);
-        
-        executionTime.set(executionTimeMs);
-        
-        return result;
+            if (log.isDebugEnabled())
+            {
+                log.debug("{} выполнено за {} мкс", joinPoint.getSignature(), TimeUnit.NANOSECONDS.toMicros(executionTimeNs));
+            }
+        }
     }
-    
-    public static Long getLastExecutionTime() 
+
+    private Timer timer(Method method, String exception)
     {
-        return executionTime.get();
+        if (NO_EXCEPTION.equals(exception))
+        {
+            return successTimers.computeIfAbsent(method, m -> buildTimer(m, exception));
+        }
+        return buildTimer(method, exception);
     }
-    
-    public static void clearExecutionTime() 
+
+    private Timer buildTimer(Method method, String exception)
     {
-        executionTime.remove();
+        return Timer.builder(METRIC_NAME)
+                .description("Время выполнения методов, помеченных @LogExecutionTime")
+                .tag("class", method.getDeclaringClass().getSimpleName())
+                .tag("method", method.getName())
+                .tag("outcome", NO_EXCEPTION.equals(exception) ? "SUCCESS" : "ERROR")
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
-}
\ No newline at end of file
+}
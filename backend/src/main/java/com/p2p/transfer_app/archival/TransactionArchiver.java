@@ -0,0 +1,142 @@
+package com.p2p.transfer_app.archival;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.dto.TransactionCursor;
+import com.p2p.transfer_app.model.ArchivalJob;
+import com.p2p.transfer_app.model.enums.ArchivalStatus;
+import com.p2p.transfer_app.repository.ArchivalRepository;
+import com.p2p.transfer_app.shard.OnEachShard;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Переносит операции закрытых счетов в transactions_archive порциями, каждая в своей транзакции. Операции с еще
+// открытым контрагентом не переносятся, чтобы его история и выписки оставались полными. После порции
+// в account_archival сохраняется контрольная точка, поэтому после перезапуска перенос продолжается с того же места.
+// Скорость ограничена бюджетом строк в секунду, чтобы архивация не конкурировала с переводами за базу
+@Component
+@Slf4j
+public class TransactionArchiver 
+{
+    private final ArchivalRepository archivalRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxJobsPerRun;
+    private final long rowsPerSecond;
+
+    private final Counter archivedRows;
+    private final AtomicLong pendingJobs = new AtomicLong();
+
+    public TransactionArchiver(ArchivalRepository archivalRepository, TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                               @Value("${archival.chunk-size:500}") int chunkSize,
+                               @Value("${archival.max-jobs-per-run:10}") int maxJobsPerRun,
+                               @Value("${archival.rows-per-second:2000}") long rowsPerSecond) 
+    {
+        if (chunkSize < 1) 
+        {
+            throw new IllegalArgumentException("Размер порции архивации должен быть положительным");
+        }
+        this.archivalRepository = archivalRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.maxJobsPerRun = maxJobsPerRun;
+        this.rowsPerSecond = rowsPerSecond;
+
+        this.archivedRows = Counter.builder("archival.rows")
+                .description("Операции закрытых счетов, перенесенные в архив")
+                .register(meterRegistry);
+        Gauge.builder("archival.pending", pendingJobs, AtomicLong::get)
+                .description("Закрытые счета, операции которых еще не перенесены в архив")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${archival.interval:PT10S}")
+    @OnEachShard
+    @LogExecutionTime
+    public void archive() 
+    {
+        for (Long accountId : archivalRepository.findPendingAccountIds(maxJobsPerRun)) 
+        {
+            try 
+            {
+                archiveAccount(accountId);
+            } catch (InterruptedException e) 
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        pendingJobs.set(archivalRepository.countPending());
+    }
+
+    // Возвращает число перенесенных строк; 0, если задание уже выполнено или его держит другой экземпляр
+    public long archiveAccount(Long accountId) throws InterruptedException 
+    {
+        long total = 0;
+        while (true) 
+        {
+            long start = System.nanoTime();
+            Integer moved = transactionTemplate.execute(status -> archiveChunk(accountId));
+            if (moved == null || moved < 0) 
+            {
+                return total;
+            }
+            total += moved;
+            if (moved < chunkSize) 
+            {
+                log.info("Операции закрытого счета {} перенесены в архив", accountId);
+                return total;
+            }
+            throttle(moved, System.nanoTime() - start);
+        }
+    }
+
+    // -1 означает, что задание заблокировано другим экземпляром или уже завершено
+    private int archiveChunk(Long accountId) 
+    {
+        Optional<ArchivalJob> locked = archivalRepository.lockPending(accountId);
+        if (locked.isEmpty()) 
+        {
+            return -1;
+        }
+        ArchivalJob job = locked.get();
+        List<TransactionCursor> chunk = archivalRepository.findNextChunk(job, chunkSize);
+        Instant now = Instant.now();
+        int moved = archivalRepository.moveToArchive(chunk, now);
+
+        if (!chunk.isEmpty()) 
+        {
+            job.setCheckpoint(chunk.get(chunk.size() - 1));
+            job.setArchivedRows(job.getArchivedRows() + moved);
+        }
+        archivalRepository.checkpoint(job, chunk.size() < chunkSize ? ArchivalStatus.DONE : ArchivalStatus.PENDING, now);
+        archivedRows.increment(moved);
+        return chunk.size();
+    }
+
+    // Порция из n строк должна занимать не меньше n / rowsPerSecond секунд; недостающее время выжидаем
+    private void throttle(int moved, long elapsedNanos) throws InterruptedException 
+    {
+        if (rowsPerSecond <= 0) 
+        {
+            return;
+        }
+        long budgetNanos = TimeUnit.SECONDS.toNanos(moved) / rowsPerSecond;
+        long sleepNanos = budgetNanos - elapsedNanos;
+        if (sleepNanos > 0) 
+        {
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        }
+    }
+}
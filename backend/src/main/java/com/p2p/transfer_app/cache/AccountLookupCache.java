@@ -0,0 +1,137 @@
+package com.p2p.transfer_app.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.p2p.transfer_app.event.AccountClosedEvent;
+import com.p2p.transfer_app.event.AccountOpenedEvent;
+import com.p2p.transfer_app.event.UserRegisteredEvent;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+
+// Кэширует только неизменяемые атрибуты счетов и пользователей, балансы всегда читаются из базы
+@Component
+@Slf4j
+public class AccountLookupCache 
+{
+    private final AccountRepository accountRepository;
+    private final UserRepository userRepository;
+
+    private final Cache<String, Long> accountIdsByNumber;
+    private final Cache<Long, Long> ownerIdsByAccountId;
+    private final Cache<Long, Boolean> existingUsers;
+
+    public AccountLookupCache(AccountRepository accountRepository, UserRepository userRepository, MeterRegistry meterRegistry,
+                              @Value("${cache.lookup.maximum-size:100000}") long maximumSize) 
+    {
+        this.accountRepository = accountRepository;
+        this.userRepository = userRepository;
+        this.accountIdsByNumber = build(maximumSize);
+        this.ownerIdsByAccountId = build(maximumSize);
+        this.existingUsers = build(maximumSize);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, accountIdsByNumber, "accountIdsByNumber");
+        CaffeineCacheMetrics.monitor(meterRegistry, ownerIdsByAccountId, "ownerIdsByAccountId");
+        CaffeineCacheMetrics.monitor(meterRegistry, existingUsers, "existingUsers");
+    }
+
+    private static <K, V> Cache<K, V> build(long maximumSize) 
+    {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Long> findAccountId(String accountNumber) 
+    {
+        Long accountId = accountIdsByNumber.getIfPresent(accountNumber);
+        if (accountId != null) 
+        {
+            return Optional.of(accountId);
+        }
+        return accountRepository.findByAccountNumber(accountNumber).map(this::remember);
+    }
+
+    public Optional<Long> findOwnerId(Long accountId) 
+    {
+        Long ownerId = ownerIdsByAccountId.getIfPresent(accountId);
+        if (ownerId != null) 
+        {
+            return Optional.of(ownerId);
+        }
+        return accountRepository.findById(accountId)
+                .map(account -> 
+                {
+                    remember(account);
+                    return account.getUserId();
+                });
+    }
+
+    public Optional<Long> findOwnerId(String accountNumber) 
+    {
+        return findAccountId(accountNumber).flatMap(this::findOwnerId);
+    }
+
+    public boolean userExists(Long userId) 
+    {
+        if (existingUsers.getIfPresent(userId) != null) 
+        {
+            return true;
+        }
+        // Отсутствие пользователя не кэшируется, чтобы новый пользователь был виден сразу после регистрации
+        boolean exists = userRepository.existsById(userId);
+        if (exists) 
+        {
+            existingUsers.put(userId, Boolean.TRUE);
+        }
+        return exists;
+    }
+
+    public void evictAccount(Long accountId, String accountNumber) 
+    {
+        if (accountNumber != null) 
+        {
+            accountIdsByNumber.invalidate(accountNumber);
+        }
+        if (accountId != null) 
+        {
+            ownerIdsByAccountId.invalidate(accountId);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccountOpened(AccountOpenedEvent event) 
+    {
+        evictAccount(event.getAccountId(), event.getAccountNumber());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccountClosed(AccountClosedEvent event) 
+    {
+        evictAccount(event.getAccountId(), event.getAccountNumber());
+        log.debug("Счет {} удален из кэша", event.getAccountNumber());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserRegistered(UserRegisteredEvent event) 
+    {
+        existingUsers.invalidate(event.getUserId());
+    }
+
+    private Long remember(Account account) 
+    {
+        accountIdsByNumber.put(account.getAccountNumber(), account.getId());
+        ownerIdsByAccountId.put(account.getId(), account.getUserId());
+        return account.getId();
+    }
+}
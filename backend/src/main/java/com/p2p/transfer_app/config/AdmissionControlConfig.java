@@ -0,0 +1,49 @@
+package com.p2p.transfer_app.config;
+
+import com.p2p.transfer_app.limit.AdaptiveConcurrencyLimit;
+import com.p2p.transfer_app.web.ConcurrencyLimitFilter;
+import com.p2p.transfer_app.web.ConcurrencyLimitFilter.Bulkhead;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+import java.util.Map;
+
+// Лимиты для переводов, чтения и входа задаются отдельно; остальные параметры адаптивного алгоритма общие
+@Configuration
+@ConditionalOnProperty(name = "admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlConfig 
+{
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(MeterRegistry meterRegistry,
+            @Value("${admission.transfers.initial-limit:20}") int transfersInitialLimit,
+            @Value("${admission.transfers.max-limit:100}") int transfersMaxLimit,
+            @Value("${admission.reads.initial-limit:50}") int readsInitialLimit,
+            @Value("${admission.reads.max-limit:200}") int readsMaxLimit,
+            @Value("${admission.auth.initial-limit:10}") int authInitialLimit,
+            @Value("${admission.auth.max-limit:50}") int authMaxLimit,
+            @Value("${admission.min-limit:2}") int minLimit,
+            @Value("${admission.queue-size:10}") int queueSize,
+            @Value("${admission.max-wait:PT0.05S}") Duration maxWait,
+            @Value("${admission.latency-tolerance:1.5}") double tolerance,
+            @Value("${admission.window:PT1S}") Duration window,
+            @Value("${admission.retry-after:PT1S}") Duration retryAfter) 
+    {
+        Map<Bulkhead, AdaptiveConcurrencyLimit> limits = Map.of(
+                Bulkhead.TRANSFERS, new AdaptiveConcurrencyLimit(transfersInitialLimit, minLimit, transfersMaxLimit, queueSize, maxWait.toMillis(), tolerance, window.toMillis()),
+                Bulkhead.READS, new AdaptiveConcurrencyLimit(readsInitialLimit, minLimit, readsMaxLimit, queueSize, maxWait.toMillis(), tolerance, window.toMillis()),
+                Bulkhead.AUTH, new AdaptiveConcurrencyLimit(authInitialLimit, minLimit, authMaxLimit, queueSize, maxWait.toMillis(), tolerance, window.toMillis()));
+
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(limits, meterRegistry, Math.max(1, retryAfter.toSeconds())));
+        registration.addUrlPatterns("/api/*");
+        // Сразу после RequestTimingFilter: отклоненный запрос не доходит до DispatcherServlet
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+}
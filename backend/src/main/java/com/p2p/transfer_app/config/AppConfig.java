@@ -1,13 +1,20 @@
 package com.p2p.transfer_app.config;
 
+import com.p2p.transfer_app.shard.ShardRouter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import javax.sql.DataSource;
+import java.util.List;
 
 @Configuration
 @EnableAspectJAutoProxy
+@EnableAsync
+@EnableScheduling
 public class AppConfig 
 {
     @Bean
@@ -15,4 +22,12 @@ public class AppConfig
     {
         return new JdbcTemplate(dataSource);
     }
+
+    // Без sharding.urls приложение работает с одной базой, и все ключи относятся к шарду 0
+    @Bean
+    public ShardRouter shardRouter(@Value("${sharding.urls:}") List<String> urls,
+                                   @Value("${sharding.virtual-nodes:128}") int virtualNodes) 
+    {
+        return new ShardRouter(Math.max(1, urls.size()), virtualNodes);
+    }
 }
@@ -0,0 +1,36 @@
+package com.p2p.transfer_app.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p2p.transfer_app.outbox.FileTransferEventSink;
+import com.p2p.transfer_app.outbox.InMemoryTransferEventSink;
+import com.p2p.transfer_app.outbox.TransferEventSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Получатель по умолчанию выбирается свойством outbox.sink.type; собственный бин TransferEventSink заменяет оба варианта
+@Configuration
+public class OutboxConfig 
+{
+    @Bean
+    @ConditionalOnMissingBean(TransferEventSink.class)
+    @ConditionalOnProperty(name = "outbox.sink.type", havingValue = "file")
+    public TransferEventSink fileTransferEventSink(ObjectMapper objectMapper,
+                                                   @Value("${outbox.sink.file.path:transfer-events.ndjson}") String path) throws IOException 
+    {
+        return new FileTransferEventSink(objectMapper, Path.of(path));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(TransferEventSink.class)
+    @ConditionalOnProperty(name = "outbox.sink.type", havingValue = "memory", matchIfMissing = true)
+    public TransferEventSink inMemoryTransferEventSink(@Value("${outbox.sink.memory.capacity:10000}") int capacity) 
+    {
+        return new InMemoryTransferEventSink(capacity);
+    }
+}
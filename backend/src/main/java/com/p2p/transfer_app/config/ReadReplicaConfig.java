@@ -0,0 +1,68 @@
+package com.p2p.transfer_app.config;
+
+import com.p2p.transfer_app.replica.ReplicaLagMonitor;
+import com.p2p.transfer_app.replica.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Включается свойством spring.datasource.replica.url; без него приложение работает с одной базой, как раньше
+@Configuration
+@ConditionalOnProperty(name = "spring.datasource.replica.url")
+public class ReadReplicaConfig 
+{
+    @Bean
+    public HikariDataSource primaryDataSource(DataSourceProperties properties,
+                                              @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize) 
+    {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(@Value("${spring.datasource.replica.url}") String url,
+                                              @Value("${spring.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${spring.datasource.replica.password:${spring.datasource.password:}}") String password,
+                                              @Value("${spring.datasource.replica.maximum-pool-size:10}") int maximumPoolSize) 
+    {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("primaryDataSource") DataSource primary,
+                                               @Qualifier("replicaDataSource") DataSource replica,
+                                               @Value("${replica.max-staleness:PT5S}") Duration maxStaleness,
+                                               MeterRegistry meterRegistry) 
+    {
+        return new ReplicaLagMonitor(new JdbcTemplate(primary), new JdbcTemplate(replica), maxStaleness, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor replicaLagMonitor) 
+    {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica, replicaLagMonitor));
+    }
+}
@@ -0,0 +1,76 @@
+package com.p2p.transfer_app.config;
+
+import com.p2p.transfer_app.security.TokenService;
+import com.p2p.transfer_app.shard.ShardRouter;
+import com.p2p.transfer_app.shard.ShardRoutingDataSource;
+import com.p2p.transfer_app.shard.ShardRoutingFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Включается свойством sharding.urls (JDBC URL шардов через запятую, шард 0 первым); порядок URL менять нельзя,
+// так как номер шарда записан в номерах и id счетов. Несовместимо с spring.datasource.replica.url
+@Configuration
+@ConditionalOnProperty(name = "sharding.urls")
+public class ShardingConfig 
+{
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(@Value("${sharding.urls}") List<String> urls,
+                                                         @Value("${sharding.username:${spring.datasource.username:}}") String username,
+                                                         @Value("${sharding.password:${spring.datasource.password:}}") String password,
+                                                         @Value("${sharding.maximum-pool-size:10}") int maximumPoolSize,
+                                                         @Value("${sharding.schema-locations:}") List<String> schemaLocations,
+                                                         ResourceLoader resourceLoader) 
+    {
+        List<HikariDataSource> shards = new ArrayList<>(urls.size());
+        for (int shard = 0; shard < urls.size(); shard++) 
+        {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("shard-" + shard);
+            dataSource.setJdbcUrl(urls.get(shard).trim());
+            dataSource.setUsername(username);
+            dataSource.setPassword(password);
+            dataSource.setMaximumPoolSize(maximumPoolSize);
+            shards.add(dataSource);
+        }
+
+        // spring.sql.init работает только с основным источником, поэтому схема на каждом шарде создается здесь
+        if (!schemaLocations.isEmpty()) 
+        {
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+            schemaLocations.forEach(location -> populator.addScript(resourceLoader.getResource(location.trim())));
+            shards.forEach(dataSource -> DatabasePopulatorUtils.execute(populator, dataSource));
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) 
+    {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ShardRoutingFilter> shardRoutingFilter(TokenService tokenService, ShardRouter shardRouter) 
+    {
+        FilterRegistrationBean<ShardRoutingFilter> registration = new FilterRegistrationBean<>(new ShardRoutingFilter(tokenService, shardRouter));
+        registration.addUrlPatterns("/api/*");
+        // После фильтра лимитов: отклоненный запрос не тратит время на проверку токена
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+}
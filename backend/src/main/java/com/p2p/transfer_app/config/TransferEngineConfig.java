@@ -0,0 +1,56 @@
+package com.p2p.transfer_app.config;
+
+import com.p2p.transfer_app.cache.AccountLookupCache;
+import com.p2p.transfer_app.engine.TransferEngine;
+import com.p2p.transfer_app.engine.TransferJournal;
+import com.p2p.transfer_app.limit.VelocityLimiter;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.TransactionRepository;
+import com.p2p.transfer_app.repository.TransferJournalRepository;
+import com.p2p.transfer_app.service.AccountService;
+import com.p2p.transfer_app.service.StripedBalanceService;
+import com.p2p.transfer_app.shard.ShardRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+// Включается свойством transfer.engine.enabled; без него одиночные переводы выполняются AccountService в потоке запроса
+@Configuration
+@ConditionalOnProperty(name = "transfer.engine.enabled", havingValue = "true")
+public class TransferEngineConfig 
+{
+    @Bean
+    public TransferEngine transferEngine(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                                         TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher,
+                                         AccountLookupCache lookupCache, VelocityLimiter velocityLimiter,
+                                         StripedBalanceService stripedBalanceService, AccountService accountService,
+                                         TransferJournalRepository journalRepository, ShardRouter shardRouter, MeterRegistry meterRegistry,
+                                         @Value("${transfer.engine.ring-size:65536}") int ringSize,
+                                         @Value("${transfer.engine.max-batch:2000}") int maxBatch,
+                                         @Value("${transfer.engine.max-retries:3}") int maxRetries,
+                                         @Value("${transfer.engine.idle-wait:PT0.0001S}") Duration idleWait,
+                                         @Value("${transfer.engine.response-timeout:PT10S}") Duration responseTimeout,
+                                         @Value("${transfer.engine.journal.enabled:false}") boolean journalEnabled,
+                                         @Value("${transfer.engine.journal.directory:journal}") String journalDirectory,
+                                         @Value("${transfer.engine.journal.segment-size:64MB}") DataSize segmentSize) 
+    {
+        // Балансы в памяти одного писателя верны только для счетов одной базы
+        if (shardRouter.isSharded()) 
+        {
+            throw new IllegalStateException("Движок групповой фиксации переводов не поддерживает шардирование");
+        }
+        TransferJournal journal = journalEnabled ? new TransferJournal(Path.of(journalDirectory), segmentSize.toBytes()) : null;
+        // Поток-писатель запускается по ApplicationReadyEvent, после восстановления из журнала
+        return new TransferEngine(accountRepository, transactionRepository, transactionTemplate, eventPublisher,
+                lookupCache, velocityLimiter, stripedBalanceService, accountService, journal, journalRepository, meterRegistry,
+                ringSize, maxBatch, maxRetries, idleWait, responseTimeout);
+    }
+}
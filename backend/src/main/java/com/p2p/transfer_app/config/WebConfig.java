@@ -1,18 +1,36 @@
 package com.p2p.transfer_app.config;
 
+import com.p2p.transfer_app.web.AuthenticatedUserArgumentResolver;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer 
 {
+    private final AuthenticatedUserArgumentResolver authenticatedUserArgumentResolver;
+
+    public WebConfig(AuthenticatedUserArgumentResolver authenticatedUserArgumentResolver) 
+    {
+        this.authenticatedUserArgumentResolver = authenticatedUserArgumentResolver;
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) 
     {
         registry.addMapping("/api/**")
                 .allowedOrigins("*")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                .allowedHeaders("*");
+                .allowedHeaders("*")
+                .exposedHeaders("X-Transaction-Id", "Idempotent-Replayed");
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) 
+    {
+        resolvers.add(authenticatedUserArgumentResolver);
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,35 @@
 package com.p2p.transfer_app.controller;
 
 import com.p2p.transfer_app.aop.LogExecutionTime;
-import com.p2p.transfer_app.aop.LoggingAspect;
 import com.p2p.transfer_app.dto.AccountCreationRequest;
 import com.p2p.transfer_app.dto.ApiResponse;
+import com.p2p.transfer_app.dto.BatchTransferRequest;
+import com.p2p.transfer_app.dto.BatchTransferResponse;
+import com.p2p.transfer_app.dto.StatementFormat;
+import com.p2p.transfer_app.dto.TransactionPage;
 import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.dto.TransferResult;
+import com.p2p.transfer_app.engine.TransferEngine;
 import com.p2p.transfer_app.model.Account;
-import com.p2p.transfer_app.model.User;
 import com.p2p.transfer_app.service.AccountService;
-import com.p2p.transfer_app.service.UserService;
+import com.p2p.transfer_app.service.BatchTransferService;
+import com.p2p.transfer_app.service.IdempotencyService;
+import com.p2p.transfer_app.service.StatementService;
+import com.p2p.transfer_app.service.TransactionHistoryService;
+import com.p2p.transfer_app.stream.BalanceStreamRegistry;
+import com.p2p.transfer_app.web.AuthenticatedUser;
+import com.p2p.transfer_app.web.RequestTimingFilter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -22,46 +38,67 @@ import java.util.List;
 public class AccountController 
 {
     private final AccountService accountService;
-    private final UserService userService;
+    private final BatchTransferService batchTransferService;
+    private final TransactionHistoryService transactionHistoryService;
+    private final IdempotencyService idempotencyService;
+    private final BalanceStreamRegistry balanceStreamRegistry;
+    private final StatementService statementService;
+    private final TransferEngine transferEngine;
 
-    public AccountController(AccountService accountService, UserService userService) 
+    public AccountController(AccountService accountService, BatchTransferService batchTransferService,
+                             TransactionHistoryService transactionHistoryService, IdempotencyService idempotencyService,
+                             BalanceStreamRegistry balanceStreamRegistry, StatementService statementService,
+                             ObjectProvider<TransferEngine> transferEngine) 
     {
         this.accountService = accountService;
-        this.userService = userService;
+        this.batchTransferService = batchTransferService;
+        this.transactionHistoryService = transactionHistoryService;
+        this.idempotencyService = idempotencyService;
+        this.balanceStreamRegistry = balanceStreamRegistry;
+        this.statementService = statementService;
+        this.transferEngine = transferEngine.getIfAvailable();
     }
 
     @PostMapping
     @LogExecutionTime
-    public ResponseEntity<ApiResponse<Account>> createAccount(@RequestBody AccountCreationRequest request) 
+    public ResponseEntity<ApiResponse<Account>> createAccount(@RequestBody AccountCreationRequest request, @AuthenticatedUser Long userId) 
     {
-        log.info("Получен запрос на создание счета для пользователя: {}", request.getUserId());
+        log.info("Получен запрос на создание счета для пользователя: {}", userId);
         try 
         {
-            userService.getUserById(request.getUserId());
-            Account account = accountService.openNewAccount(request.getUserId(), request.getInitialBalance());
-            Long executionTime = LoggingAspect.getLastExecutionTime();
-            LoggingAspect.clearExecutionTime();
+            if (request.getUserId() != null && !request.getUserId().equals(userId)) 
+            {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.success(null, 0L, "Доступ запрещен"));
+            }
+            
+            Account account = accountService.openNewAccount(userId, request.getInitialBalance());
+            Long executionTime = RequestTimingFilter.elapsedMillis();
             
             log.info("Счет успешно создан: {}", account.getAccountNumber());
             return ResponseEntity.status(HttpStatus.CREATED)
                 .body(ApiResponse.success(account, executionTime, "Счет успешно создан"));
         } catch (Exception e) 
         {
-            log.error("Ошибка при создании счета для пользователя {}: {}", request.getUserId(), e.getMessage(), e);
+            log.error("Ошибка при создании счета для пользователя {}: {}", userId, e.getMessage(), e);
             throw e;
         }
     }
 
     @GetMapping("/user/{userId}")
     @LogExecutionTime
-    public ResponseEntity<ApiResponse<List<Account>>> getUserAccounts(@PathVariable Long userId) 
+    public ResponseEntity<ApiResponse<List<Account>>> getUserAccounts(@PathVariable Long userId, @AuthenticatedUser Long authenticatedUserId) 
     {
         try 
         {
-            userService.getUserById(userId);
+            if (!userId.equals(authenticatedUserId)) 
+            {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.success(null, 0L, "Доступ запрещен"));
+            }
+            
             List<Account> accounts = accountService.getUserAccounts(userId);
-            Long executionTime = LoggingAspect.getLastExecutionTime();
-            LoggingAspect.clearExecutionTime();
+            Long executionTime = RequestTimingFilter.elapsedMillis();
             
             return ResponseEntity.ok(ApiResponse.success(accounts, executionTime, "Счета успешно загружены"));
         } catch (Exception e) 
@@ -71,26 +108,105 @@ public class AccountController
         }
     }
 
+    @GetMapping(path = "/user/{userId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamBalanceUpdates(@PathVariable Long userId, @AuthenticatedUser Long authenticatedUserId) 
+    {
+        if (!userId.equals(authenticatedUserId)) 
+        {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(balanceStreamRegistry.subscribe(userId));
+    }
+
+    @GetMapping("/{accountId}/transactions")
+    @LogExecutionTime
+    public ResponseEntity<ApiResponse<TransactionPage>> getAccountTransactions(@PathVariable Long accountId, @AuthenticatedUser Long userId,
+                                                                             @RequestParam(required = false) String cursor,
+                                                                             @RequestParam(defaultValue = "50") int limit) 
+    {
+        try 
+        {
+            Long ownerId = accountService.getAccountOwnerId(accountId);
+            
+            if (!ownerId.equals(userId)) 
+            {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.success(null, 0L, "Доступ запрещен"));
+            }
+            
+            TransactionPage page = transactionHistoryService.getAccountTransactions(accountId, cursor, limit);
+            Long executionTime = RequestTimingFilter.elapsedMillis();
+            
+            return ResponseEntity.ok(ApiResponse.success(page, executionTime, "История операций загружена"));
+        } catch (Exception e) 
+        {
+            log.error("Ошибка при получении истории счета {}: {}", accountId, e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    @GetMapping("/{accountId}/statement")
+    @LogExecutionTime
+    public ResponseEntity<StreamingResponseBody> exportStatement(@PathVariable Long accountId, @AuthenticatedUser Long userId,
+                                                                 @RequestParam(defaultValue = "csv") String format,
+                                                                 @RequestParam(required = false) Instant from,
+                                                                 @RequestParam(required = false) Instant to) 
+    {
+        StatementFormat statementFormat = StatementFormat.fromParameter(format);
+        Instant periodFrom = from == null ? Instant.EPOCH : from;
+        Instant periodTo = to == null ? Instant.now() : to;
+        statementService.validatePeriod(periodFrom, periodTo);
+
+        Long ownerId = accountService.getAccountOwnerId(accountId);
+        if (!ownerId.equals(userId)) 
+        {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        // Строки пишутся в ответ по мере чтения курсора, в потоке асинхронной обработки запроса
+        StreamingResponseBody body = out -> statementService.export(accountId, statementFormat, periodFrom, periodTo, out);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(statementFormat.getContentType()))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"statement-" + accountId + "." + statementFormat.getExtension() + "\"")
+            .body(body);
+    }
+
     @PostMapping("/transfer")
     @LogExecutionTime
-    public ResponseEntity<ApiResponse<String>> transferMoney(@RequestBody TransferRequest request, @RequestParam Long userId) 
+    public ResponseEntity<ApiResponse<String>> transferMoney(@RequestBody TransferRequest request, @AuthenticatedUser Long userId,
+                                                            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) 
     {
         try 
         {
-            Account fromAccount = accountService.getAccountByNumber(request.getFromAccountNumber());
-            User owner = userService.getUserById(fromAccount.getUserId());
+            Long ownerId = accountService.getAccountOwnerId(request.getFromAccountNumber());
             
-            if (!owner.getId().equals(userId)) 
+            if (!ownerId.equals(userId)) 
             {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(ApiResponse.success("Доступ запрещен", 0L));
             }
             
-            accountService.transferMoney(request);
-            Long executionTime = LoggingAspect.getLastExecutionTime();
-            LoggingAspect.clearExecutionTime();
+            // Переводы с ключом идемпотентности идут мимо движка: ключ фиксируется в одной транзакции с переводом
+            TransferResult result;
+            if (idempotencyKey != null) 
+            {
+                result = idempotencyService.transferOnce(request, userId, idempotencyKey);
+            }
+            else if (transferEngine != null) 
+            {
+                result = new TransferResult(transferEngine.transfer(request), false);
+            }
+            else 
+            {
+                result = new TransferResult(accountService.transferMoney(request), false);
+            }
+            Long executionTime = RequestTimingFilter.elapsedMillis();
             
-            return ResponseEntity.ok(ApiResponse.success("Перевод успешно выполнен", executionTime));
+            return ResponseEntity.ok()
+                .header("X-Transaction-Id", result.getTransactionId().toString())
+                .header("Idempotent-Replayed", String.valueOf(result.isReplayed()))
+                .body(ApiResponse.success("Перевод успешно выполнен", executionTime));
         } catch (Exception e) 
         {
             log.error("Ошибка при переводе денег: {}", e.getMessage(), e);
@@ -98,24 +214,44 @@ public class AccountController
         }
     }
     
+    @PostMapping("/transfers/batch")
+    @LogExecutionTime
+    public ResponseEntity<ApiResponse<BatchTransferResponse>> transferBatch(@RequestBody BatchTransferRequest request, @AuthenticatedUser Long userId) 
+    {
+        try 
+        {
+            BatchTransferResponse response = batchTransferService.transferBatch(request.getTransfers(), request.getMode(), userId);
+            Long executionTime = RequestTimingFilter.elapsedMillis();
+
+            if (response.getCompleted() == 0 && response.getFailed() > 0) 
+            {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.success(response, executionTime, "Пакет переводов отклонен"));
+            }
+            return ResponseEntity.ok(ApiResponse.success(response, executionTime, "Пакет переводов обработан"));
+        } catch (Exception e) 
+        {
+            log.error("Ошибка при пакетном переводе денег: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+    
     @DeleteMapping("/{accountId}")
     @LogExecutionTime
-    public ResponseEntity<ApiResponse<String>> deleteAccount(@PathVariable Long accountId, @RequestParam Long userId) 
+    public ResponseEntity<ApiResponse<String>> deleteAccount(@PathVariable Long accountId, @AuthenticatedUser Long userId) 
     {
         try 
         {
-            Account account = accountService.getAccountById(accountId);
-            User owner = userService.getUserById(account.getUserId());
+            Long ownerId = accountService.getAccountOwnerId(accountId);
             
-            if (!owner.getId().equals(userId)) 
+            if (!ownerId.equals(userId)) 
             {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(ApiResponse.success("Доступ запрещен", 0L));
             }
             
             accountService.closeAccount(accountId);
-            Long executionTime = LoggingAspect.getLastExecutionTime();
-            LoggingAspect.clearExecutionTime();
+            Long executionTime = RequestTimingFilter.elapsedMillis();
             
             return ResponseEntity.ok(ApiResponse.success("Счет успешно закрыт", executionTime));
         } catch (Exception e) 
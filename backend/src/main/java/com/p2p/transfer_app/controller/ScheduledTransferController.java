@@ -0,0 +1,86 @@
+package com.p2p.transfer_app.controller;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.dto.ApiResponse;
+import com.p2p.transfer_app.dto.ScheduledTransferRequest;
+import com.p2p.transfer_app.model.ScheduledTransfer;
+import com.p2p.transfer_app.service.AccountService;
+import com.p2p.transfer_app.service.ScheduledTransferService;
+import com.p2p.transfer_app.web.AuthenticatedUser;
+import com.p2p.transfer_app.web.RequestTimingFilter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/scheduled-transfers")
+@Slf4j
+public class ScheduledTransferController 
+{
+    private final ScheduledTransferService scheduledTransferService;
+    private final AccountService accountService;
+
+    public ScheduledTransferController(ScheduledTransferService scheduledTransferService, AccountService accountService) 
+    {
+        this.scheduledTransferService = scheduledTransferService;
+        this.accountService = accountService;
+    }
+
+    @PostMapping
+    @LogExecutionTime
+    public ResponseEntity<ApiResponse<ScheduledTransfer>> schedule(@RequestBody ScheduledTransferRequest request, @AuthenticatedUser Long userId) 
+    {
+        try 
+        {
+            Long ownerId = accountService.getAccountOwnerId(request.getFromAccountNumber());
+            
+            if (!ownerId.equals(userId)) 
+            {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.success(null, 0L, "Доступ запрещен"));
+            }
+            
+            ScheduledTransfer transfer = scheduledTransferService.schedule(userId, request);
+            Long executionTime = RequestTimingFilter.elapsedMillis();
+            
+            return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success(transfer, executionTime, "Перевод запланирован"));
+        } catch (Exception e) 
+        {
+            log.error("Ошибка при планировании перевода: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    @GetMapping
+    @LogExecutionTime
+    public ResponseEntity<ApiResponse<List<ScheduledTransfer>>> getScheduledTransfers(@AuthenticatedUser Long userId) 
+    {
+        List<ScheduledTransfer> transfers = scheduledTransferService.getUserScheduledTransfers(userId);
+        Long executionTime = RequestTimingFilter.elapsedMillis();
+        
+        return ResponseEntity.ok(ApiResponse.success(transfers, executionTime, "Запланированные переводы загружены"));
+    }
+
+    @DeleteMapping("/{id}")
+    @LogExecutionTime
+    public ResponseEntity<ApiResponse<String>> cancel(@PathVariable Long id, @AuthenticatedUser Long userId) 
+    {
+        try 
+        {
+            scheduledTransferService.cancel(id, userId);
+            Long executionTime = RequestTimingFilter.elapsedMillis();
+            
+            return ResponseEntity.ok(ApiResponse.success("Запланированный перевод отменен", executionTime));
+        } catch (Exception e) 
+        {
+            log.error("Ошибка при отмене запланированного перевода {}: {}", id, e.getMessage(), e);
+            throw e;
+        }
+    }
+}
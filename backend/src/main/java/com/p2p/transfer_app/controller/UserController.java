@@ -1,13 +1,17 @@
 package com.p2p.transfer_app.controller;
 
 import com.p2p.transfer_app.aop.LogExecutionTime;
-import com.p2p.transfer_app.aop.LoggingAspect;
 import com.p2p.transfer_app.dto.ApiResponse;
 import com.p2p.transfer_app.dto.UserLoginRequest;
 import com.p2p.transfer_app.dto.UserLoginResponse;
 import com.p2p.transfer_app.dto.UserRegistrationRequest;
 import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.model.UserBalanceSummary;
+import com.p2p.transfer_app.security.TokenService;
+import com.p2p.transfer_app.service.UserBalanceSummaryService;
 import com.p2p.transfer_app.service.UserService;
+import com.p2p.transfer_app.web.AuthenticatedUser;
+import com.p2p.transfer_app.web.RequestTimingFilter;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -21,10 +25,14 @@ import org.springframework.web.bind.annotation.*;
 public class UserController 
 {
     private final UserService userService;
+    private final TokenService tokenService;
+    private final UserBalanceSummaryService summaryService;
 
-    public UserController(UserService userService) 
+    public UserController(UserService userService, TokenService tokenService, UserBalanceSummaryService summaryService) 
     {
         this.userService = userService;
+        this.tokenService = tokenService;
+        this.summaryService = summaryService;
     }
 
     @GetMapping("/test")
@@ -41,8 +49,7 @@ public class UserController
         try 
         {
             User user = userService.registerUser(request.getUsername(), request.getPassword());
-            Long executionTime = LoggingAspect.getLastExecutionTime();
-            LoggingAspect.clearExecutionTime();
+            Long executionTime = RequestTimingFilter.elapsedMillis();
             
             return ResponseEntity.status(HttpStatus.CREATED)
                 .body(ApiResponse.success(user, executionTime, "Пользователь успешно зарегистрирован"));
@@ -61,9 +68,8 @@ public class UserController
         try 
         {
             User user = userService.authenticateUser(request.getUsername(), request.getPassword());
-            UserLoginResponse response = new UserLoginResponse(user.getId(), user.getUsername());
-            Long executionTime = LoggingAspect.getLastExecutionTime();
-            LoggingAspect.clearExecutionTime();
+            UserLoginResponse response = new UserLoginResponse(user.getId(), user.getUsername(), tokenService.issue(user.getId()));
+            Long executionTime = RequestTimingFilter.elapsedMillis();
             
             return ResponseEntity.ok(ApiResponse.success(response, executionTime, "Вход выполнен успешно"));
         } catch (Exception e) 
@@ -79,4 +85,27 @@ public class UserController
         User user = userService.getUserById(userId);
         return ResponseEntity.ok(user);
     }
+
+    @GetMapping("/{userId}/summary")
+    @LogExecutionTime
+    public ResponseEntity<ApiResponse<UserBalanceSummary>> getBalanceSummary(@PathVariable Long userId, @AuthenticatedUser Long authenticatedUserId) 
+    {
+        try 
+        {
+            if (!userId.equals(authenticatedUserId)) 
+            {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.success(null, 0L, "Доступ запрещен"));
+            }
+
+            UserBalanceSummary summary = summaryService.getSummary(userId);
+            Long executionTime = RequestTimingFilter.elapsedMillis();
+
+            return ResponseEntity.ok(ApiResponse.success(summary, executionTime, "Итоги по счетам загружены"));
+        } catch (Exception e) 
+        {
+            log.error("Ошибка при получении итогов пользователя {}: {}", userId, e.getMessage(), e);
+            throw e;
+        }
+    }
 }
\ No newline at end of file
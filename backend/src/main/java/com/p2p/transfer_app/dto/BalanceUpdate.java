@@ -0,0 +1,19 @@
+package com.p2p.transfer_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BalanceUpdate 
+{
+    private BalanceUpdateType type;
+    private Long accountId;
+    private String accountNumber;
+    private Long delta;
+    private UUID transactionId;
+}
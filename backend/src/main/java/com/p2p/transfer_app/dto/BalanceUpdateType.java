@@ -0,0 +1,9 @@
+package com.p2p.transfer_app.dto;
+
+public enum BalanceUpdateType 
+{
+    OPENED,
+    TRANSFER_IN,
+    TRANSFER_OUT,
+    CLOSED
+}
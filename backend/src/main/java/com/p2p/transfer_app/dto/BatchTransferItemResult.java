@@ -0,0 +1,19 @@
+package com.p2p.transfer_app.dto;
+
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchTransferItemResult 
+{
+    private int index;
+    private TransactionStatus status;
+    private UUID transactionId;
+    private String error;
+}
@@ -0,0 +1,7 @@
+package com.p2p.transfer_app.dto;
+
+public enum BatchTransferMode 
+{
+    ALL_OR_NOTHING,
+    BEST_EFFORT
+}
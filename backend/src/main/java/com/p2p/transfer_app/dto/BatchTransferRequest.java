@@ -0,0 +1,12 @@
+package com.p2p.transfer_app.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransferRequest 
+{
+    private List<TransferRequest> transfers;
+    private BatchTransferMode mode = BatchTransferMode.ALL_OR_NOTHING;
+}
@@ -0,0 +1,18 @@
+package com.p2p.transfer_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchTransferResponse 
+{
+    private BatchTransferMode mode;
+    private int completed;
+    private int failed;
+    private List<BatchTransferItemResult> results;
+}
@@ -0,0 +1,15 @@
+package com.p2p.transfer_app.dto;
+
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+@Data
+public class ScheduledTransferRequest 
+{
+    private String fromAccountNumber;
+    private String toAccountNumber;
+    private Long amount;
+    private OffsetDateTime executeAt;
+    private Long repeatIntervalSeconds;
+}
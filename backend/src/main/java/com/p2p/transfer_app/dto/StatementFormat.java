@@ -0,0 +1,38 @@
+package com.p2p.transfer_app.dto;
+
+public enum StatementFormat 
+{
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+    private final String extension;
+
+    StatementFormat(String contentType, String extension) 
+    {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() 
+    {
+        return contentType;
+    }
+
+    public String getExtension() 
+    {
+        return extension;
+    }
+
+    public static StatementFormat fromParameter(String value) 
+    {
+        for (StatementFormat format : values()) 
+        {
+            if (format.extension.equalsIgnoreCase(value)) 
+            {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный формат выписки: " + value);
+    }
+}
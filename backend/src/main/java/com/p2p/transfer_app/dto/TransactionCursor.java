@@ -0,0 +1,37 @@
+package com.p2p.transfer_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+public class TransactionCursor 
+{
+    private Instant createdAt;
+    private UUID id;
+
+    public String encode() 
+    {
+        String raw = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TransactionCursor decode(String cursor) 
+    {
+        try 
+        {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            Instant createdAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new TransactionCursor(createdAt, UUID.fromString(parts[2]));
+        } catch (RuntimeException e) 
+        {
+            throw new IllegalArgumentException("Некорректный курсор");
+        }
+    }
+}
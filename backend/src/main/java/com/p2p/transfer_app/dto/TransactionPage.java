@@ -0,0 +1,17 @@
+package com.p2p.transfer_app.dto;
+
+import com.p2p.transfer_app.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionPage 
+{
+    private List<Transaction> transactions;
+    private String nextCursor;
+}
@@ -0,0 +1,16 @@
+package com.p2p.transfer_app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferResult 
+{
+    private UUID transactionId;
+    private boolean replayed;
+}
@@ -11,4 +11,5 @@ public class UserLoginResponse
 {
     private Long userId;
     private String username;
+    private String token;
 } 
\ No newline at end of file
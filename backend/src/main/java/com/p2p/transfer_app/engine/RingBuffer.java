@@ -0,0 +1,86 @@
+package com.p2p.transfer_app.engine;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Кольцевой буфер без блокировок для многих производителей и одного потребителя. Производитель занимает номер ячейки
+// через CAS, записывает элемент и публикует номер в массиве флагов; потребитель забирает ячейки строго по порядку
+// и освобождает их одним сдвигом своей позиции. Заполненный буфер не ждет, а сразу отказывает
+public final class RingBuffer<E> 
+{
+    private final int mask;
+    private final Object[] entries;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    public RingBuffer(int capacity) 
+    {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) 
+        {
+            throw new IllegalArgumentException("Размер кольцевого буфера должен быть степенью двойки");
+        }
+        this.mask = capacity - 1;
+        this.entries = new Object[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) 
+        {
+            published.set(i, -1);
+        }
+    }
+
+    public boolean offer(E entry) 
+    {
+        long sequence;
+        do 
+        {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= entries.length) 
+            {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        entries[index] = entry;
+        // Публикация с семантикой release: потребитель, увидевший номер, увидит и элемент
+        published.lazySet(index, sequence);
+        return true;
+    }
+
+    // Вызывается только потоком-потребителем
+    @SuppressWarnings("unchecked")
+    public int drainTo(List<? super E> sink, int maxElements) 
+    {
+        long sequence = consumed.get();
+        int drained = 0;
+        while (drained < maxElements) 
+        {
+            int index = (int) sequence & mask;
+            if (published.get(index) != sequence) 
+            {
+                break;
+            }
+            sink.add((E) entries[index]);
+            entries[index] = null;
+            sequence++;
+            drained++;
+        }
+        if (drained > 0) 
+        {
+            consumed.lazySet(sequence);
+        }
+        return drained;
+    }
+
+    public int size() 
+    {
+        return (int) Math.max(0, claimed.get() - consumed.get());
+    }
+
+    public int capacity() 
+    {
+        return entries.length;
+    }
+}
@@ -0,0 +1,755 @@
+package com.p2p.transfer_app.engine;
+
+import com.p2p.transfer_app.cache.AccountLookupCache;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.event.AccountClosedEvent;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
+import com.p2p.transfer_app.exception.TransferLimitExceededException;
+import com.p2p.transfer_app.limit.VelocityLimiter;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.TransactionRepository;
+import com.p2p.transfer_app.repository.TransferJournalRepository;
+import com.p2p.transfer_app.service.AccountService;
+import com.p2p.transfer_app.service.StripedBalanceService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Переводы с групповой фиксацией: потоки запросов кладут переводы в кольцевой буфер, единственный поток-писатель
+// держит балансы горячих счетов в массивах long по id счета, проверяет средства в памяти без блокировок и фиксирует
+// все накопленные переводы одной транзакцией с пакетной вставкой строк transactions и пакетным обновлением балансов.
+// Будущий результат перевода завершается только после фиксации транзакции.
+// Балансы в памяти - кэш: обновление в базе дополнительно проверяет остаток, а при расхождении группа откатывается,
+// затронутые счета перечитываются и группа проверяется заново.
+// С журналом (TransferJournal) группа записывается на диск в той же транзакции, после проверки остатков под
+// блокировками строк и до фиксации; номер примененной записи фиксируется вместе с группой. Подтверждение по-прежнему
+// идет после фиксации, поэтому подтвержденный перевод не может стать FAILED. При запуске записи журнала после этого
+// номера применяются к базе до приема новых переводов
+@Slf4j
+public class TransferEngine implements AutoCloseable 
+{
+    private static final long UNLOADED = Long.MIN_VALUE;
+    private static final int MAX_ACCOUNT_ID = Integer.MAX_VALUE - 8;
+    private static final int LOAD_CHUNK = 1000;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 5_000;
+
+    private final RingBuffer<Command> ring;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AccountLookupCache lookupCache;
+    private final VelocityLimiter velocityLimiter;
+    private final StripedBalanceService stripedBalanceService;
+    private final AccountService accountService;
+    private final TransferJournal journal;
+    private final TransferJournalRepository journalRepository;
+    private final int maxBatch;
+    private final int maxRetries;
+    private final long idleNanos;
+    private final long responseTimeoutNanos;
+
+    private final Counter committed;
+    private final Counter rejected;
+    private final Counter failed;
+    private final Counter conflicts;
+    private final DistributionSummary groupSize;
+    private final Timer flushTimer;
+    private final Counter unapplied;
+    private final Timer journalTimer;
+
+    // Состояние потока-писателя, другие потоки его не читают
+    private long[] balances = new long[0];
+    private long[] owners = new long[0];
+    // Последний номер журнала текущей группы; 0 - группа в журнал не записана
+    private long journaled;
+
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile boolean stopping;
+
+    public TransferEngine(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                          TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher,
+                          AccountLookupCache lookupCache, VelocityLimiter velocityLimiter,
+                          StripedBalanceService stripedBalanceService, AccountService accountService,
+                          TransferJournal journal, TransferJournalRepository journalRepository, MeterRegistry meterRegistry,
+                          int ringSize, int maxBatch, int maxRetries,
+                          Duration idleWait, Duration responseTimeout) 
+    {
+        if (maxBatch < 1 || maxRetries < 0) 
+        {
+            throw new IllegalArgumentException("Некорректные параметры движка переводов");
+        }
+        this.ring = new RingBuffer<>(ringSize);
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.lookupCache = lookupCache;
+        this.velocityLimiter = velocityLimiter;
+        this.stripedBalanceService = stripedBalanceService;
+        this.accountService = accountService;
+        this.journal = journal;
+        this.journalRepository = journalRepository;
+        this.maxBatch = maxBatch;
+        this.maxRetries = maxRetries;
+        this.idleNanos = idleWait.toNanos();
+        this.responseTimeoutNanos = responseTimeout.toNanos();
+
+        this.committed = outcomeCounter(meterRegistry, "committed");
+        this.rejected = outcomeCounter(meterRegistry, "rejected");
+        this.failed = outcomeCounter(meterRegistry, "failed");
+        this.conflicts = Counter.builder("transfer.engine.conflicts")
+                .description("Группы, откатанные из-за расхождения балансов в памяти и в базе")
+                .register(meterRegistry);
+        this.groupSize = DistributionSummary.builder("transfer.engine.group.size")
+                .description("Число переводов в одной групповой фиксации")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("transfer.engine.flush")
+                .description("Время фиксации группы переводов")
+                .register(meterRegistry);
+        this.unapplied = Counter.builder("transfer.engine.journal.unapplied")
+                .description("Записанные в журнал, но не подтвержденные переводы, которые не прошли проверку остатка при применении")
+                .register(meterRegistry);
+        this.journalTimer = Timer.builder("transfer.engine.journal.append")
+                .description("Время записи группы в журнал вместе с force")
+                .register(meterRegistry);
+        Gauge.builder("transfer.engine.queue", ring, RingBuffer::size)
+                .description("Переводы, ожидающие потока-писателя")
+                .register(meterRegistry);
+
+        this.writer = new Thread(this::run, "transfer-engine-writer");
+        // Остановку с дозаписью накопленных переводов выполняет close() при закрытии контекста
+        this.writer.setDaemon(true);
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) 
+    {
+        return Counter.builder("transfer.engine.transfers")
+                .description("Переводы, обработанные движком групповой фиксации")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    // Запускается, когда все слушатели событий зарегистрированы: восстановление из журнала пишет проводки и outbox
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() 
+    {
+        if (running) 
+        {
+            return;
+        }
+        if (journal != null) 
+        {
+            recover();
+        }
+        running = true;
+        writer.start();
+        log.info("Движок переводов запущен: буфер на {} переводов, группа до {}", ring.capacity(), maxBatch);
+    }
+
+    // Проверки, не требующие баланса, выполняются в потоке запроса. Счета на полосатом балансе и счета вне диапазона
+    // массивов переводятся обычным путем
+    public CompletableFuture<UUID> submit(TransferRequest request) 
+    {
+        if (request.getAmount() == null || request.getAmount() <= 0) 
+        {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Сумма перевода должна быть положительной"));
+        }
+        Optional<Long> fromAccountId = lookupCache.findAccountId(request.getFromAccountNumber());
+        if (fromAccountId.isEmpty()) 
+        {
+            return CompletableFuture.failedFuture(new RuntimeException("Счет-источник не найден"));
+        }
+        Optional<Long> toAccountId = lookupCache.findAccountId(request.getToAccountNumber());
+        if (toAccountId.isEmpty()) 
+        {
+            return CompletableFuture.failedFuture(new RuntimeException("Счет-получатель не найден"));
+        }
+        long from = fromAccountId.get();
+        long to = toAccountId.get();
+        if (from == to) 
+        {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Нельзя переводить деньги на тот же счет"));
+        }
+        if (from > MAX_ACCOUNT_ID || to > MAX_ACCOUNT_ID || stripedBalanceService.isStriped(from) || stripedBalanceService.isStriped(to)) 
+        {
+            return transferDirectly(request);
+        }
+
+        TransferCommand command = new TransferCommand(UUID.randomUUID(), from, request.getFromAccountNumber(), to,
+                request.getToAccountNumber(), request.getAmount(), new CompletableFuture<>());
+        if (!running || !ring.offer(command)) 
+        {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Очередь движка переводов заполнена"));
+        }
+        return command.result();
+    }
+
+    private CompletableFuture<UUID> transferDirectly(TransferRequest request) 
+    {
+        try 
+        {
+            return CompletableFuture.completedFuture(accountService.transferMoney(request));
+        } catch (RuntimeException e) 
+        {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Для потоков запросов: ждет фиксации группы не дольше responseTimeout и пробрасывает причину отказа как есть
+    public UUID transfer(TransferRequest request) 
+    {
+        try 
+        {
+            return submit(request).get(responseTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) 
+        {
+            if (e.getCause() instanceof RuntimeException cause) 
+            {
+                throw cause;
+            }
+            throw new IllegalStateException("Перевод не выполнен", e.getCause());
+        } catch (TimeoutException e) 
+        {
+            throw new IllegalStateException("Перевод не подтвержден вовремя, проверьте историю операций");
+        } catch (InterruptedException e) 
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание перевода прервано");
+        }
+    }
+
+    // Переводы в обход движка меняют балансы в базе, поэтому их счета перечитываются перед следующей проверкой.
+    // Собственные группы писатель не инвалидирует: его массивы уже отражают их
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransferCompleted(TransferCompletedEvent event) 
+    {
+        if (Thread.currentThread() == writer) 
+        {
+            return;
+        }
+        long[] accountIds = new long[event.getTransactions().size() * 2];
+        int i = 0;
+        for (Transaction transaction : event.getTransactions()) 
+        {
+            accountIds[i++] = transaction.getFromAccountId();
+            accountIds[i++] = transaction.getToAccountId();
+        }
+        invalidate(accountIds);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccountClosed(AccountClosedEvent event) 
+    {
+        invalidate(new long[] { event.getAccountId() });
+    }
+
+    // Инвалидацию нельзя потерять, поэтому при заполненном буфере она ждет, пока писатель освободит место
+    private void invalidate(long[] accountIds) 
+    {
+        Invalidation invalidation = new Invalidation(accountIds);
+        while (running && !ring.offer(invalidation)) 
+        {
+            Thread.yield();
+        }
+    }
+
+    private void run() 
+    {
+        List<Command> drained = new ArrayList<>(maxBatch);
+        int idle = 0;
+        while (running || ring.size() > 0) 
+        {
+            if (ring.drainTo(drained, maxBatch) == 0) 
+            {
+                idle = idle(idle);
+                continue;
+            }
+            idle = 0;
+            try 
+            {
+                process(drained);
+            } catch (RuntimeException e) 
+            {
+                log.error("Ошибка потока-писателя движка переводов: {}", e.getMessage(), e);
+                Arrays.fill(balances, UNLOADED);
+                for (Command command : drained) 
+                {
+                    if (command instanceof TransferCommand transfer) 
+                    {
+                        transfer.result().completeExceptionally(e);
+                    }
+                }
+            }
+            drained.clear();
+        }
+        // Переводы, опубликованные одновременно с остановкой, не останутся без ответа
+        ring.drainTo(drained, Integer.MAX_VALUE);
+        for (Command command : drained) 
+        {
+            if (command instanceof TransferCommand transfer) 
+            {
+                transfer.result().completeExceptionally(new RejectedExecutionException("Движок переводов остановлен"));
+            }
+        }
+    }
+
+    // Сначала короткое ожидание в цикле, затем уступка процессора, затем сон: под нагрузкой писатель не засыпает,
+    // а без нагрузки не занимает ядро
+    private int idle(int idle) 
+    {
+        if (idle < SPIN_TRIES) 
+        {
+            Thread.onSpinWait();
+        }
+        else if (idle < YIELD_TRIES) 
+        {
+            Thread.yield();
+        }
+        else 
+        {
+            LockSupport.parkNanos(idleNanos);
+        }
+        return idle + 1;
+    }
+
+    private void process(List<Command> drained) 
+    {
+        List<TransferCommand> transfers = new ArrayList<>(drained.size());
+        for (Command command : drained) 
+        {
+            if (command instanceof Invalidation invalidation) 
+            {
+                for (long accountId : invalidation.accountIds()) 
+                {
+                    unload(accountId);
+                }
+            }
+            else 
+            {
+                transfers.add((TransferCommand) command);
+            }
+        }
+        if (!transfers.isEmpty()) 
+        {
+            commit(transfers);
+        }
+    }
+
+    private void commit(List<TransferCommand> transfers) 
+    {
+        List<TransferCommand> pending = transfers;
+        for (int attempt = 0; ; attempt++) 
+        {
+            load(pending);
+            long now = System.currentTimeMillis();
+            OffsetDateTime createdAt = OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            List<TransferCommand> accepted = new ArrayList<>(pending.size());
+            List<Transaction> rows = new ArrayList<>(pending.size());
+            SortedMap<Long, Long> deltas = new TreeMap<>();
+            for (TransferCommand transfer : pending) 
+            {
+                RuntimeException rejection = apply(transfer, now);
+                if (rejection != null) 
+                {
+                    rejected.increment();
+                    transfer.result().completeExceptionally(rejection);
+                    continue;
+                }
+                accepted.add(transfer);
+                rows.add(Transaction.builder()
+                        .id(transfer.transactionId())
+                        .fromAccountId(transfer.fromAccountId())
+                        .toAccountId(transfer.toAccountId())
+                        .amount(transfer.amount())
+                        .status(TransactionStatus.COMPLETED)
+                        .createdAt(createdAt)
+                        .build());
+                deltas.merge(transfer.fromAccountId(), -transfer.amount(), Long::sum);
+                deltas.merge(transfer.toAccountId(), transfer.amount(), Long::sum);
+            }
+            if (accepted.isEmpty()) 
+            {
+                return;
+            }
+
+            List<Long> conflicting;
+            journaled = 0;
+            try 
+            {
+                conflicting = flushTimer.record(() -> flush(rows, deltas, () -> appendToJournal(rows)));
+            } catch (RuntimeException e) 
+            {
+                if (journaled != 0) 
+                {
+                    settleJournaled(accepted, rows, deltas, now, e);
+                    return;
+                }
+                log.error("Не удалось зафиксировать группу из {} переводов: {}", accepted.size(), e.getMessage(), e);
+                revert(accepted, now);
+                failed.increment(accepted.size());
+                accepted.forEach(transfer -> transfer.result().completeExceptionally(e));
+                return;
+            }
+
+            if (conflicting.isEmpty()) 
+            {
+                groupSize.record(accepted.size());
+                committed.increment(accepted.size());
+                accepted.forEach(transfer -> transfer.result().complete(transfer.transactionId()));
+                log.debug("Зафиксирована группа из {} переводов", accepted.size());
+                if (journal != null) 
+                {
+                    journal.checkpoint(journaled);
+                }
+                return;
+            }
+
+            conflicts.increment();
+            revert(accepted, now);
+            if (attempt >= maxRetries) 
+            {
+                log.warn("Группа из {} переводов не зафиксирована после {} попыток: балансы счетов {} изменились в обход движка",
+                        accepted.size(), attempt + 1, conflicting);
+                failed.increment(accepted.size());
+                accepted.forEach(transfer -> transfer.result().completeExceptionally(
+                        new IllegalStateException("Балансы счетов изменились во время перевода, повторите попытку")));
+                return;
+            }
+            log.debug("Балансы счетов {} изменились в обход движка, группа перепроверяется", conflicting);
+            pending = accepted;
+        }
+    }
+
+    // Вызывается в транзакции группы после проверки остатков: строки счетов уже заблокированы, и перевод из журнала
+    // будет применен при восстановлении теми же изменениями балансов. Если запись оборвалась, часть группы могла
+    // попасть на диск, поэтому группа все равно считается записанной и ее исход определяет применение из журнала
+    private long appendToJournal(List<Transaction> rows) 
+    {
+        if (journal == null) 
+        {
+            return 0;
+        }
+        long last = journal.lastSequence() + rows.size();
+        try 
+        {
+            journaled = journalTimer.record(() -> journal.append(rows));
+        } catch (UncheckedIOException e) 
+        {
+            journaled = last;
+            throw e;
+        }
+        return journaled;
+    }
+
+    // Группа уже в журнале, но фиксация в базе не подтвердилась (например, оборвалось соединение). Клиентам еще не
+    // ответили, поэтому исход определяется применением записей журнала с повтором, как при восстановлении
+    private void settleJournaled(List<TransferCommand> accepted, List<Transaction> rows, SortedMap<Long, Long> deltas, long now,
+                                 RuntimeException cause) 
+    {
+        log.warn("Фиксация группы из {} переводов не подтверждена, группа применяется из журнала: {}", accepted.size(), cause.getMessage());
+        long last = journaled;
+        Set<UUID> rejectedIds = applyJournaled(rows, deltas, last - rows.size() + 1);
+        for (TransferCommand transfer : accepted) 
+        {
+            if (rejectedIds.contains(transfer.transactionId())) 
+            {
+                velocityLimiter.release(transfer.fromAccountId(), owners[(int) transfer.fromAccountId()], transfer.amount(), now);
+                failed.increment();
+                transfer.result().completeExceptionally(new IllegalStateException("Балансы счетов изменились во время перевода, повторите попытку"));
+            }
+            else 
+            {
+                committed.increment();
+                transfer.result().complete(transfer.transactionId());
+            }
+            unload(transfer.fromAccountId());
+            unload(transfer.toAccountId());
+        }
+        journal.checkpoint(last);
+    }
+
+    // Применяет записи журнала с номерами от firstSequence подряд и возвращает id переводов, сохраненных как FAILED.
+    // Уже примененные записи узнаются по номеру в transfer_journal_checkpoint. Если баланс в базе изменили в обход
+    // движка, записи применяются по одному, а не прошедшие проверку остатка сохраняются со статусом FAILED
+    private Set<UUID> applyJournaled(List<Transaction> rows, SortedMap<Long, Long> deltas, long firstSequence) 
+    {
+        long lastSequence = firstSequence + rows.size() - 1;
+        // Номер сверяется перед каждой попыткой: фиксация, ответ на которую потерялся, уже продвинула его
+        List<Long> conflicting = retrying(() -> journalRepository.findAppliedSequence() >= lastSequence ? List.<Long>of()
+                : flushTimer.record(() -> flush(rows, deltas, () -> lastSequence)));
+        if (conflicting.isEmpty()) 
+        {
+            return Set.of();
+        }
+        conflicts.increment();
+        log.warn("Балансы счетов {} изменились в обход движка, переводы из журнала применяются по одному", conflicting);
+        Set<UUID> rejectedIds = new HashSet<>();
+        for (int i = 0; i < rows.size(); i++) 
+        {
+            Transaction row = rows.get(i);
+            if (!applyJournaled(row, firstSequence + i)) 
+            {
+                rejectedIds.add(row.getId());
+            }
+            unload(row.getFromAccountId());
+            unload(row.getToAccountId());
+        }
+        return rejectedIds;
+    }
+
+    private boolean applyJournaled(Transaction row, long sequence) 
+    {
+        SortedMap<Long, Long> deltas = new TreeMap<>(Map.of(row.getFromAccountId(), -row.getAmount(), row.getToAccountId(), row.getAmount()));
+        if (retrying(() -> journalRepository.findAppliedSequence() >= sequence ? List.<Long>of()
+                : flush(List.of(row), deltas, () -> sequence)).isEmpty()) 
+        {
+            return true;
+        }
+        unapplied.increment();
+        log.error("Перевод {} из журнала не применен: остаток счета {} изменен в обход движка", row.getId(), row.getFromAccountId());
+        Transaction failedRow = Transaction.builder()
+                .id(row.getId())
+                .fromAccountId(row.getFromAccountId())
+                .toAccountId(row.getToAccountId())
+                .amount(row.getAmount())
+                .status(TransactionStatus.FAILED)
+                .createdAt(row.getCreatedAt())
+                .build();
+        retrying(() -> transactionTemplate.execute(status -> 
+        {
+            if (journalRepository.findAppliedSequence() < sequence) 
+            {
+                transactionRepository.saveAll(List.of(failedRow));
+                journalRepository.advance(sequence);
+            }
+            return null;
+        }));
+        return false;
+    }
+
+    // Пока движок работает, недоступная база не теряет записи журнала: попытка повторяется с растущей паузой.
+    // При остановке ошибка пробрасывается, и записи применятся при следующем запуске
+    private <T> T retrying(Supplier<T> action) 
+    {
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        while (true) 
+        {
+            try 
+            {
+                return action.get();
+            } catch (RuntimeException e) 
+            {
+                if (stopping) 
+                {
+                    throw e;
+                }
+                log.error("Не удалось применить записи журнала к базе, повтор через {} мс: {}", backoff, e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+                backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+            }
+        }
+    }
+
+    // Записи журнала после последней примененной применяются к accounts теми же группами, что и при работе,
+    // после чего балансы в памяти загружаются из согласованной с журналом базы. Эти переводы не были подтверждены:
+    // процесс остановился между записью группы в журнал и фиксацией
+    private void recover() 
+    {
+        List<Transaction> journaledRows = journal.recover(journalRepository.findAppliedSequence());
+        long firstSequence = journal.lastSequence() - journaledRows.size() + 1;
+        for (int i = 0; i < journaledRows.size(); i += maxBatch) 
+        {
+            List<Transaction> chunk = journaledRows.subList(i, Math.min(journaledRows.size(), i + maxBatch));
+            SortedMap<Long, Long> deltas = new TreeMap<>();
+            for (Transaction transaction : chunk) 
+            {
+                deltas.merge(transaction.getFromAccountId(), -transaction.getAmount(), Long::sum);
+                deltas.merge(transaction.getToAccountId(), transaction.getAmount(), Long::sum);
+            }
+            applyJournaled(chunk, deltas, firstSequence + i);
+        }
+        journal.checkpoint(journal.lastSequence());
+        log.info("Журнал переводов прочитан: применено к базе {} записей", journaledRows.size());
+    }
+
+    // Изменения балансов применяются в порядке возрастания id - как блокирует строки и обычный перевод.
+    // Событие публикуется внутри транзакции, чтобы журнал проводок и outbox зафиксировались вместе с группой.
+    // journaling вызывается после проверки остатков и возвращает номер последней записи журнала группы (0 без журнала)
+    private List<Long> flush(List<Transaction> rows, SortedMap<Long, Long> deltas, LongSupplier journaling) 
+    {
+        return transactionTemplate.execute(status -> 
+        {
+            List<Long> conflicting = accountRepository.applyGuardedBalanceDeltas(deltas);
+            if (!conflicting.isEmpty()) 
+            {
+                status.setRollbackOnly();
+                return conflicting;
+            }
+            long sequence = journaling.getAsLong();
+            if (sequence != 0) 
+            {
+                journalRepository.advance(sequence);
+            }
+            transactionRepository.saveAll(rows);
+            eventPublisher.publishEvent(new TransferCompletedEvent(rows));
+            return List.of();
+        });
+    }
+
+    private RuntimeException apply(TransferCommand transfer, long now) 
+    {
+        int from = (int) transfer.fromAccountId();
+        int to = (int) transfer.toAccountId();
+        if (balances[from] == UNLOADED) 
+        {
+            lookupCache.evictAccount(transfer.fromAccountId(), transfer.fromAccountNumber());
+            return new RuntimeException("Счет-источник не найден");
+        }
+        if (balances[to] == UNLOADED) 
+        {
+            lookupCache.evictAccount(transfer.toAccountId(), transfer.toAccountNumber());
+            return new RuntimeException("Счет-получатель не найден");
+        }
+        if (!velocityLimiter.tryAcquire(transfer.fromAccountId(), owners[from], transfer.amount(), now)) 
+        {
+            return new TransferLimitExceededException("Превышен лимит переводов, повторите попытку позже");
+        }
+        if (balances[from] < transfer.amount()) 
+        {
+            velocityLimiter.release(transfer.fromAccountId(), owners[from], transfer.amount(), now);
+            return new IllegalArgumentException("Недостаточно средств");
+        }
+        balances[from] -= transfer.amount();
+        balances[to] += transfer.amount();
+        return null;
+    }
+
+    // Откат группы в памяти: счета перечитываются из базы, резервы лимитов снимаются
+    private void revert(List<TransferCommand> accepted, long now) 
+    {
+        for (TransferCommand transfer : accepted) 
+        {
+            velocityLimiter.release(transfer.fromAccountId(), owners[(int) transfer.fromAccountId()], transfer.amount(), now);
+            unload(transfer.fromAccountId());
+            unload(transfer.toAccountId());
+        }
+    }
+
+    private void load(List<TransferCommand> transfers) 
+    {
+        Set<Long> missing = new HashSet<>();
+        for (TransferCommand transfer : transfers) 
+        {
+            ensureCapacity(Math.max(transfer.fromAccountId(), transfer.toAccountId()));
+            if (balances[(int) transfer.fromAccountId()] == UNLOADED) 
+            {
+                missing.add(transfer.fromAccountId());
+            }
+            if (balances[(int) transfer.toAccountId()] == UNLOADED) 
+            {
+                missing.add(transfer.toAccountId());
+            }
+        }
+        List<Long> ids = new ArrayList<>(missing);
+        for (int i = 0; i < ids.size(); i += LOAD_CHUNK) 
+        {
+            for (Account account : accountRepository.findAllByIds(ids.subList(i, Math.min(ids.size(), i + LOAD_CHUNK)))) 
+            {
+                int index = account.getId().intValue();
+                balances[index] = account.getBalance();
+                owners[index] = account.getUserId();
+            }
+        }
+    }
+
+    private void ensureCapacity(long accountId) 
+    {
+        if (accountId < balances.length) 
+        {
+            return;
+        }
+        int length = (int) Math.min(MAX_ACCOUNT_ID + 1L, Math.max(1024L, Math.max(accountId + 1, balances.length * 2L)));
+        int previous = balances.length;
+        balances = Arrays.copyOf(balances, length);
+        owners = Arrays.copyOf(owners, length);
+        Arrays.fill(balances, previous, length, UNLOADED);
+    }
+
+    private void unload(long accountId) 
+    {
+        if (accountId < balances.length) 
+        {
+            balances[(int) accountId] = UNLOADED;
+        }
+    }
+
+    @Override
+    public void close() throws Exception 
+    {
+        stopping = true;
+        running = false;
+        LockSupport.unpark(writer);
+        if (writer.isAlive()) 
+        {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        if (journal != null) 
+        {
+            journal.close();
+        }
+        log.info("Движок переводов остановлен");
+    }
+
+    private sealed interface Command permits TransferCommand, Invalidation 
+    {
+    }
+
+    private record TransferCommand(UUID transactionId, long fromAccountId, String fromAccountNumber, long toAccountId,
+                                   String toAccountNumber, long amount, CompletableFuture<UUID> result) implements Command 
+    {
+    }
+
+    private record Invalidation(long[] accountIds) implements Command 
+    {
+    }
+}
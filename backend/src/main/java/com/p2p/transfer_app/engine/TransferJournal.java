@@ -0,0 +1,326 @@
+package com.p2p.transfer_app.engine;
+
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Журнал упреждающей записи движка переводов: принятые переводы дописываются в сегменты фиксированными записями
+// с порядковым номером и CRC32, одна пачка - один вызов force. Сегмент закрывается, когда превышает segmentBytes,
+// и удаляется, когда все его записи подтверждены базой (checkpoint); текущий сегмент в этом случае обрезается.
+// Имя сегмента задает только порядок: после обрезки нумерация в нем продолжается с номера первой записи.
+// Не потокобезопасен: пишет только поток-писатель
+@Slf4j
+public final class TransferJournal implements AutoCloseable 
+{
+    static final int RECORD_BYTES = 60;
+    private static final int PAYLOAD_BYTES = RECORD_BYTES - Integer.BYTES;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".wal";
+
+    private final Path directory;
+    private final long segmentBytes;
+    // Первый номер записи сегмента -> файл сегмента, последний элемент - текущий сегмент
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel active;
+    private long activeSize;
+    private long nextSequence = 1;
+    private IOException failure;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_BYTES * 1024);
+
+    public TransferJournal(Path directory, long segmentBytes) 
+    {
+        if (segmentBytes < RECORD_BYTES) 
+        {
+            throw new IllegalArgumentException("Размер сегмента журнала меньше одной записи");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    // Читает все сегменты по порядку и открывает новый сегмент для записи; возвращает записи с номером больше
+    // appliedSequence - они идут подряд и заканчиваются lastSequence(). Недописанный хвост последнего сегмента
+    // (процесс остановился посреди записи пачки) отрезается: такие переводы не были подтверждены клиенту
+    public List<Transaction> recover(long appliedSequence) 
+    {
+        try 
+        {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) 
+            {
+                files.filter(file -> file.getFileName().toString().startsWith(PREFIX) && file.getFileName().toString().endsWith(SUFFIX))
+                        .forEach(file -> segments.put(firstSequence(file), file));
+            }
+
+            List<Transaction> records = new ArrayList<>();
+            nextSequence = appliedSequence + 1;
+            for (Map.Entry<Long, Path> segment : segments.entrySet()) 
+            {
+                boolean last = segment.getKey().equals(segments.lastKey());
+                nextSequence = Math.max(nextSequence, segment.getKey());
+                read(segment.getValue(), last, appliedSequence, records);
+            }
+            openSegment();
+            return records;
+        } catch (IOException e) 
+        {
+            throw new UncheckedIOException("Не удалось прочитать журнал переводов", e);
+        }
+    }
+
+    // Номер первой записи сегмента берется из нее самой. Запись с номером меньше ожидаемого - остаток, который
+    // пережил падение, не дождавшись сохранения обрезки сегмента: его записи уже применены, и чтение сегмента заканчивается
+    private void read(Path file, boolean last, long appliedSequence, List<Transaction> records) throws IOException 
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) 
+        {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            long position = 0;
+            long expected = -1;
+            while (true) 
+            {
+                record.clear();
+                readFully(channel, record, position);
+                if (record.position() == 0) 
+                {
+                    return;
+                }
+                record.flip();
+                boolean complete = record.remaining() == RECORD_BYTES && checksum(record) == record.getInt(PAYLOAD_BYTES);
+                long sequence = complete ? record.getLong(0) : -1;
+                if (complete && expected >= 0 && sequence < expected) 
+                {
+                    log.warn("Сегмент журнала {} содержит уже примененные записи после позиции {}", file, position);
+                    if (last) 
+                    {
+                        truncate(channel, position);
+                    }
+                    return;
+                }
+                if (!complete || (expected >= 0 && sequence != expected)) 
+                {
+                    if (!last) 
+                    {
+                        throw new IllegalStateException("Журнал переводов поврежден: " + file + ", позиция " + position);
+                    }
+                    log.warn("Отрезан недописанный хвост журнала {} с позиции {}", file, position);
+                    truncate(channel, position);
+                    return;
+                }
+                if (sequence > appliedSequence) 
+                {
+                    records.add(decode(record));
+                }
+                expected = sequence + 1;
+                nextSequence = Math.max(nextSequence, expected);
+                position += RECORD_BYTES;
+            }
+        }
+    }
+
+    private static void truncate(FileChannel channel, long position) throws IOException 
+    {
+        channel.truncate(position);
+        channel.force(true);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer record, long position) throws IOException 
+    {
+        while (record.hasRemaining()) 
+        {
+            if (channel.read(record, position + record.position()) <= 0) 
+            {
+                return;
+            }
+        }
+    }
+
+    // Возвращает номер последней записанной записи; после возврата записи переживут падение процесса
+    // После ошибки записи хвост сегмента может быть недописан, поэтому журнал больше не принимает записи до перезапуска
+    public long append(List<Transaction> transactions) 
+    {
+        if (failure != null) 
+        {
+            throw new IllegalStateException("Журнал переводов недоступен после ошибки записи", failure);
+        }
+        try 
+        {
+            int bytes = transactions.size() * RECORD_BYTES;
+            if (activeSize > 0 && activeSize + bytes > segmentBytes) 
+            {
+                rotate();
+            }
+            if (buffer.capacity() < bytes) 
+            {
+                buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes) << 1);
+            }
+            buffer.clear();
+            for (Transaction transaction : transactions) 
+            {
+                encode(transaction, nextSequence++);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) 
+            {
+                activeSize += active.write(buffer);
+            }
+            active.force(false);
+            return nextSequence - 1;
+        } catch (IOException e) 
+        {
+            failure = e;
+            throw new UncheckedIOException("Не удалось записать журнал переводов", e);
+        }
+    }
+
+    // Все записи с номером не больше sequence применены к базе: закрытые сегменты из них больше не нужны, а текущий
+    // обрезается, чтобы перезапуск не перечитывал его. Обрезка без force: уцелевшие после падения записи отсекает
+    // номер примененной записи, который база хранит вместе с самими переводами
+    public void checkpoint(long sequence) 
+    {
+        while (segments.size() > 1) 
+        {
+            Map.Entry<Long, Path> oldest = segments.firstEntry();
+            long lastInSegment = segments.higherKey(oldest.getKey()) - 1;
+            if (lastInSegment > sequence) 
+            {
+                return;
+            }
+            try 
+            {
+                Files.deleteIfExists(oldest.getValue());
+            } catch (IOException e) 
+            {
+                log.warn("Не удалось удалить сегмент журнала {}: {}", oldest.getValue(), e.getMessage());
+                return;
+            }
+            segments.pollFirstEntry();
+        }
+        if (sequence >= lastSequence() && activeSize > 0 && failure == null) 
+        {
+            try 
+            {
+                active.truncate(0);
+                activeSize = 0;
+            } catch (IOException e) 
+            {
+                log.warn("Не удалось обрезать сегмент журнала {}: {}", segments.lastEntry().getValue(), e.getMessage());
+            }
+        }
+    }
+
+    public long lastSequence() 
+    {
+        return nextSequence - 1;
+    }
+
+    int segmentCount() 
+    {
+        return segments.size();
+    }
+
+    long activeSize() 
+    {
+        return activeSize;
+    }
+
+    private void rotate() throws IOException 
+    {
+        active.force(true);
+        active.close();
+        openSegment();
+    }
+
+    private void openSegment() throws IOException 
+    {
+        Path file = directory.resolve(String.format("%s%020d%s", PREFIX, nextSequence, SUFFIX));
+        active = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSize = active.size();
+        segments.put(nextSequence, file);
+        // Новый файл должен пережить падение вместе со своей записью в каталоге
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) 
+        {
+            dir.force(true);
+        } catch (IOException e) 
+        {
+            log.debug("Каталог журнала не поддерживает force: {}", e.getMessage());
+        }
+    }
+
+    private void encode(Transaction transaction, long sequence) 
+    {
+        int start = buffer.position();
+        Instant createdAt = transaction.getCreatedAt().toInstant();
+        buffer.putLong(sequence)
+                .putLong(transaction.getId().getMostSignificantBits())
+                .putLong(transaction.getId().getLeastSignificantBits())
+                .putLong(transaction.getFromAccountId())
+                .putLong(transaction.getToAccountId())
+                .putLong(transaction.getAmount())
+                .putLong(ChronoUnit.MICROS.between(Instant.EPOCH, createdAt));
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start).limit(start + PAYLOAD_BYTES);
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private int checksum(ByteBuffer record) 
+    {
+        ByteBuffer payload = record.duplicate();
+        payload.position(0).limit(PAYLOAD_BYTES);
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static Transaction decode(ByteBuffer record) 
+    {
+        long micros = record.getLong(48);
+        return Transaction.builder()
+                .id(new UUID(record.getLong(8), record.getLong(16)))
+                .fromAccountId(record.getLong(24))
+                .toAccountId(record.getLong(32))
+                .amount(record.getLong(40))
+                .status(TransactionStatus.COMPLETED)
+                .createdAt(OffsetDateTime.ofInstant(Instant.EPOCH.plus(micros, ChronoUnit.MICROS), ZoneOffset.UTC))
+                .build();
+    }
+
+    private static long firstSequence(Path file) 
+    {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    @Override
+    public void close() throws IOException 
+    {
+        if (active != null) 
+        {
+            active.force(true);
+            active.close();
+        }
+    }
+}
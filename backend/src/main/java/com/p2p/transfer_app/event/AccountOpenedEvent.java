@@ -0,0 +1,14 @@
+package com.p2p.transfer_app.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class AccountOpenedEvent 
+{
+    private Long accountId;
+    private String accountNumber;
+    private Long userId;
+    private Long initialBalance;
+}
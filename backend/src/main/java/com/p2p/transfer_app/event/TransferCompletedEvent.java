@@ -0,0 +1,14 @@
+package com.p2p.transfer_app.event;
+
+import com.p2p.transfer_app.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class TransferCompletedEvent 
+{
+    private List<Transaction> transactions;
+}
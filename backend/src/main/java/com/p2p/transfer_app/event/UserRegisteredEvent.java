@@ -0,0 +1,12 @@
+package com.p2p.transfer_app.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class UserRegisteredEvent 
+{
+    private Long userId;
+    private String username;
+}
@@ -6,6 +6,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.util.concurrent.RejectedExecutionException;
+
 @ControllerAdvice
 @Slf4j
 public class GlobalExceptionHandler 
@@ -39,6 +41,20 @@ public class GlobalExceptionHandler
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(TransferLimitExceededException.class)
+    public ResponseEntity<String> handleTransferLimitExceededException(TransferLimitExceededException ex) 
+    {
+        log.warn("Превышен лимит переводов: {}", ex.getMessage());
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> handleRejectedExecutionException(RejectedExecutionException ex) 
+    {
+        log.warn("Очередь перегружена: {}", ex.getMessage());
+        return new ResponseEntity<>("Сервер перегружен, повторите попытку позже.", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleCustomRuntimeException(RuntimeException ex) 
     {
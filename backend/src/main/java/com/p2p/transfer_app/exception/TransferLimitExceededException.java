@@ -0,0 +1,9 @@
+package com.p2p.transfer_app.exception;
+
+public class TransferLimitExceededException extends RuntimeException 
+{
+    public TransferLimitExceededException(String message) 
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,187 @@
+package com.p2p.transfer_app.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Адаптивный лимит одновременных запросов по градиенту задержки: задержки собираются в окна (не короче windowNanos
+// и не меньше WINDOW_SAMPLES запросов), средняя задержка окна сравнивается с долгой (базовой), и пока она растет,
+// лимит уменьшается пропорционально. Ошибки сервера уменьшают лимит мультипликативно. Сверх лимита до queueSize запросов ждут освобождения не дольше maxWait, остальные сразу отклоняются
+public final class AdaptiveConcurrencyLimit 
+{
+    private static final int WINDOW_SAMPLES = 10;
+    private static final double LONG_RTT_FACTOR = 0.01;
+    private static final double SMOOTHING = 0.2;
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueSize;
+    private final long maxWaitNanos;
+    private final double tolerance;
+    private final long windowNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private double longRttNanos;
+    private int inFlight;
+    private int waiting;
+
+    private long windowStart = System.nanoTime();
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, int queueSize, long maxWaitMillis, double tolerance,
+                                   long windowMillis) 
+    {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit || queueSize < 0 || tolerance < 1.0) 
+        {
+            throw new IllegalArgumentException("Некорректные параметры адаптивного лимита");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueSize = queueSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.tolerance = tolerance;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    public boolean tryAcquire() throws InterruptedException 
+    {
+        lock.lock();
+        try 
+        {
+            if (inFlight < (int) limit) 
+            {
+                acquired();
+                return true;
+            }
+            if (waiting >= queueSize || maxWaitNanos == 0) 
+            {
+                return false;
+            }
+            waiting++;
+            try 
+            {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) 
+                {
+                    if (remaining <= 0) 
+                    {
+                        return false;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                acquired();
+                return true;
+            } finally 
+            {
+                waiting--;
+            }
+        } finally 
+        {
+            lock.unlock();
+        }
+    }
+
+    private void acquired() 
+    {
+        inFlight++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+    }
+
+    public void release(long rttNanos, boolean dropped) 
+    {
+        lock.lock();
+        try 
+        {
+            inFlight--;
+            if (dropped) 
+            {
+                limit = Math.max(minLimit, limit * DROP_BACKOFF);
+            }
+            else if (rttNanos > 0) 
+            {
+                windowRttSum += rttNanos;
+                windowSamples++;
+                long now = System.nanoTime();
+                if (windowSamples >= WINDOW_SAMPLES && now - windowStart >= windowNanos) 
+                {
+                    update((double) windowRttSum / windowSamples, windowMaxInFlight * 2 >= limit);
+                    windowStart = now;
+                    windowRttSum = 0;
+                    windowSamples = 0;
+                    windowMaxInFlight = inFlight;
+                }
+            }
+            released.signalAll();
+        } finally 
+        {
+            lock.unlock();
+        }
+    }
+
+    // Лимит растет только по окнам, в которых была занята хотя бы половина лимита: без нагрузки нет доказательств,
+    // что система выдержит больше
+    private void update(double shortRttNanos, boolean loaded) 
+    {
+        if (longRttNanos == 0) 
+        {
+            longRttNanos = shortRttNanos;
+            return;
+        }
+        longRttNanos += (shortRttNanos - longRttNanos) * LONG_RTT_FACTOR;
+        // При затяжной перегрузке базовая задержка подтягивается к текущей, иначе лимит остался бы минимальным навсегда
+        if (longRttNanos > shortRttNanos * 2) 
+        {
+            longRttNanos *= 0.95;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRttNanos));
+        if (gradient == 1.0 && !loaded) 
+        {
+            return;
+        }
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    public int getLimit() 
+    {
+        lock.lock();
+        try 
+        {
+            return (int) limit;
+        } finally 
+        {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() 
+    {
+        lock.lock();
+        try 
+        {
+            return inFlight;
+        } finally 
+        {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() 
+    {
+        lock.lock();
+        try 
+        {
+            return waiting;
+        } finally 
+        {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.p2p.transfer_app.limit;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Скользящее окно из кольца корзин: каждая корзина покрывает window / buckets миллисекунд и хранит число и сумму
+// переводов в LongAdder. Корзина прошлого круга заменяется CAS при первом обращении в новом интервале,
+// поэтому запись и чтение обходятся без блокировок. Точность окна равна длине одной корзины
+public final class SlidingWindowCounter 
+{
+    private final long bucketMillis;
+    private final int buckets;
+    private final AtomicReferenceArray<Bucket> ring;
+
+    public SlidingWindowCounter(long windowMillis, int buckets) 
+    {
+        if (buckets < 1 || windowMillis < buckets) 
+        {
+            throw new IllegalArgumentException("Некорректные параметры скользящего окна");
+        }
+        this.bucketMillis = windowMillis / buckets;
+        this.buckets = buckets;
+        this.ring = new AtomicReferenceArray<>(buckets);
+    }
+
+    public void add(long nowMillis, long count, long amount) 
+    {
+        long epoch = nowMillis / bucketMillis;
+        int index = (int) (epoch % buckets);
+        while (true) 
+        {
+            Bucket bucket = ring.get(index);
+            if (bucket != null && bucket.epoch == epoch) 
+            {
+                bucket.count.add(count);
+                bucket.amount.add(amount);
+                return;
+            }
+            if (bucket != null && bucket.epoch > epoch) 
+            {
+                // Интервал уже вытеснен более новым: он вне окна и не влияет на сумму
+                return;
+            }
+            Bucket fresh = new Bucket(epoch);
+            fresh.count.add(count);
+            fresh.amount.add(amount);
+            if (ring.compareAndSet(index, bucket, fresh)) 
+            {
+                return;
+            }
+        }
+    }
+
+    public long count(long nowMillis) 
+    {
+        long oldest = nowMillis / bucketMillis - buckets;
+        long total = 0;
+        for (int i = 0; i < buckets; i++) 
+        {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && bucket.epoch > oldest) 
+            {
+                total += bucket.count.sum();
+            }
+        }
+        return total;
+    }
+
+    public long amount(long nowMillis) 
+    {
+        long oldest = nowMillis / bucketMillis - buckets;
+        long total = 0;
+        for (int i = 0; i < buckets; i++) 
+        {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && bucket.epoch > oldest) 
+            {
+                total += bucket.amount.sum();
+            }
+        }
+        return total;
+    }
+
+    public boolean isIdle(long nowMillis) 
+    {
+        return count(nowMillis) == 0 && amount(nowMillis) == 0;
+    }
+
+    private static final class Bucket 
+    {
+        private final long epoch;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder amount = new LongAdder();
+
+        private Bucket(long epoch) 
+        {
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.p2p.transfer_app.limit;
+
+import com.p2p.transfer_app.repository.TransactionRepository;
+import com.p2p.transfer_app.shard.OnEachShard;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Лимиты частоты и объема исходящих переводов по счету и по пользователю за минуту и за сутки. Счетчики живут в памяти
+// и восстанавливаются из transactions при старте, поэтому проверка на пути перевода не обращается к базе.
+// Значение лимита 0 отключает его
+@Component
+@Slf4j
+public class VelocityLimiter 
+{
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+    private static final long DAY = Duration.ofDays(1).toMillis();
+
+    private final TransactionRepository transactionRepository;
+    private final Limits accountLimits;
+    private final Limits userLimits;
+    private final Map<Long, Windows> accountWindows = new ConcurrentHashMap<>();
+    private final Map<Long, Windows> userWindows = new ConcurrentHashMap<>();
+    private final Counter accountRejections;
+    private final Counter userRejections;
+
+    public VelocityLimiter(TransactionRepository transactionRepository, MeterRegistry meterRegistry,
+                           @Value("${transfer.velocity.account.max-count-per-minute:0}") long accountCountPerMinute,
+                           @Value("${transfer.velocity.account.max-amount-per-minute:0}") long accountAmountPerMinute,
+                           @Value("${transfer.velocity.account.max-count-per-day:0}") long accountCountPerDay,
+                           @Value("${transfer.velocity.account.max-amount-per-day:0}") long accountAmountPerDay,
+                           @Value("${transfer.velocity.user.max-count-per-minute:0}") long userCountPerMinute,
+                           @Value("${transfer.velocity.user.max-amount-per-minute:0}") long userAmountPerMinute,
+                           @Value("${transfer.velocity.user.max-count-per-day:0}") long userCountPerDay,
+                           @Value("${transfer.velocity.user.max-amount-per-day:0}") long userAmountPerDay) 
+    {
+        this.transactionRepository = transactionRepository;
+        this.accountLimits = new Limits(accountCountPerMinute, accountAmountPerMinute, accountCountPerDay, accountAmountPerDay);
+        this.userLimits = new Limits(userCountPerMinute, userAmountPerMinute, userCountPerDay, userAmountPerDay);
+        this.accountRejections = rejectionCounter(meterRegistry, "account");
+        this.userRejections = rejectionCounter(meterRegistry, "user");
+    }
+
+    private static Counter rejectionCounter(MeterRegistry meterRegistry, String scope) 
+    {
+        return Counter.builder("transfer.velocity.rejected")
+                .description("Переводы, отклоненные лимитами частоты и объема")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() 
+    {
+        return accountLimits.enabled() || userLimits.enabled();
+    }
+
+    // Перевод сначала учитывается в окнах, затем окна сверяются с лимитами: параллельные переводы не могут вместе
+    // превысить лимит, хотя на границе лимита один из них может быть отклонен лишний раз.
+    // Если транзакция перевода не зафиксируется, резерв снимается при ее завершении
+    public boolean tryAcquire(Long accountId, Long userId, long amount, long nowMillis) 
+    {
+        if (!isEnabled()) 
+        {
+            return true;
+        }
+        Windows account = accountLimits.enabled() ? accountWindows.computeIfAbsent(accountId, id -> new Windows()) : null;
+        Windows user = userLimits.enabled() && userId != null ? userWindows.computeIfAbsent(userId, id -> new Windows()) : null;
+        add(account, user, 1, amount, nowMillis);
+
+        if (account != null && accountLimits.exceeded(account, nowMillis)) 
+        {
+            add(account, user, -1, -amount, nowMillis);
+            accountRejections.increment();
+            return false;
+        }
+        if (user != null && userLimits.exceeded(user, nowMillis)) 
+        {
+            add(account, user, -1, -amount, nowMillis);
+            userRejections.increment();
+            return false;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) 
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() 
+            {
+                @Override
+                public void afterCompletion(int status) 
+                {
+                    if (status != STATUS_COMMITTED) 
+                    {
+                        add(account, user, -1, -amount, nowMillis);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    public void release(Long accountId, Long userId, long amount, long nowMillis) 
+    {
+        add(accountWindows.get(accountId), userId == null ? null : userWindows.get(userId), -1, -amount, nowMillis);
+    }
+
+    private static void add(Windows account, Windows user, long count, long amount, long nowMillis) 
+    {
+        if (account != null) 
+        {
+            account.add(nowMillis, count, amount);
+        }
+        if (user != null) 
+        {
+            user.add(nowMillis, count, amount);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @OnEachShard
+    public void rebuild() 
+    {
+        if (!isEnabled()) 
+        {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long[] restored = new long[1];
+        transactionRepository.streamOutgoingSince(Instant.ofEpochMilli(now - DAY), 1000, rs -> 
+        {
+            long createdAt = rs.getTimestamp("created_at").getTime();
+            long amount = rs.getLong("amount");
+            if (accountLimits.enabled()) 
+            {
+                accountWindows.computeIfAbsent(rs.getLong("from_account_id"), id -> new Windows()).add(createdAt, 1, amount);
+            }
+            if (userLimits.enabled()) 
+            {
+                userWindows.computeIfAbsent(rs.getLong("user_id"), id -> new Windows()).add(createdAt, 1, amount);
+            }
+            restored[0]++;
+        });
+        log.info("Счетчики лимитов переводов восстановлены по {} переводам за последние сутки", restored[0]);
+    }
+
+    // Окна без переводов за сутки удаляются, чтобы карта не росла вместе с числом когда-либо активных счетов.
+    // Перевод, учтенный между проверкой и удалением, теряется из счетчика: это допустимая неточность для лимита
+    @Scheduled(fixedDelayString = "${transfer.velocity.cleanup-interval:PT10M}")
+    public void evictIdle() 
+    {
+        long now = System.currentTimeMillis();
+        accountWindows.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+        userWindows.entrySet().removeIf(entry -> entry.getValue().isIdle(now));
+    }
+
+    int trackedAccounts() 
+    {
+        return accountWindows.size();
+    }
+
+    // Минутное окно из 12 корзин по 5 секунд, суточное из 24 корзин по часу
+    private static final class Windows 
+    {
+        private final SlidingWindowCounter minute = new SlidingWindowCounter(MINUTE, 12);
+        private final SlidingWindowCounter day = new SlidingWindowCounter(DAY, 24);
+
+        private void add(long nowMillis, long count, long amount) 
+        {
+            minute.add(nowMillis, count, amount);
+            day.add(nowMillis, count, amount);
+        }
+
+        private boolean isIdle(long nowMillis) 
+        {
+            return day.isIdle(nowMillis);
+        }
+    }
+
+    private record Limits(long countPerMinute, long amountPerMinute, long countPerDay, long amountPerDay) 
+    {
+        private boolean enabled() 
+        {
+            return countPerMinute > 0 || amountPerMinute > 0 || countPerDay > 0 || amountPerDay > 0;
+        }
+
+        private boolean exceeded(Windows windows, long nowMillis) 
+        {
+            return over(countPerMinute, windows.minute.count(nowMillis))
+                    || over(amountPerMinute, windows.minute.amount(nowMillis))
+                    || over(countPerDay, windows.day.count(nowMillis))
+                    || over(amountPerDay, windows.day.amount(nowMillis));
+        }
+
+        private static boolean over(long limit, long value) 
+        {
+            return limit > 0 && value > limit;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.p2p.transfer_app.model;
+
+import com.p2p.transfer_app.dto.TransactionCursor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Перенос операций закрытого счета в архив; checkpoint - последняя перенесенная операция в порядке (created_at, id)
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ArchivalJob 
+{
+    private Long accountId;
+    private long archivedRows;
+    private TransactionCursor checkpoint;
+}
@@ -0,0 +1,26 @@
+package com.p2p.transfer_app.model;
+
+import com.p2p.transfer_app.model.enums.CrossShardTransferStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// Журнал саги перевода между шардами; хранится на шарде счета-источника, id совпадает с id операции
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CrossShardTransfer 
+{
+    private UUID id;
+    private Long fromAccountId;
+    private Long toAccountId;
+    private int toShard;
+    private Long amount;
+    private CrossShardTransferStatus status;
+    private Instant createdAt;
+}
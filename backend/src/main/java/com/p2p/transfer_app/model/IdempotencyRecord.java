@@ -0,0 +1,20 @@
+package com.p2p.transfer_app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord 
+{
+    private Long userId;
+    private String idempotencyKey;
+    private String requestHash;
+    private UUID transactionId;
+    private OffsetDateTime createdAt;
+}
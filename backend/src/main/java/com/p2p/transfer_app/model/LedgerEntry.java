@@ -0,0 +1,24 @@
+package com.p2p.transfer_app.model;
+
+import com.p2p.transfer_app.model.enums.LedgerEntryType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class LedgerEntry 
+{
+    private Long id;
+    private Long accountId;
+    private UUID transactionId;
+    private Long amount;
+    private LedgerEntryType entryType;
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,24 @@
+package com.p2p.transfer_app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OutboxEvent 
+{
+    private Long id;
+    private UUID transactionId;
+    private Long fromAccountId;
+    private Long toAccountId;
+    private Long amount;
+    private OffsetDateTime createdAt;
+    private int attempts;
+}
@@ -0,0 +1,29 @@
+package com.p2p.transfer_app.model;
+
+import com.p2p.transfer_app.model.enums.ScheduledTransferStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ScheduledTransfer 
+{
+    private Long id;
+    private Long userId;
+    private String fromAccountNumber;
+    private String toAccountNumber;
+    private Long amount;
+    private OffsetDateTime nextRunAt;
+    private Long repeatIntervalSeconds;
+    private ScheduledTransferStatus status;
+    private UUID lastTransactionId;
+    private String lastError;
+    private OffsetDateTime createdAt;
+}
@@ -1,5 +1,6 @@
 package com.p2p.transfer_app.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,5 +18,7 @@ public class User
 
     private String username;
 
+    // Хэш пароля не покидает сервер: модель отдается клиентам напрямую
+    @JsonIgnore
     private String passwordHash;
 }
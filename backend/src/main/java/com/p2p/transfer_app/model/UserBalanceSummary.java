@@ -0,0 +1,20 @@
+package com.p2p.transfer_app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserBalanceSummary 
+{
+    private Long userId;
+    private Long totalBalance;
+    private Integer accountCount;
+    private OffsetDateTime lastActivityAt;
+}
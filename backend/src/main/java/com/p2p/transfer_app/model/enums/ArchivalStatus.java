@@ -0,0 +1,7 @@
+package com.p2p.transfer_app.model.enums;
+
+public enum ArchivalStatus 
+{
+    PENDING,
+    DONE
+}
@@ -0,0 +1,8 @@
+package com.p2p.transfer_app.model.enums;
+
+public enum CrossShardTransferStatus 
+{
+    PENDING,
+    COMPLETED,
+    COMPENSATED
+}
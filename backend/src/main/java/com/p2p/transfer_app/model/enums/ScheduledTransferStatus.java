@@ -0,0 +1,9 @@
+package com.p2p.transfer_app.model.enums;
+
+public enum ScheduledTransferStatus 
+{
+    ACTIVE,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+}
@@ -0,0 +1,54 @@
+package com.p2p.transfer_app.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p2p.transfer_app.model.OutboxEvent;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Дописывает события в файл NDJSON; пакет сбрасывается на диск до удаления из outbox
+public class FileTransferEventSink implements TransferEventSink, DisposableBean 
+{
+    private final ObjectMapper objectMapper;
+    private final FileChannel channel;
+
+    public FileTransferEventSink(ObjectMapper objectMapper, Path path) throws IOException 
+    {
+        this.objectMapper = objectMapper;
+        if (path.getParent() != null) 
+        {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> events) throws IOException 
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(events.size() * 192);
+        for (OutboxEvent event : events) 
+        {
+            objectMapper.writeValue(buffer, event);
+            buffer.write('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) 
+        {
+            channel.write(bytes);
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public void destroy() throws IOException 
+    {
+        channel.close();
+    }
+}
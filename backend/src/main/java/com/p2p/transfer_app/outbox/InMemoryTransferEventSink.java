@@ -0,0 +1,42 @@
+package com.p2p.transfer_app.outbox;
+
+import com.p2p.transfer_app.model.OutboxEvent;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+// Хранит последние события в памяти: получатель по умолчанию для разработки и тестов
+public class InMemoryTransferEventSink implements TransferEventSink 
+{
+    private final int capacity;
+    private final ArrayDeque<OutboxEvent> events;
+
+    public InMemoryTransferEventSink(int capacity) 
+    {
+        this.capacity = capacity;
+        this.events = new ArrayDeque<>(capacity);
+    }
+
+    @Override
+    public synchronized void publish(List<OutboxEvent> batch) 
+    {
+        for (OutboxEvent event : batch) 
+        {
+            if (events.size() == capacity) 
+            {
+                events.pollFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    public synchronized List<OutboxEvent> getEvents() 
+    {
+        return List.copyOf(events);
+    }
+
+    public synchronized void clear() 
+    {
+        events.clear();
+    }
+}
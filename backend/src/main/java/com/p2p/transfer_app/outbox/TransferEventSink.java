@@ -0,0 +1,11 @@
+package com.p2p.transfer_app.outbox;
+
+import com.p2p.transfer_app.model.OutboxEvent;
+
+import java.util.List;
+
+// Получатель событий о переводах; доставка "как минимум один раз", получатель устраняет повторы по transactionId
+public interface TransferEventSink 
+{
+    void publish(List<OutboxEvent> events) throws Exception;
+}
@@ -0,0 +1,147 @@
+package com.p2p.transfer_app.outbox;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
+import com.p2p.transfer_app.model.OutboxEvent;
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.repository.OutboxRepository;
+import com.p2p.transfer_app.shard.OnEachShard;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Outbox: событие о переводе пишется в той же транзакции, что и сам перевод, а фоновая задача пересылает его получателю
+@Component
+@Slf4j
+public class TransferOutbox 
+{
+    private final OutboxRepository outboxRepository;
+    private final TransferEventSink sink;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final Counter published;
+    private final Counter retries;
+    private final Timer lag;
+    private final AtomicLong oldestPendingMillis = new AtomicLong();
+
+    public TransferOutbox(OutboxRepository outboxRepository, TransferEventSink sink, TransactionTemplate transactionTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${outbox.relay.batch-size:500}") int batchSize,
+                          @Value("${outbox.relay.max-batches-per-run:20}") int maxBatchesPerRun,
+                          @Value("${outbox.relay.initial-backoff:PT1S}") Duration initialBackoff,
+                          @Value("${outbox.relay.max-backoff:PT5M}") Duration maxBackoff) 
+    {
+        this.outboxRepository = outboxRepository;
+        this.sink = sink;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+
+        this.published = Counter.builder("outbox.relay.published")
+                .description("События о переводах, переданные получателю")
+                .register(meterRegistry);
+        this.retries = Counter.builder("outbox.relay.retries")
+                .description("События, отложенные для повторной отправки после ошибки получателя")
+                .register(meterRegistry);
+        this.lag = Timer.builder("outbox.relay.lag")
+                .description("Задержка между фиксацией перевода и передачей события получателю")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("outbox.relay.oldest.pending", oldestPendingMillis, AtomicLong::get)
+                .description("Возраст самого старого неотправленного события, мс")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onTransferCompleted(TransferCompletedEvent event) 
+    {
+        List<OutboxEvent> events = new ArrayList<>(event.getTransactions().size());
+        for (Transaction transaction : event.getTransactions()) 
+        {
+            events.add(OutboxEvent.builder()
+                    .transactionId(transaction.getId())
+                    .fromAccountId(transaction.getFromAccountId())
+                    .toAccountId(transaction.getToAccountId())
+                    .amount(transaction.getAmount())
+                    .createdAt(transaction.getCreatedAt())
+                    .build());
+        }
+        outboxRepository.appendAll(events);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval:PT1S}")
+    @OnEachShard
+    @LogExecutionTime
+    public void relay() 
+    {
+        for (int i = 0; i < maxBatchesPerRun; i++) 
+        {
+            Integer relayed = transactionTemplate.execute(status -> relayBatch());
+            if (relayed == null || relayed < batchSize) 
+            {
+                break;
+            }
+        }
+
+        Instant oldest = outboxRepository.findOldestCreatedAt();
+        oldestPendingMillis.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, Instant.now()).toMillis()));
+    }
+
+    // Строки остаются заблокированными, пока получатель принимает пакет, поэтому другой экземпляр их не возьмет
+    private int relayBatch() 
+    {
+        List<OutboxEvent> batch = outboxRepository.lockDue(Instant.now(), batchSize);
+        if (batch.isEmpty()) 
+        {
+            return 0;
+        }
+
+        try 
+        {
+            sink.publish(batch);
+        } catch (Exception e) 
+        {
+            int attempts = batch.stream().mapToInt(OutboxEvent::getAttempts).max().orElse(0);
+            Instant nextAttemptAt = Instant.now().plus(backoff(attempts));
+            outboxRepository.markFailed(batch, nextAttemptAt, e.getMessage());
+            retries.increment(batch.size());
+            log.warn("Не удалось передать {} событий о переводах, повтор после {}: {}", batch.size(), nextAttemptAt, e.getMessage());
+            return 0;
+        }
+
+        outboxRepository.deleteAll(batch);
+        Instant now = Instant.now();
+        for (OutboxEvent event : batch) 
+        {
+            lag.record(Duration.between(event.getCreatedAt().toInstant(), now));
+        }
+        published.increment(batch.size());
+        return batch.size();
+    }
+
+    private Duration backoff(int attempts) 
+    {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+}
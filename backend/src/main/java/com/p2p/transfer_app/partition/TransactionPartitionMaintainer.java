@@ -0,0 +1,165 @@
+package com.p2p.transfer_app.partition;
+
+import com.p2p.transfer_app.repository.TransactionPartitionRepository;
+import com.p2p.transfer_app.shard.OnEachShard;
+import com.p2p.transfer_app.shard.ShardContext;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Таблица transactions в PostgreSQL секционирована по месяцам created_at (UTC). Секции создаются заранее на
+// months-ahead месяцев вперед, чтобы вставка никогда не попадала в секцию по умолчанию, а секции старше
+// retention-months отсоединяются. В H2 и на несекционированной таблице задача ничего не делает
+@Component
+@Slf4j
+public class TransactionPartitionMaintainer 
+{
+    private static final String PREFIX = "transactions_p";
+    private static final Pattern NAME = Pattern.compile("transactions_p(\\d{4})_(\\d{2})");
+
+    private final TransactionPartitionRepository partitionRepository;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final AtomicInteger attached = new AtomicInteger();
+    // Признак секционирования запоминается для каждого шарда отдельно
+    private final Map<Integer, Boolean> partitioned = new ConcurrentHashMap<>();
+
+    public TransactionPartitionMaintainer(TransactionPartitionRepository partitionRepository, MeterRegistry meterRegistry,
+                                          @Value("${transactions.partitioning.enabled:true}") boolean enabled,
+                                          @Value("${transactions.partitioning.months-ahead:3}") int monthsAhead,
+                                          @Value("${transactions.partitioning.retention-months:0}") int retentionMonths) 
+    {
+        this.partitionRepository = partitionRepository;
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        Gauge.builder("transactions.partitions", attached, AtomicInteger::get)
+                .description("Месячные секции, подключенные к таблице transactions")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @OnEachShard
+    public void onStartup() 
+    {
+        maintain();
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.partitioning.interval:PT12H}", initialDelayString = "${transactions.partitioning.interval:PT12H}")
+    @OnEachShard
+    public void maintain() 
+    {
+        if (!enabled) 
+        {
+            return;
+        }
+        try 
+        {
+            int shard = ShardContext.currentOrDefault();
+            Boolean shardPartitioned = partitioned.get(shard);
+            if (shardPartitioned == null) 
+            {
+                shardPartitioned = partitionRepository.isPartitioned();
+                partitioned.put(shard, shardPartitioned);
+                if (!shardPartitioned) 
+                {
+                    log.info("Таблица transactions не секционирована, обслуживание секций отключено");
+                }
+            }
+            if (shardPartitioned) 
+            {
+                maintainPartitions(YearMonth.now(ZoneOffset.UTC));
+            }
+        } catch (DataAccessException e) 
+        {
+            // Следующий запуск повторит попытку; до тех пор новые строки попадают в секцию по умолчанию
+            log.error("Не удалось обновить секции transactions: {}", e.getMessage());
+        }
+    }
+
+    private void maintainPartitions(YearMonth current) 
+    {
+        List<String> existing = partitionRepository.findPartitionNames();
+        for (YearMonth month : missing(existing, current, monthsAhead)) 
+        {
+            String name = name(month);
+            partitionRepository.createPartition(name, month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+            log.info("Создана секция {}", name);
+        }
+        for (String name : expired(existing, current, retentionMonths)) 
+        {
+            partitionRepository.detachPartition(name);
+            log.info("Секция {} отсоединена от transactions", name);
+        }
+        attached.set(partitionRepository.findPartitionNames().size());
+    }
+
+    static String name(YearMonth month) 
+    {
+        return String.format("%s%04d_%02d", PREFIX, month.getYear(), month.getMonthValue());
+    }
+
+    static Optional<YearMonth> parse(String name) 
+    {
+        Matcher matcher = NAME.matcher(name);
+        if (!matcher.matches()) 
+        {
+            return Optional.empty();
+        }
+        return Optional.of(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+    }
+
+    // Текущий месяц и monthsAhead следующих, которых еще нет
+    static List<YearMonth> missing(Collection<String> existing, YearMonth current, int monthsAhead) 
+    {
+        Set<String> names = new HashSet<>(existing);
+        List<YearMonth> result = new ArrayList<>();
+        for (int i = 0; i <= monthsAhead; i++) 
+        {
+            YearMonth month = current.plusMonths(i);
+            if (!names.contains(name(month))) 
+            {
+                result.add(month);
+            }
+        }
+        return result;
+    }
+
+    // Месячные секции, целиком старше retentionMonths полных месяцев; секция по умолчанию не трогается
+    static List<String> expired(Collection<String> existing, YearMonth current, int retentionMonths) 
+    {
+        if (retentionMonths <= 0) 
+        {
+            return List.of();
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        List<String> result = new ArrayList<>();
+        for (String name : existing) 
+        {
+            parse(name).filter(month -> month.isBefore(oldestKept)).ifPresent(month -> result.add(name));
+        }
+        result.sort(null);
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package com.p2p.transfer_app.replica;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+// Отставание реплики измеряется по строке replica_heartbeat: монитор записывает время в основную базу и читает
+// последнее доставленное значение из реплики. Такой способ не зависит от СУБД и механизма репликации.
+// Пока отставание больше max-staleness или реплика недоступна, чтение идет в основную базу
+@Slf4j
+public class ReplicaLagMonitor 
+{
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final Duration maxStaleness;
+    private volatile boolean fresh;
+    private volatile long lagMillis = -1;
+
+    public ReplicaLagMonitor(JdbcTemplate primary, JdbcTemplate replica, Duration maxStaleness, MeterRegistry meterRegistry) 
+    {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxStaleness = maxStaleness;
+        Gauge.builder("replica.lag", this, monitor -> monitor.lagMillis / 1000.0)
+                .description("Отставание реплики в секундах, -1 если реплика недоступна")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("replica.fresh", this, monitor -> monitor.fresh ? 1 : 0)
+                .description("1, если чтение направляется в реплику")
+                .register(meterRegistry);
+    }
+
+    public boolean isFresh() 
+    {
+        return fresh;
+    }
+
+    @Scheduled(fixedDelayString = "${replica.lag-check-interval:PT1S}", initialDelayString = "${replica.lag-check-interval:PT1S}")
+    public void check() 
+    {
+        Instant now = Instant.now();
+        try 
+        {
+            if (primary.update("UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1", Timestamp.from(now)) == 0) 
+            {
+                primary.update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)", Timestamp.from(now));
+            }
+        } catch (DataAccessException e) 
+        {
+            log.warn("Не удалось записать отметку для реплики: {}", e.getMessage());
+        }
+
+        boolean wasFresh = fresh;
+        try 
+        {
+            List<Timestamp> beats = replica.queryForList("SELECT beat_at FROM replica_heartbeat WHERE id = 1", Timestamp.class);
+            lagMillis = beats.isEmpty() ? -1 : Math.max(0, now.toEpochMilli() - beats.get(0).getTime());
+        } catch (DataAccessException e) 
+        {
+            log.warn("Реплика недоступна: {}", e.getMessage());
+            lagMillis = -1;
+        }
+        fresh = lagMillis >= 0 && lagMillis <= maxStaleness.toMillis();
+        if (wasFresh != fresh) 
+        {
+            log.warn(fresh ? "Чтение возвращено на реплику, отставание {} мс" : "Чтение переключено на основную базу, отставание реплики {} мс", lagMillis);
+        }
+    }
+}
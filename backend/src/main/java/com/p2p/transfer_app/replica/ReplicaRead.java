@@ -0,0 +1,13 @@
+package com.p2p.transfer_app.replica;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Метод только читает данные: вне транзакции или в транзакции только для чтения его запросы может обслужить реплика
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReplicaRead 
+{
+}
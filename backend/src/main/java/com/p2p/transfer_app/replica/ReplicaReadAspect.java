@@ -0,0 +1,37 @@
+package com.p2p.transfer_app.replica;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+// Помечает поток на время вызова метода @ReplicaRead; внутри транзакции маршрут определяет сама транзакция
+@Aspect
+@Component
+public class ReplicaReadAspect 
+{
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    static boolean isReplicaRead() 
+    {
+        return Boolean.TRUE.equals(REPLICA_READ.get());
+    }
+
+    @Around("@annotation(ReplicaRead)")
+    public Object routeToReplica(ProceedingJoinPoint joinPoint) throws Throwable 
+    {
+        if (isReplicaRead()) 
+        {
+            return joinPoint.proceed();
+        }
+        REPLICA_READ.set(Boolean.TRUE);
+        try 
+        {
+            return joinPoint.proceed();
+        }
+        finally 
+        {
+            REPLICA_READ.remove();
+        }
+    }
+}
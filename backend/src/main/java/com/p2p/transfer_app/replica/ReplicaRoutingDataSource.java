@@ -0,0 +1,37 @@
+package com.p2p.transfer_app.replica;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Транзакции только для чтения и методы @ReplicaRead вне транзакции идут в реплику, пока ее отставание в пределах допустимого,
+// все остальное - в основную базу. Оборачивается в LazyConnectionDataSourceProxy: соединение берется при первом запросе,
+// когда признак readOnly транзакции уже известен
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource 
+{
+    enum Route 
+    {
+        PRIMARY, REPLICA
+    }
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor) 
+    {
+        this.lagMonitor = lagMonitor;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() 
+    {
+        boolean readOnly = TransactionSynchronizationManager.isActualTransactionActive()
+                ? TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                : ReplicaReadAspect.isReplicaRead();
+        return readOnly && lagMonitor.isFresh() ? Route.REPLICA : Route.PRIMARY;
+    }
+}
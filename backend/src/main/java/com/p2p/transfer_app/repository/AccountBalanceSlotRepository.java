@@ -0,0 +1,84 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.exception.AccountOperationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+public class AccountBalanceSlotRepository 
+{
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountBalanceSlotRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @LogExecutionTime
+    public void createSlots(Long accountId, int slots) 
+    {
+        String sql = "INSERT INTO account_balance_slots (account_id, slot, balance) SELECT ?, ?, 0 "
+                + "WHERE NOT EXISTS (SELECT 1 FROM account_balance_slots WHERE account_id = ? AND slot = ?)";
+        List<Object[]> batchArgs = new ArrayList<>(slots);
+        for (int slot = 0; slot < slots; slot++) 
+        {
+            batchArgs.add(new Object[] { accountId, slot, accountId, slot });
+        }
+        jdbcTemplate.batchUpdate(sql, batchArgs);
+    }
+
+    @LogExecutionTime
+    public List<Long> findStripedAccountIds() 
+    {
+        return jdbcTemplate.queryForList("SELECT DISTINCT account_id FROM account_balance_slots", Long.class);
+    }
+
+    @LogExecutionTime
+    public int countSlots(Long accountId) 
+    {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM account_balance_slots WHERE account_id = ?", Integer.class, accountId);
+        return count == null ? 0 : count;
+    }
+
+    @LogExecutionTime
+    public void credit(Long accountId, int slot, Long amount) 
+    {
+        String sql = "UPDATE account_balance_slots SET balance = balance + ? WHERE account_id = ? AND slot = ?";
+        int rowsAffected = jdbcTemplate.update(sql, amount, accountId, slot);
+
+        if (rowsAffected == 0) 
+        {
+            throw new AccountOperationException("Не удалось зачислить средства. Возможно аккаунт уже удален.");
+        }
+    }
+
+    // Блокирует все полосы счета в порядке номера и возвращает их сумму
+    @LogExecutionTime
+    public long lockAndSum(Long accountId) 
+    {
+        String sql = "SELECT slot, balance FROM account_balance_slots WHERE account_id = ? ORDER BY slot FOR UPDATE";
+        long[] sum = new long[1];
+        jdbcTemplate.query(sql, rs -> 
+        {
+            sum[0] += rs.getLong("balance");
+        }, accountId);
+        return sum[0];
+    }
+
+    @LogExecutionTime
+    public void drain(Long accountId) 
+    {
+        jdbcTemplate.update("UPDATE account_balance_slots SET balance = 0 WHERE account_id = ? AND balance <> 0", accountId);
+    }
+
+    @LogExecutionTime
+    public int deleteByAccountId(Long accountId) 
+    {
+        return jdbcTemplate.update("DELETE FROM account_balance_slots WHERE account_id = ?", accountId);
+    }
+}
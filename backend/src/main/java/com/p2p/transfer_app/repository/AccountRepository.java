@@ -3,6 +3,7 @@ package com.p2p.transfer_app.repository;
 import com.p2p.transfer_app.aop.LogExecutionTime;
 import com.p2p.transfer_app.exception.AccountOperationException;
 import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.replica.ReplicaRead;
 
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -13,14 +14,26 @@ import org.springframework.stereotype.Repository;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.SortedMap;
 
 @Repository
 public class AccountRepository 
 {
 
+    // Отображаемый баланс счета с полосами равен сумме основной строки и всех его полос
+    private static final String ACCOUNT_COLUMNS = "id, account_number, user_id, balance + COALESCE("
+            + "(SELECT SUM(s.balance) FROM account_balance_slots s WHERE s.account_id = accounts.id), 0) AS balance";
+
     private final JdbcTemplate jdbcTemplate;
 
     public AccountRepository(JdbcTemplate jdbcTemplate) 
@@ -40,6 +53,14 @@ public class AccountRepository
     @LogExecutionTime
     public Account save(Account account) 
     {
+        // При шардировании id выдает каталог счетов, и строка вставляется с готовым id
+        if (account.getId() != null) 
+        {
+            String sql = "INSERT INTO accounts (id, account_number, balance, user_id) VALUES (?, ?, ?, ?)";
+            jdbcTemplate.update(sql, account.getId(), account.getAccountNumber(), account.getBalance(), account.getUserId());
+            return account;
+        }
+
         KeyHolder keyHolder = new GeneratedKeyHolder();
         
         String sql = "INSERT INTO accounts (account_number, balance, user_id) VALUES (?, ?, ?)";
@@ -74,11 +95,12 @@ public class AccountRepository
     }
 
     @LogExecutionTime
+    @ReplicaRead
     public Optional<Account> findByAccountNumber(String accountNumber) 
     {
         try 
         {
-            String sql = "SELECT id, account_number, balance, user_id FROM accounts WHERE account_number = ?";
+            String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM accounts WHERE account_number = ? AND status = 'ACTIVE'";
             Account account = jdbcTemplate.queryForObject(sql, accountRowMapper, accountNumber);
             return Optional.ofNullable(account);
         } catch (EmptyResultDataAccessException e) 
@@ -88,11 +110,12 @@ public class AccountRepository
     }
 
     @LogExecutionTime
+    @ReplicaRead
     public Optional<Account> findById(Long id) 
     {
         try 
         {
-            String sql = "SELECT id, account_number, balance, user_id FROM accounts WHERE id = ?";
+            String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM accounts WHERE id = ? AND status = 'ACTIVE'";
             Account account = jdbcTemplate.queryForObject(sql, accountRowMapper, id);
             return Optional.ofNullable(account);
         } catch (EmptyResultDataAccessException e) 
@@ -102,16 +125,122 @@ public class AccountRepository
     }
 
     @LogExecutionTime
+    @ReplicaRead
     public List<Account> findAllByUserId(Long userId) 
     {
-        String sql = "SELECT id, account_number, balance, user_id FROM accounts WHERE user_id = ?";
+        String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM accounts WHERE user_id = ? AND status = 'ACTIVE'";
         return jdbcTemplate.query(sql, accountRowMapper, userId);
     }
 
+    @LogExecutionTime
+    public List<Account> findAllByAccountNumbers(Collection<String> accountNumbers) 
+    {
+        if (accountNumbers.isEmpty()) 
+        {
+            return Collections.emptyList();
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(accountNumbers.size(), "?"));
+        String sql = "SELECT " + ACCOUNT_COLUMNS + " FROM accounts WHERE account_number IN (" + placeholders + ") AND status = 'ACTIVE'";
+        return jdbcTemplate.query(sql, accountRowMapper, accountNumbers.toArray());
+    }
+
+    // Баланс основной строки без полос: движок переводов не работает со счетами на полосатом балансе
+    @LogExecutionTime
+    public List<Account> findAllByIds(Collection<Long> ids) 
+    {
+        if (ids.isEmpty()) 
+        {
+            return Collections.emptyList();
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        String sql = "SELECT id, account_number, user_id, balance FROM accounts WHERE id IN (" + placeholders + ") AND status = 'ACTIVE'";
+        return jdbcTemplate.query(sql, accountRowMapper, ids.toArray());
+    }
+
+    @LogExecutionTime
+    public Map<Long, Long> lockBalancesByIds(Collection<Long> ids) 
+    {
+        if (ids.isEmpty()) 
+        {
+            return Collections.emptyMap();
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        String sql = "SELECT id, balance FROM accounts WHERE id IN (" + placeholders + ") AND status = 'ACTIVE' ORDER BY id FOR UPDATE";
+        Map<Long, Long> balances = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> 
+        {
+            balances.put(rs.getLong("id"), rs.getLong("balance"));
+        }, ids.toArray());
+        return balances;
+    }
+
+    @LogExecutionTime
+    public boolean debit(Long id, Long amount) 
+    {
+        String sql = "UPDATE accounts SET balance = balance - ? WHERE id = ? AND balance >= ? AND status = 'ACTIVE'";
+        return jdbcTemplate.update(sql, amount, id, amount) > 0;
+    }
+
+    @LogExecutionTime
+    public void credit(Long id, Long amount) 
+    {
+        String sql = "UPDATE accounts SET balance = balance + ? WHERE id = ? AND status = 'ACTIVE'";
+        int rowsAffected = jdbcTemplate.update(sql, amount, id);
+
+        if (rowsAffected == 0) 
+        {
+            throw new AccountOperationException("Не удалось зачислить средства. Возможно аккаунт уже удален.");
+        }
+    }
+
+    @LogExecutionTime
+    public void applyBalanceDeltas(SortedMap<Long, Long> deltasByAccountId) 
+    {
+        List<Object[]> batchArgs = new ArrayList<>(deltasByAccountId.size());
+        deltasByAccountId.forEach((id, delta) -> batchArgs.add(new Object[] { delta, id }));
+
+        String sql = "UPDATE accounts SET balance = balance + ? WHERE id = ? AND status = 'ACTIVE'";
+        int[] rowsAffected = jdbcTemplate.batchUpdate(sql, batchArgs);
+
+        for (int rows : rowsAffected) 
+        {
+            if (rows == 0) 
+            {
+                throw new AccountOperationException("Не удалось обновить аккаунт. Возможно аккаунт уже удален.");
+            }
+        }
+    }
+
+    // Возвращает счета, изменения которых не применились: счет закрыт или баланс ушел бы в минус. Вызывающий
+    // откатывает транзакцию, если список не пуст
+    @LogExecutionTime
+    public List<Long> applyGuardedBalanceDeltas(SortedMap<Long, Long> deltasByAccountId) 
+    {
+        List<Long> ids = new ArrayList<>(deltasByAccountId.keySet());
+        List<Object[]> batchArgs = new ArrayList<>(ids.size());
+        deltasByAccountId.forEach((id, delta) -> batchArgs.add(new Object[] { delta, id, delta }));
+
+        String sql = "UPDATE accounts SET balance = balance + ? WHERE id = ? AND status = 'ACTIVE' AND balance + ? >= 0";
+        int[] rowsAffected = jdbcTemplate.batchUpdate(sql, batchArgs);
+
+        List<Long> rejected = new ArrayList<>();
+        for (int i = 0; i < rowsAffected.length; i++) 
+        {
+            if (rowsAffected[i] == 0) 
+            {
+                rejected.add(ids.get(i));
+            }
+        }
+        return rejected;
+    }
+
     @LogExecutionTime
     public void update(Account account) 
     {
-        String sql = "UPDATE accounts SET balance = ? WHERE id = ?";
+        String sql = "UPDATE accounts SET balance = ? WHERE id = ? AND status = 'ACTIVE'";
         int rowsAffected = jdbcTemplate.update(sql, account.getBalance(), account.getId());
         
         if (rowsAffected == 0) 
@@ -120,15 +249,17 @@ public class AccountRepository
         }
     }
 
+    // Закрытый счет остается в таблице: поиск, списание и зачисление видят только активные счета, остаток обнуляется
+    // вместе с закрывающей проводкой журнала
     @LogExecutionTime
-    public void deleteById(Long id) 
+    public void close(Long id, Instant closedAt) 
     {
-        String sql = "DELETE FROM accounts WHERE id = ?";
-        int rowsAffected = jdbcTemplate.update(sql, id);
+        String sql = "UPDATE accounts SET status = 'CLOSED', balance = 0, closed_at = ? WHERE id = ? AND status = 'ACTIVE'";
+        int rowsAffected = jdbcTemplate.update(sql, Timestamp.from(closedAt), id);
         
         if (rowsAffected == 0) 
         {
-            throw new AccountOperationException("Не удалось удалить аккаунт, так как он уже был удален.");
+            throw new AccountOperationException("Не удалось закрыть аккаунт, так как он уже был закрыт.");
         }
     }
 }
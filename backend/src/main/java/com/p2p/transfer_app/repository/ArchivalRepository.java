@@ -0,0 +1,144 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.dto.TransactionCursor;
+import com.p2p.transfer_app.model.ArchivalJob;
+import com.p2p.transfer_app.model.enums.ArchivalStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public class ArchivalRepository 
+{
+    private final JdbcTemplate jdbcTemplate;
+
+    public ArchivalRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private final RowMapper<ArchivalJob> archivalJobRowMapper = (rs, rowNum) -> 
+    {
+        Timestamp checkpointCreatedAt = rs.getTimestamp("checkpoint_created_at");
+        return ArchivalJob.builder()
+                .accountId(rs.getLong("account_id"))
+                .archivedRows(rs.getLong("archived_rows"))
+                .checkpoint(checkpointCreatedAt == null ? null
+                        : new TransactionCursor(checkpointCreatedAt.toInstant(), rs.getObject("checkpoint_id", UUID.class)))
+                .build();
+    };
+
+    @LogExecutionTime
+    public void request(Long accountId, Instant requestedAt) 
+    {
+        String sql = "INSERT INTO account_archival (account_id, status, archived_rows, requested_at, updated_at) VALUES (?, ?, 0, ?, ?)";
+        jdbcTemplate.update(sql, accountId, ArchivalStatus.PENDING.name(), Timestamp.from(requestedAt), Timestamp.from(requestedAt));
+    }
+
+    @LogExecutionTime
+    public List<Long> findPendingAccountIds(int limit) 
+    {
+        String sql = "SELECT account_id FROM account_archival WHERE status = ? ORDER BY requested_at LIMIT ?";
+        return jdbcTemplate.queryForList(sql, Long.class, ArchivalStatus.PENDING.name(), limit);
+    }
+
+    @LogExecutionTime
+    public long countPending() 
+    {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM account_archival WHERE status = ?", Long.class,
+                ArchivalStatus.PENDING.name());
+        return count == null ? 0L : count;
+    }
+
+    // Строка задания блокируется на время переноса одной порции: другой экземпляр пропустит ее и не перенесет те же строки
+    @LogExecutionTime
+    public Optional<ArchivalJob> lockPending(Long accountId) 
+    {
+        String sql = "SELECT account_id, archived_rows, checkpoint_created_at, checkpoint_id FROM account_archival "
+                + "WHERE account_id = ? AND status = ? FOR UPDATE SKIP LOCKED";
+        return jdbcTemplate.query(sql, archivalJobRowMapper, accountId, ArchivalStatus.PENDING.name())
+                .stream()
+                .findFirst();
+    }
+
+    // Порция операций после контрольной точки; ключевое условие не дает заново просматривать уже удаленные строки.
+    // Операции с открытым счетом-контрагентом остаются в transactions: по ним строятся его история и выписка.
+    // Их перенесет задание контрагента, когда закроют и его. Закрытый счет открыть снова нельзя, поэтому проверка
+    // не устаревает до конца транзакции. Контрагент с другого шарда здесь не найдется: его половина перевода
+    // записана на его шарде
+    @LogExecutionTime
+    public List<TransactionCursor> findNextChunk(ArchivalJob job, int limit) 
+    {
+        List<Object> args = new ArrayList<>();
+        args.add(job.getAccountId());
+        args.add(job.getAccountId());
+        args.add(job.getAccountId());
+        String keyset = "";
+        if (job.getCheckpoint() != null) 
+        {
+            keyset = " AND t.created_at >= ? AND (t.created_at, t.id) > (?, ?)";
+            args.add(Timestamp.from(job.getCheckpoint().getCreatedAt()));
+            args.add(Timestamp.from(job.getCheckpoint().getCreatedAt()));
+            args.add(job.getCheckpoint().getId());
+        }
+        args.add(limit);
+
+        String sql = "SELECT t.id, t.created_at FROM transactions t WHERE (t.from_account_id = ? OR t.to_account_id = ?) "
+                + "AND NOT EXISTS (SELECT 1 FROM accounts c WHERE c.status = 'ACTIVE' "
+                + "AND c.id = CASE WHEN t.from_account_id = ? THEN t.to_account_id ELSE t.from_account_id END)" + keyset
+                + " ORDER BY t.created_at, t.id LIMIT ?";
+        return jdbcTemplate.query(sql, (rs, rowNum) ->
+                new TransactionCursor(rs.getTimestamp("created_at").toInstant(), rs.getObject("id", UUID.class)), args.toArray());
+    }
+
+    // Порция упорядочена по created_at, поэтому ее границы ограничивают поиск по id секциями, в которые она попадает
+    @LogExecutionTime
+    public int moveToArchive(List<TransactionCursor> chunk, Instant archivedAt) 
+    {
+        if (chunk.isEmpty()) 
+        {
+            return 0;
+        }
+        String condition = "created_at BETWEEN ? AND ? AND id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+        List<Object> args = new ArrayList<>(chunk.size() + 2);
+        args.add(Timestamp.from(chunk.get(0).getCreatedAt()));
+        args.add(Timestamp.from(chunk.get(chunk.size() - 1).getCreatedAt()));
+        chunk.forEach(cursor -> args.add(cursor.getId()));
+
+        List<Object> insertArgs = new ArrayList<>(args.size() + 1);
+        insertArgs.add(Timestamp.from(archivedAt));
+        insertArgs.addAll(args);
+        jdbcTemplate.update("INSERT INTO transactions_archive (id, from_account_id, to_account_id, amount, status, created_at, archived_at) "
+                + "SELECT id, from_account_id, to_account_id, amount, status, created_at, ? FROM transactions WHERE " + condition,
+                insertArgs.toArray());
+        return jdbcTemplate.update("DELETE FROM transactions WHERE " + condition, args.toArray());
+    }
+
+    @LogExecutionTime
+    public void checkpoint(ArchivalJob job, ArchivalStatus status, Instant updatedAt) 
+    {
+        String sql = "UPDATE account_archival SET status = ?, archived_rows = ?, checkpoint_created_at = ?, checkpoint_id = ?, updated_at = ? "
+                + "WHERE account_id = ?";
+        TransactionCursor checkpoint = job.getCheckpoint();
+        jdbcTemplate.update(sql, status.name(), job.getArchivedRows(),
+                checkpoint == null ? null : Timestamp.from(checkpoint.getCreatedAt()),
+                checkpoint == null ? null : checkpoint.getId(), Timestamp.from(updatedAt), job.getAccountId());
+    }
+
+    @LogExecutionTime
+    public long countArchived(Long accountId) 
+    {
+        String sql = "SELECT COUNT(*) FROM transactions_archive WHERE from_account_id = ? OR to_account_id = ?";
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, accountId, accountId);
+        return count == null ? 0L : count;
+    }
+}
@@ -0,0 +1,85 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.model.CrossShardTransfer;
+import com.p2p.transfer_app.model.enums.CrossShardTransferStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public class CrossShardTransferRepository 
+{
+    private static final String COLUMNS = "id, from_account_id, to_account_id, to_shard, amount, status, created_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CrossShardTransferRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private final RowMapper<CrossShardTransfer> transferRowMapper = (rs, rowNum) -> CrossShardTransfer.builder()
+            .id(rs.getObject("id", UUID.class))
+            .fromAccountId(rs.getLong("from_account_id"))
+            .toAccountId(rs.getLong("to_account_id"))
+            .toShard(rs.getInt("to_shard"))
+            .amount(rs.getLong("amount"))
+            .status(CrossShardTransferStatus.valueOf(rs.getString("status")))
+            .createdAt(rs.getTimestamp("created_at").toInstant())
+            .build();
+
+    @LogExecutionTime
+    public void save(CrossShardTransfer transfer) 
+    {
+        String sql = "INSERT INTO cross_shard_transfers (" + COLUMNS + ", updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        Timestamp createdAt = Timestamp.from(transfer.getCreatedAt());
+        jdbcTemplate.update(sql, transfer.getId(), transfer.getFromAccountId(), transfer.getToAccountId(), transfer.getToShard(),
+                transfer.getAmount(), transfer.getStatus().name(), createdAt, createdAt);
+    }
+
+    // Блокировка не дает фоновому повтору и завершению после фиксации одновременно завершить одну сагу
+    @LogExecutionTime
+    public Optional<CrossShardTransfer> lockPending(UUID id) 
+    {
+        String sql = "SELECT " + COLUMNS + " FROM cross_shard_transfers WHERE id = ? AND status = ? FOR UPDATE";
+        return jdbcTemplate.query(sql, transferRowMapper, id, CrossShardTransferStatus.PENDING.name())
+                .stream()
+                .findFirst();
+    }
+
+    @LogExecutionTime
+    public List<CrossShardTransfer> findStalePending(Instant updatedBefore, int limit) 
+    {
+        String sql = "SELECT " + COLUMNS + " FROM cross_shard_transfers WHERE status = ? AND updated_at < ? ORDER BY updated_at LIMIT ?";
+        return jdbcTemplate.query(sql, transferRowMapper, CrossShardTransferStatus.PENDING.name(), Timestamp.from(updatedBefore), limit);
+    }
+
+    // Вызывается на шарде получателя; повтор того же зачисления упирается в первичный ключ
+    @LogExecutionTime
+    public void saveCredit(CrossShardTransfer transfer, Instant creditedAt) 
+    {
+        String sql = "INSERT INTO cross_shard_credits (transfer_id, to_account_id, amount, credited_at) VALUES (?, ?, ?, ?)";
+        jdbcTemplate.update(sql, transfer.getId(), transfer.getToAccountId(), transfer.getAmount(), Timestamp.from(creditedAt));
+    }
+
+    @LogExecutionTime
+    public void recordError(UUID id, String lastError, Instant updatedAt) 
+    {
+        String sql = "UPDATE cross_shard_transfers SET last_error = ?, updated_at = ? WHERE id = ? AND status = ?";
+        jdbcTemplate.update(sql, lastError, Timestamp.from(updatedAt), id, CrossShardTransferStatus.PENDING.name());
+    }
+
+    @LogExecutionTime
+    public void updateStatus(UUID id, CrossShardTransferStatus status, String lastError, Instant updatedAt) 
+    {
+        String sql = "UPDATE cross_shard_transfers SET status = ?, last_error = ?, updated_at = ? WHERE id = ?";
+        jdbcTemplate.update(sql, status.name(), lastError, Timestamp.from(updatedAt), id);
+    }
+}
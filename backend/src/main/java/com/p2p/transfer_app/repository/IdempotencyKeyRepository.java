@@ -0,0 +1,67 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.model.IdempotencyRecord;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public class IdempotencyKeyRepository 
+{
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdempotencyKeyRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private final RowMapper<IdempotencyRecord> recordRowMapper = (rs, rowNum) -> new IdempotencyRecord(
+            rs.getLong("user_id"),
+            rs.getString("idempotency_key"),
+            rs.getString("request_hash"),
+            rs.getObject("transaction_id", UUID.class),
+            rs.getTimestamp("created_at").toInstant().atOffset(ZoneOffset.UTC));
+
+    // Нарушение уникальности (user_id, idempotency_key) выбрасывает DuplicateKeyException
+    @LogExecutionTime
+    public void insert(IdempotencyRecord record) 
+    {
+        String sql = "INSERT INTO idempotency_keys (user_id, idempotency_key, request_hash, transaction_id, created_at) VALUES (?, ?, ?, ?, ?)";
+        jdbcTemplate.update(sql,
+                record.getUserId(),
+                record.getIdempotencyKey(),
+                record.getRequestHash(),
+                record.getTransactionId(),
+                Timestamp.from(record.getCreatedAt().toInstant()));
+    }
+
+    @LogExecutionTime
+    public Optional<IdempotencyRecord> find(Long userId, String idempotencyKey) 
+    {
+        try 
+        {
+            String sql = "SELECT user_id, idempotency_key, request_hash, transaction_id, created_at FROM idempotency_keys "
+                    + "WHERE user_id = ? AND idempotency_key = ?";
+            return Optional.ofNullable(jdbcTemplate.queryForObject(sql, recordRowMapper, userId, idempotencyKey));
+        } catch (EmptyResultDataAccessException e) 
+        {
+            return Optional.empty();
+        }
+    }
+
+    @LogExecutionTime
+    public int deleteCreatedBefore(Instant threshold) 
+    {
+        String sql = "DELETE FROM idempotency_keys WHERE created_at < ?";
+        return jdbcTemplate.update(sql, Timestamp.from(threshold));
+    }
+}
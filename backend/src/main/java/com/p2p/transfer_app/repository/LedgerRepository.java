@@ -0,0 +1,99 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.model.LedgerEntry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+public class LedgerRepository 
+{
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LedgerRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @LogExecutionTime
+    public void appendAll(List<LedgerEntry> entries) 
+    {
+        String sql = "INSERT INTO ledger_entries (account_id, transaction_id, amount, entry_type, created_at) VALUES (?, ?, ?, ?, ?)";
+
+        jdbcTemplate.batchUpdate(sql, entries, entries.size(), (ps, entry) -> 
+        {
+            ps.setLong(1, entry.getAccountId());
+            ps.setObject(2, entry.getTransactionId());
+            ps.setLong(3, entry.getAmount());
+            ps.setString(4, entry.getEntryType().name());
+            ps.setTimestamp(5, Timestamp.from(entry.getCreatedAt().toInstant()));
+        });
+    }
+
+    // Баланс по журналу: последний снимок плюс записи после него
+    @LogExecutionTime
+    public long derivedBalance(Long accountId) 
+    {
+        String sql = "SELECT COALESCE(s.balance, 0) + COALESCE((SELECT SUM(e.amount) FROM ledger_entries e "
+                + "WHERE e.account_id = ? AND e.id > COALESCE(s.last_entry_id, 0)), 0) "
+                + "FROM (SELECT 1 AS anchor) a LEFT JOIN (SELECT balance, last_entry_id FROM ledger_snapshots "
+                + "WHERE account_id = ? ORDER BY last_entry_id DESC LIMIT 1) s ON 1 = 1";
+        Long balance = jdbcTemplate.queryForObject(sql, Long.class, accountId, accountId);
+        return balance == null ? 0L : balance;
+    }
+
+    // Счета, у которых после последнего снимка накопилось не меньше minEntries проводок
+    @LogExecutionTime
+    public List<Long> findSnapshotCandidates(int minEntries) 
+    {
+        String sql = "SELECT e.account_id FROM ledger_entries e "
+                + "WHERE e.id > COALESCE((SELECT MAX(s.last_entry_id) FROM ledger_snapshots s WHERE s.account_id = e.account_id), 0) "
+                + "GROUP BY e.account_id HAVING COUNT(*) >= ?";
+        return jdbcTemplate.queryForList(sql, Long.class, minEntries);
+    }
+
+    // Каждый перевод меняет строку счета или его полосу до записи проводки и держит блокировку до фиксации.
+    // Под блокировкой строки и всех полос у счета нет незафиксированных проводок, и MAX(id) - надежная граница снимка
+    @LogExecutionTime
+    public void lockAccount(Long accountId) 
+    {
+        jdbcTemplate.queryForList("SELECT id FROM accounts WHERE id = ? FOR UPDATE", Long.class, accountId);
+        jdbcTemplate.queryForList("SELECT slot FROM account_balance_slots WHERE account_id = ? ORDER BY slot FOR UPDATE", Integer.class, accountId);
+    }
+
+    @LogExecutionTime
+    public int snapshot(Long accountId) 
+    {
+        String sql = "INSERT INTO ledger_snapshots (account_id, last_entry_id, balance, created_at) "
+                + "SELECT e.account_id, MAX(e.id), COALESCE(s.balance, 0) + SUM(e.amount), CURRENT_TIMESTAMP "
+                + "FROM ledger_entries e "
+                + "LEFT JOIN ledger_snapshots s ON s.account_id = e.account_id "
+                + "AND s.last_entry_id = (SELECT MAX(last_entry_id) FROM ledger_snapshots WHERE account_id = e.account_id) "
+                + "WHERE e.account_id = ? AND e.id > COALESCE(s.last_entry_id, 0) "
+                + "GROUP BY e.account_id, s.balance";
+        return jdbcTemplate.update(sql, accountId);
+    }
+
+    @LogExecutionTime
+    public int pruneSnapshots() 
+    {
+        String sql = "DELETE FROM ledger_snapshots WHERE last_entry_id < "
+                + "(SELECT MAX(newer.last_entry_id) FROM ledger_snapshots newer WHERE newer.account_id = ledger_snapshots.account_id)";
+        return jdbcTemplate.update(sql);
+    }
+
+    // Счета, созданные до появления журнала, получают начальный снимок из текущего баланса
+    @LogExecutionTime
+    public int bootstrapSnapshots() 
+    {
+        String sql = "INSERT INTO ledger_snapshots (account_id, last_entry_id, balance, created_at) "
+                + "SELECT a.id, 0, a.balance, CURRENT_TIMESTAMP FROM accounts a "
+                + "WHERE NOT EXISTS (SELECT 1 FROM ledger_snapshots s WHERE s.account_id = a.id) "
+                + "AND NOT EXISTS (SELECT 1 FROM ledger_entries e WHERE e.account_id = a.id)";
+        return jdbcTemplate.update(sql);
+    }
+}
@@ -0,0 +1,95 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.model.OutboxEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public class OutboxRepository 
+{
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OutboxRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private final RowMapper<OutboxEvent> eventRowMapper = (rs, rowNum) -> new OutboxEvent(
+            rs.getLong("id"),
+            rs.getObject("transaction_id", UUID.class),
+            rs.getLong("from_account_id"),
+            rs.getLong("to_account_id"),
+            rs.getLong("amount"),
+            rs.getTimestamp("created_at").toInstant().atOffset(ZoneOffset.UTC),
+            rs.getInt("attempts"));
+
+    @LogExecutionTime
+    public void appendAll(List<OutboxEvent> events) 
+    {
+        String sql = "INSERT INTO transfer_outbox (transaction_id, from_account_id, to_account_id, amount, created_at, next_attempt_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?)";
+
+        jdbcTemplate.batchUpdate(sql, events, events.size(), (ps, event) -> 
+        {
+            Timestamp createdAt = Timestamp.from(event.getCreatedAt().toInstant());
+            ps.setObject(1, event.getTransactionId());
+            ps.setLong(2, event.getFromAccountId());
+            ps.setLong(3, event.getToAccountId());
+            ps.setLong(4, event.getAmount());
+            ps.setTimestamp(5, createdAt);
+            ps.setTimestamp(6, createdAt);
+        });
+    }
+
+    // SKIP LOCKED позволяет нескольким экземплярам разбирать очередь параллельно, не дожидаясь друг друга
+    @LogExecutionTime
+    public List<OutboxEvent> lockDue(Instant now, int limit) 
+    {
+        String sql = "SELECT id, transaction_id, from_account_id, to_account_id, amount, created_at, attempts FROM transfer_outbox "
+                + "WHERE next_attempt_at <= ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+        return jdbcTemplate.query(sql, eventRowMapper, Timestamp.from(now), limit);
+    }
+
+    @LogExecutionTime
+    public void deleteAll(List<OutboxEvent> events) 
+    {
+        if (events.isEmpty()) 
+        {
+            return;
+        }
+        List<Object> ids = new ArrayList<>(events.size());
+        events.forEach(event -> ids.add(event.getId()));
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.update("DELETE FROM transfer_outbox WHERE id IN (" + placeholders + ")", ids.toArray());
+    }
+
+    @LogExecutionTime
+    public void markFailed(List<OutboxEvent> events, Instant nextAttemptAt, String error) 
+    {
+        String sql = "UPDATE transfer_outbox SET attempts = attempts + 1, next_attempt_at = ?, last_error = ? WHERE id = ?";
+        String truncated = error == null ? null : error.substring(0, Math.min(error.length(), 500));
+        jdbcTemplate.batchUpdate(sql, events, events.size(), (ps, event) -> 
+        {
+            ps.setTimestamp(1, Timestamp.from(nextAttemptAt));
+            ps.setString(2, truncated);
+            ps.setLong(3, event.getId());
+        });
+    }
+
+    public Instant findOldestCreatedAt() 
+    {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(created_at) FROM transfer_outbox", Timestamp.class);
+        return oldest == null ? null : oldest.toInstant();
+    }
+}
@@ -0,0 +1,140 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.model.ScheduledTransfer;
+import com.p2p.transfer_app.model.enums.ScheduledTransferStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public class ScheduledTransferRepository 
+{
+    private static final String COLUMNS = "id, user_id, from_account_number, to_account_number, amount, next_run_at, "
+            + "repeat_interval_seconds, status, last_transaction_id, last_error, created_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ScheduledTransferRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private final RowMapper<ScheduledTransfer> scheduledTransferRowMapper = (rs, rowNum) -> 
+    {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return ScheduledTransfer.builder()
+                .id(rs.getLong("id"))
+                .userId(rs.getLong("user_id"))
+                .fromAccountNumber(rs.getString("from_account_number"))
+                .toAccountNumber(rs.getString("to_account_number"))
+                .amount(rs.getLong("amount"))
+                .nextRunAt(rs.getTimestamp("next_run_at").toInstant().atOffset(ZoneOffset.UTC))
+                .repeatIntervalSeconds(rs.getObject("repeat_interval_seconds", Long.class))
+                .status(ScheduledTransferStatus.valueOf(rs.getString("status")))
+                .lastTransactionId(rs.getObject("last_transaction_id", UUID.class))
+                .lastError(rs.getString("last_error"))
+                .createdAt(createdAt == null ? null : createdAt.toInstant().atOffset(ZoneOffset.UTC))
+                .build();
+    };
+
+    @LogExecutionTime
+    public ScheduledTransfer save(ScheduledTransfer transfer) 
+    {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        String sql = "INSERT INTO scheduled_transfers (user_id, from_account_number, to_account_number, amount, next_run_at, "
+                + "repeat_interval_seconds, status, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        jdbcTemplate.update(connection -> 
+        {
+            PreparedStatement ps = connection.prepareStatement(sql, new String[] {"id"});
+            ps.setLong(1, transfer.getUserId());
+            ps.setString(2, transfer.getFromAccountNumber());
+            ps.setString(3, transfer.getToAccountNumber());
+            ps.setLong(4, transfer.getAmount());
+            ps.setTimestamp(5, Timestamp.from(transfer.getNextRunAt().toInstant()));
+            if (transfer.getRepeatIntervalSeconds() == null) 
+            {
+                ps.setNull(6, Types.BIGINT);
+            }
+            else 
+            {
+                ps.setLong(6, transfer.getRepeatIntervalSeconds());
+            }
+            ps.setString(7, transfer.getStatus().name());
+            ps.setTimestamp(8, Timestamp.from(transfer.getCreatedAt().toInstant()));
+            return ps;
+        }, keyHolder);
+
+        Number id = keyHolder.getKey();
+        if (id == null) 
+        {
+            throw new RuntimeException("Не удалось получить сгенерированный ID для запланированного перевода");
+        }
+        transfer.setId(id.longValue());
+        return transfer;
+    }
+
+    @LogExecutionTime
+    public List<ScheduledTransfer> findAllByUserId(Long userId) 
+    {
+        String sql = "SELECT " + COLUMNS + " FROM scheduled_transfers WHERE user_id = ? ORDER BY next_run_at, id";
+        return jdbcTemplate.query(sql, scheduledTransferRowMapper, userId);
+    }
+
+    @LogExecutionTime
+    public boolean cancel(Long id, Long userId) 
+    {
+        String sql = "UPDATE scheduled_transfers SET status = ?, claimed_until = NULL WHERE id = ? AND user_id = ? AND status = ?";
+        return jdbcTemplate.update(sql, ScheduledTransferStatus.CANCELLED.name(), id, userId, ScheduledTransferStatus.ACTIVE.name()) > 0;
+    }
+
+    // Строки, которые срабатывают до конца окна, помечаются арендой claimed_until: другие экземпляры их не загрузят,
+    // пока аренда не истечет. SKIP LOCKED не дает двум загрузчикам ждать друг друга на одних и тех же строках
+    @LogExecutionTime
+    public List<ScheduledTransfer> claimDue(Instant windowEnd, Instant now, Instant leaseUntil, int limit) 
+    {
+        String sql = "SELECT " + COLUMNS + " FROM scheduled_transfers "
+                + "WHERE status = ? AND next_run_at < ? AND (claimed_until IS NULL OR claimed_until < ?) "
+                + "ORDER BY next_run_at LIMIT ? FOR UPDATE SKIP LOCKED";
+        List<ScheduledTransfer> due = jdbcTemplate.query(sql, scheduledTransferRowMapper,
+                ScheduledTransferStatus.ACTIVE.name(), Timestamp.from(windowEnd), Timestamp.from(now), limit);
+
+        jdbcTemplate.batchUpdate("UPDATE scheduled_transfers SET claimed_until = ? WHERE id = ?", due, due.size(), (ps, transfer) -> 
+        {
+            ps.setTimestamp(1, Timestamp.from(leaseUntil));
+            ps.setLong(2, transfer.getId());
+        });
+        return due;
+    }
+
+    // Строка блокируется до конца транзакции перевода; если она отменена или уже выполнена другим экземпляром, запуск пропускается
+    @LogExecutionTime
+    public Optional<ScheduledTransfer> lockForRun(Long id, Instant nextRunAt) 
+    {
+        String sql = "SELECT " + COLUMNS + " FROM scheduled_transfers WHERE id = ? AND status = ? AND next_run_at = ? FOR UPDATE SKIP LOCKED";
+        return jdbcTemplate.query(sql, scheduledTransferRowMapper, id, ScheduledTransferStatus.ACTIVE.name(), Timestamp.from(nextRunAt))
+                .stream()
+                .findFirst();
+    }
+
+    @LogExecutionTime
+    public void recordRun(Long id, Instant nextRunAt, ScheduledTransferStatus status, UUID transactionId, String error) 
+    {
+        String sql = "UPDATE scheduled_transfers SET next_run_at = ?, status = ?, "
+                + "last_transaction_id = COALESCE(?, last_transaction_id), last_error = ?, claimed_until = NULL WHERE id = ?";
+        String truncated = error == null ? null : error.substring(0, Math.min(error.length(), 500));
+        jdbcTemplate.update(sql, Timestamp.from(nextRunAt), status.name(), transactionId, truncated, id);
+    }
+}
@@ -0,0 +1,59 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.Optional;
+
+// Каталог на шарде 0: выдает глобальные id пользователей и счетов и хранит уникальность имен и номеров между шардами
+@Repository
+public class ShardDirectoryRepository 
+{
+    private final JdbcTemplate jdbcTemplate;
+
+    public ShardDirectoryRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @LogExecutionTime
+    public long registerUsername(String username) 
+    {
+        return insertReturningId("INSERT INTO user_directory (username) VALUES (?)", username);
+    }
+
+    @LogExecutionTime
+    public Optional<Long> findUserId(String username) 
+    {
+        return jdbcTemplate.queryForList("SELECT id FROM user_directory WHERE username = ?", Long.class, username)
+                .stream()
+                .findFirst();
+    }
+
+    @LogExecutionTime
+    public long registerAccountNumber(String accountNumber) 
+    {
+        return insertReturningId("INSERT INTO account_directory (account_number) VALUES (?)", accountNumber);
+    }
+
+    private long insertReturningId(String sql, String value) 
+    {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> 
+        {
+            PreparedStatement ps = connection.prepareStatement(sql, new String[] { "id" });
+            ps.setString(1, value);
+            return ps;
+        }, keyHolder);
+        Number id = keyHolder.getKey();
+        if (id == null) 
+        {
+            throw new RuntimeException("Не удалось получить сгенерированный ID в каталоге шардов");
+        }
+        return id.longValue();
+    }
+}
@@ -0,0 +1,56 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Служебные запросы к каталогу PostgreSQL; в H2 таблица transactions не секционирована и репозиторий не используется
+@Repository
+public class TransactionPartitionRepository 
+{
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransactionPartitionRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public boolean isPartitioned() 
+    {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(product)) 
+        {
+            return false;
+        }
+        String sql = "SELECT COUNT(*) FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid "
+                + "JOIN pg_namespace n ON n.oid = c.relnamespace WHERE c.relname = 'transactions' AND n.nspname = current_schema()";
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class);
+        return count != null && count > 0;
+    }
+
+    @LogExecutionTime
+    public List<String> findPartitionNames() 
+    {
+        String sql = "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent "
+                + "JOIN pg_namespace n ON n.oid = p.relnamespace WHERE p.relname = 'transactions' AND n.nspname = current_schema()";
+        return jdbcTemplate.queryForList(sql, String.class);
+    }
+
+    // Имя и границы формирует TransactionPartitionMaintainer, поэтому их можно подставить в DDL, где параметры недоступны
+    @LogExecutionTime
+    public void createPartition(String name, LocalDateTime from, LocalDateTime to) 
+    {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF transactions FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+    }
+
+    // Отсоединенная секция остается обычной таблицей с тем же именем: ее можно выгрузить и удалить отдельно
+    @LogExecutionTime
+    public void detachPartition(String name) 
+    {
+        jdbcTemplate.execute("ALTER TABLE transactions DETACH PARTITION " + name);
+    }
+}
@@ -1,13 +1,22 @@
 package com.p2p.transfer_app.repository;
 
 import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.dto.TransactionCursor;
 import com.p2p.transfer_app.model.Transaction;
 import com.p2p.transfer_app.model.enums.TransactionStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Repository
 public class TransactionRepository 
@@ -35,11 +44,141 @@ public class TransactionRepository
                 Timestamp.from(transaction.getCreatedAt().toInstant()));
     }
     
+    @LogExecutionTime
+    public void saveAll(List<Transaction> transactions) 
+    {
+        String sql = "INSERT INTO transactions (id, from_account_id, to_account_id, amount, status, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+
+        jdbcTemplate.batchUpdate(sql, transactions, transactions.size(), (ps, transaction) -> 
+        {
+            ps.setObject(1, transaction.getId());
+            ps.setLong(2, transaction.getFromAccountId());
+            ps.setLong(3, transaction.getToAccountId());
+            ps.setLong(4, transaction.getAmount());
+            ps.setString(5, transaction.getStatus().name());
+            ps.setTimestamp(6, Timestamp.from(transaction.getCreatedAt().toInstant()));
+        });
+    }
+
+    @LogExecutionTime
+    public void updateStatus(UUID id, Instant createdAt, TransactionStatus status) 
+    {
+        String sql = "UPDATE transactions SET status = ? WHERE id = ? AND created_at = ?";
+        jdbcTemplate.update(sql, status.name(), id, Timestamp.from(createdAt));
+    }
+
     @LogExecutionTime
     public boolean hasTransactions(Long accountId) 
     {
-        String sql = "SELECT COUNT(*) FROM transactions WHERE from_account_id = ? OR to_account_id = ?";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, accountId, accountId);
-        return count != null && count > 0;
+        // Достаточно первой найденной строки, без подсчета по всем секциям
+        String sql = "SELECT 1 FROM transactions WHERE from_account_id = ? OR to_account_id = ? LIMIT 1";
+        return !jdbcTemplate.queryForList(sql, Integer.class, accountId, accountId).isEmpty();
+    }
+
+    // Каждая сторона читается по своему составному индексу (account_id, created_at, id), без OFFSET.
+    // Отдельное условие на created_at нужно для отсечения секций: по сравнению кортежей PostgreSQL секции не отбрасывает
+    @LogExecutionTime
+    public void streamByAccountId(Long accountId, TransactionCursor after, int limit, Consumer<Transaction> consumer) 
+    {
+        String columns = "id, from_account_id, to_account_id, amount, status, created_at";
+        String keyset = after == null ? "" : " AND created_at <= ? AND (created_at, id) < (?, ?)";
+        String order = " ORDER BY created_at DESC, id DESC";
+
+        String sql = "SELECT " + columns + " FROM ("
+                + "(SELECT " + columns + " FROM transactions WHERE from_account_id = ?" + keyset + order + " LIMIT ?)"
+                + " UNION ALL "
+                + "(SELECT " + columns + " FROM transactions WHERE to_account_id = ? AND from_account_id <> ?" + keyset + order + " LIMIT ?)"
+                + ") history" + order + " LIMIT ?";
+
+        List<Object> args = new ArrayList<>();
+        args.add(accountId);
+        addKeyset(args, after);
+        args.add(limit);
+        args.add(accountId);
+        args.add(accountId);
+        addKeyset(args, after);
+        args.add(limit);
+        args.add(limit);
+
+        jdbcTemplate.query(sql, rs -> 
+        {
+            consumer.accept(mapTransaction(rs));
+        }, args.toArray());
+    }
+
+    @LogExecutionTime
+    public long netChangeSince(Long accountId, Instant from) 
+    {
+        String sql = "SELECT COALESCE(SUM(CASE WHEN from_account_id = ? THEN -amount ELSE amount END), 0) FROM transactions "
+                + "WHERE (from_account_id = ? OR to_account_id = ?) AND status = 'COMPLETED' AND created_at >= ?";
+        Long net = jdbcTemplate.queryForObject(sql, Long.class, accountId, accountId, accountId, Timestamp.from(from));
+        return net == null ? 0L : net;
+    }
+
+    // Курсор только вперед с fetch size: драйвер держит в памяти одну порцию строк; PostgreSQL использует курсор только внутри транзакции
+    @LogExecutionTime
+    public void streamStatement(Long accountId, Instant from, Instant to, int fetchSize, RowCallbackHandler handler) 
+    {
+        String columns = "id, from_account_id, to_account_id, amount, created_at";
+        String range = " AND status = 'COMPLETED' AND created_at >= ? AND created_at < ?";
+
+        String sql = "SELECT " + columns + " FROM ("
+                + "(SELECT " + columns + " FROM transactions WHERE from_account_id = ?" + range + ")"
+                + " UNION ALL "
+                + "(SELECT " + columns + " FROM transactions WHERE to_account_id = ? AND from_account_id <> ?" + range + ")"
+                + ") statement_rows ORDER BY created_at, id";
+
+        jdbcTemplate.query(connection -> 
+        {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, accountId);
+            ps.setTimestamp(2, Timestamp.from(from));
+            ps.setTimestamp(3, Timestamp.from(to));
+            ps.setLong(4, accountId);
+            ps.setLong(5, accountId);
+            ps.setTimestamp(6, Timestamp.from(from));
+            ps.setTimestamp(7, Timestamp.from(to));
+            return ps;
+        }, handler);
+    }
+
+    // Исходящие переводы с владельцем счета-источника, для восстановления счетчиков лимитов после перезапуска
+    @LogExecutionTime
+    public void streamOutgoingSince(Instant from, int fetchSize, RowCallbackHandler handler) 
+    {
+        String sql = "SELECT t.from_account_id, a.user_id, t.amount, t.created_at FROM transactions t "
+                + "JOIN accounts a ON a.id = t.from_account_id WHERE t.status = 'COMPLETED' AND t.created_at >= ?";
+
+        jdbcTemplate.query(connection -> 
+        {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, Timestamp.from(from));
+            return ps;
+        }, handler);
+    }
+
+    private static void addKeyset(List<Object> args, TransactionCursor after) 
+    {
+        if (after != null) 
+        {
+            args.add(Timestamp.from(after.getCreatedAt()));
+            args.add(Timestamp.from(after.getCreatedAt()));
+            args.add(after.getId());
+        }
+    }
+
+    private static Transaction mapTransaction(ResultSet rs) throws SQLException 
+    {
+        return Transaction.builder()
+                .id(rs.getObject("id", UUID.class))
+                .fromAccountId(rs.getLong("from_account_id"))
+                .toAccountId(rs.getLong("to_account_id"))
+                .amount(rs.getLong("amount"))
+                .status(TransactionStatus.valueOf(rs.getString("status")))
+                .createdAt(rs.getTimestamp("created_at").toInstant().atOffset(ZoneOffset.UTC))
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,41 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+// Одна строка с номером последней примененной записи журнала движка. Повтор журнала сверяется с ней, а не с
+// transactions: строки переводов могут уйти в архив или вместе с отсоединенной секцией
+@Repository
+public class TransferJournalRepository 
+{
+    private static final int CHECKPOINT_ID = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransferJournalRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @LogExecutionTime
+    public long findAppliedSequence() 
+    {
+        String sql = "SELECT applied_sequence FROM transfer_journal_checkpoint WHERE id = ?";
+        List<Long> sequences = jdbcTemplate.queryForList(sql, Long.class, CHECKPOINT_ID);
+        return sequences.isEmpty() ? 0 : sequences.get(0);
+    }
+
+    // Вызывается в транзакции, которая применяет записи; пишет только поток-писатель движка, поэтому гонки вставки нет
+    @LogExecutionTime
+    public void advance(long sequence) 
+    {
+        String sql = "UPDATE transfer_journal_checkpoint SET applied_sequence = ? WHERE id = ? AND applied_sequence < ?";
+        if (jdbcTemplate.update(sql, sequence, CHECKPOINT_ID, sequence) == 0 && findAppliedSequence() == 0) 
+        {
+            jdbcTemplate.update("INSERT INTO transfer_journal_checkpoint (id, applied_sequence) VALUES (?, ?)", CHECKPOINT_ID, sequence);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.model.UserBalanceSummary;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public class UserBalanceSummaryRepository 
+{
+    // Баланс счета вместе с несвернутыми полосами, как в AccountRepository
+    private static final String ACCOUNT_BALANCE = "a.balance + COALESCE((SELECT SUM(s.balance) FROM account_balance_slots s WHERE s.account_id = a.id), 0)";
+    // Итог пользователя вместе с полосами проекции
+    private static final String SUMMARY_BALANCE = "s.total_balance + COALESCE((SELECT SUM(p.total_balance) FROM user_balance_summary_slots p WHERE p.user_id = s.user_id), 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserBalanceSummaryRepository(JdbcTemplate jdbcTemplate) 
+    {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private final RowMapper<UserBalanceSummary> summaryRowMapper = (rs, rowNum) -> 
+    {
+        Timestamp lastActivityAt = rs.getTimestamp("last_activity_at");
+        Timestamp slotActivityAt = rs.getTimestamp("slot_activity_at");
+        if (lastActivityAt == null || slotActivityAt != null && slotActivityAt.after(lastActivityAt)) 
+        {
+            lastActivityAt = slotActivityAt;
+        }
+        return UserBalanceSummary.builder()
+                .userId(rs.getLong("user_id"))
+                .totalBalance(rs.getLong("total_balance"))
+                .accountCount(rs.getInt("account_count"))
+                .lastActivityAt(lastActivityAt == null ? null : lastActivityAt.toInstant().atOffset(ZoneOffset.UTC))
+                .build();
+    };
+
+    @LogExecutionTime
+    public Optional<UserBalanceSummary> findByUserId(Long userId) 
+    {
+        String sql = "SELECT s.user_id, " + SUMMARY_BALANCE + " AS total_balance, s.account_count, s.last_activity_at, "
+                + "(SELECT MAX(p.last_activity_at) FROM user_balance_summary_slots p WHERE p.user_id = s.user_id) AS slot_activity_at "
+                + "FROM user_balance_summary s WHERE s.user_id = ?";
+        try 
+        {
+            return Optional.ofNullable(jdbcTemplate.queryForObject(sql, summaryRowMapper, userId));
+        } catch (EmptyResultDataAccessException e) 
+        {
+            return Optional.empty();
+        }
+    }
+
+    // Приращения должны идти по возрастанию user_id, чтобы встречные переводы блокировали строки в одном порядке.
+    // Возвращает пользователей, для которых строки проекции еще нет
+    @LogExecutionTime
+    public List<Long> applyDeltas(List<UserBalanceSummary> deltas) 
+    {
+        List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+        for (UserBalanceSummary delta : deltas) 
+        {
+            Timestamp activity = Timestamp.from(delta.getLastActivityAt().toInstant());
+            batchArgs.add(new Object[] { delta.getTotalBalance(), delta.getAccountCount(), activity, activity, delta.getUserId() });
+        }
+
+        String sql = "UPDATE user_balance_summary SET total_balance = total_balance + ?, account_count = account_count + ?, "
+                + "last_activity_at = CASE WHEN last_activity_at IS NULL OR last_activity_at < ? THEN ? ELSE last_activity_at END "
+                + "WHERE user_id = ?";
+        int[] rowsAffected = jdbcTemplate.batchUpdate(sql, batchArgs);
+
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < rowsAffected.length; i++) 
+        {
+            if (rowsAffected[i] == 0) 
+            {
+                missing.add(deltas.get(i).getUserId());
+            }
+        }
+        return missing;
+    }
+
+    // Приращения переводов по полосатым счетам пользователя: одна полоса на пользователя в транзакции, по возрастанию
+    // user_id и после строк user_balance_summary. Полоса создается при первом обращении, если строка проекции уже есть.
+    // Возвращает пользователей, для которых строки проекции еще нет
+    @LogExecutionTime
+    public List<Long> applySlotDeltas(List<UserBalanceSummary> deltas, int slot) 
+    {
+        String update = "UPDATE user_balance_summary_slots SET total_balance = total_balance + ?, "
+                + "last_activity_at = CASE WHEN last_activity_at IS NULL OR last_activity_at < ? THEN ? ELSE last_activity_at END "
+                + "WHERE user_id = ? AND slot = ?";
+        String insert = "INSERT INTO user_balance_summary_slots (user_id, slot, total_balance, last_activity_at) VALUES (?, ?, ?, ?) "
+                + "ON CONFLICT DO NOTHING";
+        List<Long> missing = new ArrayList<>();
+        for (UserBalanceSummary delta : deltas) 
+        {
+            Timestamp activity = Timestamp.from(delta.getLastActivityAt().toInstant());
+            Object[] args = { delta.getTotalBalance(), activity, activity, delta.getUserId(), slot };
+            if (jdbcTemplate.update(update, args) > 0) 
+            {
+                continue;
+            }
+            if (findByUserId(delta.getUserId()).isEmpty()) 
+            {
+                missing.add(delta.getUserId());
+            }
+            else if (jdbcTemplate.update(insert, delta.getUserId(), slot, delta.getTotalBalance(), activity) == 0) 
+            {
+                // Полосу только что создала другая транзакция
+                jdbcTemplate.update(update, args);
+            }
+        }
+        return missing;
+    }
+
+    // Блокирует пользователя, его открытые счета и их полосы: после этого переводы по счетам пользователя, в том числе
+    // зачисления на полосатые счета, ждут конца транзакции, а уже зафиксированные видны следующему запросу
+    @LogExecutionTime
+    public boolean lockUserAccounts(Long userId) 
+    {
+        List<Long> users = jdbcTemplate.queryForList("SELECT id FROM users WHERE id = ? FOR UPDATE", Long.class, userId);
+        if (users.isEmpty()) 
+        {
+            return false;
+        }
+        List<Long> accountIds = jdbcTemplate.queryForList("SELECT id FROM accounts WHERE user_id = ? AND status = 'ACTIVE' ORDER BY id FOR UPDATE",
+                Long.class, userId);
+        for (Long accountId : accountIds) 
+        {
+            jdbcTemplate.queryForList("SELECT slot FROM account_balance_slots WHERE account_id = ? ORDER BY slot FOR UPDATE", Integer.class, accountId);
+        }
+        return true;
+    }
+
+    // Итог по базовой таблице; last_activity_at - время открытия последнего счета
+    @LogExecutionTime
+    public UserBalanceSummary summarizeAccounts(Long userId) 
+    {
+        String sql = "SELECT COALESCE(SUM(" + ACCOUNT_BALANCE + "), 0) AS total_balance, COUNT(*) AS account_count, "
+                + "MAX(a.created_at) AS last_activity_at FROM accounts a WHERE a.user_id = ? AND a.status = 'ACTIVE'";
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> 
+        {
+            Timestamp lastActivityAt = rs.getTimestamp("last_activity_at");
+            return UserBalanceSummary.builder()
+                    .userId(userId)
+                    .totalBalance(rs.getLong("total_balance"))
+                    .accountCount(rs.getInt("account_count"))
+                    .lastActivityAt(lastActivityAt == null ? null : lastActivityAt.toInstant().atOffset(ZoneOffset.UTC))
+                    .build();
+        }, userId);
+    }
+
+    // Пересчитанный итог заменяет строку, а полосы обнуляются
+    @LogExecutionTime
+    public void save(UserBalanceSummary summary) 
+    {
+        Timestamp lastActivityAt = summary.getLastActivityAt() == null ? null : Timestamp.from(summary.getLastActivityAt().toInstant());
+        int updated = jdbcTemplate.update("UPDATE user_balance_summary SET total_balance = ?, account_count = ?, last_activity_at = ? WHERE user_id = ?",
+                summary.getTotalBalance(), summary.getAccountCount(), lastActivityAt, summary.getUserId());
+        if (updated == 0) 
+        {
+            jdbcTemplate.update("INSERT INTO user_balance_summary (user_id, total_balance, account_count, last_activity_at) VALUES (?, ?, ?, ?)",
+                    summary.getUserId(), summary.getTotalBalance(), summary.getAccountCount(), lastActivityAt);
+        }
+        jdbcTemplate.update("UPDATE user_balance_summary_slots SET total_balance = 0 WHERE user_id = ? AND total_balance <> 0", summary.getUserId());
+    }
+
+    // Пользователи из диапазона id, у которых строка проекции расходится с accounts или отсутствует. Один запрос видит
+    // согласованный снимок обеих таблиц, а переводы меняют их в одной транзакции
+    @LogExecutionTime
+    public List<Long> findDriftedUserIds(long fromUserId, long toUserId) 
+    {
+        String sql = "SELECT u.id FROM users u "
+                + "LEFT JOIN user_balance_summary s ON s.user_id = u.id "
+                + "LEFT JOIN (SELECT a.user_id, SUM(" + ACCOUNT_BALANCE + ") AS total_balance, COUNT(*) AS account_count FROM accounts a "
+                + "WHERE a.user_id BETWEEN ? AND ? AND a.status = 'ACTIVE' GROUP BY a.user_id) b ON b.user_id = u.id "
+                + "WHERE u.id BETWEEN ? AND ? "
+                + "AND (s.user_id IS NULL OR " + SUMMARY_BALANCE + " <> COALESCE(b.total_balance, 0) OR s.account_count <> COALESCE(b.account_count, 0)) "
+                + "ORDER BY u.id";
+        return jdbcTemplate.queryForList(sql, Long.class, fromUserId, toUserId, fromUserId, toUserId);
+    }
+
+    @LogExecutionTime
+    public List<Long> findUserIdsAfter(long afterUserId, int limit) 
+    {
+        return jdbcTemplate.queryForList("SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?", Long.class, afterUserId, limit);
+    }
+
+    // Пользователи, появившиеся до проекции, получают начальные строки из текущих балансов
+    @LogExecutionTime
+    public int bootstrap() 
+    {
+        String sql = "INSERT INTO user_balance_summary (user_id, total_balance, account_count, last_activity_at) "
+                + "SELECT u.id, COALESCE(SUM(" + ACCOUNT_BALANCE + "), 0), COUNT(a.id), MAX(a.created_at) FROM users u "
+                + "LEFT JOIN accounts a ON a.user_id = u.id AND a.status = 'ACTIVE' "
+                + "WHERE NOT EXISTS (SELECT 1 FROM user_balance_summary s WHERE s.user_id = u.id) "
+                + "GROUP BY u.id";
+        return jdbcTemplate.update(sql);
+    }
+}
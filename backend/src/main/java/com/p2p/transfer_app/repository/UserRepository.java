@@ -2,6 +2,7 @@ package com.p2p.transfer_app.repository;
 
 import com.p2p.transfer_app.aop.LogExecutionTime;
 import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.replica.ReplicaRead;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
@@ -35,6 +36,14 @@ public class UserRepository
     @LogExecutionTime
     public User save(User user) 
     {
+        // При шардировании id выдает каталог пользователей, и строка вставляется с готовым id
+        if (user.getId() != null) 
+        {
+            String sql = "INSERT INTO users (id, username, password_hash) VALUES (?, ?, ?)";
+            jdbcTemplate.update(sql, user.getId(), user.getUsername(), user.getPasswordHash());
+            return user;
+        }
+
         KeyHolder keyHolder = new GeneratedKeyHolder();
         
         String sql = "INSERT INTO users (username, password_hash) VALUES (?, ?)";
@@ -82,6 +91,7 @@ public class UserRepository
     }
 
     @LogExecutionTime
+    @ReplicaRead
     public Optional<User> findById(Long userId) 
     {
         try 
@@ -94,4 +104,19 @@ public class UserRepository
             return Optional.empty();
         }
     }
-}
\ No newline at end of file
+
+    @LogExecutionTime
+    public boolean existsById(Long userId) 
+    {
+        String sql = "SELECT COUNT(*) FROM users WHERE id = ?";
+        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, userId);
+        return count != null && count > 0;
+    }
+
+    @LogExecutionTime
+    public void updatePasswordHash(Long userId, String passwordHash) 
+    {
+        String sql = "UPDATE users SET password_hash = ? WHERE id = ?";
+        jdbcTemplate.update(sql, passwordHash, userId);
+    }
+}
@@ -0,0 +1,273 @@
+package com.p2p.transfer_app.scheduling;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.model.ScheduledTransfer;
+import com.p2p.transfer_app.model.enums.ScheduledTransferStatus;
+import com.p2p.transfer_app.repository.ScheduledTransferRepository;
+import com.p2p.transfer_app.service.AccountService;
+import com.p2p.transfer_app.shard.OnEachShard;
+import com.p2p.transfer_app.shard.ShardContext;
+import com.p2p.transfer_app.shard.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Запланированные переводы: загрузчик раз в load-interval арендует строки, срок которых наступает в ближайшее окно,
+// и кладет их в колесо таймеров. Сработавшие переводы выполняются пакетами через AccountService.transferMoney
+// с ограничением скорости, поэтому пик в полночь растягивается во времени, а не приходит в базу одновременно
+@Component
+@Slf4j
+public class ScheduledTransferDispatcher implements DisposableBean 
+{
+    private final ScheduledTransferRepository repository;
+    private final AccountService accountService;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration window;
+    private final Duration lease;
+    private final int loadLimit;
+    private final int batchSize;
+    private final double ratePerSecond;
+    private final int workerCount;
+
+    private final TimingWheel<ScheduledTransfer> wheel;
+    private final ConcurrentLinkedQueue<ScheduledTransfer> incoming = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<ScheduledTransfer> ready = new ArrayDeque<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ScheduledExecutorService ticker;
+    private final ThreadPoolExecutor workers;
+    private double permits;
+    private long lastRefillNanos = System.nanoTime();
+
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter skipped;
+
+    public ScheduledTransferDispatcher(ScheduledTransferRepository repository, AccountService accountService, ShardRouter shardRouter,
+                                       TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                                       @Value("${scheduled.transfers.window:PT2M}") Duration window,
+                                       @Value("${scheduled.transfers.lease:PT5M}") Duration lease,
+                                       @Value("${scheduled.transfers.load-limit:10000}") int loadLimit,
+                                       @Value("${scheduled.transfers.tick:PT0.1S}") Duration tick,
+                                       @Value("${scheduled.transfers.rate-per-second:50}") double ratePerSecond,
+                                       @Value("${scheduled.transfers.batch-size:20}") int batchSize,
+                                       @Value("${scheduled.transfers.workers:2}") int workerCount) 
+    {
+        this.repository = repository;
+        this.accountService = accountService;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = transactionTemplate;
+        this.window = window;
+        this.lease = lease;
+        this.loadLimit = loadLimit;
+        this.batchSize = batchSize;
+        this.ratePerSecond = ratePerSecond;
+        this.workerCount = workerCount;
+        this.wheel = new TimingWheel<>(tick.toMillis(), 64, System.currentTimeMillis());
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> 
+        {
+            Thread thread = new Thread(runnable, "scheduled-transfers-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> 
+        {
+            Thread thread = new Thread(runnable, "scheduled-transfers-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.completed = executedCounter(meterRegistry, "completed");
+        this.failed = executedCounter(meterRegistry, "failed");
+        this.skipped = executedCounter(meterRegistry, "skipped");
+        Gauge.builder("scheduled.transfers.pending", pending, AtomicInteger::get)
+                .description("Запланированные переводы, загруженные в колесо таймеров и ожидающие выполнения")
+                .register(meterRegistry);
+
+        this.ticker.scheduleWithFixedDelay(this::tick, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static Counter executedCounter(MeterRegistry meterRegistry, String outcome) 
+    {
+        return Counter.builder("scheduled.transfers.executed")
+                .description("Запуски запланированных переводов")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${scheduled.transfers.load-interval:PT30S}")
+    @OnEachShard
+    @LogExecutionTime
+    public void loadWindow() 
+    {
+        Instant now = Instant.now();
+        Instant windowEnd = now.plus(window);
+        List<ScheduledTransfer> claimed = transactionTemplate.execute(status ->
+                repository.claimDue(windowEnd, now, windowEnd.plus(lease), loadLimit));
+        if (claimed != null && !claimed.isEmpty()) 
+        {
+            incoming.addAll(claimed);
+            log.debug("Загружено {} запланированных переводов до {}", claimed.size(), windowEnd);
+        }
+    }
+
+    // Новый перевод со сроком внутри текущего окна не ждет следующей загрузки
+    public void scheduleIfDue(ScheduledTransfer transfer) 
+    {
+        Instant now = Instant.now();
+        Instant windowEnd = now.plus(window);
+        if (transfer.getNextRunAt().toInstant().isBefore(windowEnd)) 
+        {
+            loadWindow();
+        }
+    }
+
+    private void tick() 
+    {
+        try 
+        {
+            ScheduledTransfer transfer;
+            while ((transfer = incoming.poll()) != null) 
+            {
+                if (!wheel.add(transfer.getNextRunAt().toInstant().toEpochMilli(), transfer)) 
+                {
+                    ready.add(transfer);
+                }
+            }
+            wheel.advance(System.currentTimeMillis(), ready::add);
+            dispatchReady();
+            pending.set(wheel.size() + ready.size());
+        } catch (RuntimeException e) 
+        {
+            log.error("Ошибка диспетчера запланированных переводов: {}", e.getMessage(), e);
+        }
+    }
+
+    // Корзина токенов: разрешения копятся со скоростью rate-per-second, но не больше одного пакета
+    private void dispatchReady() 
+    {
+        long nowNanos = System.nanoTime();
+        permits = Math.min(batchSize, permits + (nowNanos - lastRefillNanos) / 1_000_000_000.0 * ratePerSecond);
+        lastRefillNanos = nowNanos;
+
+        while (!ready.isEmpty() && permits >= 1 && workers.getQueue().size() < workerCount) 
+        {
+            int size = (int) Math.min(Math.min(permits, batchSize), ready.size());
+            List<ScheduledTransfer> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) 
+            {
+                batch.add(ready.poll());
+            }
+            permits -= size;
+            // Строка запланированного перевода лежит на шарде владельца, то есть на шарде счета-источника
+            workers.execute(() -> batch.forEach(transfer ->
+                    ShardContext.run(shardRouter.shardOfAccountNumber(transfer.getFromAccountNumber()), () -> execute(transfer))));
+        }
+    }
+
+    private void execute(ScheduledTransfer transfer) 
+    {
+        Instant scheduledAt = transfer.getNextRunAt().toInstant();
+        try 
+        {
+            Boolean executed = transactionTemplate.execute(status -> 
+            {
+                Optional<ScheduledTransfer> locked = repository.lockForRun(transfer.getId(), scheduledAt);
+                if (locked.isEmpty()) 
+                {
+                    return false;
+                }
+                UUID transactionId = accountService.transferMoney(toRequest(locked.get()));
+                Instant nextRunAt = nextRunAt(locked.get(), scheduledAt);
+                // Перевод и сдвиг расписания фиксируются одной транзакцией, поэтому каждый срок исполняется не больше одного раза
+                repository.recordRun(transfer.getId(), nextRunAt == null ? scheduledAt : nextRunAt,
+                        nextRunAt == null ? ScheduledTransferStatus.COMPLETED : ScheduledTransferStatus.ACTIVE, transactionId, null);
+                return true;
+            });
+            (Boolean.TRUE.equals(executed) ? completed : skipped).increment();
+        } catch (RuntimeException e) 
+        {
+            recordFailure(transfer, scheduledAt, e);
+        }
+    }
+
+    // Перевод откатился вместе с блокировкой строки, поэтому ошибка фиксируется отдельной транзакцией
+    private void recordFailure(ScheduledTransfer transfer, Instant scheduledAt, RuntimeException error) 
+    {
+        log.warn("Запланированный перевод {} на {} не выполнен: {}", transfer.getId(), scheduledAt, error.getMessage());
+        Instant nextRunAt = nextRunAt(transfer, scheduledAt);
+        try 
+        {
+            transactionTemplate.executeWithoutResult(status -> 
+            {
+                if (repository.lockForRun(transfer.getId(), scheduledAt).isPresent()) 
+                {
+                    repository.recordRun(transfer.getId(), nextRunAt == null ? scheduledAt : nextRunAt,
+                            nextRunAt == null ? ScheduledTransferStatus.FAILED : ScheduledTransferStatus.ACTIVE, null, error.getMessage());
+                }
+            });
+            failed.increment();
+        } catch (RuntimeException e) 
+        {
+            log.error("Не удалось сохранить результат запланированного перевода {}: {}", transfer.getId(), e.getMessage(), e);
+        }
+    }
+
+    // Пропущенные за время простоя повторы не догоняются пачкой: следующий срок берется первым после текущего момента
+    private static Instant nextRunAt(ScheduledTransfer transfer, Instant scheduledAt) 
+    {
+        Long intervalSeconds = transfer.getRepeatIntervalSeconds();
+        if (intervalSeconds == null) 
+        {
+            return null;
+        }
+        Instant next = scheduledAt.plusSeconds(intervalSeconds);
+        Instant now = Instant.now();
+        if (!next.isAfter(now)) 
+        {
+            long missed = Duration.between(scheduledAt, now).getSeconds() / intervalSeconds;
+            next = scheduledAt.plusSeconds((missed + 1) * intervalSeconds);
+        }
+        return next;
+    }
+
+    private static TransferRequest toRequest(ScheduledTransfer transfer) 
+    {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(transfer.getFromAccountNumber());
+        request.setToAccountNumber(transfer.getToAccountNumber());
+        request.setAmount(transfer.getAmount());
+        return request;
+    }
+
+    @Override
+    public void destroy() 
+    {
+        ticker.shutdownNow();
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,130 @@
+package com.p2p.transfer_app.scheduling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Иерархическое колесо таймеров: уровень 0 делится на тики, каждый следующий уровень покрывает в wheelSize раз больший
+// интервал. Добавление и срабатывание стоят O(1), дальние задачи опускаются на нижние уровни по мере приближения срока.
+// Не потокобезопасно: колесом владеет один поток диспетчера
+public final class TimingWheel<T> 
+{
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<ArrayDeque<Entry<T>>[]> levels = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) 
+    {
+        if (tickMillis <= 0 || wheelSize < 2) 
+        {
+            throw new IllegalArgumentException("Некорректные параметры колеса таймеров");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    public int size() 
+    {
+        return size;
+    }
+
+    // Возвращает false, если срок уже наступил: такую задачу вызывающий код выполняет сразу.
+    // Срок округляется вверх до тика, поэтому задача срабатывает не раньше срока и не позже чем через тик после него
+    public boolean add(long deadlineMillis, T item) 
+    {
+        long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        if (deadlineTick <= currentTick) 
+        {
+            return false;
+        }
+        place(new Entry<>(deadlineTick, item));
+        size++;
+        return true;
+    }
+
+    public void advance(long nowMillis, Consumer<T> expired) 
+    {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < targetTick) 
+        {
+            currentTick++;
+            if (levels.isEmpty()) 
+            {
+                continue;
+            }
+
+            // На границе интервала верхнего уровня его текущий слот спускается на нижние уровни, начиная с самого верхнего
+            int top = 0;
+            long ticksPerSlot = 1;
+            while (top + 1 < levels.size() && currentTick % (ticksPerSlot * wheelSize) == 0) 
+            {
+                top++;
+                ticksPerSlot *= wheelSize;
+            }
+            for (int level = top; level > 0; level--, ticksPerSlot /= wheelSize) 
+            {
+                ArrayDeque<Entry<T>> slot = levels.get(level)[slotIndex(currentTick, ticksPerSlot)];
+                for (int i = slot.size(); i > 0; i--) 
+                {
+                    place(slot.poll());
+                }
+            }
+
+            ArrayDeque<Entry<T>> slot = levels.get(0)[slotIndex(currentTick, 1)];
+            for (int i = slot.size(); i > 0; i--) 
+            {
+                Entry<T> entry = slot.poll();
+                if (entry.deadlineTick <= currentTick) 
+                {
+                    size--;
+                    expired.accept(entry.item);
+                }
+                else 
+                {
+                    place(entry);
+                }
+            }
+        }
+    }
+
+    private void place(Entry<T> entry) 
+    {
+        long delta = entry.deadlineTick - currentTick;
+        int level = 0;
+        long ticksPerSlot = 1;
+        while (delta >= ticksPerSlot * wheelSize && ticksPerSlot <= Long.MAX_VALUE / wheelSize / wheelSize) 
+        {
+            level++;
+            ticksPerSlot *= wheelSize;
+        }
+        while (levels.size() <= level) 
+        {
+            levels.add(newLevel());
+        }
+        levels.get(level)[slotIndex(entry.deadlineTick, ticksPerSlot)].add(entry);
+    }
+
+    private int slotIndex(long tick, long ticksPerSlot) 
+    {
+        return (int) Math.floorMod(tick / ticksPerSlot, (long) wheelSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArrayDeque<Entry<T>>[] newLevel() 
+    {
+        ArrayDeque<Entry<T>>[] slots = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) 
+        {
+            slots[i] = new ArrayDeque<>();
+        }
+        return slots;
+    }
+
+    private record Entry<T>(long deadlineTick, T item) 
+    {
+    }
+}
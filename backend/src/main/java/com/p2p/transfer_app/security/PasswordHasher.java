@@ -0,0 +1,154 @@
+package com.p2p.transfer_app.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// BCrypt выполняется на отдельном пуле размером с число ядер, чтобы вход пользователей не занимал все потоки запросов
+@Component
+@Slf4j
+public class PasswordHasher implements DisposableBean 
+{
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$[./A-Za-z0-9]{53}$");
+    private static final int MIN_STRENGTH = 4;
+    private static final int MAX_STRENGTH = 31;
+
+    private final ThreadPoolExecutor executor;
+    private final Timer hashTimer;
+    private final int strength;
+    private final BCryptPasswordEncoder encoder;
+    private final String dummyHash;
+
+    public PasswordHasher(MeterRegistry meterRegistry,
+                          @Value("${password.hashing.threads:0}") int threads,
+                          @Value("${password.hashing.queue-capacity:256}") int queueCapacity,
+                          @Value("${password.hashing.strength:0}") int configuredStrength,
+                          @Value("${password.hashing.min-strength:10}") int minStrength,
+                          @Value("${password.hashing.target-duration:PT0.25S}") Duration targetDuration) 
+    {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> 
+                {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.hashTimer = Timer.builder("password.hashing")
+                .description("Время вычисления и проверки хэшей паролей")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.queue", executor, pool -> pool.getQueue().size())
+                .description("Число задач хэширования, ожидающих свободного ядра")
+                .register(meterRegistry);
+
+        this.strength = configuredStrength > 0 ? configuredStrength : calibrate(minStrength, targetDuration);
+        this.encoder = new BCryptPasswordEncoder(strength);
+        this.dummyHash = encoder.encode("dummy-password");
+        log.info("Хэширование паролей: BCrypt, стоимость {}, потоков {}", strength, poolSize);
+    }
+
+    public int getStrength() 
+    {
+        return strength;
+    }
+
+    public CompletableFuture<String> hash(String password) 
+    {
+        return CompletableFuture.supplyAsync(() -> hashTimer.record(() -> encoder.encode(password)), executor);
+    }
+
+    public CompletableFuture<Boolean> matches(String password, String storedHash) 
+    {
+        return CompletableFuture.supplyAsync(() -> hashTimer.record(() -> 
+        {
+            if (storedHash == null) 
+            {
+                // Сравнение с фиктивным хэшем выравнивает время ответа для несуществующих пользователей
+                encoder.matches(password, dummyHash);
+                return false;
+            }
+            if (!isBcrypt(storedHash)) 
+            {
+                return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), storedHash.getBytes(StandardCharsets.UTF_8));
+            }
+            return encoder.matches(password, storedHash);
+        }), executor);
+    }
+
+    // Пароли, сохраненные до введения хэширования или с устаревшей стоимостью, перехэшируются при следующем входе
+    public boolean needsRehash(String storedHash) 
+    {
+        Matcher matcher = BCRYPT_PATTERN.matcher(storedHash);
+        return !matcher.matches() || Integer.parseInt(matcher.group(1)) < strength;
+    }
+
+    public static <T> T await(CompletableFuture<T> future) 
+    {
+        try 
+        {
+            return future.join();
+        } catch (CompletionException e) 
+        {
+            if (e.getCause() instanceof RuntimeException cause) 
+            {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void destroy() 
+    {
+        executor.shutdown();
+    }
+
+    private static boolean isBcrypt(String storedHash) 
+    {
+        return BCRYPT_PATTERN.matcher(storedHash).matches();
+    }
+
+    // Стоимость растет, пока один хэш укладывается в целевое время; каждый шаг удваивает работу
+    private static int calibrate(int minStrength, Duration targetDuration) 
+    {
+        int strength = Math.max(MIN_STRENGTH, minStrength);
+        long targetNanos = targetDuration.toNanos();
+        long elapsed = measure(strength);
+        while (strength < MAX_STRENGTH && elapsed * 2 <= targetNanos) 
+        {
+            strength++;
+            elapsed = measure(strength);
+        }
+        log.info("Калибровка BCrypt: стоимость {}, {} мс на хэш", strength, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return strength;
+    }
+
+    private static long measure(int strength) 
+    {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        encoder.encode("calibration");
+        long start = System.nanoTime();
+        encoder.encode("calibration");
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,14 @@
+package com.p2p.transfer_app.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class TokenClaims 
+{
+    private Long userId;
+    private Instant expiresAt;
+}
@@ -0,0 +1,125 @@
+package com.p2p.transfer_app.security;
+
+import com.p2p.transfer_app.exception.AuthenticationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+// Токен без состояния: "<userId>.<срок действия>" и HMAC-SHA256 от них, проверка не обращается к базе данных
+@Component
+@Slf4j
+public class TokenService 
+{
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Mac prototype;
+    private final Duration ttl;
+    private final Clock clock;
+
+    @Autowired
+    public TokenService(@Value("${auth.token.secret:}") String secret, @Value("${auth.token.ttl:PT12H}") Duration ttl,
+                        Environment environment) 
+    {
+        this(secret, ttl, environment.acceptsProfiles(Profiles.of("dev", "test")), Clock.systemUTC());
+    }
+
+    TokenService(String secret, Duration ttl, boolean randomSecretAllowed, Clock clock) 
+    {
+        byte[] key;
+        if (secret == null || secret.isBlank()) 
+        {
+            // Случайный ключ допустим только в профилях dev и test: в работе без секрета токены нельзя проверить
+            // после перезапуска и на соседних экземплярах
+            if (!randomSecretAllowed) 
+            {
+                throw new IllegalStateException("auth.token.secret не задан: укажите секрет (AUTH_TOKEN_SECRET) или запустите с профилем dev");
+            }
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            log.warn("auth.token.secret не задан: сгенерирован случайный ключ, токены станут недействительны после перезапуска");
+        } 
+        else 
+        {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        }
+
+        try 
+        {
+            this.prototype = Mac.getInstance(ALGORITHM);
+            this.prototype.init(new SecretKeySpec(key, ALGORITHM));
+        } catch (GeneralSecurityException e) 
+        {
+            throw new IllegalStateException("Не удалось инициализировать " + ALGORITHM, e);
+        }
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    public String issue(Long userId) 
+    {
+        String payload = userId + "." + clock.instant().plus(ttl).getEpochSecond();
+        return ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    public TokenClaims verify(String token) 
+    {
+        int separator = token == null ? -1 : token.indexOf('.');
+        if (separator < 0) 
+        {
+            throw new AuthenticationException("Недействительный токен");
+        }
+
+        String payload;
+        byte[] signature;
+        try 
+        {
+            payload = new String(DECODER.decode(token.substring(0, separator)), StandardCharsets.UTF_8);
+            signature = DECODER.decode(token.substring(separator + 1));
+        } catch (IllegalArgumentException e) 
+        {
+            throw new AuthenticationException("Недействительный токен");
+        }
+        if (!MessageDigest.isEqual(sign(payload), signature)) 
+        {
+            throw new AuthenticationException("Недействительный токен");
+        }
+
+        int dot = payload.indexOf('.');
+        TokenClaims claims = new TokenClaims(Long.parseLong(payload.substring(0, dot)),
+                Instant.ofEpochSecond(Long.parseLong(payload.substring(dot + 1))));
+        if (!claims.getExpiresAt().isAfter(clock.instant())) 
+        {
+            throw new AuthenticationException("Срок действия токена истек");
+        }
+        return claims;
+    }
+
+    // Mac не потокобезопасен: каждый вызов работает с копией заранее инициализированного экземпляра
+    private byte[] sign(String payload) 
+    {
+        try 
+        {
+            Mac mac = (Mac) prototype.clone();
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (CloneNotSupportedException e) 
+        {
+            throw new IllegalStateException("Не удалось подписать токен", e);
+        }
+    }
+}
@@ -1,21 +1,35 @@
 package com.p2p.transfer_app.service;
 
+import com.p2p.transfer_app.cache.AccountLookupCache;
 import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.event.AccountClosedEvent;
+import com.p2p.transfer_app.event.AccountOpenedEvent;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
 import com.p2p.transfer_app.exception.AccountOperationException;
+import com.p2p.transfer_app.exception.TransferLimitExceededException;
+import com.p2p.transfer_app.limit.VelocityLimiter;
 import com.p2p.transfer_app.model.Account;
 import com.p2p.transfer_app.model.Transaction;
 import com.p2p.transfer_app.model.enums.TransactionStatus;
 import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.ArchivalRepository;
 import com.p2p.transfer_app.repository.UserRepository;
 import com.p2p.transfer_app.repository.TransactionRepository;
 import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.shard.CrossShardTransferCoordinator;
+import com.p2p.transfer_app.shard.ShardContext;
+import com.p2p.transfer_app.shard.ShardDirectory;
+import com.p2p.transfer_app.shard.ShardRouter;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.UUID;
 
@@ -27,18 +41,44 @@ public class AccountService
     private final AccountRepository accountRepository;
     private final UserRepository userRepository;
     private final TransactionRepository transactionRepository;
-    private final JdbcTemplate jdbcTemplate;
+    private final ArchivalRepository archivalRepository;
+    private final AccountLookupCache lookupCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StripedBalanceService stripedBalanceService;
+    private final VelocityLimiter velocityLimiter;
+    private final ShardRouter shardRouter;
+    private final ShardDirectory shardDirectory;
+    private final CrossShardTransferCoordinator crossShardCoordinator;
+    private final TransferMode transferMode;
 
-    public AccountService(AccountRepository accountRepository, UserRepository userRepository, TransactionRepository transactionRepository, JdbcTemplate jdbcTemplate) 
+    public AccountService(AccountRepository accountRepository, UserRepository userRepository, TransactionRepository transactionRepository, ArchivalRepository archivalRepository,
+                          AccountLookupCache lookupCache, ApplicationEventPublisher eventPublisher, StripedBalanceService stripedBalanceService,
+                          VelocityLimiter velocityLimiter, ShardRouter shardRouter, ShardDirectory shardDirectory,
+                          CrossShardTransferCoordinator crossShardCoordinator, @Value("${transfer.mode:LEGACY}") TransferMode transferMode) 
     {
         this.accountRepository = accountRepository;
         this.userRepository = userRepository;
         this.transactionRepository = transactionRepository;
-        this.jdbcTemplate = jdbcTemplate;
+        this.archivalRepository = archivalRepository;
+        this.lookupCache = lookupCache;
+        this.eventPublisher = eventPublisher;
+        this.stripedBalanceService = stripedBalanceService;
+        this.velocityLimiter = velocityLimiter;
+        this.shardRouter = shardRouter;
+        this.shardDirectory = shardDirectory;
+        this.crossShardCoordinator = crossShardCoordinator;
+        this.transferMode = transferMode;
     }
 
+    @Transactional
     @LogExecutionTime
     public Account openNewAccount(Long userId, Long initialBalance) 
+    {
+        // Счет открывается на шарде владельца; соединение транзакции берется при первом запросе, уже внутри контекста шарда
+        return ShardContext.call(shardRouter.shardOfUser(userId), () -> openAccountOnShard(userId, initialBalance));
+    }
+
+    private Account openAccountOnShard(Long userId, Long initialBalance) 
     {
         log.info("Открытие нового счета для user_id: {} с начальным балансом: {}", userId, initialBalance);
 
@@ -55,9 +95,12 @@ public class AccountService
             throw new IllegalArgumentException("Баланс не может быть отрицательным");
         }
 
-        String accountNumber = generateUniqueAccountNumber();
-        Account newAccount = new Account(null, accountNumber, initialBalance, userId);
+        int shard = shardRouter.shardOfUser(userId);
+        String accountNumber = shardRouter.newAccountNumber(shard);
+        Long accountId = shardRouter.isSharded() ? shardDirectory.registerAccount(accountNumber, shard) : null;
+        Account newAccount = new Account(accountId, accountNumber, initialBalance, userId);
         Account savedAccount = accountRepository.save(newAccount);
+        eventPublisher.publishEvent(new AccountOpenedEvent(savedAccount.getId(), accountNumber, userId, initialBalance));
 
         log.info("Успешно открыт новый счет {} для user_id: {}", accountNumber, userId);
         return savedAccount;
@@ -67,12 +110,24 @@ public class AccountService
     public List<Account> getUserAccounts(Long userId) 
     {
         log.info("Получение всех счетов для user_id: {}", userId);
-        return accountRepository.findAllByUserId(userId);
+        return ShardContext.call(shardRouter.shardOfUser(userId), () -> accountRepository.findAllByUserId(userId));
     }
 
     @Transactional
     @LogExecutionTime
-    public void transferMoney(TransferRequest request) 
+    public UUID transferMoney(TransferRequest request) 
+    {
+        return transferMoney(request, UUID.randomUUID());
+    }
+
+    @Transactional
+    @LogExecutionTime
+    public UUID transferMoney(TransferRequest request, UUID transactionId) 
+    {
+        return ShardContext.call(shardRouter.shardOfAccountNumber(request.getFromAccountNumber()), () -> transferOnShard(request, transactionId));
+    }
+
+    private UUID transferOnShard(TransferRequest request, UUID transactionId) 
     {
         log.info("Перевод начат: {} от {} до {}", request.getAmount(), request.getFromAccountNumber(), request.getToAccountNumber());
 
@@ -80,6 +135,14 @@ public class AccountService
         {
             throw new IllegalArgumentException("Сумма перевода должна быть положительной");
         }
+        if (shardRouter.isCrossShard(request.getFromAccountNumber(), request.getToAccountNumber())) 
+        {
+            return transferAcrossShards(request, transactionId);
+        }
+        if (transferMode == TransferMode.CONDITIONAL) 
+        {
+            return transferConditionally(request, transactionId);
+        }
         Account fromAccount = accountRepository.findByAccountNumber(request.getFromAccountNumber())
                 .orElseThrow(() -> new RuntimeException("Счет-источник не найден"));
         Account toAccount = accountRepository.findByAccountNumber(request.getToAccountNumber())
@@ -92,9 +155,10 @@ public class AccountService
         {
             throw new IllegalArgumentException("Недостаточно средств");
         }
+        acquireVelocity(fromAccount.getId(), fromAccount.getUserId(), request.getAmount());
 
         Transaction transaction = Transaction.builder()
-                .id(UUID.randomUUID())
+                .id(transactionId)
                 .fromAccountId(fromAccount.getId())
                 .toAccountId(toAccount.getId())
                 .amount(request.getAmount())
@@ -102,9 +166,7 @@ public class AccountService
                 .createdAt(OffsetDateTime.now())
                 .build();
 
-        transactionRepository.save(transaction);
-        log.info("Транзакция {} создана со статусом PENDING.", transaction.getId());
-
+        // Балансы обновляются до записи проводок: снимки журнала рассчитывают, что проводку пишет владелец блокировки строки
         fromAccount.setBalance(fromAccount.getBalance() - request.getAmount());
         toAccount.setBalance(toAccount.getBalance() + request.getAmount());
 
@@ -112,13 +174,153 @@ public class AccountService
         accountRepository.update(toAccount);
         log.info("Балансы обновлены для счетов {} и {}", fromAccount.getAccountNumber(), toAccount.getAccountNumber());
 
+        transactionRepository.save(transaction);
+        eventPublisher.publishEvent(new TransferCompletedEvent(List.of(transaction)));
+        log.info("Транзакция {} создана со статусом COMPLETED.", transaction.getId());
+
         log.info("Перевод для транзакции {} завершен успешно", transaction.getId());
+        return transaction.getId();
+    }
+
+    private UUID transferConditionally(TransferRequest request, UUID transactionId) 
+    {
+        Long fromAccountId = lookupCache.findAccountId(request.getFromAccountNumber())
+                .orElseThrow(() -> new RuntimeException("Счет-источник не найден"));
+        Long toAccountId = lookupCache.findAccountId(request.getToAccountNumber())
+                .orElseThrow(() -> new RuntimeException("Счет-получатель не найден"));
+        if (fromAccountId.equals(toAccountId)) 
+        {
+            throw new IllegalArgumentException("Нельзя переводить деньги на тот же счет");
+        }
+        if (velocityLimiter.isEnabled()) 
+        {
+            acquireVelocity(fromAccountId, lookupCache.findOwnerId(fromAccountId).orElse(null), request.getAmount());
+        }
+
+        // Строки блокируются в порядке возрастания id, чтобы встречные переводы не приводили к взаимной блокировке
+        if (fromAccountId < toAccountId) 
+        {
+            debitOrThrow(fromAccountId, request.getFromAccountNumber(), request.getAmount());
+            creditOrThrow(toAccountId, request.getToAccountNumber(), request.getAmount());
+        } 
+        else 
+        {
+            creditOrThrow(toAccountId, request.getToAccountNumber(), request.getAmount());
+            debitOrThrow(fromAccountId, request.getFromAccountNumber(), request.getAmount());
+        }
+
+        Transaction transaction = Transaction.builder()
+                .id(transactionId)
+                .fromAccountId(fromAccountId)
+                .toAccountId(toAccountId)
+                .amount(request.getAmount())
+                .status(TransactionStatus.COMPLETED)
+                .createdAt(OffsetDateTime.now())
+                .build();
+
+        transactionRepository.save(transaction);
+        eventPublisher.publishEvent(new TransferCompletedEvent(List.of(transaction)));
+        log.info("Перевод для транзакции {} завершен успешно", transaction.getId());
+        return transaction.getId();
+    }
+
+    // Списание фиксируется вместе с записью саги, а зачисление на шарде получателя выполняет координатор после фиксации
+    private UUID transferAcrossShards(TransferRequest request, UUID transactionId) 
+    {
+        int toShard = shardRouter.shardOfAccountNumber(request.getToAccountNumber());
+        Long toAccountId = crossShardCoordinator.findAccountId(toShard, request.getToAccountNumber())
+                .orElseThrow(() -> new RuntimeException("Счет-получатель не найден"));
+        Account fromAccount = accountRepository.findByAccountNumber(request.getFromAccountNumber())
+                .orElseThrow(() -> new RuntimeException("Счет-источник не найден"));
+        acquireVelocity(fromAccount.getId(), fromAccount.getUserId(), request.getAmount());
+        debitOrThrow(fromAccount.getId(), request.getFromAccountNumber(), request.getAmount());
+
+        Transaction transaction = Transaction.builder()
+                .id(transactionId)
+                .fromAccountId(fromAccount.getId())
+                .toAccountId(toAccountId)
+                .amount(request.getAmount())
+                .status(TransactionStatus.PENDING)
+                // Строки перевода на обоих шардах находятся по (id, created_at), поэтому время не должно округляться базой
+                .createdAt(OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS))
+                .build();
+        transactionRepository.save(transaction);
+        crossShardCoordinator.begin(transaction, toShard);
+        log.info("Перевод {} на шард {} принят, зачисление выполнит координатор", transaction.getId(), toShard);
+        return transaction.getId();
+    }
+
+    // Лимит проверяется до блокировки строк, поэтому отклоненный перевод не держит блокировки
+    private void acquireVelocity(Long accountId, Long userId, Long amount) 
+    {
+        if (!velocityLimiter.tryAcquire(accountId, userId, amount, System.currentTimeMillis())) 
+        {
+            log.warn("Перевод со счета {} отклонен: превышен лимит переводов", accountId);
+            throw new TransferLimitExceededException("Превышен лимит переводов, повторите попытку позже");
+        }
+    }
+
+    private void debitOrThrow(Long accountId, String accountNumber, Long amount) 
+    {
+        boolean debited = stripedBalanceService.isStriped(accountId)
+                ? stripedBalanceService.debit(accountId, amount)
+                : accountRepository.debit(accountId, amount);
+        if (debited) 
+        {
+            return;
+        }
+        // Идентификатор мог устареть в кэше, если счет закрыли параллельно
+        if (accountRepository.findById(accountId).isEmpty()) 
+        {
+            lookupCache.evictAccount(accountId, accountNumber);
+            throw new RuntimeException("Счет-источник не найден");
+        }
+        throw new IllegalArgumentException("Недостаточно средств");
+    }
+
+    private void creditOrThrow(Long accountId, String accountNumber, Long amount) 
+    {
+        try 
+        {
+            if (stripedBalanceService.isStriped(accountId)) 
+            {
+                stripedBalanceService.credit(accountId, amount);
+            } 
+            else 
+            {
+                accountRepository.credit(accountId, amount);
+            }
+        } catch (AccountOperationException e) 
+        {
+            lookupCache.evictAccount(accountId, accountNumber);
+            throw e;
+        }
+    }
+
+    public Long getAccountOwnerId(String accountNumber) 
+    {
+        return ShardContext.call(shardRouter.shardOfAccountNumber(accountNumber), () -> lookupCache.findOwnerId(accountNumber))
+                .orElseThrow(() -> 
+                {
+                    log.error("Счет с номером {} не найден", accountNumber);
+                    return new AccountOperationException("Счет не найден");
+                });
+    }
+
+    public Long getAccountOwnerId(Long accountId) 
+    {
+        return ShardContext.call(shardRouter.shardOfAccountId(accountId), () -> lookupCache.findOwnerId(accountId))
+                .orElseThrow(() -> 
+                {
+                    log.error("Счет с id {} не найден", accountId);
+                    return new AccountOperationException("Счет не найден");
+                });
     }
     
     public Account getAccountById(Long accountId) 
     {
         log.info("Получение счета с ID: {}", accountId);
-        return accountRepository.findById(accountId)
+        return ShardContext.call(shardRouter.shardOfAccountId(accountId), () -> accountRepository.findById(accountId))
                 .orElseThrow(() -> 
                 {
                     log.error("Счет с id {} не найден", accountId);
@@ -129,7 +331,7 @@ public class AccountService
     public Account getAccountByNumber(String accountNumber) 
     {
         log.info("Получение счета с номером: {}", accountNumber);
-        return accountRepository.findByAccountNumber(accountNumber)
+        return ShardContext.call(shardRouter.shardOfAccountNumber(accountNumber), () -> accountRepository.findByAccountNumber(accountNumber))
                 .orElseThrow(() -> 
                 {
                     log.error("Счет с номером {} не найден", accountNumber);
@@ -140,6 +342,11 @@ public class AccountService
     @Transactional
     @LogExecutionTime
     public void closeAccount(Long accountId) 
+    {
+        ShardContext.run(shardRouter.shardOfAccountId(accountId), () -> closeAccountOnShard(accountId));
+    }
+
+    private void closeAccountOnShard(Long accountId) 
     {
         log.info("Закрытие счета с ID: {}", accountId);
         
@@ -150,19 +357,22 @@ public class AccountService
                     return new RuntimeException("Счет с id " + accountId + " не найден");
                 });
         
-        String deleteTransactionsSql = "DELETE FROM transactions WHERE from_account_id = ? OR to_account_id = ?";
-        int deletedTransactions = jdbcTemplate.update(deleteTransactionsSql, accountId, accountId);
-        if (deletedTransactions > 0) 
+        // Остаток для события читается под блокировкой строки до самого закрытия: перевод, зафиксированный после
+        // чтения без блокировки, не попал бы ни в событие, ни в закрывающую проводку
+        Long balance = accountRepository.lockBalancesByIds(List.of(accountId)).get(accountId);
+        if (balance == null) 
         {
-            log.info("Удалено {} транзакций, связанных с ID счета: {}", deletedTransactions, accountId);
+            throw new AccountOperationException("Не удалось закрыть аккаунт, так как он уже был закрыт.");
         }
-        
-        accountRepository.deleteById(accountId);
+        if (stripedBalanceService.isStriped(accountId)) 
+        {
+            balance += stripedBalanceService.forget(accountId);
+        }
+        // Закрытие только меняет статус счета; операции счета переносит в архив TransactionArchiver в фоне
+        Instant closedAt = Instant.now();
+        accountRepository.close(accountId, closedAt);
+        archivalRepository.request(accountId, closedAt);
+        eventPublisher.publishEvent(new AccountClosedEvent(accountId, account.getAccountNumber(), account.getUserId(), balance));
         log.info("Счет {} для user_id: {} закрыт успешно", account.getAccountNumber(), account.getUserId());
     }
-
-    private String generateUniqueAccountNumber() 
-    {
-        return "ACC" + UUID.randomUUID().toString().replaceAll("-", "").toUpperCase().substring(0, 17);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.dto.BatchTransferItemResult;
+import com.p2p.transfer_app.dto.BatchTransferMode;
+import com.p2p.transfer_app.dto.BatchTransferResponse;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
+import com.p2p.transfer_app.limit.VelocityLimiter;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.TransactionRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+@Service
+@Slf4j
+public class BatchTransferService 
+{
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final VelocityLimiter velocityLimiter;
+    private final int maxBatchSize;
+
+    public BatchTransferService(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                                ApplicationEventPublisher eventPublisher, VelocityLimiter velocityLimiter,
+                                @Value("${transfer.batch.max-size:1000}") int maxBatchSize) 
+    {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.eventPublisher = eventPublisher;
+        this.velocityLimiter = velocityLimiter;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Transactional
+    @LogExecutionTime
+    public BatchTransferResponse transferBatch(List<TransferRequest> transfers, BatchTransferMode mode, Long userId) 
+    {
+        if (transfers == null || transfers.isEmpty()) 
+        {
+            throw new IllegalArgumentException("Пакет переводов не может быть пустым");
+        }
+        if (transfers.size() > maxBatchSize) 
+        {
+            throw new IllegalArgumentException("Пакет переводов не может содержать больше " + maxBatchSize + " переводов");
+        }
+        log.info("Пакетный перевод начат: {} переводов, режим {}, user_id: {}", transfers.size(), mode, userId);
+
+        Set<String> accountNumbers = new LinkedHashSet<>();
+        for (TransferRequest request : transfers) 
+        {
+            accountNumbers.add(request.getFromAccountNumber());
+            accountNumbers.add(request.getToAccountNumber());
+        }
+
+        Map<String, Account> accounts = new HashMap<>();
+        for (Account account : accountRepository.findAllByAccountNumbers(accountNumbers)) 
+        {
+            accounts.put(account.getAccountNumber(), account);
+        }
+
+        // Строки блокируются в порядке возрастания id, как и при одиночном переводе, балансы читаются уже под блокировкой
+        Set<Long> accountIds = new TreeSet<>();
+        accounts.values().forEach(account -> accountIds.add(account.getId()));
+        Map<Long, Long> balances = new HashMap<>(accountRepository.lockBalancesByIds(accountIds));
+
+        OffsetDateTime now = OffsetDateTime.now();
+        long nowMillis = now.toInstant().toEpochMilli();
+        List<BatchTransferItemResult> results = new ArrayList<>(transfers.size());
+        List<Transaction> accepted = new ArrayList<>(transfers.size());
+        SortedMap<Long, Long> deltas = new TreeMap<>();
+        int failed = 0;
+
+        for (int i = 0; i < transfers.size(); i++) 
+        {
+            TransferRequest request = transfers.get(i);
+            Account fromAccount = accounts.get(request.getFromAccountNumber());
+            Account toAccount = accounts.get(request.getToAccountNumber());
+
+            String error = validate(request, fromAccount, toAccount, balances, userId);
+            if (error == null && !velocityLimiter.tryAcquire(fromAccount.getId(), userId, request.getAmount(), nowMillis)) 
+            {
+                error = "Превышен лимит переводов";
+            }
+            if (error != null) 
+            {
+                results.add(new BatchTransferItemResult(i, TransactionStatus.FAILED, null, error));
+                failed++;
+                continue;
+            }
+
+            balances.merge(fromAccount.getId(), -request.getAmount(), Long::sum);
+            balances.merge(toAccount.getId(), request.getAmount(), Long::sum);
+            deltas.merge(fromAccount.getId(), -request.getAmount(), Long::sum);
+            deltas.merge(toAccount.getId(), request.getAmount(), Long::sum);
+
+            Transaction transaction = Transaction.builder()
+                    .id(UUID.randomUUID())
+                    .fromAccountId(fromAccount.getId())
+                    .toAccountId(toAccount.getId())
+                    .amount(request.getAmount())
+                    .status(TransactionStatus.COMPLETED)
+                    .createdAt(now)
+                    .build();
+            accepted.add(transaction);
+            results.add(new BatchTransferItemResult(i, TransactionStatus.COMPLETED, transaction.getId(), null));
+        }
+
+        if (mode == BatchTransferMode.ALL_OR_NOTHING && failed > 0) 
+        {
+            // Транзакция фиксируется без переводов, поэтому резервы лимитов снимаются явно
+            for (Transaction transaction : accepted) 
+            {
+                velocityLimiter.release(transaction.getFromAccountId(), userId, transaction.getAmount(), nowMillis);
+            }
+            for (BatchTransferItemResult result : results) 
+            {
+                if (result.getStatus() == TransactionStatus.COMPLETED) 
+                {
+                    result.setStatus(TransactionStatus.FAILED);
+                    result.setTransactionId(null);
+                    result.setError("Перевод отменен: в пакете есть ошибочные переводы");
+                }
+            }
+            log.warn("Пакетный перевод отклонен: {} из {} переводов с ошибками", failed, transfers.size());
+            return new BatchTransferResponse(mode, 0, transfers.size(), results);
+        }
+
+        if (!accepted.isEmpty()) 
+        {
+            transactionRepository.saveAll(accepted);
+            accountRepository.applyBalanceDeltas(deltas);
+            eventPublisher.publishEvent(new TransferCompletedEvent(accepted));
+        }
+
+        log.info("Пакетный перевод завершен: выполнено {}, с ошибками {}", accepted.size(), failed);
+        return new BatchTransferResponse(mode, accepted.size(), failed, results);
+    }
+
+    private String validate(TransferRequest request, Account fromAccount, Account toAccount, Map<Long, Long> balances, Long userId) 
+    {
+        if (request.getAmount() == null || request.getAmount() <= 0) 
+        {
+            return "Сумма перевода должна быть положительной";
+        }
+        if (fromAccount == null) 
+        {
+            return "Счет-источник не найден";
+        }
+        if (toAccount == null) 
+        {
+            return "Счет-получатель не найден";
+        }
+        if (!fromAccount.getUserId().equals(userId)) 
+        {
+            return "Доступ запрещен";
+        }
+        if (fromAccount.getId().equals(toAccount.getId())) 
+        {
+            return "Нельзя переводить деньги на тот же счет";
+        }
+        // Счет мог закрыться между поиском и блокировкой: блокировка возвращает только открытые счета
+        Long balance = balances.get(fromAccount.getId());
+        if (balance == null) 
+        {
+            return "Счет-источник не найден";
+        }
+        if (!balances.containsKey(toAccount.getId())) 
+        {
+            return "Счет-получатель не найден";
+        }
+        if (balance < request.getAmount()) 
+        {
+            return "Недостаточно средств";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,151 @@
+package com.p2p.transfer_app.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.dto.TransferResult;
+import com.p2p.transfer_app.model.IdempotencyRecord;
+import com.p2p.transfer_app.repository.IdempotencyKeyRepository;
+import com.p2p.transfer_app.shard.OnEachShard;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+import java.util.UUID;
+
+@Service
+@Slf4j
+public class IdempotencyService 
+{
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final AccountService accountService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Cache<String, IdempotencyRecord> recentKeys;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository, AccountService accountService,
+                              TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                              @Value("${idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${idempotency.cache.maximum-size:100000}") long maximumSize) 
+    {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.accountService = accountService;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = ttl;
+        this.recentKeys = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, recentKeys, "idempotencyKeys");
+    }
+
+    @LogExecutionTime
+    public TransferResult transferOnce(TransferRequest request, Long userId, String idempotencyKey) 
+    {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) 
+        {
+            throw new IllegalArgumentException("Ключ идемпотентности должен содержать от 1 до " + MAX_KEY_LENGTH + " символов");
+        }
+        String requestHash = hash(request);
+
+        IdempotencyRecord existing = lookup(userId, idempotencyKey);
+        if (existing != null) 
+        {
+            return replay(existing, requestHash);
+        }
+
+        UUID transactionId = UUID.randomUUID();
+        IdempotencyRecord record = new IdempotencyRecord(userId, idempotencyKey, requestHash, transactionId, OffsetDateTime.now());
+        try 
+        {
+            transactionTemplate.executeWithoutResult(status -> 
+            {
+                // Ключ вставляется до перевода: параллельный повтор ждет на уникальном индексе и получает DuplicateKeyException
+                idempotencyKeyRepository.insert(record);
+                accountService.transferMoney(request, transactionId);
+            });
+        } catch (DuplicateKeyException e) 
+        {
+            IdempotencyRecord stored = idempotencyKeyRepository.find(userId, idempotencyKey).orElseThrow(() -> e);
+            recentKeys.put(cacheKey(userId, idempotencyKey), stored);
+            return replay(stored, requestHash);
+        }
+
+        recentKeys.put(cacheKey(userId, idempotencyKey), record);
+        return new TransferResult(transactionId, false);
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval:PT10M}")
+    @OnEachShard
+    public void purgeExpired() 
+    {
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(ttl));
+        if (deleted > 0) 
+        {
+            log.info("Удалено {} просроченных ключей идемпотентности", deleted);
+        }
+    }
+
+    private IdempotencyRecord lookup(Long userId, String idempotencyKey) 
+    {
+        String cacheKey = cacheKey(userId, idempotencyKey);
+        IdempotencyRecord record = recentKeys.getIfPresent(cacheKey);
+        if (record != null) 
+        {
+            return record;
+        }
+        record = idempotencyKeyRepository.find(userId, idempotencyKey).orElse(null);
+        if (record != null) 
+        {
+            recentKeys.put(cacheKey, record);
+        }
+        return record;
+    }
+
+    private TransferResult replay(IdempotencyRecord record, String requestHash) 
+    {
+        if (!record.getRequestHash().equals(requestHash)) 
+        {
+            log.warn("Ключ идемпотентности '{}' повторно использован с другими параметрами перевода", record.getIdempotencyKey());
+            throw new IllegalStateException("Ключ идемпотентности уже использован для другого перевода");
+        }
+        log.info("Повтор перевода по ключу идемпотентности '{}', транзакция {}", record.getIdempotencyKey(), record.getTransactionId());
+        return new TransferResult(record.getTransactionId(), true);
+    }
+
+    private static String cacheKey(Long userId, String idempotencyKey) 
+    {
+        return userId + ":" + idempotencyKey;
+    }
+
+    private static String hash(TransferRequest request) 
+    {
+        String payload = request.getFromAccountNumber() + "|" + request.getToAccountNumber() + "|" + request.getAmount();
+        try 
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) 
+        {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
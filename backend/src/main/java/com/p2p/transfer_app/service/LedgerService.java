@@ -0,0 +1,125 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.event.AccountClosedEvent;
+import com.p2p.transfer_app.event.AccountOpenedEvent;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
+import com.p2p.transfer_app.model.LedgerEntry;
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.model.enums.LedgerEntryType;
+import com.p2p.transfer_app.repository.LedgerRepository;
+import com.p2p.transfer_app.shard.OnEachShard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Журнал проводок: каждый перевод записывает дебетовую и кредитовую строку в той же транзакции,
+// а accounts.balance остается поддерживаемой проекцией журнала
+@Service
+@Slf4j
+public class LedgerService 
+{
+    private final LedgerRepository ledgerRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int minEntries;
+
+    public LedgerService(LedgerRepository ledgerRepository, TransactionTemplate transactionTemplate,
+                         @Value("${ledger.snapshot.min-entries:100}") int minEntries) 
+    {
+        this.ledgerRepository = ledgerRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.minEntries = minEntries;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @OnEachShard
+    public void bootstrapSnapshots() 
+    {
+        int created = ledgerRepository.bootstrapSnapshots();
+        if (created > 0) 
+        {
+            log.info("Созданы начальные снимки журнала для {} счетов", created);
+        }
+    }
+
+    @EventListener
+    public void onTransferCompleted(TransferCompletedEvent event) 
+    {
+        List<LedgerEntry> entries = new ArrayList<>(event.getTransactions().size() * 2);
+        for (Transaction transaction : event.getTransactions()) 
+        {
+            entries.add(entry(transaction.getFromAccountId(), transaction, -transaction.getAmount(), LedgerEntryType.DEBIT));
+            entries.add(entry(transaction.getToAccountId(), transaction, transaction.getAmount(), LedgerEntryType.CREDIT));
+        }
+        ledgerRepository.appendAll(entries);
+    }
+
+    @EventListener
+    public void onAccountOpened(AccountOpenedEvent event) 
+    {
+        ledgerRepository.appendAll(List.of(new LedgerEntry(null, event.getAccountId(), null,
+                event.getInitialBalance(), LedgerEntryType.OPENING, OffsetDateTime.now())));
+    }
+
+    // Счет удаляется вместе с остатком, поэтому журнал списывает остаток закрывающей проводкой
+    @EventListener
+    public void onAccountClosed(AccountClosedEvent event) 
+    {
+        if (event.getBalance() != 0) 
+        {
+            ledgerRepository.appendAll(List.of(new LedgerEntry(null, event.getAccountId(), null,
+                    -event.getBalance(), LedgerEntryType.CLOSING, OffsetDateTime.now())));
+        }
+    }
+
+    @LogExecutionTime
+    public long getDerivedBalance(Long accountId) 
+    {
+        return ledgerRepository.derivedBalance(accountId);
+    }
+
+    // Идентификаторы выдаются при вставке, а не при фиксации, поэтому общая граница по id может перепрыгнуть через
+    // проводку еще открытой транзакции. Снимок делается по одному счету под блокировкой его строки и полос
+    @Scheduled(fixedDelayString = "${ledger.snapshot.interval:PT1M}")
+    @OnEachShard
+    @LogExecutionTime
+    public void takeSnapshots() 
+    {
+        int snapshots = 0;
+        for (Long accountId : ledgerRepository.findSnapshotCandidates(minEntries)) 
+        {
+            Integer created = transactionTemplate.execute(status -> 
+            {
+                ledgerRepository.lockAccount(accountId);
+                return ledgerRepository.snapshot(accountId);
+            });
+            snapshots += created == null ? 0 : created;
+        }
+
+        int pruned = transactionTemplate.execute(status -> ledgerRepository.pruneSnapshots());
+        if (snapshots > 0) 
+        {
+            log.info("Сделано {} снимков журнала, удалено устаревших снимков: {}", snapshots, pruned);
+        }
+    }
+
+    private static LedgerEntry entry(Long accountId, Transaction transaction, long amount, LedgerEntryType type) 
+    {
+        return LedgerEntry.builder()
+                .accountId(accountId)
+                .transactionId(transaction.getId())
+                .amount(amount)
+                .entryType(type)
+                .createdAt(OffsetDateTime.now())
+                .build();
+    }
+}
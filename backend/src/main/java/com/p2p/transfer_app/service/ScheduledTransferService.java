@@ -0,0 +1,91 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.dto.ScheduledTransferRequest;
+import com.p2p.transfer_app.model.ScheduledTransfer;
+import com.p2p.transfer_app.model.enums.ScheduledTransferStatus;
+import com.p2p.transfer_app.repository.ScheduledTransferRepository;
+import com.p2p.transfer_app.scheduling.ScheduledTransferDispatcher;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+@Service
+@Slf4j
+public class ScheduledTransferService 
+{
+    private final ScheduledTransferRepository repository;
+    private final AccountService accountService;
+    private final ScheduledTransferDispatcher dispatcher;
+    private final Duration minRepeatInterval;
+
+    public ScheduledTransferService(ScheduledTransferRepository repository, AccountService accountService,
+                                    ScheduledTransferDispatcher dispatcher,
+                                    @Value("${scheduled.transfers.min-repeat-interval:PT1M}") Duration minRepeatInterval) 
+    {
+        this.repository = repository;
+        this.accountService = accountService;
+        this.dispatcher = dispatcher;
+        this.minRepeatInterval = minRepeatInterval;
+    }
+
+    @LogExecutionTime
+    public ScheduledTransfer schedule(Long userId, ScheduledTransferRequest request) 
+    {
+        if (request.getAmount() == null || request.getAmount() <= 0) 
+        {
+            throw new IllegalArgumentException("Сумма перевода должна быть положительной");
+        }
+        if (request.getFromAccountNumber() == null || request.getFromAccountNumber().equals(request.getToAccountNumber())) 
+        {
+            throw new IllegalArgumentException("Нельзя перевести деньги на тот же счет");
+        }
+        if (request.getExecuteAt() == null) 
+        {
+            throw new IllegalArgumentException("Не указано время перевода");
+        }
+        if (request.getRepeatIntervalSeconds() != null && request.getRepeatIntervalSeconds() < minRepeatInterval.getSeconds()) 
+        {
+            throw new IllegalArgumentException("Интервал повтора должен быть не меньше " + minRepeatInterval.getSeconds() + " секунд");
+        }
+        // Проверка, что счет получателя существует
+        accountService.getAccountOwnerId(request.getToAccountNumber());
+
+        ScheduledTransfer transfer = repository.save(ScheduledTransfer.builder()
+                .userId(userId)
+                .fromAccountNumber(request.getFromAccountNumber())
+                .toAccountNumber(request.getToAccountNumber())
+                .amount(request.getAmount())
+                .nextRunAt(request.getExecuteAt())
+                .repeatIntervalSeconds(request.getRepeatIntervalSeconds())
+                .status(ScheduledTransferStatus.ACTIVE)
+                .createdAt(OffsetDateTime.now(ZoneOffset.UTC))
+                .build());
+        log.info("Запланирован перевод {} со счета {} на {}", transfer.getId(), transfer.getFromAccountNumber(), transfer.getNextRunAt());
+
+        dispatcher.scheduleIfDue(transfer);
+        return transfer;
+    }
+
+    @LogExecutionTime
+    public List<ScheduledTransfer> getUserScheduledTransfers(Long userId) 
+    {
+        return repository.findAllByUserId(userId);
+    }
+
+    @LogExecutionTime
+    public void cancel(Long id, Long userId) 
+    {
+        if (!repository.cancel(id, userId)) 
+        {
+            throw new IllegalStateException("Запланированный перевод не найден или уже завершен");
+        }
+        log.info("Запланированный перевод {} отменен", id);
+    }
+}
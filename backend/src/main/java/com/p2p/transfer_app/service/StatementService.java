@@ -0,0 +1,77 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.dto.StatementFormat;
+import com.p2p.transfer_app.exception.AccountOperationException;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.TransactionRepository;
+import com.p2p.transfer_app.shard.ShardContext;
+import com.p2p.transfer_app.shard.ShardRouter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.OutputStream;
+import java.time.Instant;
+
+@Service
+@Slf4j
+public class StatementService 
+{
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final int fetchSize;
+
+    public StatementService(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                            PlatformTransactionManager transactionManager, ShardRouter shardRouter,
+                            @Value("${statement.fetch-size:1000}") int fetchSize) 
+    {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        // Остаток на начало периода и строки выписки читаются из одного снимка данных
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.fetchSize = fetchSize;
+    }
+
+    public void validatePeriod(Instant from, Instant to) 
+    {
+        if (!from.isBefore(to)) 
+        {
+            throw new IllegalArgumentException("Начало периода выписки должно быть раньше его окончания");
+        }
+    }
+
+    // Выписка пишется в потоке асинхронной обработки запроса, куда шард из ShardRoutingFilter не переносится,
+    // поэтому шард счета выбирается здесь
+    @LogExecutionTime
+    public long export(Long accountId, StatementFormat format, Instant from, Instant to, OutputStream out) 
+    {
+        validatePeriod(from, to);
+        Long rows = ShardContext.call(shardRouter.shardOfAccountId(accountId), () -> transactionTemplate.execute(status -> 
+        {
+            Account account = accountRepository.findById(accountId)
+                    .orElseThrow(() -> new AccountOperationException("Счет не найден"));
+            long openingBalance = account.getBalance() - transactionRepository.netChangeSince(accountId, from);
+
+            StatementWriter writer = new StatementWriter(out, format, accountId, openingBalance);
+            writer.writeHeader();
+            transactionRepository.streamStatement(accountId, from, to, fetchSize, writer);
+            writer.flush();
+
+            log.info("Выписка по счету {} за период {} - {}: {} операций, остаток на конец периода {}",
+                    accountId, from, to, writer.getRows(), writer.getBalance());
+            return writer.getRows();
+        }));
+        return rows == null ? 0L : rows;
+    }
+}
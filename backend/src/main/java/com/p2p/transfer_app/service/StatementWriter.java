@@ -0,0 +1,210 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.dto.StatementFormat;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+// Строки выписки пишутся в один переиспользуемый буфер байтов: все поля ASCII, поэтому кодировщик не нужен
+final class StatementWriter implements RowCallbackHandler 
+{
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+    private static final int MAX_ROW_LENGTH = 256;
+
+    private static final String CSV_HEADER = "transaction_id,created_at,counterparty_account_id,amount,balance\n";
+
+    private final OutputStream out;
+    private final StatementFormat format;
+    private final long accountId;
+    private final byte[] buffer = new byte[FLUSH_THRESHOLD + MAX_ROW_LENGTH];
+    private int position;
+    private long balance;
+    private long rows;
+
+    StatementWriter(OutputStream out, StatementFormat format, long accountId, long openingBalance) 
+    {
+        this.out = out;
+        this.format = format;
+        this.accountId = accountId;
+        this.balance = openingBalance;
+    }
+
+    long getRows() 
+    {
+        return rows;
+    }
+
+    long getBalance() 
+    {
+        return balance;
+    }
+
+    void writeHeader() 
+    {
+        if (format == StatementFormat.CSV) 
+        {
+            append(CSV_HEADER);
+        }
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException 
+    {
+        String transactionId = rs.getString(1);
+        long fromAccountId = rs.getLong(2);
+        long toAccountId = rs.getLong(3);
+        long amount = rs.getLong(4);
+        Timestamp createdAt = rs.getTimestamp(5);
+
+        boolean debit = fromAccountId == accountId;
+        long signedAmount = debit ? -amount : amount;
+        long counterparty = debit ? toAccountId : fromAccountId;
+        balance += signedAmount;
+        rows++;
+
+        if (format == StatementFormat.CSV) 
+        {
+            append(transactionId);
+            append(',');
+            appendTimestamp(createdAt.getTime());
+            append(',');
+            append(counterparty);
+            append(',');
+            append(signedAmount);
+            append(',');
+            append(balance);
+        }
+        else 
+        {
+            append("{\"transactionId\":\"");
+            append(transactionId);
+            append("\",\"createdAt\":\"");
+            appendTimestamp(createdAt.getTime());
+            append("\",\"counterpartyAccountId\":");
+            append(counterparty);
+            append(",\"amount\":");
+            append(signedAmount);
+            append(",\"balance\":");
+            append(balance);
+            append('}');
+        }
+        append('\n');
+
+        if (position >= FLUSH_THRESHOLD) 
+        {
+            flushBuffer();
+        }
+    }
+
+    void flush() 
+    {
+        flushBuffer();
+        try 
+        {
+            out.flush();
+        } catch (IOException e) 
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flushBuffer() 
+    {
+        try 
+        {
+            out.write(buffer, 0, position);
+            position = 0;
+        } catch (IOException e) 
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(char c) 
+    {
+        buffer[position++] = (byte) c;
+    }
+
+    private void append(String value) 
+    {
+        for (int i = 0; i < value.length(); i++) 
+        {
+            buffer[position++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void append(long value) 
+    {
+        if (value < 0) 
+        {
+            append('-');
+        }
+        else 
+        {
+            value = -value;
+        }
+        // Цифры собираются в отрицательном диапазоне, чтобы корректно вывести Long.MIN_VALUE
+        int start = position;
+        do 
+        {
+            buffer[position++] = (byte) ('0' - (int) (value % 10));
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = position - 1; i < j; i++, j--) 
+        {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+    }
+
+    private void appendPadded(long value, int width) 
+    {
+        for (long limit = 10; width > 1; width--, limit *= 10) 
+        {
+            if (value < limit) 
+            {
+                append('0');
+            }
+        }
+        append(value);
+    }
+
+    // ISO-8601 в UTC с миллисекундами, без промежуточных объектов java.time
+    private void appendTimestamp(long epochMillis) 
+    {
+        long epochSeconds = Math.floorDiv(epochMillis, 1000L);
+        long days = Math.floorDiv(epochSeconds, 86400L);
+        long secondOfDay = epochSeconds - days * 86400L;
+
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097L);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        appendPadded(year, 4);
+        append('-');
+        appendPadded(month, 2);
+        append('-');
+        appendPadded(day, 2);
+        append('T');
+        appendPadded(secondOfDay / 3600, 2);
+        append(':');
+        appendPadded(secondOfDay / 60 % 60, 2);
+        append(':');
+        appendPadded(secondOfDay % 60, 2);
+        append('.');
+        appendPadded(Math.floorMod(epochMillis, 1000L), 3);
+        append('Z');
+    }
+}
@@ -0,0 +1,161 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.repository.AccountBalanceSlotRepository;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.shard.OnEachShard;
+import com.p2p.transfer_app.shard.ShardContext;
+import com.p2p.transfer_app.shard.ShardRouter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Зачисления на горячие счета распределяются по полосам, чтобы не сериализоваться на блокировке строки accounts
+@Service
+@Slf4j
+public class StripedBalanceService 
+{
+    private final AccountRepository accountRepository;
+    private final AccountBalanceSlotRepository slotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final TransferMode transferMode;
+    private final int defaultSlots;
+    private final List<String> configuredAccountNumbers;
+
+    private final Map<Long, Integer> slotCounts = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    public StripedBalanceService(AccountRepository accountRepository, AccountBalanceSlotRepository slotRepository,
+                                 TransactionTemplate transactionTemplate, ShardRouter shardRouter,
+                                 @Value("${transfer.mode:LEGACY}") TransferMode transferMode,
+                                 @Value("${transfer.striped.slots:8}") int defaultSlots,
+                                 @Value("${transfer.striped.accounts:}") List<String> configuredAccountNumbers) 
+    {
+        this.accountRepository = accountRepository;
+        this.slotRepository = slotRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.shardRouter = shardRouter;
+        this.transferMode = transferMode;
+        this.defaultSlots = defaultSlots;
+        this.configuredAccountNumbers = configuredAccountNumbers;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @OnEachShard
+    public void loadStripedAccounts() 
+    {
+        for (Long accountId : slotRepository.findStripedAccountIds()) 
+        {
+            slotCounts.put(accountId, slotRepository.countSlots(accountId));
+        }
+        for (String accountNumber : configuredAccountNumbers) 
+        {
+            // Счет из настроек ищется только на своем шарде
+            if (shardRouter.shardOfAccountNumber(accountNumber) != ShardContext.currentOrDefault()) 
+            {
+                continue;
+            }
+            accountRepository.findByAccountNumber(accountNumber)
+                    .ifPresentOrElse(account -> designate(account.getId()),
+                            () -> log.warn("Счет {} для полосатого баланса не найден", accountNumber));
+        }
+        if (!slotCounts.isEmpty()) 
+        {
+            requireConditionalMode();
+            log.info("Полосатые балансы включены для {} счетов", slotCounts.size());
+        }
+    }
+
+    public void designate(Long accountId) 
+    {
+        designate(accountId, defaultSlots);
+    }
+
+    @Transactional
+    @LogExecutionTime
+    public void designate(Long accountId, int slots) 
+    {
+        requireConditionalMode();
+        slotRepository.createSlots(accountId, slots);
+        slotCounts.put(accountId, Math.max(slots, slotCounts.getOrDefault(accountId, 0)));
+        log.info("Счет {} переведен на полосатый баланс из {} полос", accountId, slots);
+    }
+
+    public boolean isStriped(Long accountId) 
+    {
+        return slotCounts.containsKey(accountId);
+    }
+
+    public void credit(Long accountId, Long amount) 
+    {
+        int slots = slotCounts.get(accountId);
+        slotRepository.credit(accountId, Math.floorMod(nextSlot.getAndIncrement(), slots), amount);
+    }
+
+    // Сначала списывает с основной строки; если ее не хватает, сворачивает полосы под блокировкой и пробует снова
+    public boolean debit(Long accountId, Long amount) 
+    {
+        if (accountRepository.debit(accountId, amount)) 
+        {
+            return true;
+        }
+        fold(accountId);
+        return accountRepository.debit(accountId, amount);
+    }
+
+    // Остаток полос сворачивается в основную строку до их удаления; возвращает свернутую сумму
+    public long forget(Long accountId) 
+    {
+        long folded = fold(accountId);
+        slotRepository.deleteByAccountId(accountId);
+        slotCounts.remove(accountId);
+        return folded;
+    }
+
+    @Scheduled(fixedDelayString = "${transfer.striped.consolidate-interval:PT5S}")
+    @OnEachShard
+    public void consolidate() 
+    {
+        for (Long accountId : slotCounts.keySet()) 
+        {
+            transactionTemplate.executeWithoutResult(status -> fold(accountId));
+        }
+    }
+
+    // Порядок блокировок: основная строка, затем полосы того же счета - как и при переводе
+    private long fold(Long accountId) 
+    {
+        if (accountRepository.lockBalancesByIds(List.of(accountId)).isEmpty()) 
+        {
+            return 0;
+        }
+        long pending = slotRepository.lockAndSum(accountId);
+        if (pending != 0) 
+        {
+            slotRepository.drain(accountId);
+            accountRepository.credit(accountId, pending);
+            log.debug("Полосы счета {} свернуты на сумму {}", accountId, pending);
+        }
+        return pending;
+    }
+
+    private void requireConditionalMode() 
+    {
+        if (transferMode != TransferMode.CONDITIONAL) 
+        {
+            throw new IllegalStateException("Полосатые балансы требуют transfer.mode=CONDITIONAL");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.dto.TransactionCursor;
+import com.p2p.transfer_app.dto.TransactionPage;
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.repository.TransactionRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@Slf4j
+public class TransactionHistoryService 
+{
+    private final TransactionRepository transactionRepository;
+    private final int maxPageSize;
+
+    public TransactionHistoryService(TransactionRepository transactionRepository,
+                                     @Value("${transactions.page.max-size:500}") int maxPageSize) 
+    {
+        this.transactionRepository = transactionRepository;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @LogExecutionTime
+    public TransactionPage getAccountTransactions(Long accountId, String cursor, int limit) 
+    {
+        if (limit <= 0 || limit > maxPageSize) 
+        {
+            throw new IllegalArgumentException("Размер страницы должен быть от 1 до " + maxPageSize);
+        }
+        TransactionCursor after = cursor == null || cursor.isBlank() ? null : TransactionCursor.decode(cursor);
+        log.debug("Получение истории счета {} после курсора {}", accountId, after);
+
+        // Запрашивается на одну строку больше, чтобы понять, есть ли следующая страница
+        List<Transaction> transactions = new ArrayList<>(limit + 1);
+        transactionRepository.streamByAccountId(accountId, after, limit + 1, transactions::add);
+
+        String nextCursor = null;
+        if (transactions.size() > limit) 
+        {
+            transactions.remove(limit);
+            Transaction last = transactions.get(limit - 1);
+            nextCursor = new TransactionCursor(last.getCreatedAt().toInstant(), last.getId()).encode();
+        }
+        return new TransactionPage(transactions, nextCursor);
+    }
+}
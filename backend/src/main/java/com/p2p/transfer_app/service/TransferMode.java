@@ -0,0 +1,7 @@
+package com.p2p.transfer_app.service;
+
+public enum TransferMode 
+{
+    LEGACY,
+    CONDITIONAL
+}
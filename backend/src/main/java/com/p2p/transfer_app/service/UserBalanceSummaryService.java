@@ -0,0 +1,250 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.cache.AccountLookupCache;
+import com.p2p.transfer_app.event.AccountClosedEvent;
+import com.p2p.transfer_app.event.AccountOpenedEvent;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.model.UserBalanceSummary;
+import com.p2p.transfer_app.repository.UserBalanceSummaryRepository;
+import com.p2p.transfer_app.shard.OnEachShard;
+import com.p2p.transfer_app.shard.ShardContext;
+import com.p2p.transfer_app.shard.ShardRouter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Проекция user_balance_summary: итог, число счетов и время последней операции пользователя. Переводы, открытие
+// и закрытие счета меняют ее в своей транзакции, поэтому чтение итога - одна строка по первичному ключу.
+// Переводы по полосатым счетам пишут в полосы проекции (user_balance_summary_slots), как зачисления в
+// account_balance_slots: иначе параллельные зачисления снова сериализовались бы на строке пользователя
+@Service
+@Slf4j
+public class UserBalanceSummaryService 
+{
+    private final UserBalanceSummaryRepository summaryRepository;
+    private final AccountLookupCache lookupCache;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final StripedBalanceService stripedBalanceService;
+    private final int verifyBatchSize;
+    private final int slots;
+    private final Counter drifted;
+
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    public UserBalanceSummaryService(UserBalanceSummaryRepository summaryRepository, AccountLookupCache lookupCache, ShardRouter shardRouter,
+                                     TransactionTemplate transactionTemplate, StripedBalanceService stripedBalanceService, MeterRegistry meterRegistry,
+                                     @Value("${user.summary.verify-batch-size:1000}") int verifyBatchSize,
+                                     @Value("${user.summary.slots:8}") int slots) 
+    {
+        this.summaryRepository = summaryRepository;
+        this.lookupCache = lookupCache;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = transactionTemplate;
+        this.stripedBalanceService = stripedBalanceService;
+        this.verifyBatchSize = verifyBatchSize;
+        this.slots = slots;
+        this.drifted = Counter.builder("user.summary.drift")
+                .description("Строки проекции итогов, расхождение которых с accounts исправила проверка")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @OnEachShard
+    public void bootstrap() 
+    {
+        int created = summaryRepository.bootstrap();
+        if (created > 0) 
+        {
+            log.info("Созданы итоги балансов для {} пользователей", created);
+        }
+    }
+
+    @Transactional
+    @LogExecutionTime
+    public UserBalanceSummary getSummary(Long userId) 
+    {
+        return ShardContext.call(shardRouter.shardOfUser(userId), () -> summaryRepository.findByUserId(userId)
+                .orElseGet(() -> rebuild(userId)
+                        .orElseThrow(() -> new RuntimeException("Пользователь не найден"))));
+    }
+
+    @EventListener
+    public void onTransferCompleted(TransferCompletedEvent event) 
+    {
+        Map<Long, UserBalanceSummary> deltas = new TreeMap<>();
+        Set<Long> striped = new HashSet<>();
+        for (Transaction transaction : event.getTransactions()) 
+        {
+            addDelta(deltas, striped, transaction.getFromAccountId(), -transaction.getAmount(), transaction.getCreatedAt());
+            addDelta(deltas, striped, transaction.getToAccountId(), transaction.getAmount(), transaction.getCreatedAt());
+        }
+        apply(deltas, striped, false);
+    }
+
+    @EventListener
+    public void onAccountOpened(AccountOpenedEvent event) 
+    {
+        apply(Map.of(event.getUserId(), delta(event.getUserId(), event.getInitialBalance(), 1, OffsetDateTime.now())), Set.of(), true);
+    }
+
+    @EventListener
+    public void onAccountClosed(AccountClosedEvent event) 
+    {
+        apply(Map.of(event.getUserId(), delta(event.getUserId(), -event.getBalance(), -1, OffsetDateTime.now())), Set.of(), true);
+    }
+
+    // Половина перевода между шардами: списание, зачисление или возврат, выполненные на шарде счета
+    public void onTransferLeg(Long accountId, long amount, OffsetDateTime at) 
+    {
+        Map<Long, UserBalanceSummary> deltas = new TreeMap<>();
+        Set<Long> striped = new HashSet<>();
+        addDelta(deltas, striped, accountId, amount, at);
+        apply(deltas, striped, false);
+    }
+
+    // Проверяет проекцию по accounts порциями пользователей и пересчитывает расходящиеся строки под блокировкой счетов
+    @Scheduled(fixedDelayString = "${user.summary.verify-interval:PT10M}", initialDelayString = "${user.summary.verify-interval:PT10M}")
+    @OnEachShard
+    @LogExecutionTime
+    public void verify() 
+    {
+        long after = 0;
+        int repaired = 0;
+        List<Long> userIds;
+        while (!(userIds = summaryRepository.findUserIdsAfter(after, verifyBatchSize)).isEmpty()) 
+        {
+            for (Long userId : summaryRepository.findDriftedUserIds(userIds.get(0), userIds.get(userIds.size() - 1))) 
+            {
+                Boolean changed = transactionTemplate.execute(status -> repair(userId));
+                if (Boolean.TRUE.equals(changed)) 
+                {
+                    repaired++;
+                }
+            }
+            after = userIds.get(userIds.size() - 1);
+        }
+        if (repaired > 0) 
+        {
+            drifted.increment(repaired);
+            log.warn("Итоги балансов расходились с accounts у {} пользователей и пересчитаны", repaired);
+        }
+    }
+
+    // Пересчет под блокировкой счетов: строка, которая разошлась только из-за переводов, зафиксированных между проверкой
+    // и блокировкой, уже совпадает и не считается расхождением. Новый пользователь без счетов тоже не расхождение
+    private boolean repair(Long userId) 
+    {
+        if (!summaryRepository.lockUserAccounts(userId)) 
+        {
+            return false;
+        }
+        Optional<UserBalanceSummary> stored = summaryRepository.findByUserId(userId);
+        UserBalanceSummary actual = summarize(userId, stored);
+        if (stored.isPresent() && stored.get().getTotalBalance().equals(actual.getTotalBalance())
+                && stored.get().getAccountCount().equals(actual.getAccountCount())) 
+        {
+            return false;
+        }
+        summaryRepository.save(actual);
+        if (stored.isEmpty() && actual.getAccountCount() == 0) 
+        {
+            return false;
+        }
+        log.warn("Итог пользователя {} расходился с accounts: {} -> {}", userId, stored.orElse(null), actual);
+        return true;
+    }
+
+    private Optional<UserBalanceSummary> rebuild(Long userId) 
+    {
+        if (!summaryRepository.lockUserAccounts(userId)) 
+        {
+            return Optional.empty();
+        }
+        UserBalanceSummary actual = summarize(userId, summaryRepository.findByUserId(userId));
+        summaryRepository.save(actual);
+        return Optional.of(actual);
+    }
+
+    // Время последней операции сохраняется, если строка уже была
+    private UserBalanceSummary summarize(Long userId, Optional<UserBalanceSummary> stored) 
+    {
+        UserBalanceSummary actual = summaryRepository.summarizeAccounts(userId);
+        stored.map(UserBalanceSummary::getLastActivityAt).ifPresent(actual::setLastActivityAt);
+        return actual;
+    }
+
+    // Переводы пропускают пользователей без строки: ее создаст пересчет при первом чтении или проверке. Открытие и закрытие
+    // счета создают строку сразу - они не держат блокировок других счетов пользователя.
+    // Сначала меняются строки, затем полосы: у всех транзакций один порядок блокировок
+    private void apply(Map<Long, UserBalanceSummary> deltas, Set<Long> striped, boolean createMissing) 
+    {
+        List<UserBalanceSummary> rowDeltas = new ArrayList<>(deltas.size());
+        List<UserBalanceSummary> slotDeltas = new ArrayList<>();
+        for (UserBalanceSummary delta : deltas.values()) 
+        {
+            (striped.contains(delta.getUserId()) ? slotDeltas : rowDeltas).add(delta);
+        }
+        List<Long> missing = new ArrayList<>(summaryRepository.applyDeltas(rowDeltas));
+        if (!slotDeltas.isEmpty()) 
+        {
+            missing.addAll(summaryRepository.applySlotDeltas(slotDeltas, Math.floorMod(nextSlot.getAndIncrement(), slots)));
+        }
+        for (Long userId : missing) 
+        {
+            if (createMissing) 
+            {
+                rebuild(userId);
+            }
+            else 
+            {
+                log.debug("Итог пользователя {} еще не создан, изменение будет учтено при пересчете", userId);
+            }
+        }
+    }
+
+    // Пользователь попадает в striped, если в переводе участвует его полосатый счет
+    private void addDelta(Map<Long, UserBalanceSummary> deltas, Set<Long> striped, Long accountId, long amount, OffsetDateTime at) 
+    {
+        Optional<Long> ownerId = lookupCache.findOwnerId(accountId);
+        if (ownerId.isEmpty()) 
+        {
+            return;
+        }
+        if (stripedBalanceService.isStriped(accountId)) 
+        {
+            striped.add(ownerId.get());
+        }
+        UserBalanceSummary delta = deltas.computeIfAbsent(ownerId.get(), userId -> delta(userId, 0, 0, at));
+        delta.setTotalBalance(delta.getTotalBalance() + amount);
+        if (at.isAfter(delta.getLastActivityAt())) 
+        {
+            delta.setLastActivityAt(at);
+        }
+    }
+
+    private static UserBalanceSummary delta(Long userId, long amount, int accounts, OffsetDateTime at) 
+    {
+        return new UserBalanceSummary(userId, amount, accounts, at);
+    }
+}
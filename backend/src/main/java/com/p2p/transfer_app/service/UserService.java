@@ -1,12 +1,19 @@
 package com.p2p.transfer_app.service;
 
+import com.p2p.transfer_app.cache.AccountLookupCache;
+import com.p2p.transfer_app.event.UserRegisteredEvent;
 import com.p2p.transfer_app.exception.AuthenticationException;
 import com.p2p.transfer_app.model.User;
 import com.p2p.transfer_app.repository.UserRepository;
+import com.p2p.transfer_app.security.PasswordHasher;
 import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.shard.ShardContext;
+import com.p2p.transfer_app.shard.ShardDirectory;
+import com.p2p.transfer_app.shard.ShardRouter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
-import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -15,10 +22,21 @@ public class UserService
 {
 
     private final UserRepository userRepository;
+    private final AccountLookupCache lookupCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PasswordHasher passwordHasher;
+    private final ShardRouter shardRouter;
+    private final ShardDirectory shardDirectory;
 
-    public UserService(UserRepository userRepository) 
+    public UserService(UserRepository userRepository, AccountLookupCache lookupCache, ApplicationEventPublisher eventPublisher,
+                       PasswordHasher passwordHasher, ShardRouter shardRouter, ShardDirectory shardDirectory) 
     {
         this.userRepository = userRepository;
+        this.lookupCache = lookupCache;
+        this.eventPublisher = eventPublisher;
+        this.passwordHasher = passwordHasher;
+        this.shardRouter = shardRouter;
+        this.shardDirectory = shardDirectory;
     }
 
     @LogExecutionTime
@@ -32,15 +50,24 @@ public class UserService
             throw new IllegalArgumentException("Имя пользователя и пароль не могут быть пустыми");
         }
 
-        if (userRepository.findByUsername(username).isPresent()) 
+        if (findByUsername(username).isPresent()) 
         {
             log.warn("Регистрация не удалась: username '{}' уже существует", username);
             throw new IllegalStateException("Пользователь с именем '" + username + "' уже существует");
         }
 
-        String passwordHash = password;
+        String passwordHash = PasswordHasher.await(passwordHasher.hash(password));
         User newUser = new User(null, username, passwordHash);
-        userRepository.save(newUser);
+        if (shardRouter.isSharded()) 
+        {
+            newUser.setId(registerInDirectory(username));
+            ShardContext.run(shardRouter.shardOfUser(newUser.getId()), () -> userRepository.save(newUser));
+        }
+        else 
+        {
+            userRepository.save(newUser);
+        }
+        eventPublisher.publishEvent(new UserRegisteredEvent(newUser.getId(), username));
 
         log.info("Пользователь '{}' зарегистрирован успешно", username);
         return newUser;
@@ -57,8 +84,10 @@ public class UserService
             throw new IllegalArgumentException("Имя пользователя и пароль не могут быть пустыми");
         }
 
-        Optional<User> userOpt = userRepository.findByUsername(username);
+        Optional<User> userOpt = findByUsername(username);
         
+        boolean matches = PasswordHasher.await(passwordHasher.matches(password, userOpt.map(User::getPasswordHash).orElse(null)));
+
         if (userOpt.isEmpty()) 
         {
             log.warn("Аутентификация не удалась: пользователь '{}' не найден", username);
@@ -67,11 +96,19 @@ public class UserService
         
         User user = userOpt.get();
         
-        if (!Objects.equals(password, user.getPasswordHash())) 
+        if (!matches) 
         {
             log.warn("Аутентификация не удалась: неверный пароль для пользователя '{}'", username);
             throw new AuthenticationException("Неверное имя пользователя или пароль.");
         }
+
+        if (passwordHasher.needsRehash(user.getPasswordHash())) 
+        {
+            String passwordHash = PasswordHasher.await(passwordHasher.hash(password));
+            ShardContext.run(shardRouter.shardOfUser(user.getId()), () -> userRepository.updatePasswordHash(user.getId(), passwordHash));
+            user.setPasswordHash(passwordHash);
+            log.info("Пароль пользователя '{}' перехэширован со стоимостью {}", username, passwordHasher.getStrength());
+        }
         
         log.info("Пользователь '{}' аутентифицирован успешно", username);
         return user;
@@ -79,11 +116,44 @@ public class UserService
     
     public User getUserById(Long userId) 
     {
-        return userRepository.findById(userId)
+        return ShardContext.call(shardRouter.shardOfUser(userId), () -> userRepository.findById(userId))
                 .orElseThrow(() -> 
                 {
                     log.error("Пользователь с ID {} не найден", userId);
                     return new RuntimeException("Пользователь не найден");
                 });
     }
+
+    public void ensureUserExists(Long userId) 
+    {
+        if (!ShardContext.call(shardRouter.shardOfUser(userId), () -> lookupCache.userExists(userId))) 
+        {
+            log.error("Пользователь с ID {} не найден", userId);
+            throw new RuntimeException("Пользователь не найден");
+        }
+    }
+
+    // Без шардирования имя ищется прямо в users; с шардированием - в каталоге на шарде 0, а строка читается с шарда пользователя
+    private Optional<User> findByUsername(String username) 
+    {
+        if (!shardRouter.isSharded()) 
+        {
+            return userRepository.findByUsername(username);
+        }
+        return shardDirectory.findUserId(username)
+                .flatMap(userId -> ShardContext.call(shardRouter.shardOfUser(userId), () -> userRepository.findById(userId)));
+    }
+
+    // Уникальность имени обеспечивает каталог: из двух одновременных регистраций одного имени вторая получит ошибку
+    private long registerInDirectory(String username) 
+    {
+        try 
+        {
+            return shardDirectory.registerUser(username);
+        } catch (DuplicateKeyException e) 
+        {
+            log.warn("Регистрация не удалась: username '{}' уже существует", username);
+            throw new IllegalStateException("Пользователь с именем '" + username + "' уже существует");
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package com.p2p.transfer_app.shard;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+// Кольцо согласованного хэширования: каждый шард представлен virtualNodes точками на кольце, ключ принадлежит
+// ближайшей точке по часовой стрелке. При добавлении шарда на него переезжает около 1/N ключей, остальные остаются на месте
+public final class ConsistentHashRing 
+{
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final int shardCount;
+
+    public ConsistentHashRing(int shardCount, int virtualNodes) 
+    {
+        if (shardCount < 1 || virtualNodes < 1) 
+        {
+            throw new IllegalArgumentException("Некорректные параметры кольца шардов");
+        }
+        this.shardCount = shardCount;
+        for (int shard = 0; shard < shardCount; shard++) 
+        {
+            for (int node = 0; node < virtualNodes; node++) 
+            {
+                ring.put(hash(((long) shard << 32) | node), shard);
+            }
+        }
+    }
+
+    public int shardFor(long key) 
+    {
+        if (shardCount == 1) 
+        {
+            return 0;
+        }
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public int getShardCount() 
+    {
+        return shardCount;
+    }
+
+    // Финализатор MurmurHash3: последовательные идентификаторы равномерно разлетаются по кольцу
+    static long hash(long value) 
+    {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,261 @@
+package com.p2p.transfer_app.shard;
+
+import com.p2p.transfer_app.aop.LogExecutionTime;
+import com.p2p.transfer_app.exception.AccountOperationException;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.CrossShardTransfer;
+import com.p2p.transfer_app.model.LedgerEntry;
+import com.p2p.transfer_app.model.OutboxEvent;
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.model.enums.CrossShardTransferStatus;
+import com.p2p.transfer_app.model.enums.LedgerEntryType;
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.CrossShardTransferRepository;
+import com.p2p.transfer_app.repository.LedgerRepository;
+import com.p2p.transfer_app.repository.OutboxRepository;
+import com.p2p.transfer_app.repository.TransactionRepository;
+import com.p2p.transfer_app.service.UserBalanceSummaryService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+// Перевод между шардами - сага из двух локальных транзакций вместо распределенной фиксации.
+// Шаг 1 (шард источника, транзакция перевода): списание, строка transactions в статусе PENDING и запись саги.
+// Шаг 2 (шард получателя): зачисление, строка transactions с тем же id и отметка в cross_shard_credits; повтор шага
+// распознается по отметке - строку перевода может унести архив или отсоединение партиции.
+// Шаг 3 (шард источника): сага и перевод переходят в COMPLETED, а если счет получателя закрыт - деньги возвращаются
+// источнику и перевод получает статус FAILED. Шаги 2 и 3 выполняются сразу после фиксации шага 1,
+// а незавершенные из-за сбоя саги доводит до конца фоновый повтор
+@Component
+@Slf4j
+public class CrossShardTransferCoordinator 
+{
+    private final ShardRouter shardRouter;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final CrossShardTransferRepository crossShardTransferRepository;
+    private final LedgerRepository ledgerRepository;
+    private final OutboxRepository outboxRepository;
+    private final UserBalanceSummaryService summaryService;
+    private final TransactionTemplate requiresNew;
+    private final Duration retryAfter;
+    private final int retryBatchSize;
+    private final Counter completed;
+    private final Counter compensated;
+
+    public CrossShardTransferCoordinator(ShardRouter shardRouter, AccountRepository accountRepository, TransactionRepository transactionRepository,
+                                         CrossShardTransferRepository crossShardTransferRepository, LedgerRepository ledgerRepository,
+                                         OutboxRepository outboxRepository, UserBalanceSummaryService summaryService,
+                                         PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                         @Value("${sharding.saga.retry-after:PT30S}") Duration retryAfter,
+                                         @Value("${sharding.saga.retry-batch-size:100}") int retryBatchSize) 
+    {
+        this.shardRouter = shardRouter;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.crossShardTransferRepository = crossShardTransferRepository;
+        this.ledgerRepository = ledgerRepository;
+        this.outboxRepository = outboxRepository;
+        this.summaryService = summaryService;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.retryAfter = retryAfter;
+        this.retryBatchSize = retryBatchSize;
+        this.completed = outcomeCounter(meterRegistry, "completed");
+        this.compensated = outcomeCounter(meterRegistry, "compensated");
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) 
+    {
+        return Counter.builder("sharding.cross_shard.transfers")
+                .description("Завершенные переводы между шардами")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    public Optional<Long> findAccountId(int shard, String accountNumber) 
+    {
+        return ShardContext.call(shard, () -> requiresNew.execute(status ->
+                accountRepository.findByAccountNumber(accountNumber).map(Account::getId)));
+    }
+
+    // Вызывается в транзакции перевода на шарде источника после списания и сохранения строки перевода
+    @LogExecutionTime
+    public void begin(Transaction transaction, int toShard) 
+    {
+        CrossShardTransfer transfer = CrossShardTransfer.builder()
+                .id(transaction.getId())
+                .fromAccountId(transaction.getFromAccountId())
+                .toAccountId(transaction.getToAccountId())
+                .toShard(toShard)
+                .amount(transaction.getAmount())
+                .status(CrossShardTransferStatus.PENDING)
+                .createdAt(transaction.getCreatedAt().toInstant())
+                .build();
+        crossShardTransferRepository.save(transfer);
+        ledgerRepository.appendAll(List.of(ledgerEntry(transfer.getFromAccountId(), transfer, -transfer.getAmount(), LedgerEntryType.DEBIT)));
+        summaryService.onTransferLeg(transfer.getFromAccountId(), -transfer.getAmount(), transaction.getCreatedAt());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) 
+        {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() 
+            {
+                @Override
+                public void afterCommit() 
+                {
+                    completeQuietly(transfer);
+                }
+            });
+        }
+    }
+
+    private void completeQuietly(CrossShardTransfer transfer) 
+    {
+        try 
+        {
+            complete(transfer);
+        } catch (RuntimeException e) 
+        {
+            log.warn("Перевод {} между шардами будет завершен фоновым повтором: {}", transfer.getId(), e.getMessage());
+        }
+    }
+
+    // Возвращает PENDING, если шард получателя недоступен (сага дождется следующего повтора), и null, если сагу уже завершил параллельный вызов
+    @LogExecutionTime
+    public CrossShardTransferStatus complete(CrossShardTransfer transfer) 
+    {
+        boolean credited;
+        String error = null;
+        try 
+        {
+            ShardContext.run(transfer.getToShard(), () -> requiresNew.executeWithoutResult(status -> credit(transfer)));
+            credited = true;
+        } catch (AccountOperationException e) 
+        {
+            credited = false;
+            error = e.getMessage();
+        } catch (RuntimeException e) 
+        {
+            log.warn("Зачисление перевода {} на шарде {} не выполнено: {}", transfer.getId(), transfer.getToShard(), e.getMessage());
+            return CrossShardTransferStatus.PENDING;
+        }
+
+        boolean creditApplied = credited;
+        String compensationReason = error;
+        int fromShard = shardRouter.shardOfAccountId(transfer.getFromAccountId());
+        try 
+        {
+            return ShardContext.call(fromShard, () -> requiresNew.execute(status -> settle(transfer, creditApplied, compensationReason)));
+        } catch (AccountOperationException e) 
+        {
+            // Возврат не прошел: шаг откатился, сага остается в PENDING, причина сохраняется для ручного разбора
+            ShardContext.run(fromShard, () -> requiresNew.executeWithoutResult(status ->
+                    crossShardTransferRepository.recordError(transfer.getId(), e.getMessage(), Instant.now())));
+            log.error("Перевод {} между шардами не удалось вернуть на счет {}: {}", transfer.getId(), transfer.getFromAccountId(), e.getMessage());
+            return CrossShardTransferStatus.PENDING;
+        }
+    }
+
+    // Отметка вставляется раньше зачисления: повтор, в том числе параллельный, упрется в первичный ключ и не зачислит сумму второй раз
+    private void credit(CrossShardTransfer transfer) 
+    {
+        try 
+        {
+            crossShardTransferRepository.saveCredit(transfer, Instant.now());
+        } catch (DuplicateKeyException e) 
+        {
+            return;
+        }
+        transactionRepository.save(Transaction.builder()
+                .id(transfer.getId())
+                .fromAccountId(transfer.getFromAccountId())
+                .toAccountId(transfer.getToAccountId())
+                .amount(transfer.getAmount())
+                .status(TransactionStatus.COMPLETED)
+                .createdAt(OffsetDateTime.ofInstant(transfer.getCreatedAt(), ZoneOffset.UTC))
+                .build());
+        accountRepository.credit(transfer.getToAccountId(), transfer.getAmount());
+        ledgerRepository.appendAll(List.of(ledgerEntry(transfer.getToAccountId(), transfer, transfer.getAmount(), LedgerEntryType.CREDIT)));
+        summaryService.onTransferLeg(transfer.getToAccountId(), transfer.getAmount(), OffsetDateTime.ofInstant(transfer.getCreatedAt(), ZoneOffset.UTC));
+    }
+
+    private CrossShardTransferStatus settle(CrossShardTransfer transfer, boolean credited, String error) 
+    {
+        Optional<CrossShardTransfer> locked = crossShardTransferRepository.lockPending(transfer.getId());
+        if (locked.isEmpty()) 
+        {
+            return null;
+        }
+        Instant now = Instant.now();
+        if (credited) 
+        {
+            transactionRepository.updateStatus(transfer.getId(), transfer.getCreatedAt(), TransactionStatus.COMPLETED);
+            crossShardTransferRepository.updateStatus(transfer.getId(), CrossShardTransferStatus.COMPLETED, null, now);
+            outboxRepository.appendAll(List.of(OutboxEvent.builder()
+                    .transactionId(transfer.getId())
+                    .fromAccountId(transfer.getFromAccountId())
+                    .toAccountId(transfer.getToAccountId())
+                    .amount(transfer.getAmount())
+                    .createdAt(OffsetDateTime.ofInstant(transfer.getCreatedAt(), ZoneOffset.UTC))
+                    .build()));
+            completed.increment();
+            log.info("Перевод {} между шардами завершен", transfer.getId());
+            return CrossShardTransferStatus.COMPLETED;
+        }
+
+        // Если счет-источник тоже закрыли, credit бросит исключение до смены статусов: шаг откатится, и сага останется в PENDING
+        accountRepository.credit(transfer.getFromAccountId(), transfer.getAmount());
+        ledgerRepository.appendAll(List.of(ledgerEntry(transfer.getFromAccountId(), transfer, transfer.getAmount(), LedgerEntryType.CREDIT)));
+        summaryService.onTransferLeg(transfer.getFromAccountId(), transfer.getAmount(), OffsetDateTime.ofInstant(now, ZoneOffset.UTC));
+        transactionRepository.updateStatus(transfer.getId(), transfer.getCreatedAt(), TransactionStatus.FAILED);
+        crossShardTransferRepository.updateStatus(transfer.getId(), CrossShardTransferStatus.COMPENSATED, error, now);
+        compensated.increment();
+        log.warn("Перевод {} между шардами отменен, сумма возвращена на счет {}: {}", transfer.getId(), transfer.getFromAccountId(), error);
+        return CrossShardTransferStatus.COMPENSATED;
+    }
+
+    @Scheduled(fixedDelayString = "${sharding.saga.retry-interval:PT30S}")
+    @OnEachShard
+    @LogExecutionTime
+    public void retryPending() 
+    {
+        if (!shardRouter.isSharded()) 
+        {
+            return;
+        }
+        List<CrossShardTransfer> stale = crossShardTransferRepository.findStalePending(Instant.now().minus(retryAfter), retryBatchSize);
+        for (CrossShardTransfer transfer : stale) 
+        {
+            completeQuietly(transfer);
+        }
+    }
+
+    private static LedgerEntry ledgerEntry(Long accountId, CrossShardTransfer transfer, long amount, LedgerEntryType type) 
+    {
+        return LedgerEntry.builder()
+                .accountId(accountId)
+                .transactionId(transfer.getId())
+                .amount(amount)
+                .entryType(type)
+                .createdAt(OffsetDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,13 @@
+package com.p2p.transfer_app.shard;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Фоновая задача выполняется по очереди на каждом шарде; метод должен возвращать void
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface OnEachShard 
+{
+}
@@ -0,0 +1,69 @@
+package com.p2p.transfer_app.shard;
+
+import java.util.function.Supplier;
+
+// Шард, с которым работает текущий поток. Маршрутизирующий источник данных читает его при получении соединения,
+// поэтому переключение внутри уже начатой транзакции не действует: транзакция остается на своем шарде
+public final class ShardContext 
+{
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() 
+    {
+    }
+
+    public static Integer current() 
+    {
+        return CURRENT.get();
+    }
+
+    public static int currentOrDefault() 
+    {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    public static void set(int shard) 
+    {
+        CURRENT.set(shard);
+    }
+
+    public static void clear() 
+    {
+        CURRENT.remove();
+    }
+
+    public static <T> T call(int shard, Supplier<T> action) 
+    {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try 
+        {
+            return action.get();
+        } finally 
+        {
+            restore(previous);
+        }
+    }
+
+    public static void run(int shard, Runnable action) 
+    {
+        call(shard, () -> 
+        {
+            action.run();
+            return null;
+        });
+    }
+
+    private static void restore(Integer previous) 
+    {
+        if (previous == null) 
+        {
+            CURRENT.remove();
+        }
+        else 
+        {
+            CURRENT.set(previous);
+        }
+    }
+}
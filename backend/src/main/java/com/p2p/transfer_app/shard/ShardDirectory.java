@@ -0,0 +1,46 @@
+package com.p2p.transfer_app.shard;
+
+import com.p2p.transfer_app.repository.ShardDirectoryRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+// Обращения к каталогу идут на шард 0 отдельной транзакцией, даже если вызывающий уже работает в транзакции на своем шарде.
+// Если транзакция вызывающего затем откатится, в каталоге останется неиспользованный id - это лишь пропуск в нумерации
+@Component
+public class ShardDirectory 
+{
+    private static final int DIRECTORY_SHARD = 0;
+
+    private final ShardDirectoryRepository directoryRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate requiresNew;
+
+    public ShardDirectory(ShardDirectoryRepository directoryRepository, ShardRouter shardRouter, PlatformTransactionManager transactionManager) 
+    {
+        this.directoryRepository = directoryRepository;
+        this.shardRouter = shardRouter;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public long registerUser(String username) 
+    {
+        return ShardContext.call(DIRECTORY_SHARD, () -> requiresNew.execute(status -> directoryRepository.registerUsername(username)));
+    }
+
+    public Optional<Long> findUserId(String username) 
+    {
+        return ShardContext.call(DIRECTORY_SHARD, () -> requiresNew.execute(status -> directoryRepository.findUserId(username)));
+    }
+
+    // Номер резервируется в каталоге, а id счета получает номер шарда в младших разрядах
+    public long registerAccount(String accountNumber, int shard) 
+    {
+        long sequence = ShardContext.call(DIRECTORY_SHARD, () -> requiresNew.execute(status -> directoryRepository.registerAccountNumber(accountNumber)));
+        return shardRouter.accountId(sequence, shard);
+    }
+}
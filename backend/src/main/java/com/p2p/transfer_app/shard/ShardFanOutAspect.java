@@ -0,0 +1,58 @@
+package com.p2p.transfer_app.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// Выполняется раньше транзакционного перехватчика, поэтому каждый шард получает свою транзакцию.
+// Ошибка на одном шарде не мешает остальным; первая ошибка пробрасывается после обхода всех шардов
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class ShardFanOutAspect 
+{
+    private final ShardRouter shardRouter;
+
+    public ShardFanOutAspect(ShardRouter shardRouter) 
+    {
+        this.shardRouter = shardRouter;
+    }
+
+    @Around("@annotation(OnEachShard)")
+    public Object runOnEachShard(ProceedingJoinPoint joinPoint) throws Throwable 
+    {
+        if (!shardRouter.isSharded() || ShardContext.current() != null) 
+        {
+            return joinPoint.proceed();
+        }
+        Throwable failure = null;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) 
+        {
+            ShardContext.set(shard);
+            try 
+            {
+                joinPoint.proceed();
+            } catch (Throwable e) 
+            {
+                log.error("{} не выполнен на шарде {}: {}", joinPoint.getSignature().toShortString(), shard, e.getMessage());
+                if (failure == null) 
+                {
+                    failure = e;
+                }
+            } finally 
+            {
+                ShardContext.clear();
+            }
+        }
+        if (failure != null) 
+        {
+            throw failure;
+        }
+        return null;
+    }
+}
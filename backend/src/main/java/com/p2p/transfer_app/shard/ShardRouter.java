@@ -0,0 +1,77 @@
+package com.p2p.transfer_app.shard;
+
+import java.util.UUID;
+
+// Пользователь живет на шарде, который кольцо выбирает по его id; счета пользователя открываются на том же шарде.
+// Номер счета содержит шард двумя цифрами после префикса ACC, а id счета - в двух младших десятичных разрядах,
+// поэтому по номеру и по id шард определяется без обращения к базе. Без шардирования все ключи относятся к шарду 0
+public class ShardRouter 
+{
+    public static final int MAX_SHARDS = 100;
+    private static final String ACCOUNT_PREFIX = "ACC";
+
+    private final ConsistentHashRing ring;
+
+    public ShardRouter(int shardCount, int virtualNodes) 
+    {
+        if (shardCount > MAX_SHARDS) 
+        {
+            throw new IllegalArgumentException("Поддерживается не больше " + MAX_SHARDS + " шардов");
+        }
+        this.ring = new ConsistentHashRing(shardCount, virtualNodes);
+    }
+
+    public int shardCount() 
+    {
+        return ring.getShardCount();
+    }
+
+    public boolean isSharded() 
+    {
+        return shardCount() > 1;
+    }
+
+    public int shardOfUser(long userId) 
+    {
+        return ring.shardFor(userId);
+    }
+
+    public int shardOfAccountId(long accountId) 
+    {
+        return isSharded() ? (int) Math.floorMod(accountId, (long) MAX_SHARDS) : 0;
+    }
+
+    // Номер с неизвестным шардом относится к шарду 0, где поиск просто не найдет счет
+    public int shardOfAccountNumber(String accountNumber) 
+    {
+        if (!isSharded() || accountNumber == null || accountNumber.length() < ACCOUNT_PREFIX.length() + 2
+                || !accountNumber.startsWith(ACCOUNT_PREFIX)) 
+        {
+            return 0;
+        }
+        char high = accountNumber.charAt(ACCOUNT_PREFIX.length());
+        char low = accountNumber.charAt(ACCOUNT_PREFIX.length() + 1);
+        if (!Character.isDigit(high) || !Character.isDigit(low)) 
+        {
+            return 0;
+        }
+        int shard = (high - '0') * 10 + (low - '0');
+        return shard < shardCount() ? shard : 0;
+    }
+
+    public boolean isCrossShard(String fromAccountNumber, String toAccountNumber) 
+    {
+        return isSharded() && shardOfAccountNumber(fromAccountNumber) != shardOfAccountNumber(toAccountNumber);
+    }
+
+    public String newAccountNumber(int shard) 
+    {
+        String random = UUID.randomUUID().toString().replace("-", "").toUpperCase().substring(0, 15);
+        return String.format("%s%02d%s", ACCOUNT_PREFIX, shard, random);
+    }
+
+    public long accountId(long sequence, int shard) 
+    {
+        return sequence * MAX_SHARDS + shard;
+    }
+}
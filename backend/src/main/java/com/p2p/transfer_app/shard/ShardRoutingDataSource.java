@@ -0,0 +1,45 @@
+package com.p2p.transfer_app.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Соединение берется из пула шарда, заданного ShardContext; без контекста - из пула шарда 0
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable 
+{
+    private final List<HikariDataSource> shards;
+
+    public ShardRoutingDataSource(List<HikariDataSource> shards) 
+    {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) 
+        {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() 
+    {
+        return ShardContext.currentOrDefault();
+    }
+
+    public HikariDataSource getShard(int shard) 
+    {
+        return shards.get(shard);
+    }
+
+    @Override
+    public void close() 
+    {
+        shards.forEach(HikariDataSource::close);
+    }
+}
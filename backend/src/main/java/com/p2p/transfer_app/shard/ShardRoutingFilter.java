@@ -0,0 +1,68 @@
+package com.p2p.transfer_app.shard;
+
+import com.p2p.transfer_app.exception.AuthenticationException;
+import com.p2p.transfer_app.security.TokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Запрос аутентифицированного пользователя целиком выполняется на его шарде: там лежат его счета, история,
+// ключи идемпотентности и запланированные переводы. Проверку токена и ответ 401 по-прежнему выполняет контроллер
+public class ShardRoutingFilter extends OncePerRequestFilter 
+{
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String TOKEN_PARAMETER = "access_token";
+
+    private final TokenService tokenService;
+    private final ShardRouter shardRouter;
+
+    public ShardRoutingFilter(TokenService tokenService, ShardRouter shardRouter) 
+    {
+        this.tokenService = tokenService;
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException 
+    {
+        Long userId = resolveUserId(request);
+        if (userId == null) 
+        {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        ShardContext.set(shardRouter.shardOfUser(userId));
+        try 
+        {
+            filterChain.doFilter(request, response);
+        } finally 
+        {
+            ShardContext.clear();
+        }
+    }
+
+    private Long resolveUserId(HttpServletRequest request) 
+    {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        String token = header != null && header.startsWith(BEARER_PREFIX)
+                ? header.substring(BEARER_PREFIX.length())
+                : request.getParameter(TOKEN_PARAMETER);
+        if (token == null) 
+        {
+            return null;
+        }
+        try 
+        {
+            return tokenService.verify(token).getUserId();
+        } catch (AuthenticationException e) 
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.p2p.transfer_app.stream;
+
+import com.p2p.transfer_app.cache.AccountLookupCache;
+import com.p2p.transfer_app.dto.BalanceUpdate;
+import com.p2p.transfer_app.dto.BalanceUpdateType;
+import com.p2p.transfer_app.event.AccountClosedEvent;
+import com.p2p.transfer_app.event.AccountOpenedEvent;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
+import com.p2p.transfer_app.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Рассылка изменений балансов подписчикам SSE после фиксации транзакции; отправка идет на отдельных потоках,
+// поэтому медленный клиент не задерживает переводы
+@Component
+@Slf4j
+public class BalanceStreamRegistry implements DisposableBean 
+{
+    private final Map<Long, Set<BalanceSubscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AccountLookupCache lookupCache;
+    private final ExecutorService dispatcher;
+    private final Counter droppedUpdates;
+    private final int bufferSize;
+    private final long timeoutMillis;
+
+    public BalanceStreamRegistry(AccountLookupCache lookupCache, MeterRegistry meterRegistry,
+                                 @Value("${stream.balance.buffer-size:256}") int bufferSize,
+                                 @Value("${stream.balance.timeout:PT30M}") Duration timeout,
+                                 @Value("${stream.balance.dispatch-threads:2}") int dispatchThreads) 
+    {
+        this.lookupCache = lookupCache;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeout.toMillis();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, runnable -> 
+        {
+            Thread thread = new Thread(runnable, "balance-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.droppedUpdates = Counter.builder("balance.stream.dropped")
+                .description("События, вытесненные из переполненного буфера подписчика")
+                .register(meterRegistry);
+        Gauge.builder("balance.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Открытые SSE-подписки на балансы")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(Long userId) 
+    {
+        return subscribe(userId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(Long userId, SseEmitter emitter) 
+    {
+        BalanceSubscriber subscriber = new BalanceSubscriber(userId, emitter, bufferSize);
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+        log.debug("Открыта подписка на балансы пользователя {}", userId);
+        return emitter;
+    }
+
+    public void publish(Long userId, BalanceUpdate update) 
+    {
+        Set<BalanceSubscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers == null) 
+        {
+            return;
+        }
+        for (BalanceSubscriber subscriber : userSubscribers) 
+        {
+            if (subscriber.offer(update)) 
+            {
+                droppedUpdates.increment();
+            }
+            schedule(subscriber);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTransferCompleted(TransferCompletedEvent event) 
+    {
+        if (subscribers.isEmpty()) 
+        {
+            return;
+        }
+        for (Transaction transaction : event.getTransactions()) 
+        {
+            publishToOwner(transaction.getFromAccountId(), new BalanceUpdate(BalanceUpdateType.TRANSFER_OUT,
+                    transaction.getFromAccountId(), null, -transaction.getAmount(), transaction.getId()));
+            publishToOwner(transaction.getToAccountId(), new BalanceUpdate(BalanceUpdateType.TRANSFER_IN,
+                    transaction.getToAccountId(), null, transaction.getAmount(), transaction.getId()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccountOpened(AccountOpenedEvent event) 
+    {
+        publish(event.getUserId(), new BalanceUpdate(BalanceUpdateType.OPENED, event.getAccountId(),
+                event.getAccountNumber(), event.getInitialBalance(), null));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccountClosed(AccountClosedEvent event) 
+    {
+        publish(event.getUserId(), new BalanceUpdate(BalanceUpdateType.CLOSED, event.getAccountId(),
+                event.getAccountNumber(), -event.getBalance(), null));
+    }
+
+    // Комментарий SSE не дает прокси закрыть простаивающее соединение и выявляет отключившихся клиентов
+    @Scheduled(fixedDelayString = "${stream.balance.heartbeat-interval:PT15S}")
+    public void sendHeartbeats() 
+    {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> 
+        {
+            try 
+            {
+                dispatcher.execute(() -> send(subscriber, SseEmitter.event().comment("heartbeat")));
+            } catch (RejectedExecutionException e) 
+            {
+                log.debug("Рассылка остановлена, heartbeat пропущен");
+            }
+        }));
+    }
+
+    @Override
+    public void destroy() 
+    {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> subscriber.getEmitter().complete()));
+        dispatcher.shutdown();
+    }
+
+    private void publishToOwner(Long accountId, BalanceUpdate update) 
+    {
+        lookupCache.findOwnerId(accountId).ifPresent(ownerId -> publish(ownerId, update));
+    }
+
+    private void schedule(BalanceSubscriber subscriber) 
+    {
+        if (!subscriber.startDraining()) 
+        {
+            return;
+        }
+        try 
+        {
+            dispatcher.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) 
+        {
+            subscriber.stopDraining();
+        }
+    }
+
+    private void drain(BalanceSubscriber subscriber) 
+    {
+        try 
+        {
+            for (BalanceUpdate update : subscriber.drain()) 
+            {
+                if (!send(subscriber, SseEmitter.event().name("balance").data(update, MediaType.APPLICATION_JSON))) 
+                {
+                    return;
+                }
+            }
+        }
+        finally 
+        {
+            subscriber.stopDraining();
+        }
+        // События, пришедшие во время отправки, забирает следующий проход
+        if (!subscriber.isEmpty()) 
+        {
+            schedule(subscriber);
+        }
+    }
+
+    private boolean send(BalanceSubscriber subscriber, SseEmitter.SseEventBuilder event) 
+    {
+        try 
+        {
+            subscriber.getEmitter().send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) 
+        {
+            log.debug("Подписчик пользователя {} отключился: {}", subscriber.getUserId(), e.getMessage());
+            remove(subscriber);
+            subscriber.getEmitter().completeWithError(e);
+            return false;
+        }
+    }
+
+    private void remove(BalanceSubscriber subscriber) 
+    {
+        subscribers.computeIfPresent(subscriber.getUserId(), (userId, userSubscribers) -> 
+        {
+            if (userSubscribers.remove(subscriber)) 
+            {
+                subscriberCount.decrementAndGet();
+            }
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+}
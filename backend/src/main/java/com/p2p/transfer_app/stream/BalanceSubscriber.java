@@ -0,0 +1,71 @@
+package com.p2p.transfer_app.stream;
+
+import com.p2p.transfer_app.dto.BalanceUpdate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Буфер подписчика ограничен: при медленном клиенте вытесняются самые старые события
+class BalanceSubscriber 
+{
+    private final Long userId;
+    private final SseEmitter emitter;
+    private final int capacity;
+    private final ArrayDeque<BalanceUpdate> buffer;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    BalanceSubscriber(Long userId, SseEmitter emitter, int capacity) 
+    {
+        this.userId = userId;
+        this.emitter = emitter;
+        this.capacity = capacity;
+        this.buffer = new ArrayDeque<>(capacity);
+    }
+
+    Long getUserId() 
+    {
+        return userId;
+    }
+
+    SseEmitter getEmitter() 
+    {
+        return emitter;
+    }
+
+    // Возвращает true, если ради нового события пришлось вытеснить старое
+    synchronized boolean offer(BalanceUpdate update) 
+    {
+        boolean dropped = false;
+        if (buffer.size() == capacity) 
+        {
+            buffer.pollFirst();
+            dropped = true;
+        }
+        buffer.addLast(update);
+        return dropped;
+    }
+
+    synchronized List<BalanceUpdate> drain() 
+    {
+        List<BalanceUpdate> updates = List.copyOf(buffer);
+        buffer.clear();
+        return updates;
+    }
+
+    synchronized boolean isEmpty() 
+    {
+        return buffer.isEmpty();
+    }
+
+    boolean startDraining() 
+    {
+        return draining.compareAndSet(false, true);
+    }
+
+    void stopDraining() 
+    {
+        draining.set(false);
+    }
+}
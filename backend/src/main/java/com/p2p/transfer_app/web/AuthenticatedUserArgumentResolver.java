@@ -0,0 +1,49 @@
+package com.p2p.transfer_app.web;
+
+import com.p2p.transfer_app.exception.AuthenticationException;
+import com.p2p.transfer_app.security.TokenService;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+@Component
+public class AuthenticatedUserArgumentResolver implements HandlerMethodArgumentResolver 
+{
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String TOKEN_PARAMETER = "access_token";
+
+    private final TokenService tokenService;
+
+    public AuthenticatedUserArgumentResolver(TokenService tokenService) 
+    {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) 
+    {
+        return parameter.hasParameterAnnotation(AuthenticatedUser.class) && Long.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Long resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                NativeWebRequest webRequest, WebDataBinderFactory binderFactory) 
+    {
+        String header = webRequest.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) 
+        {
+            return tokenService.verify(header.substring(BEARER_PREFIX.length())).getUserId();
+        }
+        // EventSource в браузере не умеет передавать заголовки, поэтому для SSE токен принимается параметром запроса
+        String token = webRequest.getParameter(TOKEN_PARAMETER);
+        if (token == null) 
+        {
+            throw new AuthenticationException("Требуется токен авторизации");
+        }
+        return tokenService.verify(token).getUserId();
+    }
+}
@@ -0,0 +1,133 @@
+package com.p2p.transfer_app.web;
+
+import com.p2p.transfer_app.limit.AdaptiveConcurrencyLimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Отдельные адаптивные лимиты для переводов, чтения и входа: когда база замедляется и переводы упираются в свой лимит,
+// лишние переводы сразу получают 503, а потоки Tomcat остаются свободными для чтения и аутентификации.
+// Потоковые ответы (SSE, выписки) живут дольше обычного запроса и лимитами не ограничиваются
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter 
+{
+    public enum Bulkhead 
+    {
+        TRANSFERS, READS, AUTH
+    }
+
+    private final Map<Bulkhead, AdaptiveConcurrencyLimit> limits;
+    private final Map<Bulkhead, Counter> rejections = new EnumMap<>(Bulkhead.class);
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimitFilter(Map<Bulkhead, AdaptiveConcurrencyLimit> limits, MeterRegistry meterRegistry, long retryAfterSeconds) 
+    {
+        this.limits = new EnumMap<>(limits);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limits.forEach((bulkhead, limit) -> 
+        {
+            String tag = bulkhead.name().toLowerCase();
+            Gauge.builder("http.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                    .description("Текущий адаптивный лимит одновременных запросов")
+                    .tag("bulkhead", tag)
+                    .register(meterRegistry);
+            Gauge.builder("http.concurrency.inflight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .description("Запросы, выполняющиеся под лимитом")
+                    .tag("bulkhead", tag)
+                    .register(meterRegistry);
+            Gauge.builder("http.concurrency.queue", limit, AdaptiveConcurrencyLimit::getWaiting)
+                    .description("Запросы, ожидающие освобождения лимита")
+                    .tag("bulkhead", tag)
+                    .register(meterRegistry);
+            rejections.put(bulkhead, Counter.builder("http.concurrency.rejected")
+                    .description("Запросы, отклоненные из-за перегрузки")
+                    .tag("bulkhead", tag)
+                    .register(meterRegistry));
+        });
+    }
+
+    static Bulkhead classify(HttpServletRequest request) 
+    {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String method = request.getMethod();
+        if (path.equals("/api/users/login") || path.equals("/api/users/register")) 
+        {
+            return Bulkhead.AUTH;
+        }
+        if ("POST".equals(method) && (path.equals("/api/accounts/transfer") || path.equals("/api/accounts/transfers/batch")
+                || path.equals("/api/scheduled-transfers"))) 
+        {
+            return Bulkhead.TRANSFERS;
+        }
+        if ("GET".equals(method) && path.startsWith("/api/") && !path.endsWith("/stream") && !path.endsWith("/statement")) 
+        {
+            return Bulkhead.READS;
+        }
+        return null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException 
+    {
+        Bulkhead bulkhead = classify(request);
+        AdaptiveConcurrencyLimit limit = bulkhead == null ? null : limits.get(bulkhead);
+        if (limit == null) 
+        {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean acquired;
+        try 
+        {
+            acquired = limit.tryAcquire();
+        } catch (InterruptedException e) 
+        {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) 
+        {
+            rejections.get(bulkhead).increment();
+            log.warn("Запрос {} {} отклонен: лимит {} исчерпан ({})", request.getMethod(), request.getRequestURI(), bulkhead, limit.getLimit());
+            reject(response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean dropped = true;
+        try 
+        {
+            filterChain.doFilter(request, response);
+            dropped = response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+        } finally 
+        {
+            limit.release(System.nanoTime() - start, dropped);
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException 
+    {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("Сервер перегружен, повторите попытку позже.");
+    }
+}
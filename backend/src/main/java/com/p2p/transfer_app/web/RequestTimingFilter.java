@@ -0,0 +1,46 @@
+package com.p2p.transfer_app.web;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestTimingFilter extends OncePerRequestFilter 
+{
+    static final String START_ATTRIBUTE = RequestTimingFilter.class.getName() + ".start";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException 
+    {
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        filterChain.doFilter(request, response);
+    }
+
+    public static Long elapsedMillis() 
+    {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) 
+        {
+            return null;
+        }
+
+        Object start = attributes.getAttribute(START_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (!(start instanceof Long)) 
+        {
+            return null;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - (Long) start);
+    }
+}
@@ -0,0 +1,80 @@
+package com.p2p.transfer_app.aop;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoggingAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TimedTarget target;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+
+        TimedTarget inner = new TimedTarget(null);
+        AspectJProxyFactory innerFactory = new AspectJProxyFactory(inner);
+        innerFactory.addAspect(new LoggingAspect(meterRegistry));
+
+        AspectJProxyFactory outerFactory = new AspectJProxyFactory(new TimedTarget(innerFactory.getProxy()));
+        outerFactory.setProxyTargetClass(true);
+        outerFactory.addAspect(new LoggingAspect(meterRegistry));
+        target = outerFactory.getProxy();
+    }
+
+    @Test
+    void logExecutionTime_WithNestedCalls_ShouldRecordEachMethodSeparately() throws Exception {
+        target.outer();
+
+        Timer outer = meterRegistry.get(LoggingAspect.METRIC_NAME).tag("method", "outer").timer();
+        Timer inner = meterRegistry.get(LoggingAspect.METRIC_NAME).tag("method", "inner").timer();
+
+        assertEquals(1, outer.count());
+        assertEquals(1, inner.count());
+        assertTrue(outer.totalTime(TimeUnit.NANOSECONDS) >= inner.totalTime(TimeUnit.NANOSECONDS));
+        assertTrue(inner.totalTime(TimeUnit.MILLISECONDS) >= 5);
+        assertEquals("SUCCESS", outer.getId().getTag("outcome"));
+    }
+
+    @Test
+    void logExecutionTime_WithException_ShouldTagOutcome() {
+        assertThrows(IllegalStateException.class, () -> target.failing());
+
+        Timer timer = meterRegistry.get(LoggingAspect.METRIC_NAME).tag("method", "failing").timer();
+
+        assertEquals(1, timer.count());
+        assertEquals("ERROR", timer.getId().getTag("outcome"));
+        assertEquals("IllegalStateException", timer.getId().getTag("exception"));
+    }
+
+    public static class TimedTarget {
+
+        private final TimedTarget delegate;
+
+        public TimedTarget(TimedTarget delegate) {
+            this.delegate = delegate;
+        }
+
+        @LogExecutionTime
+        public void outer() throws InterruptedException {
+            delegate.inner();
+        }
+
+        @LogExecutionTime
+        public void inner() throws InterruptedException {
+            Thread.sleep(5);
+        }
+
+        @LogExecutionTime
+        public void failing() {
+            throw new IllegalStateException("boom");
+        }
+    }
+}
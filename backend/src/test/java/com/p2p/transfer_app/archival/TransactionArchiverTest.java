@@ -0,0 +1,193 @@
+package com.p2p.transfer_app.archival;
+
+import com.p2p.transfer_app.dto.StatementFormat;
+import com.p2p.transfer_app.dto.TransactionCursor;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.ArchivalJob;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.model.enums.ArchivalStatus;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.ArchivalRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import com.p2p.transfer_app.service.AccountService;
+import com.p2p.transfer_app.service.StatementService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"archival.interval=PT1H"})
+public class TransactionArchiverTest {
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ArchivalRepository archivalRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StatementService statementService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Account closing;
+    private Account other;
+
+    @BeforeEach
+    void setUp() {
+        User user = userRepository.save(new User(null, "archival-" + UUID.randomUUID(), "password"));
+        closing = accountRepository.save(new Account(null, "AR" + UUID.randomUUID().toString().substring(0, 18), 1000L, user.getId()));
+        other = accountRepository.save(new Account(null, "AR" + UUID.randomUUID().toString().substring(0, 18), 1000L, user.getId()));
+    }
+
+    private TransactionArchiver archiver(int chunkSize, long rowsPerSecond) {
+        return new TransactionArchiver(archivalRepository, transactionTemplate, new SimpleMeterRegistry(), chunkSize, 10, rowsPerSecond);
+    }
+
+    // Операции с возрастающим временем создания, чтобы порядок порций был предсказуем
+    private List<UUID> insertTransactions(int count) {
+        List<UUID> ids = new ArrayList<>();
+        Instant base = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < count; i++) {
+            UUID id = UUID.randomUUID();
+            boolean outgoing = i % 2 == 0;
+            jdbcTemplate.update("INSERT INTO transactions (id, from_account_id, to_account_id, amount, status, created_at) VALUES (?, ?, ?, ?, 'COMPLETED', ?)",
+                    id, outgoing ? closing.getId() : other.getId(), outgoing ? other.getId() : closing.getId(), 10L + i,
+                    Timestamp.from(base.plusSeconds(i)));
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private long liveTransactions(Long accountId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE from_account_id = ? OR to_account_id = ?",
+                Long.class, accountId, accountId);
+    }
+
+    private String archivalStatus(Long accountId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM account_archival WHERE account_id = ?", String.class, accountId);
+    }
+
+    @Test
+    void closeAccount_ShouldFlipStatusAndRejectTransfers() {
+        insertTransactions(4);
+
+        accountService.closeAccount(closing.getId());
+
+        assertEquals("CLOSED", jdbcTemplate.queryForObject("SELECT status FROM accounts WHERE id = ?", String.class, closing.getId()));
+        assertTrue(accountRepository.findById(closing.getId()).isEmpty());
+        assertEquals(4, liveTransactions(closing.getId()));
+        assertEquals("PENDING", archivalStatus(closing.getId()));
+
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(other.getAccountNumber());
+        request.setToAccountNumber(closing.getAccountNumber());
+        request.setAmount(100L);
+        Exception exception = assertThrows(RuntimeException.class, () -> accountService.transferMoney(request));
+        assertTrue(exception.getMessage().contains("не найден"));
+        assertThrows(RuntimeException.class, () -> accountService.closeAccount(closing.getId()));
+    }
+
+    @Test
+    void archiveAccount_ShouldMoveTransactionsInChunks() throws InterruptedException {
+        insertTransactions(7);
+        accountService.closeAccount(closing.getId());
+        accountService.closeAccount(other.getId());
+
+        long moved = archiver(3, 0).archiveAccount(closing.getId());
+
+        assertEquals(7, moved);
+        assertEquals(0, liveTransactions(closing.getId()));
+        assertEquals(7, archivalRepository.countArchived(closing.getId()));
+        assertEquals("DONE", archivalStatus(closing.getId()));
+        assertEquals(7L, jdbcTemplate.queryForObject("SELECT archived_rows FROM account_archival WHERE account_id = ?",
+                Long.class, closing.getId()));
+        assertEquals(0, archiver(3, 0).archiveAccount(closing.getId()));
+    }
+
+    @Test
+    void archiveAccount_ShouldResumeFromCheckpoint() throws InterruptedException {
+        List<UUID> ids = insertTransactions(5);
+        accountService.closeAccount(closing.getId());
+        accountService.closeAccount(other.getId());
+        // Как будто первые две операции уже перенесены, а затем экземпляр остановился
+        archivalRepository.checkpoint(ArchivalJob.builder()
+                .accountId(closing.getId())
+                .archivedRows(2)
+                .checkpoint(new TransactionCursor(Instant.parse("2024-01-01T00:00:01Z"), ids.get(1)))
+                .build(), ArchivalStatus.PENDING, Instant.now());
+
+        long moved = archiver(2, 0).archiveAccount(closing.getId());
+
+        assertEquals(3, moved);
+        List<UUID> remaining = jdbcTemplate.queryForList("SELECT id FROM transactions WHERE from_account_id = ? OR to_account_id = ? ORDER BY created_at",
+                UUID.class, closing.getId(), closing.getId());
+        assertEquals(ids.subList(0, 2), remaining);
+        assertEquals(5L, jdbcTemplate.queryForObject("SELECT archived_rows FROM account_archival WHERE account_id = ?",
+                Long.class, closing.getId()));
+    }
+
+    @Test
+    void archiveAccount_ShouldRespectRowsPerSecondBudget() throws InterruptedException {
+        insertTransactions(10);
+        accountService.closeAccount(closing.getId());
+        accountService.closeAccount(other.getId());
+
+        long start = System.nanoTime();
+        archiver(5, 20).archiveAccount(closing.getId());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Две полные порции по 5 строк при бюджете 20 строк/с занимают не меньше 2 × 250 мс
+        assertTrue(elapsedMillis >= 450, "Архивация заняла " + elapsedMillis + " мс");
+        assertEquals(0, liveTransactions(closing.getId()));
+    }
+
+    @Test
+    void archiveAccount_WithActiveCounterparty_ShouldKeepItsStatementComplete() throws InterruptedException {
+        insertTransactions(4);
+        Instant periodStart = Instant.parse("2024-01-01T00:00:02Z");
+        accountService.closeAccount(closing.getId());
+
+        assertEquals(0, archiver(10, 0).archiveAccount(closing.getId()));
+
+        assertEquals("DONE", archivalStatus(closing.getId()));
+        assertEquals(4, liveTransactions(other.getId()));
+        // Операции other: +10, -11, +12, -13; в период попадают две последние, остаток на начало - 999
+        jdbcTemplate.update("UPDATE accounts SET balance = 998 WHERE id = ?", other.getId());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statementService.export(other.getId(), StatementFormat.CSV, periodStart, Instant.now(), out);
+        String[] lines = out.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].endsWith("," + closing.getId() + ",12,1011"), lines[1]);
+        assertTrue(lines[2].endsWith("," + closing.getId() + ",-13,998"), lines[2]);
+
+        // После закрытия контрагента его задание переносит оставшиеся операции
+        accountService.closeAccount(other.getId());
+        assertEquals(4, archiver(10, 0).archiveAccount(other.getId()));
+        assertEquals(0, liveTransactions(closing.getId()));
+    }
+}
@@ -0,0 +1,80 @@
+package com.p2p.transfer_app.cache;
+
+import com.p2p.transfer_app.event.AccountClosedEvent;
+import com.p2p.transfer_app.event.UserRegisteredEvent;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AccountLookupCacheTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AccountLookupCache lookupCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lookupCache = new AccountLookupCache(accountRepository, userRepository, meterRegistry, 100);
+    }
+
+    @Test
+    void findOwnerId_RepeatedLookups_ShouldHitDatabaseOnce() {
+        when(accountRepository.findByAccountNumber("ACC123")).thenReturn(Optional.of(new Account(7L, "ACC123", 1000L, 3L)));
+
+        assertEquals(Optional.of(3L), lookupCache.findOwnerId("ACC123"));
+        assertEquals(Optional.of(3L), lookupCache.findOwnerId("ACC123"));
+        assertEquals(Optional.of(7L), lookupCache.findAccountId("ACC123"));
+
+        verify(accountRepository, times(1)).findByAccountNumber("ACC123");
+        verify(accountRepository, never()).findById(anyLong());
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", "accountIdsByNumber").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void onAccountClosed_ShouldEvictAccountEntries() {
+        when(accountRepository.findByAccountNumber("ACC123"))
+                .thenReturn(Optional.of(new Account(7L, "ACC123", 1000L, 3L)))
+                .thenReturn(Optional.empty());
+
+        lookupCache.findAccountId("ACC123");
+        lookupCache.onAccountClosed(new AccountClosedEvent(7L, "ACC123", 3L, 1000L));
+
+        assertTrue(lookupCache.findAccountId("ACC123").isEmpty());
+        verify(accountRepository, times(2)).findByAccountNumber("ACC123");
+    }
+
+    @Test
+    void userExists_ShouldCacheOnlyExistingUsers() {
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(2L)).thenReturn(false, true);
+
+        assertTrue(lookupCache.userExists(1L));
+        assertTrue(lookupCache.userExists(1L));
+        assertFalse(lookupCache.userExists(2L));
+
+        lookupCache.onUserRegistered(new UserRegisteredEvent(2L, "newuser"));
+        assertTrue(lookupCache.userExists(2L));
+
+        verify(userRepository, times(1)).existsById(1L);
+        verify(userRepository, times(2)).existsById(2L);
+    }
+}
@@ -0,0 +1,45 @@
+package com.p2p.transfer_app.config;
+
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("virtual-threads")
+@EnabledForJreRange(min = JRE.JAVA_21)
+public class VirtualThreadsProfileTest {
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private AsyncTaskExecutor applicationTaskExecutor;
+
+    @Test
+    void tomcat_WithVirtualThreadsProfile_ShouldUseVirtualThreadExecutor() {
+        TomcatWebServer webServer = (TomcatWebServer) context.getWebServer();
+        Object executor = webServer.getTomcat().getConnector().getProtocolHandler().getExecutor();
+
+        assertInstanceOf(VirtualThreadExecutor.class, executor);
+    }
+
+    @Test
+    void asyncExecutor_WithVirtualThreadsProfile_ShouldRunTasksOnVirtualThreads() throws Exception {
+        Future<String> threadName = applicationTaskExecutor.submit(() -> Thread.currentThread().toString());
+
+        assertTrue(threadName.get().startsWith("VirtualThread"));
+    }
+}
@@ -2,30 +2,54 @@ package com.p2p.transfer_app.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.p2p.transfer_app.dto.AccountCreationRequest;
+import com.p2p.transfer_app.dto.BatchTransferItemResult;
+import com.p2p.transfer_app.dto.BatchTransferMode;
+import com.p2p.transfer_app.dto.BatchTransferRequest;
+import com.p2p.transfer_app.dto.BatchTransferResponse;
+import com.p2p.transfer_app.dto.StatementFormat;
+import com.p2p.transfer_app.dto.TransactionPage;
 import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.dto.TransferResult;
 import com.p2p.transfer_app.model.Account;
-import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+import com.p2p.transfer_app.security.TokenService;
 import com.p2p.transfer_app.service.AccountService;
-import com.p2p.transfer_app.service.UserService;
+import com.p2p.transfer_app.service.BatchTransferService;
+import com.p2p.transfer_app.service.IdempotencyService;
+import com.p2p.transfer_app.service.StatementService;
+import com.p2p.transfer_app.service.TransactionHistoryService;
+import com.p2p.transfer_app.stream.BalanceStreamRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(AccountController.class)
+@Import(TokenService.class)
 public class AccountControllerTest {
 
     @Autowired
@@ -35,11 +59,30 @@ public class AccountControllerTest {
     private AccountService accountService;
 
     @MockBean
-    private UserService userService;
+    private BatchTransferService batchTransferService;
+
+    @MockBean
+    private TransactionHistoryService transactionHistoryService;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private BalanceStreamRegistry balanceStreamRegistry;
+
+    @MockBean
+    private StatementService statementService;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private TokenService tokenService;
+
+    private String bearer(long userId) {
+        return "Bearer " + tokenService.issue(userId);
+    }
+
     @Test
     void createAccount_ShouldReturnCreatedAccount() throws Exception {
         Long userId = 1L;
@@ -51,10 +94,10 @@ public class AccountControllerTest {
         
         Account createdAccount = new Account(1L, "ACC123", initialBalance, userId);
         
-        when(userService.getUserById(userId)).thenReturn(new User());
         when(accountService.openNewAccount(eq(userId), eq(initialBalance))).thenReturn(createdAccount);
 
         mockMvc.perform(post("/api/accounts")
+                .header(HttpHeaders.AUTHORIZATION, bearer(userId))
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isCreated())
@@ -73,14 +116,15 @@ public class AccountControllerTest {
             new Account(2L, "ACC456", 2000L, userId)
         );
         
-        when(userService.getUserById(userId)).thenReturn(new User());
         when(accountService.getUserAccounts(userId)).thenReturn(accounts);
 
-        mockMvc.perform(get("/api/accounts/user/{userId}", userId))
+        mockMvc.perform(get("/api/accounts/user/{userId}", userId)
+                .header(HttpHeaders.AUTHORIZATION, bearer(userId)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.data", hasSize(2)))
                 .andExpect(jsonPath("$.data[0].accountNumber", is("ACC123")))
                 .andExpect(jsonPath("$.data[1].accountNumber", is("ACC456")))
+                .andExpect(jsonPath("$.executionTimeMs", notNullValue()))
                 .andExpect(jsonPath("$.message", is("Счета успешно загружены")));
     }
 
@@ -91,19 +135,38 @@ public class AccountControllerTest {
         request.setToAccountNumber("ACC456");
         request.setAmount(500L);
         
-        User user = new User();
-        user.setId(1L);
-        Account fromAccount = new Account(1L, "ACC123", 1000L, 1L);
-        
-        when(accountService.getAccountByNumber("ACC123")).thenReturn(fromAccount);
-        when(userService.getUserById(1L)).thenReturn(user);
-        doNothing().when(accountService).transferMoney(request);
+        when(accountService.getAccountOwnerId("ACC123")).thenReturn(1L);
+        UUID transactionId = UUID.randomUUID();
+        when(accountService.transferMoney(request)).thenReturn(transactionId);
 
         mockMvc.perform(post("/api/accounts/transfer")
-                .param("userId", "1")
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L))
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isOk())
+                .andExpect(header().string("X-Transaction-Id", transactionId.toString()))
+                .andExpect(jsonPath("$.data", is("Перевод успешно выполнен")));
+    }
+
+    @Test
+    void transferMoney_WithIdempotencyKey_ShouldReturnStoredResultOnReplay() throws Exception {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber("ACC123");
+        request.setToAccountNumber("ACC456");
+        request.setAmount(500L);
+
+        UUID transactionId = UUID.randomUUID();
+        when(accountService.getAccountOwnerId("ACC123")).thenReturn(1L);
+        when(idempotencyService.transferOnce(request, 1L, "retry-1")).thenReturn(new TransferResult(transactionId, true));
+
+        mockMvc.perform(post("/api/accounts/transfer")
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L))
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Transaction-Id", transactionId.toString()))
+                .andExpect(header().string("Idempotent-Replayed", "true"))
                 .andExpect(jsonPath("$.data", is("Перевод успешно выполнен")));
     }
 
@@ -111,17 +174,168 @@ public class AccountControllerTest {
     void deleteAccount_ShouldReturnSuccess() throws Exception {
         Long accountId = 1L;
         
-        User user = new User();
-        user.setId(1L);
-        Account account = new Account(1L, "ACC123", 1000L, 1L);
-        
-        when(accountService.getAccountById(accountId)).thenReturn(account);
-        when(userService.getUserById(1L)).thenReturn(user);
+        when(accountService.getAccountOwnerId(accountId)).thenReturn(1L);
         doNothing().when(accountService).closeAccount(accountId);
 
         mockMvc.perform(delete("/api/accounts/{accountId}", accountId)
-                .param("userId", "1"))
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.data", is("Счет успешно закрыт")));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void transferBatch_ShouldReturnPerItemResults() throws Exception {
+        TransferRequest transfer = new TransferRequest();
+        transfer.setFromAccountNumber("ACC123");
+        transfer.setToAccountNumber("ACC456");
+        transfer.setAmount(100L);
+
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setTransfers(List.of(transfer, transfer));
+        request.setMode(BatchTransferMode.BEST_EFFORT);
+
+        BatchTransferResponse response = new BatchTransferResponse(BatchTransferMode.BEST_EFFORT, 1, 1, List.of(
+            new BatchTransferItemResult(0, TransactionStatus.COMPLETED, UUID.randomUUID(), null),
+            new BatchTransferItemResult(1, TransactionStatus.FAILED, null, "Недостаточно средств")
+        ));
+
+        when(batchTransferService.transferBatch(anyList(), eq(BatchTransferMode.BEST_EFFORT), eq(1L))).thenReturn(response);
+
+        mockMvc.perform(post("/api/accounts/transfers/batch")
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.completed", is(1)))
+                .andExpect(jsonPath("$.data.failed", is(1)))
+                .andExpect(jsonPath("$.data.results[1].error", is("Недостаточно средств")));
+    }
+
+    @Test
+    void transferBatch_AllOrNothingWithFailures_ShouldReturnConflict() throws Exception {
+        TransferRequest transfer = new TransferRequest();
+        transfer.setFromAccountNumber("ACC123");
+        transfer.setToAccountNumber("ACC456");
+        transfer.setAmount(100L);
+
+        BatchTransferRequest request = new BatchTransferRequest();
+        request.setTransfers(List.of(transfer));
+
+        BatchTransferResponse response = new BatchTransferResponse(BatchTransferMode.ALL_OR_NOTHING, 0, 1, List.of(
+            new BatchTransferItemResult(0, TransactionStatus.FAILED, null, "Недостаточно средств")
+        ));
+
+        when(batchTransferService.transferBatch(anyList(), eq(BatchTransferMode.ALL_OR_NOTHING), eq(1L))).thenReturn(response);
+
+        mockMvc.perform(post("/api/accounts/transfers/batch")
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message", is("Пакет переводов отклонен")));
+    }
+
+    @Test
+    void getAccountTransactions_ShouldReturnPage() throws Exception {
+        when(accountService.getAccountOwnerId(1L)).thenReturn(1L);
+        when(transactionHistoryService.getAccountTransactions(1L, "abc", 20))
+                .thenReturn(new TransactionPage(List.of(), "next"));
+
+        mockMvc.perform(get("/api/accounts/{accountId}/transactions", 1L)
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L))
+                .param("cursor", "abc")
+                .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.nextCursor", is("next")));
+    }
+
+    @Test
+    void getAccountTransactions_ForForeignAccount_ShouldReturnForbidden() throws Exception {
+        when(accountService.getAccountOwnerId(1L)).thenReturn(2L);
+
+        mockMvc.perform(get("/api/accounts/{accountId}/transactions", 1L)
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void transferMoney_WithoutToken_ShouldReturnUnauthorized() throws Exception {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber("ACC123");
+        request.setToAccountNumber("ACC456");
+        request.setAmount(500L);
+
+        mockMvc.perform(post("/api/accounts/transfer")
+                .param("userId", "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void deleteAccount_WithForeignToken_ShouldReturnForbidden() throws Exception {
+        when(accountService.getAccountOwnerId(1L)).thenReturn(1L);
+
+        mockMvc.perform(delete("/api/accounts/{accountId}", 1L)
+                .header(HttpHeaders.AUTHORIZATION, bearer(2L)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void getUserAccounts_WithForeignToken_ShouldReturnForbidden() throws Exception {
+        mockMvc.perform(get("/api/accounts/user/{userId}", 1L)
+                .header(HttpHeaders.AUTHORIZATION, bearer(2L)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void streamBalanceUpdates_WithTokenInQuery_ShouldOpenStream() throws Exception {
+        when(balanceStreamRegistry.subscribe(1L)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/accounts/user/{userId}/stream", 1L)
+                .param("access_token", tokenService.issue(1L)))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void streamBalanceUpdates_ForForeignUser_ShouldReturnForbidden() throws Exception {
+        mockMvc.perform(get("/api/accounts/user/{userId}/stream", 2L)
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void exportStatement_ShouldStreamAttachment() throws Exception {
+        Instant from = Instant.parse("2025-01-01T00:00:00Z");
+        Instant to = Instant.parse("2025-02-01T00:00:00Z");
+        when(accountService.getAccountOwnerId(1L)).thenReturn(1L);
+        when(statementService.export(eq(1L), eq(StatementFormat.CSV), eq(from), eq(to), any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.getArgument(4, OutputStream.class).write("transaction_id\n".getBytes(StandardCharsets.US_ASCII));
+            return 0L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/accounts/{accountId}/statement", 1L)
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L))
+                .param("format", "csv")
+                .param("from", from.toString())
+                .param("to", to.toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("statement-1.csv")))
+                .andExpect(content().string("transaction_id\n"));
+    }
+
+    @Test
+    void exportStatement_WithUnknownFormat_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/accounts/{accountId}/statement", 1L)
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L))
+                .param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(statementService);
+    }
+}
@@ -0,0 +1,110 @@
+package com.p2p.transfer_app.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p2p.transfer_app.dto.ScheduledTransferRequest;
+import com.p2p.transfer_app.model.ScheduledTransfer;
+import com.p2p.transfer_app.model.enums.ScheduledTransferStatus;
+import com.p2p.transfer_app.security.TokenService;
+import com.p2p.transfer_app.service.AccountService;
+import com.p2p.transfer_app.service.ScheduledTransferService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ScheduledTransferController.class)
+@Import(TokenService.class)
+public class ScheduledTransferControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ScheduledTransferService scheduledTransferService;
+
+    @MockBean
+    private AccountService accountService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TokenService tokenService;
+
+    private String bearer(long userId) {
+        return "Bearer " + tokenService.issue(userId);
+    }
+
+    private ScheduledTransferRequest request() {
+        ScheduledTransferRequest request = new ScheduledTransferRequest();
+        request.setFromAccountNumber("ACC001");
+        request.setToAccountNumber("ACC002");
+        request.setAmount(500L);
+        request.setExecuteAt(OffsetDateTime.now(ZoneOffset.UTC).plusDays(1));
+        request.setRepeatIntervalSeconds(86400L);
+        return request;
+    }
+
+    @Test
+    void schedule_FromOwnAccount_ShouldReturnCreated() throws Exception {
+        ScheduledTransferRequest request = request();
+        ScheduledTransfer transfer = ScheduledTransfer.builder()
+                .id(7L)
+                .userId(1L)
+                .fromAccountNumber("ACC001")
+                .toAccountNumber("ACC002")
+                .amount(500L)
+                .nextRunAt(request.getExecuteAt())
+                .repeatIntervalSeconds(86400L)
+                .status(ScheduledTransferStatus.ACTIVE)
+                .build();
+        when(accountService.getAccountOwnerId("ACC001")).thenReturn(1L);
+        when(scheduledTransferService.schedule(eq(1L), any(ScheduledTransferRequest.class))).thenReturn(transfer);
+
+        mockMvc.perform(post("/api/scheduled-transfers")
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data.id").value(7))
+                .andExpect(jsonPath("$.data.status").value("ACTIVE"));
+    }
+
+    @Test
+    void schedule_FromForeignAccount_ShouldReturnForbidden() throws Exception {
+        when(accountService.getAccountOwnerId("ACC001")).thenReturn(2L);
+
+        mockMvc.perform(post("/api/scheduled-transfers")
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request())))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(scheduledTransferService);
+    }
+
+    @Test
+    void cancel_WhenAlreadyFinished_ShouldReturnConflict() throws Exception {
+        doThrow(new IllegalStateException("Запланированный перевод не найден или уже завершен"))
+                .when(scheduledTransferService).cancel(3L, 1L);
+
+        mockMvc.perform(delete("/api/scheduled-transfers/{id}", 3L)
+                .header(HttpHeaders.AUTHORIZATION, bearer(1L)))
+                .andExpect(status().isConflict());
+    }
+}
@@ -5,21 +5,32 @@ import com.p2p.transfer_app.dto.UserLoginRequest;
 import com.p2p.transfer_app.dto.UserLoginResponse;
 import com.p2p.transfer_app.dto.UserRegistrationRequest;
 import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.model.UserBalanceSummary;
+import com.p2p.transfer_app.security.TokenService;
+import com.p2p.transfer_app.service.UserBalanceSummaryService;
 import com.p2p.transfer_app.service.UserService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(UserController.class)
+@Import(TokenService.class)
 public class UserControllerTest {
 
     @Autowired
@@ -28,9 +39,15 @@ public class UserControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserBalanceSummaryService summaryService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private TokenService tokenService;
+
     @Test
     void registerUser_WithValidData_ShouldReturnCreated() throws Exception {
         UserRegistrationRequest request = new UserRegistrationRequest();
@@ -50,9 +67,21 @@ public class UserControllerTest {
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.data.id").value(1))
                 .andExpect(jsonPath("$.data.username").value("testuser"))
+                .andExpect(jsonPath("$.data.passwordHash").doesNotExist())
                 .andExpect(jsonPath("$.message").value("Пользователь успешно зарегистрирован"));
     }
 
+    @Test
+    void getUserById_ShouldNotExposePasswordHash() throws Exception {
+        when(userService.getUserById(1L)).thenReturn(new User(1L, "testuser", "hashedpassword"));
+
+        mockMvc.perform(get("/api/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.username").value("testuser"))
+                .andExpect(jsonPath("$.passwordHash").doesNotExist());
+    }
+
     @Test
     void loginUser_WithValidCredentials_ShouldReturnOk() throws Exception {
         UserLoginRequest request = new UserLoginRequest();
@@ -66,12 +95,37 @@ public class UserControllerTest {
         
         when(userService.authenticateUser(anyString(), anyString())).thenReturn(user);
 
-        mockMvc.perform(post("/api/users/login")
+        MvcResult result = mockMvc.perform(post("/api/users/login")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.data.userId").value(1))
                 .andExpect(jsonPath("$.data.username").value("testuser"))
-                .andExpect(jsonPath("$.message").value("Вход выполнен успешно"));
+                .andExpect(jsonPath("$.data.token").isNotEmpty())
+                .andExpect(jsonPath("$.message").value("Вход выполнен успешно"))
+                .andReturn();
+
+        String token = objectMapper.readTree(result.getResponse().getContentAsString()).path("data").path("token").asText();
+        assertEquals(1L, tokenService.verify(token).getUserId());
+    }
+
+    @Test
+    void getBalanceSummary_ForOwnUser_ShouldReturnSummary() throws Exception {
+        when(summaryService.getSummary(1L)).thenReturn(new UserBalanceSummary(1L, 1500L, 2, null));
+
+        mockMvc.perform(get("/api/users/1/summary")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenService.issue(1L)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.totalBalance").value(1500))
+                .andExpect(jsonPath("$.data.accountCount").value(2));
+    }
+
+    @Test
+    void getBalanceSummary_ForAnotherUser_ShouldReturnForbidden() throws Exception {
+        mockMvc.perform(get("/api/users/2/summary")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenService.issue(1L)))
+                .andExpect(status().isForbidden());
+
+        verify(summaryService, never()).getSummary(2L);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package com.p2p.transfer_app.engine;
+
+import com.p2p.transfer_app.TransferAppApplication;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.PayloadApplicationEvent;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+// Процесс, который TransferJournalCrashTest убивает посреди пачки: принимает переводы через движок с журналом
+// и печатает идентификатор каждого подтвержденного перевода. По команде STALL поток-писатель останавливается
+// внутри транзакции следующей пачки - после записи в журнал, но до фиксации в базе
+public final class JournalCrashChild {
+
+    static final int ACCOUNTS = 6;
+    static final long INITIAL_BALANCE = 100_000L;
+    static final String ACCOUNT_PREFIX = "JRN-";
+
+    public static void main(String[] args) throws Exception {
+        String url = args[0];
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TransferAppApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--transfer.engine.enabled=true",
+                        "--transfer.engine.journal.enabled=true",
+                        "--transfer.engine.journal.directory=" + args[1],
+                        "--transfer.engine.journal.segment-size=4KB",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=ERROR");
+
+        User user = context.getBean(UserRepository.class).save(new User(null, "journal-crash", "secret"));
+        List<String> accountNumbers = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = context.getBean(AccountRepository.class).save(new Account(null, ACCOUNT_PREFIX + i, INITIAL_BALANCE, user.getId()));
+            accountNumbers.add(account.getAccountNumber());
+        }
+        TransferEngine engine = context.getBean(TransferEngine.class);
+        // Событие группы публикуется в ее транзакции после записи в журнал
+        AtomicBoolean stall = new AtomicBoolean();
+        context.addApplicationListener((ApplicationListener<ApplicationEvent>) event -> {
+            if (stall.get() && event instanceof PayloadApplicationEvent<?> payload && payload.getPayload() instanceof TransferCompletedEvent
+                    && Thread.currentThread().getName().equals("transfer-engine-writer")) {
+                System.out.println("STALLED");
+                while (true) {
+                    LockSupport.park();
+                }
+            }
+        });
+        System.out.println("READY");
+
+        for (int t = 0; t < 3; t++) {
+            Thread producer = new Thread(() -> produce(engine, accountNumbers));
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        BufferedReader commands = new BufferedReader(new InputStreamReader(System.in));
+        String command;
+        while ((command = commands.readLine()) != null) {
+            if (command.equals("STALL")) {
+                stall.set(true);
+            }
+        }
+    }
+
+    private static void produce(TransferEngine engine, List<String> accountNumbers) {
+        while (true) {
+            List<CompletableFuture<UUID>> window = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                CompletableFuture<UUID> future = engine.submit(randomRequest(accountNumbers));
+                future.thenAccept(id -> System.out.println("ACK " + id));
+                window.add(future);
+            }
+            for (CompletableFuture<UUID> future : window) {
+                try {
+                    future.join();
+                } catch (RuntimeException ignored) {
+                    // Отказы по лимитам и остаткам не подтверждаются и не проверяются
+                }
+            }
+        }
+    }
+
+    private static TransferRequest randomRequest(List<String> accountNumbers) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(accountNumbers.size());
+        int to = (from + 1 + random.nextInt(accountNumbers.size() - 1)) % accountNumbers.size();
+
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(accountNumbers.get(from));
+        request.setToAccountNumber(accountNumbers.get(to));
+        request.setAmount(1L + random.nextInt(100));
+        return request;
+    }
+}
@@ -0,0 +1,73 @@
+package com.p2p.transfer_app.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RingBufferTest {
+
+    @Test
+    void constructor_WithCapacityNotPowerOfTwo_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<Integer>(12));
+    }
+
+    @Test
+    void offer_WhenFull_ShouldRejectUntilDrained() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, ring.drainTo(drained, 2));
+        assertTrue(ring.offer(4));
+        assertTrue(ring.offer(5));
+        assertEquals(4, ring.drainTo(drained, 10));
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), drained);
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void drainTo_WithConcurrentProducers_ShouldDeliverEveryElementOnce() throws Exception {
+        RingBuffer<Integer> ring = new RingBuffer<>(1024);
+        int producers = 4;
+        int perProducer = 20_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        Set<Integer> received = new HashSet<>();
+        List<Integer> batch = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (received.size() < producers * perProducer && System.currentTimeMillis() < deadline) {
+            batch.clear();
+            ring.drainTo(batch, 256);
+            for (Integer value : batch) {
+                assertTrue(received.add(value), "Элемент получен дважды: " + value);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join(10_000);
+        }
+
+        assertEquals(producers * perProducer, received.size());
+    }
+}
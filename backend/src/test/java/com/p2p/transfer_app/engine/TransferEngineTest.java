@@ -0,0 +1,188 @@
+package com.p2p.transfer_app.engine;
+
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import com.p2p.transfer_app.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transfer_engine;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "transfer.engine.enabled=true"
+})
+public class TransferEngineTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final int TRANSFERS = 4000;
+    private static final long INITIAL_BALANCE = 10_000L;
+
+    @Autowired
+    private TransferEngine transferEngine;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void submit_WithParallelTransfers_ShouldConserveTotalBalanceAndPersistEachCommittedTransfer() throws Exception {
+        List<Account> accounts = createAccounts(ACCOUNTS, INITIAL_BALANCE);
+        List<CompletableFuture<UUID>> futures = new ArrayList<>();
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            producers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS / 8; i++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    CompletableFuture<UUID> future = transferEngine.submit(request(accounts.get(from), accounts.get(to), 1L + random.nextInt(5_000)));
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        int completed = 0;
+        int rejected = 0;
+        for (CompletableFuture<UUID> future : futures) {
+            try {
+                assertNotNull(future.get(30, TimeUnit.SECONDS));
+                completed++;
+            } catch (ExecutionException e) {
+                assertEquals("Недостаточно средств", e.getCause().getMessage());
+                rejected++;
+            }
+        }
+
+        long total = 0;
+        for (Account account : accounts) {
+            long balance = accountRepository.findById(account.getId()).orElseThrow().getBalance();
+            assertTrue(balance >= 0, "Баланс не может стать отрицательным");
+            total += balance;
+        }
+        assertEquals(ACCOUNTS * INITIAL_BALANCE, total);
+        assertEquals(TRANSFERS, completed + rejected);
+        assertTrue(completed > 0);
+
+        Integer recorded = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE from_account_id BETWEEN ? AND ?",
+                Integer.class, accounts.get(0).getId(), accounts.get(ACCOUNTS - 1).getId());
+        assertEquals(completed, recorded);
+        Integer ledgerEntries = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_entries WHERE account_id BETWEEN ? AND ?",
+                Integer.class, accounts.get(0).getId(), accounts.get(ACCOUNTS - 1).getId());
+        assertEquals(completed * 2, ledgerEntries);
+    }
+
+    @Test
+    void submit_WithInsufficientFunds_ShouldFailWithoutWriting() {
+        List<Account> accounts = createAccounts(2, 100L);
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> transferEngine.submit(request(accounts.get(0), accounts.get(1), 101L)).get(10, TimeUnit.SECONDS));
+
+        assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        assertEquals(100L, accountRepository.findById(accounts.get(0).getId()).orElseThrow().getBalance());
+        assertEquals(0, countTransactionsFrom(accounts.get(0)));
+    }
+
+    @Test
+    void transfer_WithUnknownAccount_ShouldThrowNotFound() {
+        List<Account> accounts = createAccounts(1, 100L);
+        Account missing = new Account(null, "ENGINE-MISSING", 0L, accounts.get(0).getUserId());
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> transferEngine.transfer(request(accounts.get(0), missing, 10L)));
+
+        assertEquals("Счет-получатель не найден", exception.getMessage());
+    }
+
+    @Test
+    void transfer_AfterTransferOutsideEngine_ShouldUseReloadedBalance() {
+        List<Account> accounts = createAccounts(3, 1_000L);
+        transferEngine.transfer(request(accounts.get(0), accounts.get(1), 100L));
+
+        // Обычный перевод меняет баланс в базе, движок получает инвалидацию после фиксации
+        accountService.transferMoney(request(accounts.get(0), accounts.get(2), 800L));
+
+        RuntimeException exception = assertThrows(IllegalArgumentException.class,
+                () -> transferEngine.transfer(request(accounts.get(0), accounts.get(1), 200L)));
+        assertEquals("Недостаточно средств", exception.getMessage());
+        assertNotNull(transferEngine.transfer(request(accounts.get(0), accounts.get(1), 100L)));
+        assertEquals(0L, accountRepository.findById(accounts.get(0).getId()).orElseThrow().getBalance());
+    }
+
+    @Test
+    void transfer_WhenBalanceChangedWithoutEvent_ShouldRollBackGroupAndRevalidate() {
+        List<Account> accounts = createAccounts(2, 1_000L);
+        transferEngine.transfer(request(accounts.get(0), accounts.get(1), 100L));
+
+        // Изменение в обход приложения: баланс в памяти движка становится завышенным
+        jdbcTemplate.update("UPDATE accounts SET balance = 50 WHERE id = ?", accounts.get(0).getId());
+
+        RuntimeException exception = assertThrows(IllegalArgumentException.class,
+                () -> transferEngine.transfer(request(accounts.get(0), accounts.get(1), 500L)));
+        assertEquals("Недостаточно средств", exception.getMessage());
+        assertEquals(50L, accountRepository.findById(accounts.get(0).getId()).orElseThrow().getBalance());
+        assertEquals(1, countTransactionsFrom(accounts.get(0)));
+
+        transferEngine.transfer(request(accounts.get(0), accounts.get(1), 50L));
+        assertEquals(0L, accountRepository.findById(accounts.get(0).getId()).orElseThrow().getBalance());
+    }
+
+    @Test
+    void transfer_FromClosedAccount_ShouldThrowNotFound() {
+        List<Account> accounts = createAccounts(2, 1_000L);
+        transferEngine.transfer(request(accounts.get(0), accounts.get(1), 100L));
+
+        accountService.closeAccount(accounts.get(0).getId());
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> transferEngine.transfer(request(accounts.get(0), accounts.get(1), 100L)));
+        assertEquals("Счет-источник не найден", exception.getMessage());
+    }
+
+    private List<Account> createAccounts(int count, long balance) {
+        User user = userRepository.save(new User(null, "engine-" + UUID.randomUUID(), "secret"));
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            accounts.add(accountRepository.save(new Account(null, "EN" + UUID.randomUUID().toString().substring(0, 18), balance, user.getId())));
+        }
+        return accounts;
+    }
+
+    private int countTransactionsFrom(Account account) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE from_account_id = ?", Integer.class, account.getId());
+    }
+
+    private static TransferRequest request(Account from, Account to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(from.getAccountNumber());
+        request.setToAccountNumber(to.getAccountNumber());
+        request.setAmount(amount);
+        return request;
+    }
+}
@@ -0,0 +1,174 @@
+package com.p2p.transfer_app.engine;
+
+import com.p2p.transfer_app.TransferAppApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Убивает процесс с движком переводов (kill -9), когда пачка записана в журнал, но еще не зафиксирована в базе,
+// и проверяет, что каждый подтвержденный перевод уже в базе, а восстановление при старте применяет записанную пачку
+// ровно один раз и ничего не делает FAILED
+public class TransferJournalCrashTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recover_AfterKillMidBatch_ShouldApplyJournaledGroupExactlyOnce() throws Exception {
+        String url = "jdbc:h2:file:" + directory.resolve("db").toAbsolutePath()
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000;WRITE_DELAY=0";
+        Path journal = directory.resolve("journal");
+
+        Set<UUID> acknowledged = ConcurrentHashMap.newKeySet();
+        Process child = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), JournalCrashChild.class.getName(), url, journal.toString())
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            BlockingQueue<String> signals = new LinkedBlockingQueue<>();
+            Thread reader = new Thread(() -> readOutput(child, acknowledged, signals));
+            reader.setDaemon(true);
+            reader.start();
+
+            assertEquals("READY", signals.poll(180, TimeUnit.SECONDS), "Дочерний процесс не запустился");
+            awaitAcknowledged(acknowledged, 500);
+
+            PrintWriter commands = new PrintWriter(child.getOutputStream(), true, StandardCharsets.UTF_8);
+            commands.println("STALL");
+            assertEquals("STALLED", signals.poll(60, TimeUnit.SECONDS));
+        } finally {
+            child.destroyForcibly().waitFor(30, TimeUnit.SECONDS);
+        }
+
+        Set<UUID> acknowledgedAtCrash = Set.copyOf(acknowledged);
+        assertEquals(0, countMissing(url, acknowledgedAtCrash), "Подтверждение отправляется только после фиксации");
+        int transfersAtCrash = countTransfers(url);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TransferAppApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--spring.sql.init.mode=never",
+                        "--transfer.engine.enabled=true",
+                        "--transfer.engine.journal.enabled=true",
+                        "--transfer.engine.journal.directory=" + journal,
+                        "--transfer.engine.journal.segment-size=4KB",
+                        "--spring.main.banner-mode=off")) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+            assertEquals(0, countMissing(url, acknowledgedAtCrash));
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) - COUNT(DISTINCT id) FROM transactions", Integer.class));
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions WHERE status <> 'COMPLETED'", Integer.class));
+
+            List<Map<String, Object>> accounts = jdbcTemplate.queryForList("""
+                    SELECT a.balance,
+                           (SELECT COALESCE(SUM(amount), 0) FROM transactions WHERE to_account_id = a.id) AS incoming,
+                           (SELECT COALESCE(SUM(amount), 0) FROM transactions WHERE from_account_id = a.id) AS outgoing
+                    FROM accounts a WHERE a.account_number LIKE ?""", JournalCrashChild.ACCOUNT_PREFIX + "%");
+            assertEquals(JournalCrashChild.ACCOUNTS, accounts.size());
+            long total = 0;
+            for (Map<String, Object> account : accounts) {
+                long balance = ((Number) account.get("balance")).longValue();
+                long expected = JournalCrashChild.INITIAL_BALANCE + ((Number) account.get("incoming")).longValue()
+                        - ((Number) account.get("outgoing")).longValue();
+                assertEquals(expected, balance, "Баланс счета должен совпадать с суммой его переводов");
+                total += balance;
+            }
+            assertEquals(JournalCrashChild.ACCOUNTS * JournalCrashChild.INITIAL_BALANCE, total);
+
+            Integer transfers = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transactions", Integer.class);
+            assertTrue(transfers > transfersAtCrash, "Пачка из журнала должна быть применена при восстановлении");
+            assertEquals(transfers * 2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_entries", Integer.class));
+            assertEquals(1, segmentCount(journal), "Примененные сегменты журнала должны быть удалены");
+            assertEquals(0, journalSize(journal), "Примененный текущий сегмент должен быть обрезан");
+        }
+    }
+
+    private static void readOutput(Process child, Set<UUID> acknowledged, BlockingQueue<String> signals) {
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith("ACK ")) {
+                    acknowledged.add(UUID.fromString(line.substring(4).trim()));
+                } else if (line.equals("READY") || line.equals("STALLED")) {
+                    signals.add(line);
+                }
+            }
+        } catch (Exception ignored) {
+            // Поток закрывается при убийстве процесса
+        }
+    }
+
+    private static void awaitAcknowledged(Set<UUID> acknowledged, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 120_000;
+        while (acknowledged.size() < count) {
+            assertTrue(System.currentTimeMillis() < deadline, "Дочерний процесс перестал подтверждать переводы");
+            Thread.sleep(10);
+        }
+    }
+
+    private static int countMissing(String url, Set<UUID> ids) throws Exception {
+        int missing = 0;
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM transactions WHERE id = ?")) {
+            for (UUID id : ids) {
+                statement.setObject(1, id);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    if (resultSet.getInt(1) == 0) {
+                        missing++;
+                    }
+                }
+            }
+        }
+        return missing;
+    }
+
+    private static int countTransfers(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             ResultSet resultSet = connection.createStatement().executeQuery("SELECT COUNT(*) FROM transactions")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static long journalSize(Path journal) throws Exception {
+        try (Stream<Path> files = Files.list(journal)) {
+            long size = 0;
+            for (Path file : files.toList()) {
+                size += Files.size(file);
+            }
+            return size;
+        }
+    }
+
+    private static long segmentCount(Path journal) throws Exception {
+        try (Stream<Path> files = Files.list(journal)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".wal")).count();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.p2p.transfer_app.engine;
+
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransferJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recover_AfterAppend_ShouldReturnRecordsInOrder() throws Exception {
+        List<Transaction> written = transactions(5);
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            assertTrue(journal.recover(0).isEmpty());
+            assertEquals(2, journal.append(written.subList(0, 2)));
+            assertEquals(5, journal.append(written.subList(2, 5)));
+        }
+
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            List<Transaction> recovered = journal.recover(0);
+
+            assertEquals(written, recovered);
+            assertEquals(5, journal.lastSequence());
+        }
+    }
+
+    @Test
+    void recover_WithTornTail_ShouldDropIncompleteRecordAndContinueNumbering() throws Exception {
+        List<Transaction> written = transactions(4);
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            journal.recover(0);
+            journal.append(written.subList(0, 3));
+        }
+        // Процесс упал посреди записи четвертой записи
+        Files.write(onlySegment(), new byte[TransferJournal.RECORD_BYTES / 2], StandardOpenOption.APPEND);
+
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            assertEquals(written.subList(0, 3), journal.recover(0));
+            assertEquals(4, journal.append(written.subList(3, 4)));
+        }
+
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            assertEquals(written, journal.recover(0));
+        }
+    }
+
+    @Test
+    void checkpoint_AfterRotation_ShouldDeleteOnlyAppliedSegments() throws Exception {
+        List<Transaction> written = transactions(6);
+        try (TransferJournal journal = new TransferJournal(directory, TransferJournal.RECORD_BYTES * 2L)) {
+            journal.recover(0);
+            for (Transaction transaction : written) {
+                journal.append(List.of(transaction));
+            }
+            assertEquals(3, journal.segmentCount());
+
+            journal.checkpoint(3);
+            assertEquals(2, journal.segmentCount());
+        }
+
+        try (TransferJournal journal = new TransferJournal(directory, TransferJournal.RECORD_BYTES * 2L)) {
+            assertEquals(written.subList(3, 6), journal.recover(3));
+            assertEquals(6, journal.lastSequence());
+        }
+    }
+
+    @Test
+    void checkpoint_WithEverythingApplied_ShouldTruncateActiveSegmentAndKeepNumbering() throws Exception {
+        List<Transaction> written = transactions(5);
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            journal.recover(0);
+            journal.append(written.subList(0, 3));
+            journal.checkpoint(3);
+
+            assertEquals(1, journal.segmentCount());
+            assertEquals(0, journal.activeSize());
+            assertEquals(5, journal.append(written.subList(3, 5)));
+        }
+
+        // Нумерация в обрезанном сегменте продолжается, а примененные записи не читаются повторно
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            assertEquals(written.subList(3, 5), journal.recover(3));
+            assertEquals(5, journal.lastSequence());
+            journal.checkpoint(5);
+        }
+
+        // Сегмент пуст: номер следующей записи берется из последней примененной
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            assertTrue(journal.recover(5).isEmpty());
+            assertEquals(5, journal.lastSequence());
+        }
+    }
+
+    @Test
+    void recover_WithAppliedRecordsLeftByLostTruncate_ShouldIgnoreThem() throws Exception {
+        List<Transaction> written = transactions(6);
+        byte[] applied;
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            journal.recover(0);
+            journal.append(written.subList(0, 3));
+            applied = Files.readAllBytes(onlySegment());
+            journal.checkpoint(3);
+            journal.append(written.subList(3, 5));
+        }
+        // Обрезка не дошла до диска: за новыми записями остался хвост старых
+        byte[] fresh = Files.readAllBytes(onlySegment());
+        byte[] mixed = Arrays.copyOf(fresh, applied.length);
+        System.arraycopy(applied, fresh.length, mixed, fresh.length, applied.length - fresh.length);
+        Files.write(onlySegment(), mixed);
+
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            assertEquals(written.subList(3, 5), journal.recover(3));
+            assertEquals(6, journal.append(written.subList(5, 6)));
+        }
+
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            assertEquals(written.subList(3, 6), journal.recover(3));
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static List<Transaction> transactions(int count) {
+        OffsetDateTime createdAt = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            transactions.add(Transaction.builder()
+                    .id(UUID.randomUUID())
+                    .fromAccountId(1L + i)
+                    .toAccountId(100L + i)
+                    .amount(10L * (i + 1))
+                    .status(TransactionStatus.COMPLETED)
+                    .createdAt(createdAt.plusNanos(i * 1000L))
+                    .build());
+        }
+        return transactions;
+    }
+}
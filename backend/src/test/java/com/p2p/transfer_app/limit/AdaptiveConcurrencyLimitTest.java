@@ -0,0 +1,100 @@
+package com.p2p.transfer_app.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    private static void runLoaded(AdaptiveConcurrencyLimit limit, int samples, long rttNanos) throws InterruptedException {
+        for (int i = 0; i < samples; i++) {
+            int acquired = 0;
+            while (acquired < limit.getLimit() && limit.tryAcquire()) {
+                acquired++;
+            }
+            for (int j = 0; j < acquired; j++) {
+                limit.release(rttNanos, false);
+            }
+        }
+    }
+
+    @Test
+    void tryAcquire_AtLimitWithoutQueue_ShouldRejectImmediately() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 0, 0, 1.5, 0);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        limit.release(MILLIS, false);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void tryAcquire_WithQueue_ShouldWaitForReleasedPermit() throws Exception {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 10, 1, 5_000, 1.5, 0);
+        assertTrue(limit.tryAcquire());
+
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limit.tryAcquire();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (limit.getWaiting() == 0) {
+            Thread.onSpinWait();
+        }
+        // Очередь из одного места занята, следующий запрос отклоняется без ожидания
+        assertFalse(limit.tryAcquire());
+
+        limit.release(MILLIS, false);
+        assertTrue(waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limit.getInFlight());
+    }
+
+    @Test
+    void release_WhenLatencyGrows_ShouldShrinkLimitAndRecover() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 100, 0, 0, 1.5, 0);
+
+        runLoaded(limit, 50, 5 * MILLIS);
+        int healthy = limit.getLimit();
+        assertTrue(healthy > 20, "Лимит при стабильной задержке: " + healthy);
+
+        runLoaded(limit, 5, 100 * MILLIS);
+        int overloaded = limit.getLimit();
+        assertTrue(overloaded < healthy / 2, "Лимит при росте задержки: " + overloaded + " из " + healthy);
+
+        runLoaded(limit, 200, 5 * MILLIS);
+        assertTrue(limit.getLimit() > overloaded);
+    }
+
+    @Test
+    void release_WithDrops_ShouldBackOffToMinLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(50, 3, 100, 0, 0, 1.5, 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(MILLIS, true);
+        }
+
+        assertEquals(3, limit.getLimit());
+    }
+
+    @Test
+    void release_WithoutLoad_ShouldNotGrowLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 100, 0, 0, 1.5, 0);
+
+        for (int i = 0; i < 500; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(MILLIS, false);
+        }
+
+        assertEquals(20, limit.getLimit());
+    }
+}
@@ -0,0 +1,122 @@
+package com.p2p.transfer_app.limit;
+
+import com.p2p.transfer_app.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class VelocityLimiterTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private VelocityLimiter limiter(long accountCountPerMinute, long accountAmountPerDay, long userCountPerMinute) {
+        return new VelocityLimiter(mock(TransactionRepository.class), new SimpleMeterRegistry(),
+                accountCountPerMinute, 0, 0, accountAmountPerDay, userCountPerMinute, 0, 0, 0);
+    }
+
+    @Test
+    void slidingWindow_ShouldDropBucketsOlderThanWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60_000, 12);
+
+        counter.add(NOW, 1, 100);
+        counter.add(NOW + 30_000, 1, 50);
+
+        assertEquals(2, counter.count(NOW + 30_000));
+        assertEquals(150, counter.amount(NOW + 30_000));
+        assertEquals(1, counter.count(NOW + 65_000));
+        assertEquals(50, counter.amount(NOW + 65_000));
+        assertTrue(counter.isIdle(NOW + 95_000));
+    }
+
+    @Test
+    void tryAcquire_OverCountPerMinute_ShouldRejectUntilWindowSlides() {
+        VelocityLimiter limiter = limiter(2, 0, 0);
+
+        assertTrue(limiter.tryAcquire(1L, 1L, 10, NOW));
+        assertTrue(limiter.tryAcquire(1L, 1L, 10, NOW + 1_000));
+        assertFalse(limiter.tryAcquire(1L, 1L, 10, NOW + 2_000));
+        assertTrue(limiter.tryAcquire(2L, 1L, 10, NOW + 2_000));
+        assertTrue(limiter.tryAcquire(1L, 1L, 10, NOW + 61_000));
+    }
+
+    @Test
+    void tryAcquire_OverUserLimit_ShouldRejectAcrossAccountsWithoutCountingRejection() {
+        VelocityLimiter limiter = limiter(0, 1_000, 2);
+
+        assertTrue(limiter.tryAcquire(1L, 7L, 600, NOW));
+        assertFalse(limiter.tryAcquire(1L, 7L, 600, NOW));
+        assertTrue(limiter.tryAcquire(2L, 7L, 600, NOW));
+        assertFalse(limiter.tryAcquire(3L, 7L, 1, NOW));
+        assertTrue(limiter.tryAcquire(1L, 8L, 400, NOW));
+    }
+
+    @Test
+    void tryAcquire_WhenTransactionRollsBack_ShouldReleaseReservation() {
+        VelocityLimiter limiter = limiter(1, 0, 0);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(limiter.tryAcquire(1L, 1L, 10, NOW));
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(limiter.tryAcquire(1L, 1L, 10, NOW));
+        assertFalse(limiter.tryAcquire(1L, 1L, 10, NOW));
+    }
+
+    @Test
+    void tryAcquire_Concurrently_ShouldNeverExceedLimit() throws Exception {
+        VelocityLimiter limiter = limiter(100, 0, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                int acquired = 0;
+                for (int i = 0; i < 1_000; i++) {
+                    if (limiter.tryAcquire(1L, 1L, 1, NOW)) {
+                        acquired++;
+                    }
+                }
+                return acquired;
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> future : futures) {
+            total += future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertTrue(total <= 100, "Разрешено переводов: " + total);
+        assertTrue(total > 0);
+    }
+
+    @Test
+    void evictIdle_ShouldKeepActiveAccounts() {
+        VelocityLimiter limiter = limiter(5, 0, 0);
+        limiter.tryAcquire(1L, 1L, 10, System.currentTimeMillis());
+        limiter.tryAcquire(2L, 1L, 10, System.currentTimeMillis() - 2 * 24 * 3600 * 1000L);
+
+        limiter.evictIdle();
+
+        assertEquals(1, limiter.trackedAccounts());
+    }
+}
@@ -0,0 +1,43 @@
+package com.p2p.transfer_app.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.p2p.transfer_app.model.OutboxEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileTransferEventSinkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void publish_ShouldAppendOneJsonLinePerEvent() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        Path file = directory.resolve("events/transfers.ndjson");
+        UUID first = UUID.randomUUID();
+
+        FileTransferEventSink sink = new FileTransferEventSink(objectMapper, file);
+        sink.publish(List.of(new OutboxEvent(1L, first, 1L, 2L, 100L, OffsetDateTime.now(), 0)));
+        sink.publish(List.of(new OutboxEvent(2L, UUID.randomUUID(), 2L, 1L, 50L, OffsetDateTime.now(), 0)));
+        sink.destroy();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        JsonNode event = objectMapper.readTree(lines.get(0));
+        assertEquals(first.toString(), event.get("transactionId").asText());
+        assertEquals(100L, event.get("amount").asLong());
+    }
+}
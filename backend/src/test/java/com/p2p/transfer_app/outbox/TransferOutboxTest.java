@@ -0,0 +1,111 @@
+package com.p2p.transfer_app.outbox;
+
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.OutboxEvent;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.OutboxRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import com.p2p.transfer_app.service.AccountService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"transfer.mode=CONDITIONAL", "outbox.relay.interval=PT1H"})
+public class TransferOutboxTest {
+
+    @Autowired
+    private TransferOutbox transferOutbox;
+
+    @Autowired
+    private TransferEventSink sink;
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Account from;
+    private Account to;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM transfer_outbox");
+        ((InMemoryTransferEventSink) sink).clear();
+        User user = userRepository.save(new User(null, "outbox-" + UUID.randomUUID(), "password"));
+        from = accountRepository.save(new Account(null, "OB" + UUID.randomUUID().toString().substring(0, 18), 1000L, user.getId()));
+        to = accountRepository.save(new Account(null, "OB" + UUID.randomUUID().toString().substring(0, 18), 0L, user.getId()));
+    }
+
+    private TransferRequest transfer(long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(from.getAccountNumber());
+        request.setToAccountNumber(to.getAccountNumber());
+        request.setAmount(amount);
+        return request;
+    }
+
+    private int pending() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM transfer_outbox", Integer.class);
+    }
+
+    @Test
+    void relay_ShouldPublishCommittedTransfersOnly() {
+        List<UUID> transactionIds = new ArrayList<>();
+        transactionIds.add(accountService.transferMoney(transfer(100L)));
+        transactionIds.add(accountService.transferMoney(transfer(200L)));
+        assertThrows(IllegalArgumentException.class, () -> accountService.transferMoney(transfer(5000L)));
+
+        assertEquals(2, pending());
+
+        transferOutbox.relay();
+
+        List<OutboxEvent> events = ((InMemoryTransferEventSink) sink).getEvents();
+        assertEquals(transactionIds, events.stream().map(OutboxEvent::getTransactionId).toList());
+        assertEquals(200L, events.get(1).getAmount());
+        assertEquals(0, pending());
+    }
+
+    @Test
+    void relay_WhenSinkFails_ShouldKeepEventsAndBackOff() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TransferOutbox failing = new TransferOutbox(outboxRepository, events -> {
+            throw new IllegalStateException("Получатель недоступен");
+        }, transactionTemplate, meterRegistry, 100, 1, Duration.ofMinutes(1), Duration.ofMinutes(5));
+        accountService.transferMoney(transfer(100L));
+
+        failing.relay();
+        failing.relay();
+
+        assertEquals(1, pending());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT attempts FROM transfer_outbox", Integer.class));
+        assertEquals("Получатель недоступен", jdbcTemplate.queryForObject("SELECT last_error FROM transfer_outbox", String.class));
+        assertEquals(1.0, meterRegistry.get("outbox.relay.retries").counter().count());
+        assertEquals(0.0, meterRegistry.get("outbox.relay.published").counter().count());
+    }
+}
@@ -0,0 +1,88 @@
+package com.p2p.transfer_app.partition;
+
+import com.p2p.transfer_app.repository.TransactionPartitionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionPartitionMaintainerTest {
+
+    @Mock
+    private TransactionPartitionRepository partitionRepository;
+
+    private TransactionPartitionMaintainer maintainer(int monthsAhead, int retentionMonths) {
+        return new TransactionPartitionMaintainer(partitionRepository, new SimpleMeterRegistry(), true, monthsAhead, retentionMonths);
+    }
+
+    @Test
+    void name_ShouldRoundTripThroughParse() {
+        YearMonth month = YearMonth.of(2024, 3);
+
+        assertEquals("transactions_p2024_03", TransactionPartitionMaintainer.name(month));
+        assertEquals(Optional.of(month), TransactionPartitionMaintainer.parse("transactions_p2024_03"));
+        assertEquals(Optional.empty(), TransactionPartitionMaintainer.parse("transactions_default"));
+    }
+
+    @Test
+    void missing_ShouldReturnCurrentAndFutureMonthsWithoutPartition() {
+        List<YearMonth> missing = TransactionPartitionMaintainer.missing(
+                List.of("transactions_default", "transactions_p2024_11", "transactions_p2025_01"), YearMonth.of(2024, 11), 3);
+
+        assertEquals(List.of(YearMonth.of(2024, 12), YearMonth.of(2025, 2)), missing);
+    }
+
+    @Test
+    void expired_ShouldKeepRetentionWindowAndDefaultPartition() {
+        List<String> existing = List.of("transactions_default", "transactions_p2024_05", "transactions_p2024_04",
+                "transactions_p2024_06", "transactions_p2024_08");
+
+        assertEquals(List.of("transactions_p2024_04", "transactions_p2024_05"),
+                TransactionPartitionMaintainer.expired(existing, YearMonth.of(2024, 8), 2));
+        assertEquals(List.of(), TransactionPartitionMaintainer.expired(existing, YearMonth.of(2024, 8), 0));
+    }
+
+    @Test
+    void maintain_OnUnpartitionedTable_ShouldDoNothing() {
+        when(partitionRepository.isPartitioned()).thenReturn(false);
+        TransactionPartitionMaintainer maintainer = maintainer(3, 0);
+
+        maintainer.maintain();
+        maintainer.maintain();
+
+        verify(partitionRepository, times(1)).isPartitioned();
+        verify(partitionRepository, never()).findPartitionNames();
+        verify(partitionRepository, never()).createPartition(anyString(), any(), any());
+    }
+
+    @Test
+    void maintain_OnPartitionedTable_ShouldCreateAheadAndDetachExpired() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        String old = TransactionPartitionMaintainer.name(current.minusMonths(13));
+        String kept = TransactionPartitionMaintainer.name(current.minusMonths(12));
+        when(partitionRepository.isPartitioned()).thenReturn(true);
+        when(partitionRepository.findPartitionNames()).thenReturn(
+                List.of("transactions_default", old, kept, TransactionPartitionMaintainer.name(current)));
+
+        maintainer(1, 12).maintain();
+
+        YearMonth next = current.plusMonths(1);
+        verify(partitionRepository).createPartition(TransactionPartitionMaintainer.name(next),
+                next.atDay(1).atStartOfDay(), next.plusMonths(1).atDay(1).atStartOfDay());
+        verify(partitionRepository, times(1)).createPartition(anyString(), any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(partitionRepository).detachPartition(old);
+        verify(partitionRepository, never()).detachPartition(kept);
+    }
+}
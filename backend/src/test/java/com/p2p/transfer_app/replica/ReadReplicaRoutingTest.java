@@ -0,0 +1,130 @@
+package com.p2p.transfer_app.replica;
+
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import com.p2p.transfer_app.service.AccountService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Основная база и реплика - две независимые базы H2: репликация имитируется записью в реплику из теста
+@SpringBootTest(properties = {
+    "transfer.mode=CONDITIONAL",
+    "spring.datasource.replica.url=jdbc:h2:mem:transfer_app_replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+    "spring.datasource.replica.username=sa",
+    "replica.lag-check-interval=PT1H",
+    "replica.max-staleness=PT5S"
+})
+public class ReadReplicaRoutingTest {
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    private JdbcTemplate replica;
+
+    private User user;
+
+    private Account account;
+
+    @BeforeEach
+    void setUp() {
+        replica = new JdbcTemplate(replicaDataSource);
+        if (replica.queryForList("SELECT table_name FROM information_schema.tables WHERE table_name = 'accounts'").isEmpty()) {
+            new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(replicaDataSource);
+        }
+
+        user = userRepository.save(new User(null, "replica-" + UUID.randomUUID(), "password"));
+        account = accountRepository.save(new Account(null, "RP" + UUID.randomUUID().toString().substring(0, 18), 1000L, user.getId()));
+        // Реплика получила пользователя и счет, но еще не получила изменения баланса
+        replica.update("INSERT INTO users (id, username, password_hash) VALUES (?, ?, ?)", user.getId(), user.getUsername(), "password");
+        replica.update("INSERT INTO accounts (id, account_number, balance, user_id) VALUES (?, ?, ?, ?)",
+                account.getId(), account.getAccountNumber(), 1L, user.getId());
+    }
+
+    private void replicaHeartbeat(Instant beatAt) {
+        replica.update("DELETE FROM replica_heartbeat");
+        replica.update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)", Timestamp.from(beatAt));
+        replicaLagMonitor.check();
+    }
+
+    @Test
+    void reads_WhenReplicaIsFresh_ShouldGoToReplicaOutsideWriteTransactions() {
+        replicaHeartbeat(Instant.now());
+        assertTrue(replicaLagMonitor.isFresh());
+
+        assertEquals(1L, accountRepository.findById(account.getId()).orElseThrow().getBalance());
+        assertEquals(1L, accountRepository.findAllByUserId(user.getId()).get(0).getBalance());
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        assertEquals(Long.valueOf(1L), readOnly.execute(status -> accountRepository.findById(account.getId()).orElseThrow().getBalance()));
+
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        assertEquals(Long.valueOf(1000L), readWrite.execute(status -> accountRepository.findById(account.getId()).orElseThrow().getBalance()));
+    }
+
+    @Test
+    void transferMoney_WhenReplicaIsFresh_ShouldWriteToPrimary() {
+        replicaHeartbeat(Instant.now());
+        Account target = accountRepository.save(new Account(null, "RP" + UUID.randomUUID().toString().substring(0, 18), 0L, user.getId()));
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(account.getAccountNumber());
+        request.setToAccountNumber(target.getAccountNumber());
+        request.setAmount(300L);
+
+        accountService.transferMoney(request);
+
+        Long primaryBalance = new JdbcTemplate(primaryDataSource)
+                .queryForObject("SELECT balance FROM accounts WHERE id = ?", Long.class, account.getId());
+        assertEquals(700L, primaryBalance);
+        assertEquals(1L, replica.queryForObject("SELECT balance FROM accounts WHERE id = ?", Long.class, account.getId()));
+    }
+
+    @Test
+    void reads_WhenReplicaLagsBeyondStaleness_ShouldFallBackToPrimary() {
+        replicaHeartbeat(Instant.now().minusSeconds(60));
+
+        assertFalse(replicaLagMonitor.isFresh());
+        assertEquals(1000L, accountRepository.findById(account.getId()).orElseThrow().getBalance());
+
+        replicaHeartbeat(Instant.now());
+        assertEquals(1L, accountRepository.findById(account.getId()).orElseThrow().getBalance());
+    }
+}
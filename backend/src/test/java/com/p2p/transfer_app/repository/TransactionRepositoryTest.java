@@ -0,0 +1,75 @@
+package com.p2p.transfer_app.repository;
+
+import com.p2p.transfer_app.dto.TransactionCursor;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class TransactionRepositoryTest {
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void streamByAccountId_WalkingAllPages_ShouldReturnBothSidesOnceInKeysetOrder() {
+        User user = userRepository.save(new User(null, "history-" + UUID.randomUUID(), "secret"));
+        Account account = accountRepository.save(new Account(null, "HS" + UUID.randomUUID().toString().substring(0, 18), 0L, user.getId()));
+        Account other = accountRepository.save(new Account(null, "HS" + UUID.randomUUID().toString().substring(0, 18), 0L, user.getId()));
+
+        // Часть строк с одинаковым created_at, чтобы порядок определялся id
+        OffsetDateTime base = OffsetDateTime.of(2025, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        List<Transaction> saved = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            boolean outgoing = i % 2 == 0;
+            saved.add(Transaction.builder()
+                    .id(UUID.randomUUID())
+                    .fromAccountId(outgoing ? account.getId() : other.getId())
+                    .toAccountId(outgoing ? other.getId() : account.getId())
+                    .amount((long) i + 1)
+                    .status(TransactionStatus.COMPLETED)
+                    .createdAt(base.plusSeconds(i / 3))
+                    .build());
+        }
+        transactionRepository.saveAll(saved);
+
+        List<Transaction> walked = new ArrayList<>();
+        TransactionCursor cursor = null;
+        do {
+            List<Transaction> page = new ArrayList<>();
+            transactionRepository.streamByAccountId(account.getId(), cursor, 4, page::add);
+            assertTrue(page.size() <= 4);
+            walked.addAll(page);
+            Transaction last = page.isEmpty() ? null : page.get(page.size() - 1);
+            cursor = page.size() < 4 ? null : new TransactionCursor(last.getCreatedAt().toInstant(), last.getId());
+        } while (cursor != null);
+
+        assertEquals(25, walked.size());
+        Set<UUID> ids = new HashSet<>();
+        walked.forEach(transaction -> ids.add(transaction.getId()));
+        assertEquals(25, ids.size());
+        for (int i = 1; i < walked.size(); i++) {
+            assertFalse(walked.get(i).getCreatedAt().isAfter(walked.get(i - 1).getCreatedAt()));
+        }
+    }
+}
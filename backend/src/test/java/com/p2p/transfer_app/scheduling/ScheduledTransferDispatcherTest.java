@@ -0,0 +1,160 @@
+package com.p2p.transfer_app.scheduling;
+
+import com.p2p.transfer_app.dto.ScheduledTransferRequest;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.ScheduledTransfer;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.model.enums.ScheduledTransferStatus;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.ScheduledTransferRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import com.p2p.transfer_app.service.AccountService;
+import com.p2p.transfer_app.service.ScheduledTransferService;
+import com.p2p.transfer_app.shard.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"transfer.mode=CONDITIONAL", "scheduled.transfers.load-interval=PT1H",
+        "scheduled.transfers.rate-per-second=1000", "scheduled.transfers.batch-size=50"})
+public class ScheduledTransferDispatcherTest {
+
+    @Autowired
+    private ScheduledTransferService scheduledTransferService;
+
+    @Autowired
+    private ScheduledTransferRepository scheduledTransferRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Account from;
+    private Account to;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM scheduled_transfers");
+        user = userRepository.save(new User(null, "scheduled-" + UUID.randomUUID(), "password"));
+        from = accountRepository.save(new Account(null, "SC" + UUID.randomUUID().toString().substring(0, 18), 1000L, user.getId()));
+        to = accountRepository.save(new Account(null, "SC" + UUID.randomUUID().toString().substring(0, 18), 0L, user.getId()));
+    }
+
+    private ScheduledTransferRequest request(long amount, Duration delay, Long repeatIntervalSeconds) {
+        ScheduledTransferRequest request = new ScheduledTransferRequest();
+        request.setFromAccountNumber(from.getAccountNumber());
+        request.setToAccountNumber(to.getAccountNumber());
+        request.setAmount(amount);
+        request.setExecuteAt(OffsetDateTime.now(ZoneOffset.UTC).plus(delay));
+        request.setRepeatIntervalSeconds(repeatIntervalSeconds);
+        return request;
+    }
+
+    private ScheduledTransfer reload(Long id) {
+        return scheduledTransferRepository.findAllByUserId(user.getId()).stream()
+                .filter(transfer -> transfer.getId().equals(id))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private long balance(Account account) {
+        return accountRepository.findById(account.getId()).orElseThrow().getBalance();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Условие не выполнилось за 10 секунд");
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    void schedule_OneTimeTransfer_ShouldExecuteOnceWhenDue() throws Exception {
+        ScheduledTransfer transfer = scheduledTransferService.schedule(user.getId(), request(100L, Duration.ofMillis(300), null));
+
+        await(() -> reload(transfer.getId()).getStatus() == ScheduledTransferStatus.COMPLETED);
+
+        assertNotNull(reload(transfer.getId()).getLastTransactionId());
+        assertEquals(900L, balance(from));
+        assertEquals(100L, balance(to));
+    }
+
+    @Test
+    void schedule_RecurringTransferThatFails_ShouldRecordErrorAndMoveToNextRun() throws Exception {
+        ScheduledTransfer transfer = scheduledTransferService.schedule(user.getId(), request(5000L, Duration.ofMillis(200), 3600L));
+
+        await(() -> reload(transfer.getId()).getLastError() != null);
+
+        ScheduledTransfer failed = reload(transfer.getId());
+        assertEquals(ScheduledTransferStatus.ACTIVE, failed.getStatus());
+        assertEquals(transfer.getNextRunAt().toInstant().plusSeconds(3600).toEpochMilli(), failed.getNextRunAt().toInstant().toEpochMilli());
+        assertEquals(1000L, balance(from));
+    }
+
+    @Test
+    void cancel_BeforeDue_ShouldSkipExecution() throws Exception {
+        ScheduledTransfer transfer = scheduledTransferService.schedule(user.getId(), request(100L, Duration.ofMillis(500), null));
+        scheduledTransferService.cancel(transfer.getId(), user.getId());
+
+        Thread.sleep(1000);
+
+        assertEquals(ScheduledTransferStatus.CANCELLED, reload(transfer.getId()).getStatus());
+        assertEquals(1000L, balance(from));
+        assertThrows(IllegalStateException.class, () -> scheduledTransferService.cancel(transfer.getId(), user.getId()));
+    }
+
+    @Test
+    void loadWindow_ManyDueTransfers_ShouldSpreadExecutionOverConfiguredRate() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            scheduledTransferRepository.save(ScheduledTransfer.builder()
+                    .userId(user.getId())
+                    .fromAccountNumber(from.getAccountNumber())
+                    .toAccountNumber(to.getAccountNumber())
+                    .amount(1L)
+                    .nextRunAt(OffsetDateTime.now(ZoneOffset.UTC).minusSeconds(1))
+                    .status(ScheduledTransferStatus.ACTIVE)
+                    .createdAt(OffsetDateTime.now(ZoneOffset.UTC))
+                    .build());
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ScheduledTransferDispatcher dispatcher = new ScheduledTransferDispatcher(scheduledTransferRepository, accountService, new ShardRouter(1, 1),
+                transactionTemplate, meterRegistry, Duration.ofMinutes(1), Duration.ofMinutes(5), 100, Duration.ofMillis(50), 20, 5, 1);
+        try {
+            long started = System.nanoTime();
+            dispatcher.loadWindow();
+
+            await(() -> balance(to) == 30L);
+
+            // Пять переводов уходят сразу, остальные 25 при 20 в секунду занимают не меньше 1.25 секунды
+            assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() >= 1000);
+            assertEquals(30.0, meterRegistry.get("scheduled.transfers.executed").tag("outcome", "completed").counter().count());
+        } finally {
+            dispatcher.destroy();
+        }
+    }
+}
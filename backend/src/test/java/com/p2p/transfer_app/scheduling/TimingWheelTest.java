@@ -0,0 +1,61 @@
+package com.p2p.transfer_app.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    @Test
+    void add_WhenDeadlineHasPassed_ShouldReturnFalse() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 4, 1_000);
+
+        assertFalse(wheel.add(1_000, "now"));
+        assertFalse(wheel.add(500, "past"));
+        assertTrue(wheel.add(1_010, "next tick"));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void advance_ShouldFireEachItemOnItsTickAcrossLevels() {
+        // Колесо из 4 слотов по 10 мс: сроки до 100 секунд спускаются через несколько уровней
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 4, 0);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long deadline = 10 + random.nextInt(100_000);
+            deadlines.add(deadline);
+            assertTrue(wheel.add(deadline, deadline));
+        }
+
+        List<Long> fired = new ArrayList<>();
+        for (long now = 0; now <= 100_010; now += 7) {
+            long current = now;
+            wheel.advance(now, deadline -> {
+                assertTrue(deadline <= current, "Сработал раньше срока: " + deadline + " в " + current);
+                assertTrue(current - deadline < 20, "Сработал с опозданием: " + deadline + " в " + current);
+                fired.add(deadline);
+            });
+        }
+
+        assertEquals(0, wheel.size());
+        assertEquals(deadlines.stream().sorted().toList(), fired.stream().sorted().toList());
+    }
+
+    @Test
+    void advance_AfterLongPause_ShouldFireEverythingDueInOrder() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(100, 64, 0);
+        wheel.add(3_600_000, 3);
+        wheel.add(150, 1);
+        wheel.add(60_000, 2);
+
+        List<Integer> fired = new ArrayList<>();
+        wheel.advance(7_200_000, fired::add);
+
+        assertEquals(List.of(1, 2, 3), fired);
+    }
+}
@@ -0,0 +1,49 @@
+package com.p2p.transfer_app.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordHasherTest {
+
+    @Test
+    void calibrate_ShouldRaiseStrengthUntilTargetDuration() {
+        PasswordHasher quick = new PasswordHasher(new SimpleMeterRegistry(), 1, 16, 0, 4, Duration.ZERO);
+        PasswordHasher tuned = new PasswordHasher(new SimpleMeterRegistry(), 1, 16, 0, 4, Duration.ofMillis(200));
+
+        assertEquals(4, quick.getStrength());
+        assertTrue(tuned.getStrength() > 4);
+    }
+
+    @Test
+    void needsRehash_ShouldDetectPlaintextAndOutdatedCost() {
+        PasswordHasher hasher = new PasswordHasher(new SimpleMeterRegistry(), 1, 16, 5, 5, Duration.ZERO);
+        PasswordHasher weaker = new PasswordHasher(new SimpleMeterRegistry(), 1, 16, 4, 4, Duration.ZERO);
+
+        assertTrue(hasher.needsRehash("plaintext"));
+        assertTrue(hasher.needsRehash(PasswordHasher.await(weaker.hash("secret"))));
+        assertFalse(hasher.needsRehash(PasswordHasher.await(hasher.hash("secret"))));
+        assertFalse(PasswordHasher.await(hasher.matches("secret", null)));
+    }
+
+    @Test
+    void hash_WhenQueueIsFull_ShouldRejectImmediately() {
+        PasswordHasher hasher = new PasswordHasher(new SimpleMeterRegistry(), 1, 1, 12, 12, Duration.ZERO);
+        List<CompletableFuture<String>> accepted = new ArrayList<>();
+
+        assertThrows(RejectedExecutionException.class, () -> {
+            for (int i = 0; i < 3; i++) {
+                accepted.add(hasher.hash("secret"));
+            }
+        });
+        assertEquals(2, accepted.size());
+        hasher.destroy();
+    }
+}
@@ -0,0 +1,58 @@
+package com.p2p.transfer_app.security;
+
+import com.p2p.transfer_app.exception.AuthenticationException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenServiceTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private TokenService tokenService(String secret, Instant now) {
+        return new TokenService(secret, Duration.ofHours(1), true, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void constructor_WithoutSecretOutsideDevProfiles_ShouldFailAtStartup() {
+        assertThrows(IllegalStateException.class,
+                () -> new TokenService("", Duration.ofHours(1), false, Clock.fixed(NOW, ZoneOffset.UTC)));
+        assertDoesNotThrow(() -> new TokenService("", Duration.ofHours(1), true, Clock.fixed(NOW, ZoneOffset.UTC)));
+    }
+
+    @Test
+    void verify_WithIssuedToken_ShouldReturnClaims() {
+        TokenService tokenService = tokenService("secret", NOW);
+
+        TokenClaims claims = tokenService.verify(tokenService.issue(42L));
+
+        assertEquals(42L, claims.getUserId());
+        assertEquals(NOW.plus(Duration.ofHours(1)), claims.getExpiresAt());
+    }
+
+    @Test
+    void verify_WithTamperedOrForeignToken_ShouldThrowException() {
+        TokenService tokenService = tokenService("secret", NOW);
+        String token = tokenService.issue(42L);
+        String forged = tokenService("other-secret", NOW).issue(1L);
+        String swapped = forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        assertThrows(AuthenticationException.class, () -> tokenService.verify(forged));
+        assertThrows(AuthenticationException.class, () -> tokenService.verify(swapped));
+        assertThrows(AuthenticationException.class, () -> tokenService.verify("garbage"));
+    }
+
+    @Test
+    void verify_WithExpiredToken_ShouldThrowException() {
+        String token = tokenService("secret", NOW).issue(42L);
+
+        Exception exception = assertThrows(AuthenticationException.class,
+                () -> tokenService("secret", NOW.plus(Duration.ofHours(2))).verify(token));
+        assertTrue(exception.getMessage().contains("истек"));
+    }
+}
@@ -0,0 +1,203 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.dto.BatchTransferMode;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.dto.TransferResult;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "transfer.mode=CONDITIONAL")
+public class AccountServiceConcurrencyTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final int TRANSFERS = 4000;
+    private static final int THREADS = 32;
+    private static final long INITIAL_BALANCE = 10_000L;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private BatchTransferService batchTransferService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void transferMoney_WithParallelTransfers_ShouldConserveTotalBalance() throws Exception {
+        User user = userRepository.save(new User(null, "concurrency-" + UUID.randomUUID(), "secret"));
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(accountRepository.save(new Account(null, "CC" + UUID.randomUUID().toString().substring(0, 18), INITIAL_BALANCE, user.getId())));
+        }
+
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < TRANSFERS; i++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int from = random.nextInt(ACCOUNTS);
+                int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+
+                TransferRequest request = new TransferRequest();
+                request.setFromAccountNumber(accounts.get(from).getAccountNumber());
+                request.setToAccountNumber(accounts.get(to).getAccountNumber());
+                request.setAmount(1L + random.nextInt(5_000));
+
+                start.await();
+                try {
+                    accountService.transferMoney(request);
+                    completed.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        long total = 0;
+        for (Account account : accounts) {
+            Long balance = accountRepository.findById(account.getId()).orElseThrow().getBalance();
+            assertTrue(balance >= 0, "Баланс не может стать отрицательным");
+            total += balance;
+        }
+
+        assertEquals(ACCOUNTS * INITIAL_BALANCE, total);
+        assertEquals(TRANSFERS, completed.get() + rejected.get());
+        assertTrue(completed.get() > 0);
+
+        Long firstId = accounts.get(0).getId();
+        Long lastId = accounts.get(ACCOUNTS - 1).getId();
+        Integer recorded = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transactions WHERE from_account_id BETWEEN ? AND ?", Integer.class, firstId, lastId);
+        assertEquals(completed.get(), recorded);
+    }
+
+    @Test
+    void transferBatch_MixedWithSingleTransfers_ShouldConserveTotalBalance() throws Exception {
+        User user = userRepository.save(new User(null, "batch-" + UUID.randomUUID(), "secret"));
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts.add(accountRepository.save(new Account(null, "CB" + UUID.randomUUID().toString().substring(0, 18), INITIAL_BALANCE, user.getId())));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < TRANSFERS / 10; i++) {
+            boolean batch = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                List<TransferRequest> requests = new ArrayList<>();
+                for (int j = 0; j < (batch ? 20 : 1); j++) {
+                    int from = random.nextInt(ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+
+                    TransferRequest request = new TransferRequest();
+                    request.setFromAccountNumber(accounts.get(from).getAccountNumber());
+                    request.setToAccountNumber(accounts.get(to).getAccountNumber());
+                    request.setAmount(1L + random.nextInt(3_000));
+                    requests.add(request);
+                }
+
+                if (batch) {
+                    batchTransferService.transferBatch(requests, BatchTransferMode.BEST_EFFORT, user.getId());
+                } else {
+                    try {
+                        accountService.transferMoney(requests.get(0));
+                    } catch (IllegalArgumentException e) {
+                        // недостаточно средств - допустимый исход
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        long total = 0;
+        for (Account account : accounts) {
+            Long balance = accountRepository.findById(account.getId()).orElseThrow().getBalance();
+            assertTrue(balance >= 0, "Баланс не может стать отрицательным");
+            total += balance;
+        }
+        assertEquals(ACCOUNTS * INITIAL_BALANCE, total);
+    }
+
+    @Test
+    void transferOnce_WithConcurrentRetriesOfSameKey_ShouldTransferOnce() throws Exception {
+        User user = userRepository.save(new User(null, "idempotency-" + UUID.randomUUID(), "secret"));
+        Account from = accountRepository.save(new Account(null, "CI" + UUID.randomUUID().toString().substring(0, 18), INITIAL_BALANCE, user.getId()));
+        Account to = accountRepository.save(new Account(null, "CI" + UUID.randomUUID().toString().substring(0, 18), 0L, user.getId()));
+
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(from.getAccountNumber());
+        request.setToAccountNumber(to.getAccountNumber());
+        request.setAmount(100L);
+
+        String key = UUID.randomUUID().toString();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<TransferResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return idempotencyService.transferOnce(request, user.getId(), key);
+            }));
+        }
+        start.countDown();
+
+        Set<UUID> transactionIds = new HashSet<>();
+        for (Future<TransferResult> future : futures) {
+            transactionIds.add(future.get(60, TimeUnit.SECONDS).getTransactionId());
+        }
+        executor.shutdown();
+
+        assertEquals(1, transactionIds.size());
+        assertEquals(INITIAL_BALANCE - 100L, accountRepository.findById(from.getId()).orElseThrow().getBalance());
+        assertEquals(100L, accountRepository.findById(to.getId()).orElseThrow().getBalance());
+    }
+}
@@ -1,23 +1,37 @@
 package com.p2p.transfer_app.service;
 
+import com.p2p.transfer_app.cache.AccountLookupCache;
 import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.event.AccountClosedEvent;
+import com.p2p.transfer_app.event.AccountOpenedEvent;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
+import com.p2p.transfer_app.exception.AccountOperationException;
 import com.p2p.transfer_app.model.Account;
 import com.p2p.transfer_app.model.Transaction;
 import com.p2p.transfer_app.model.User;
 import com.p2p.transfer_app.model.enums.TransactionStatus;
 import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.ArchivalRepository;
 import com.p2p.transfer_app.repository.TransactionRepository;
 import com.p2p.transfer_app.repository.UserRepository;
+import com.p2p.transfer_app.limit.VelocityLimiter;
+import com.p2p.transfer_app.shard.CrossShardTransferCoordinator;
+import com.p2p.transfer_app.shard.ShardDirectory;
+import com.p2p.transfer_app.shard.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -37,13 +51,37 @@ public class AccountServiceTest {
     private TransactionRepository transactionRepository;
 
     @Mock
-    private JdbcTemplate jdbcTemplate;
+    private ArchivalRepository archivalRepository;
+
+    @Mock
+    private AccountLookupCache lookupCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private StripedBalanceService stripedBalanceService;
+
+    @Mock
+    private ShardDirectory shardDirectory;
+
+    @Mock
+    private CrossShardTransferCoordinator crossShardCoordinator;
+
+    private final ShardRouter shardRouter = new ShardRouter(1, 1);
+
+    private VelocityLimiter velocityLimiter;
 
     private AccountService accountService;
 
     @BeforeEach
     void setUp() {
-        accountService = new AccountService(accountRepository, userRepository, transactionRepository, jdbcTemplate);
+        velocityLimiter = new VelocityLimiter(transactionRepository, new SimpleMeterRegistry(), 0, 0, 0, 0, 0, 0, 0, 0);
+        accountService = new AccountService(accountRepository, userRepository, transactionRepository, archivalRepository, lookupCache, eventPublisher, stripedBalanceService, velocityLimiter, shardRouter, shardDirectory, crossShardCoordinator, TransferMode.LEGACY);
+    }
+
+    private AccountService conditionalAccountService() {
+        return new AccountService(accountRepository, userRepository, transactionRepository, archivalRepository, lookupCache, eventPublisher, stripedBalanceService, velocityLimiter, shardRouter, shardDirectory, crossShardCoordinator, TransferMode.CONDITIONAL);
     }
 
     @Test
@@ -63,6 +101,7 @@ public class AccountServiceTest {
         assertNotNull(result);
         assertEquals(initialBalance, result.getBalance());
         assertEquals(userId, result.getUserId());
+        verify(eventPublisher).publishEvent(any(AccountOpenedEvent.class));
         
         verify(accountRepository).save(any(Account.class));
     }
@@ -144,6 +183,7 @@ public class AccountServiceTest {
         verify(accountRepository).update(fromAccount);
         verify(accountRepository).update(toAccount);
         verify(transactionRepository).save(any(Transaction.class));
+        verify(eventPublisher).publishEvent(any(TransferCompletedEvent.class));
     }
 
     @Test
@@ -215,15 +255,36 @@ public class AccountServiceTest {
     }
 
     @Test
-    void closeAccount_WithExistingAccount_ShouldDeleteAccount() {
+    void closeAccount_WithExistingAccount_ShouldMarkClosedAndRequestArchival() {
         Long accountId = 1L;
         Account account = new Account(accountId, "ACC123", 1000L, 1L);
         
         when(accountRepository.findById(accountId)).thenReturn(Optional.of(account));
+        // Между чтением счета и блокировкой строки на счет пришел перевод
+        when(accountRepository.lockBalancesByIds(List.of(accountId))).thenReturn(Map.of(accountId, 1250L));
 
         accountService.closeAccount(accountId);
 
-        verify(accountRepository).deleteById(accountId);
+        InOrder inOrder = inOrder(accountRepository);
+        inOrder.verify(accountRepository).lockBalancesByIds(List.of(accountId));
+        inOrder.verify(accountRepository).close(eq(accountId), any(Instant.class));
+        verify(archivalRepository).request(eq(accountId), any(Instant.class));
+        verify(transactionRepository, never()).save(any(Transaction.class));
+        ArgumentCaptor<AccountClosedEvent> event = ArgumentCaptor.forClass(AccountClosedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(1250L, event.getValue().getBalance());
+    }
+
+    @Test
+    void closeAccount_WithAccountClosedConcurrently_ShouldThrowException() {
+        Long accountId = 1L;
+        when(accountRepository.findById(accountId)).thenReturn(Optional.of(new Account(accountId, "ACC123", 1000L, 1L)));
+        when(accountRepository.lockBalancesByIds(List.of(accountId))).thenReturn(Map.of());
+
+        assertThrows(AccountOperationException.class, () -> accountService.closeAccount(accountId));
+
+        verify(accountRepository, never()).close(anyLong(), any(Instant.class));
+        verify(eventPublisher, never()).publishEvent(any(AccountClosedEvent.class));
     }
 
     @Test
@@ -237,6 +298,126 @@ public class AccountServiceTest {
         });
         
         assertTrue(exception.getMessage().contains("не найден"));
-        verify(accountRepository, never()).deleteById(anyLong());
+        verify(accountRepository, never()).close(anyLong(), any(Instant.class));
+        verify(archivalRepository, never()).request(anyLong(), any(Instant.class));
+    }
+
+    @Test
+    void transferMoney_Conditional_ShouldDebitLowerIdFirst() {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber("ACC123");
+        request.setToAccountNumber("ACC456");
+        request.setAmount(300L);
+
+        when(lookupCache.findAccountId("ACC123")).thenReturn(Optional.of(1L));
+        when(lookupCache.findAccountId("ACC456")).thenReturn(Optional.of(2L));
+        when(accountRepository.debit(1L, 300L)).thenReturn(true);
+
+        conditionalAccountService().transferMoney(request);
+
+        InOrder inOrder = inOrder(accountRepository);
+        inOrder.verify(accountRepository).debit(1L, 300L);
+        inOrder.verify(accountRepository).credit(2L, 300L);
+        verify(accountRepository, never()).update(any(Account.class));
+        verify(transactionRepository).save(any(Transaction.class));
+        verify(eventPublisher).publishEvent(any(TransferCompletedEvent.class));
+    }
+
+    @Test
+    void transferMoney_Conditional_ShouldCreditLowerIdFirst() {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber("ACC123");
+        request.setToAccountNumber("ACC456");
+        request.setAmount(300L);
+
+        when(lookupCache.findAccountId("ACC123")).thenReturn(Optional.of(5L));
+        when(lookupCache.findAccountId("ACC456")).thenReturn(Optional.of(2L));
+        when(accountRepository.debit(5L, 300L)).thenReturn(true);
+
+        conditionalAccountService().transferMoney(request);
+
+        InOrder inOrder = inOrder(accountRepository);
+        inOrder.verify(accountRepository).credit(2L, 300L);
+        inOrder.verify(accountRepository).debit(5L, 300L);
+        verify(transactionRepository).save(any(Transaction.class));
+    }
+
+    @Test
+    void transferMoney_Conditional_WithInsufficientFunds_ShouldThrowException() {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber("ACC123");
+        request.setToAccountNumber("ACC456");
+        request.setAmount(300L);
+
+        when(lookupCache.findAccountId("ACC123")).thenReturn(Optional.of(1L));
+        when(lookupCache.findAccountId("ACC456")).thenReturn(Optional.of(2L));
+        when(accountRepository.debit(1L, 300L)).thenReturn(false);
+        when(accountRepository.findById(1L)).thenReturn(Optional.of(new Account(1L, "ACC123", 200L, 1L)));
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            conditionalAccountService().transferMoney(request);
+        });
+
+        assertTrue(exception.getMessage().contains("Недостаточно средств"));
+        verify(accountRepository, never()).credit(anyLong(), anyLong());
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void transferMoney_Conditional_WithNonExistentTargetAccount_ShouldThrowException() {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber("ACC123");
+        request.setToAccountNumber("NON_EXISTENT");
+        request.setAmount(100L);
+
+        when(lookupCache.findAccountId("ACC123")).thenReturn(Optional.of(1L));
+        when(lookupCache.findAccountId("NON_EXISTENT")).thenReturn(Optional.empty());
+
+        Exception exception = assertThrows(RuntimeException.class, () -> {
+            conditionalAccountService().transferMoney(request);
+        });
+
+        assertTrue(exception.getMessage().contains("не найден"));
+        verify(accountRepository, never()).debit(anyLong(), anyLong());
+    }
+
+    @Test
+    void transferMoney_Conditional_WithStaleCachedSource_ShouldEvictAndThrowException() {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber("ACC123");
+        request.setToAccountNumber("ACC456");
+        request.setAmount(300L);
+
+        when(lookupCache.findAccountId("ACC123")).thenReturn(Optional.of(1L));
+        when(lookupCache.findAccountId("ACC456")).thenReturn(Optional.of(2L));
+        when(accountRepository.debit(1L, 300L)).thenReturn(false);
+        when(accountRepository.findById(1L)).thenReturn(Optional.empty());
+
+        Exception exception = assertThrows(RuntimeException.class, () -> {
+            conditionalAccountService().transferMoney(request);
+        });
+
+        assertTrue(exception.getMessage().contains("Счет-источник не найден"));
+        verify(lookupCache).evictAccount(1L, "ACC123");
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    void transferMoney_Conditional_ToStripedAccount_ShouldCreditSlot() {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber("ACC123");
+        request.setToAccountNumber("MERCHANT");
+        request.setAmount(300L);
+
+        when(lookupCache.findAccountId("ACC123")).thenReturn(Optional.of(1L));
+        when(lookupCache.findAccountId("MERCHANT")).thenReturn(Optional.of(2L));
+        when(stripedBalanceService.isStriped(anyLong())).thenAnswer(invocation -> invocation.getArgument(0).equals(2L));
+        when(accountRepository.debit(1L, 300L)).thenReturn(true);
+
+        conditionalAccountService().transferMoney(request);
+
+        verify(stripedBalanceService).credit(2L, 300L);
+        verify(accountRepository, never()).credit(anyLong(), anyLong());
+        verify(transactionRepository).save(any(Transaction.class));
     }
-} 
\ No newline at end of file
+}
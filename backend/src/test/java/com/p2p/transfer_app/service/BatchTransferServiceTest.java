@@ -0,0 +1,187 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.dto.BatchTransferMode;
+import com.p2p.transfer_app.dto.BatchTransferResponse;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.TransactionRepository;
+import com.p2p.transfer_app.limit.VelocityLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BatchTransferServiceTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private VelocityLimiter velocityLimiter;
+
+    private BatchTransferService batchTransferService;
+
+    @BeforeEach
+    void setUp() {
+        velocityLimiter = new VelocityLimiter(transactionRepository, new SimpleMeterRegistry(), 0, 0, 0, 0, 0, 0, 0, 0);
+        batchTransferService = new BatchTransferService(accountRepository, transactionRepository, eventPublisher, velocityLimiter, 1000);
+    }
+
+    private TransferRequest transfer(String from, String to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(from);
+        request.setToAccountNumber(to);
+        request.setAmount(amount);
+        return request;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void transferBatch_BestEffort_ShouldApplyAggregatedDeltas() {
+        when(accountRepository.findAllByAccountNumbers(anyCollection())).thenReturn(List.of(
+            new Account(1L, "ACC1", 1000L, 1L),
+            new Account(2L, "ACC2", 0L, 2L),
+            new Account(3L, "ACC3", 0L, 2L)
+        ));
+        when(accountRepository.lockBalancesByIds(anyCollection())).thenReturn(Map.of(1L, 1000L, 2L, 0L, 3L, 0L));
+
+        BatchTransferResponse response = batchTransferService.transferBatch(List.of(
+            transfer("ACC1", "ACC2", 600L),
+            transfer("ACC1", "ACC3", 300L),
+            transfer("ACC1", "ACC2", 200L)
+        ), BatchTransferMode.BEST_EFFORT, 1L);
+
+        assertEquals(2, response.getCompleted());
+        assertEquals(1, response.getFailed());
+        assertEquals(TransactionStatus.FAILED, response.getResults().get(2).getStatus());
+        assertEquals("Недостаточно средств", response.getResults().get(2).getError());
+        assertNotNull(response.getResults().get(0).getTransactionId());
+
+        ArgumentCaptor<SortedMap<Long, Long>> deltas = ArgumentCaptor.forClass(SortedMap.class);
+        verify(accountRepository).applyBalanceDeltas(deltas.capture());
+        assertEquals(-900L, deltas.getValue().get(1L));
+        assertEquals(600L, deltas.getValue().get(2L));
+        assertEquals(300L, deltas.getValue().get(3L));
+        verify(transactionRepository).saveAll(argThat(list -> list.size() == 2));
+        verify(eventPublisher).publishEvent(argThat((Object event) ->
+            event instanceof TransferCompletedEvent completed && completed.getTransactions().size() == 2));
+    }
+
+    @Test
+    void transferBatch_AllOrNothing_WithFailure_ShouldNotWriteAnything() {
+        when(accountRepository.findAllByAccountNumbers(anyCollection())).thenReturn(List.of(
+            new Account(1L, "ACC1", 1000L, 1L),
+            new Account(2L, "ACC2", 0L, 2L)
+        ));
+        when(accountRepository.lockBalancesByIds(anyCollection())).thenReturn(Map.of(1L, 1000L, 2L, 0L));
+
+        BatchTransferResponse response = batchTransferService.transferBatch(List.of(
+            transfer("ACC1", "ACC2", 100L),
+            transfer("ACC1", "MISSING", 100L)
+        ), BatchTransferMode.ALL_OR_NOTHING, 1L);
+
+        assertEquals(0, response.getCompleted());
+        assertEquals(2, response.getFailed());
+        assertNull(response.getResults().get(0).getTransactionId());
+        assertEquals("Счет-получатель не найден", response.getResults().get(1).getError());
+        verify(transactionRepository, never()).saveAll(anyList());
+        verify(accountRepository, never()).applyBalanceDeltas(any());
+    }
+
+    @Test
+    void transferBatch_WithAccountsClosedBeforeLock_ShouldRejectItemsInsteadOfFailing() {
+        when(accountRepository.findAllByAccountNumbers(anyCollection())).thenReturn(List.of(
+            new Account(1L, "ACC1", 1000L, 1L),
+            new Account(2L, "ACC2", 0L, 1L),
+            new Account(3L, "ACC3", 0L, 2L)
+        ));
+        // ACC2 и ACC3 закрыты после поиска: блокировка их не вернула
+        when(accountRepository.lockBalancesByIds(anyCollection())).thenReturn(Map.of(1L, 1000L));
+
+        BatchTransferResponse response = batchTransferService.transferBatch(List.of(
+            transfer("ACC2", "ACC1", 100L),
+            transfer("ACC1", "ACC3", 100L)
+        ), BatchTransferMode.BEST_EFFORT, 1L);
+
+        assertEquals(0, response.getCompleted());
+        assertEquals("Счет-источник не найден", response.getResults().get(0).getError());
+        assertEquals("Счет-получатель не найден", response.getResults().get(1).getError());
+        verify(accountRepository, never()).applyBalanceDeltas(any());
+    }
+
+    @Test
+    void transferBatch_FromForeignAccount_ShouldRejectItem() {
+        when(accountRepository.findAllByAccountNumbers(anyCollection())).thenReturn(List.of(
+            new Account(1L, "ACC1", 1000L, 1L),
+            new Account(2L, "ACC2", 1000L, 2L)
+        ));
+        when(accountRepository.lockBalancesByIds(anyCollection())).thenReturn(Map.of(1L, 1000L, 2L, 1000L));
+
+        BatchTransferResponse response = batchTransferService.transferBatch(List.of(
+            transfer("ACC2", "ACC1", 100L)
+        ), BatchTransferMode.BEST_EFFORT, 1L);
+
+        assertEquals(0, response.getCompleted());
+        assertEquals("Доступ запрещен", response.getResults().get(0).getError());
+        verify(transactionRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void transferBatch_OverVelocityLimit_ShouldRejectItemAndReleaseOnRollback() {
+        velocityLimiter = new VelocityLimiter(transactionRepository, new SimpleMeterRegistry(), 2, 0, 0, 0, 0, 0, 0, 0);
+        batchTransferService = new BatchTransferService(accountRepository, transactionRepository, eventPublisher, velocityLimiter, 1000);
+        when(accountRepository.findAllByAccountNumbers(anyCollection())).thenReturn(List.of(
+            new Account(1L, "ACC1", 1000L, 1L),
+            new Account(2L, "ACC2", 0L, 2L)
+        ));
+        when(accountRepository.lockBalancesByIds(anyCollection())).thenReturn(Map.of(1L, 1000L, 2L, 0L));
+
+        BatchTransferResponse rejected = batchTransferService.transferBatch(List.of(
+            transfer("ACC1", "ACC2", 100L),
+            transfer("ACC1", "ACC2", 100L),
+            transfer("ACC1", "ACC2", 100L)
+        ), BatchTransferMode.ALL_OR_NOTHING, 1L);
+
+        assertEquals(0, rejected.getCompleted());
+        assertEquals("Превышен лимит переводов", rejected.getResults().get(2).getError());
+        verify(transactionRepository, never()).saveAll(anyList());
+
+        // Отклоненный пакет не расходует лимит
+        BatchTransferResponse accepted = batchTransferService.transferBatch(List.of(
+            transfer("ACC1", "ACC2", 100L),
+            transfer("ACC1", "ACC2", 100L)
+        ), BatchTransferMode.BEST_EFFORT, 1L);
+
+        assertEquals(2, accepted.getCompleted());
+    }
+
+    @Test
+    void transferBatch_WithEmptyBatch_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            batchTransferService.transferBatch(Collections.emptyList(), BatchTransferMode.BEST_EFFORT, 1L);
+        });
+        verify(accountRepository, never()).findAllByAccountNumbers(anyCollection());
+    }
+}
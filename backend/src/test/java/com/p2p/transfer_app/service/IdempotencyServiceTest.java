@@ -0,0 +1,102 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.dto.TransferResult;
+import com.p2p.transfer_app.model.IdempotencyRecord;
+import com.p2p.transfer_app.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private AccountService accountService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, accountService, transactionTemplate,
+                new SimpleMeterRegistry(), Duration.ofHours(24), 1000);
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any(Consumer.class));
+    }
+
+    private TransferRequest request(long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber("ACC123");
+        request.setToAccountNumber("ACC456");
+        request.setAmount(amount);
+        return request;
+    }
+
+    @Test
+    void transferOnce_RepeatedKey_ShouldReplayFromMemoryWithSameTransactionId() {
+        when(idempotencyKeyRepository.find(1L, "key-1")).thenReturn(Optional.empty());
+
+        TransferResult first = idempotencyService.transferOnce(request(500L), 1L, "key-1");
+        TransferResult second = idempotencyService.transferOnce(request(500L), 1L, "key-1");
+
+        assertFalse(first.isReplayed());
+        assertTrue(second.isReplayed());
+        assertEquals(first.getTransactionId(), second.getTransactionId());
+        verify(accountService, times(1)).transferMoney(any(TransferRequest.class), eq(first.getTransactionId()));
+        verify(idempotencyKeyRepository, times(1)).find(1L, "key-1");
+    }
+
+    @Test
+    void transferOnce_WithSameKeyAndDifferentRequest_ShouldThrowException() {
+        when(idempotencyKeyRepository.find(1L, "key-1")).thenReturn(Optional.empty());
+        idempotencyService.transferOnce(request(500L), 1L, "key-1");
+
+        assertThrows(IllegalStateException.class, () -> {
+            idempotencyService.transferOnce(request(700L), 1L, "key-1");
+        });
+        verify(accountService, times(1)).transferMoney(any(TransferRequest.class), any(UUID.class));
+    }
+
+    @Test
+    void transferOnce_WhenConcurrentRequestWonTheKey_ShouldReplayStoredResult() {
+        ArgumentCaptor<IdempotencyRecord> inserted = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        UUID winner = UUID.randomUUID();
+        when(idempotencyKeyRepository.find(1L, "key-1"))
+                .thenReturn(Optional.empty())
+                .thenAnswer(invocation -> Optional.of(new IdempotencyRecord(1L, "key-1",
+                        inserted.getValue().getRequestHash(), winner, OffsetDateTime.now())));
+        doThrow(new DuplicateKeyException("duplicate")).when(idempotencyKeyRepository).insert(inserted.capture());
+
+        TransferResult result = idempotencyService.transferOnce(request(500L), 1L, "key-1");
+
+        assertTrue(result.isReplayed());
+        assertEquals(winner, result.getTransactionId());
+        verify(accountService, never()).transferMoney(any(TransferRequest.class), any(UUID.class));
+    }
+}
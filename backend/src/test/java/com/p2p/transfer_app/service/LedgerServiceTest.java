@@ -0,0 +1,163 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.dto.BatchTransferMode;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"transfer.mode=CONDITIONAL",
+        "ledger.snapshot.min-entries=1", "ledger.snapshot.interval=PT1H"})
+public class LedgerServiceTest {
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private BatchTransferService batchTransferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user() {
+        return userRepository.save(new User(null, "ledger-" + UUID.randomUUID(), "password"));
+    }
+
+    private TransferRequest transfer(Account from, Account to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(from.getAccountNumber());
+        request.setToAccountNumber(to.getAccountNumber());
+        request.setAmount(amount);
+        return request;
+    }
+
+    private long projection(Account account) {
+        return accountRepository.findById(account.getId()).orElseThrow().getBalance();
+    }
+
+    private int entryCount(Account account) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_entries WHERE account_id = ?", Integer.class, account.getId());
+    }
+
+    @Test
+    void transfers_ShouldAppendBalancedEntriesMatchingProjection() {
+        User user = user();
+        Account first = accountService.openNewAccount(user.getId(), 1000L);
+        Account second = accountService.openNewAccount(user.getId(), 500L);
+
+        accountService.transferMoney(transfer(first, second, 300L));
+        batchTransferService.transferBatch(List.of(transfer(second, first, 100L), transfer(first, second, 50L)),
+                BatchTransferMode.BEST_EFFORT, user.getId());
+
+        assertEquals(4, entryCount(first));
+        assertEquals(4, entryCount(second));
+        assertEquals(0L, jdbcTemplate.queryForObject(
+                "SELECT SUM(amount) FROM ledger_entries WHERE transaction_id IS NOT NULL AND account_id IN (?, ?)",
+                Long.class, first.getId(), second.getId()));
+        assertEquals(750L, ledgerService.getDerivedBalance(first.getId()));
+        assertEquals(projection(first), ledgerService.getDerivedBalance(first.getId()));
+        assertEquals(projection(second), ledgerService.getDerivedBalance(second.getId()));
+    }
+
+    @Test
+    void takeSnapshots_ShouldCompactTailWithoutChangingDerivedBalance() {
+        User user = user();
+        Account first = accountService.openNewAccount(user.getId(), 1000L);
+        Account second = accountService.openNewAccount(user.getId(), 0L);
+        for (int i = 0; i < 5; i++) {
+            accountService.transferMoney(transfer(first, second, 10L));
+        }
+
+        ledgerService.takeSnapshots();
+        accountService.transferMoney(transfer(second, first, 5L));
+        ledgerService.takeSnapshots();
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ledger_snapshots WHERE account_id = ?", Integer.class, first.getId()));
+        assertEquals(955L, jdbcTemplate.queryForObject(
+                "SELECT balance FROM ledger_snapshots WHERE account_id = ?", Long.class, first.getId()));
+
+        accountService.transferMoney(transfer(first, second, 100L));
+        assertEquals(855L, ledgerService.getDerivedBalance(first.getId()));
+        assertEquals(projection(second), ledgerService.getDerivedBalance(second.getId()));
+    }
+
+    @Test
+    void takeSnapshots_WithTransferCommittingAfterLaterEntries_ShouldStillCountIt() throws Exception {
+        User user = user();
+        Account first = accountService.openNewAccount(user.getId(), 1000L);
+        Account second = accountService.openNewAccount(user.getId(), 0L);
+        User other = user();
+        Account third = accountService.openNewAccount(other.getId(), 1000L);
+        Account fourth = accountService.openNewAccount(other.getId(), 0L);
+        accountService.transferMoney(transfer(first, second, 10L));
+
+        // Перевод получает id проводок раньше следующего, а фиксируется после него
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread late = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+            accountService.transferMoney(transfer(first, second, 7L));
+            written.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        late.start();
+        assertTrue(written.await(30, TimeUnit.SECONDS));
+        accountService.transferMoney(transfer(third, fourth, 20L));
+
+        Thread snapshots = new Thread(ledgerService::takeSnapshots);
+        snapshots.start();
+        Thread.sleep(200);
+        release.countDown();
+        late.join(30_000);
+        snapshots.join(30_000);
+        ledgerService.takeSnapshots();
+
+        assertEquals(983L, ledgerService.getDerivedBalance(first.getId()));
+        assertEquals(projection(first), ledgerService.getDerivedBalance(first.getId()));
+        assertEquals(projection(second), ledgerService.getDerivedBalance(second.getId()));
+        assertEquals(projection(third), ledgerService.getDerivedBalance(third.getId()));
+    }
+
+    @Test
+    void closeAccount_ShouldKeepEntriesAndZeroDerivedBalance() {
+        User user = user();
+        Account first = accountService.openNewAccount(user.getId(), 1000L);
+        Account second = accountService.openNewAccount(user.getId(), 0L);
+        accountService.transferMoney(transfer(first, second, 400L));
+
+        accountService.closeAccount(second.getId());
+
+        assertEquals(3, entryCount(second));
+        assertEquals(0L, ledgerService.getDerivedBalance(second.getId()));
+        assertEquals(600L, ledgerService.getDerivedBalance(first.getId()));
+    }
+}
@@ -0,0 +1,180 @@
+package com.p2p.transfer_app.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p2p.transfer_app.dto.StatementFormat;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.TransactionRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import com.p2p.transfer_app.shard.ShardRouter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "transfer.mode=CONDITIONAL")
+public class StatementServiceTest {
+
+    @Autowired
+    private StatementService statementService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @TempDir
+    Path directory;
+
+    private Account account(User user, long balance) {
+        return accountRepository.save(new Account(null, "ST" + UUID.randomUUID().toString().substring(0, 18), balance, user.getId()));
+    }
+
+    private void transfer(Account from, Account to, long amount) throws InterruptedException {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(from.getAccountNumber());
+        request.setToAccountNumber(to.getAccountNumber());
+        request.setAmount(amount);
+        accountService.transferMoney(request);
+        // Разные created_at дают детерминированный порядок строк выписки
+        Thread.sleep(5);
+    }
+
+    private String export(Account account, StatementFormat format, Instant from) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statementService.export(account.getId(), format, from, Instant.now().plusSeconds(1), out);
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void export_Csv_ShouldStartFromOpeningBalanceOfPeriod() throws Exception {
+        User user = userRepository.save(new User(null, "statement-" + UUID.randomUUID(), "password"));
+        Account main = account(user, 1000L);
+        Account other = account(user, 0L);
+
+        transfer(main, other, 100L);
+        Instant periodStart = Instant.now();
+        Thread.sleep(5);
+        transfer(other, main, 30L);
+        transfer(main, other, 50L);
+
+        String[] lines = export(main, StatementFormat.CSV, periodStart).split("\n");
+
+        assertEquals(3, lines.length);
+        assertEquals("transaction_id,created_at,counterparty_account_id,amount,balance", lines[0]);
+        assertTrue(lines[1].endsWith("," + other.getId() + ",30,930"));
+        assertTrue(lines[2].endsWith("," + other.getId() + ",-50,880"));
+        assertEquals(880L, accountRepository.findById(main.getId()).orElseThrow().getBalance());
+    }
+
+    @Test
+    void export_Ndjson_ShouldWriteOneObjectPerTransaction() throws Exception {
+        User user = userRepository.save(new User(null, "statement-" + UUID.randomUUID(), "password"));
+        Account main = account(user, 500L);
+        Account other = account(user, 0L);
+        Instant periodStart = Instant.now();
+        transfer(main, other, 200L);
+
+        String[] lines = export(main, StatementFormat.NDJSON, periodStart).split("\n");
+
+        assertEquals(1, lines.length);
+        JsonNode row = new ObjectMapper().readTree(lines[0]);
+        assertEquals(-200L, row.get("amount").asLong());
+        assertEquals(300L, row.get("balance").asLong());
+        assertEquals(other.getId(), row.get("counterpartyAccountId").asLong());
+        assertDoesNotThrow(() -> Instant.parse(row.get("createdAt").asText()));
+    }
+
+    @Test
+    void export_FiveMillionRows_ShouldKeepHeapFlat() {
+        // Файловая H2: в базе в памяти промежуточные результаты сортировки хранились бы в куче теста
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:file:" + directory.resolve("statement") + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;CACHE_SIZE=8192;MAX_MEMORY_ROWS=10000",
+                "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE accounts (id BIGINT PRIMARY KEY, account_number VARCHAR(50), balance BIGINT, user_id BIGINT, status VARCHAR(20) DEFAULT 'ACTIVE')");
+        jdbcTemplate.execute("CREATE TABLE account_balance_slots (account_id BIGINT, slot INT, balance BIGINT)");
+        jdbcTemplate.update("INSERT INTO accounts (id, account_number, balance, user_id) VALUES (1, 'STMAIN', 0, 1)");
+        int rows = 5_000_000;
+        // Строки генерируются представлением при чтении, поэтому подготовка не тратит время на вставку
+        jdbcTemplate.execute("CREATE VIEW transactions AS SELECT RANDOM_UUID() AS id, 2 - MOD(\"X\", 2) AS from_account_id, "
+                + "1 + MOD(\"X\", 2) AS to_account_id, CAST(1 AS BIGINT) AS amount, 'COMPLETED' AS status, "
+                + "DATEADD(SECOND, \"X\", TIMESTAMP '2024-01-01 00:00:00') AS created_at FROM SYSTEM_RANGE(1, " + rows + ")");
+
+        StatementService service = new StatementService(new AccountRepository(jdbcTemplate), new TransactionRepository(jdbcTemplate),
+                new DataSourceTransactionManager(dataSource), new ShardRouter(1, 1), 1000);
+        HeapSamplingStream out = new HeapSamplingStream(64L * 1024 * 1024);
+
+        long exported = service.export(1L, StatementFormat.CSV, Instant.EPOCH, Instant.parse("2030-01-01T00:00:00Z"), out);
+
+        assertEquals(rows, exported);
+        assertTrue(out.samples >= 5);
+        // Кэш H2 и буферы сортировки ограничены; с числом выгруженных строк занятая куча расти не должна
+        assertTrue(out.maxUsed - out.baseline < 64L * 1024 * 1024, "Рост кучи во время выгрузки: " + (out.maxUsed - out.baseline) + " байт");
+        assertTrue(out.maxUsed - out.firstSample < 16L * 1024 * 1024, "Рост кучи между замерами: " + (out.maxUsed - out.firstSample) + " байт");
+    }
+
+    // Раз в sampleEvery байт замеряет занятую кучу после сборки мусора
+    private static class HeapSamplingStream extends OutputStream {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final long sampleEvery;
+        private final long baseline;
+        private long written;
+        private long nextSample;
+        private long firstSample;
+        private long maxUsed;
+        private int samples;
+
+        HeapSamplingStream(long sampleEvery) {
+            this.sampleEvery = sampleEvery;
+            this.nextSample = sampleEvery;
+            this.baseline = usedAfterGc();
+            this.maxUsed = baseline;
+        }
+
+        private long usedAfterGc() {
+            System.gc();
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+            if (written >= nextSample) {
+                nextSample += sampleEvery;
+                long used = usedAfterGc();
+                if (samples == 0) {
+                    firstSample = used;
+                }
+                maxUsed = Math.max(maxUsed, used);
+                samples++;
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"transfer.mode=CONDITIONAL", "transfer.striped.slots=4", "transfer.striped.consolidate-interval=PT1H"})
+public class StripedBalanceServiceTest {
+
+    private static final int SOURCES = 8;
+    private static final int CREDITS_PER_SOURCE = 50;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private StripedBalanceService stripedBalanceService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Account account(User user, long balance) {
+        return accountRepository.save(new Account(null, "SB" + UUID.randomUUID().toString().substring(0, 18), balance, user.getId()));
+    }
+
+    private TransferRequest transfer(Account from, Account to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(from.getAccountNumber());
+        request.setToAccountNumber(to.getAccountNumber());
+        request.setAmount(amount);
+        return request;
+    }
+
+    private long slotTotal(Account account) {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(balance), 0) FROM account_balance_slots WHERE account_id = ?", Long.class, account.getId());
+    }
+
+    @Test
+    void stripedAccount_WithParallelCreditsAndLargeDebit_ShouldAggregateSlots() throws Exception {
+        User user = userRepository.save(new User(null, "striped-" + UUID.randomUUID(), "secret"));
+        Account merchant = account(user, 0L);
+        Account payout = account(user, 0L);
+        List<Account> sources = new ArrayList<>();
+        for (int i = 0; i < SOURCES; i++) {
+            sources.add(account(user, 10_000L));
+        }
+        stripedBalanceService.designate(merchant.getId());
+
+        ExecutorService executor = Executors.newFixedThreadPool(SOURCES);
+        List<Future<?>> futures = new ArrayList<>();
+        for (Account source : sources) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < CREDITS_PER_SOURCE; i++) {
+                    accountService.transferMoney(transfer(source, merchant, 10L));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        long credited = SOURCES * CREDITS_PER_SOURCE * 10L;
+        assertEquals(credited, slotTotal(merchant));
+        assertEquals(credited, accountRepository.findById(merchant.getId()).orElseThrow().getBalance());
+
+        // Основная строка пуста, списание возможно только после сворачивания полос
+        accountService.transferMoney(transfer(merchant, payout, credited - 1));
+        assertEquals(0L, slotTotal(merchant));
+        assertEquals(1L, accountRepository.findById(merchant.getId()).orElseThrow().getBalance());
+        assertEquals(credited - 1, accountRepository.findById(payout.getId()).orElseThrow().getBalance());
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            accountService.transferMoney(transfer(merchant, payout, 2L));
+        });
+    }
+
+    @Test
+    void consolidate_ShouldFoldSlotsIntoMainRow() {
+        User user = userRepository.save(new User(null, "striped-" + UUID.randomUUID(), "secret"));
+        Account merchant = account(user, 100L);
+        Account source = account(user, 1_000L);
+        stripedBalanceService.designate(merchant.getId());
+
+        for (int i = 0; i < 5; i++) {
+            accountService.transferMoney(transfer(source, merchant, 20L));
+        }
+        assertEquals(100L, slotTotal(merchant));
+
+        stripedBalanceService.consolidate();
+
+        assertEquals(0L, slotTotal(merchant));
+        Long mainRow = jdbcTemplate.queryForObject("SELECT balance FROM accounts WHERE id = ?", Long.class, merchant.getId());
+        assertEquals(200L, mainRow);
+        assertEquals(200L, accountRepository.findById(merchant.getId()).orElseThrow().getBalance());
+    }
+
+    @Test
+    void closeAccount_WithUnfoldedSlots_ShouldCloseWithFullBalance() {
+        User user = userRepository.save(new User(null, "striped-" + UUID.randomUUID(), "secret"));
+        Account merchant = account(user, 100L);
+        Account source = account(user, 1_000L);
+        stripedBalanceService.designate(merchant.getId());
+        for (int i = 0; i < 3; i++) {
+            accountService.transferMoney(transfer(source, merchant, 30L));
+        }
+        assertEquals(90L, slotTotal(merchant));
+
+        accountService.closeAccount(merchant.getId());
+
+        assertFalse(stripedBalanceService.isStriped(merchant.getId()));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM account_balance_slots WHERE account_id = ?", Integer.class, merchant.getId()));
+        // Закрывающая проводка списывает и основную строку, и остаток полос
+        assertEquals(-190L, jdbcTemplate.queryForObject(
+                "SELECT amount FROM ledger_entries WHERE account_id = ? AND entry_type = 'CLOSING'", Long.class, merchant.getId()));
+    }
+}
@@ -0,0 +1,94 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.dto.TransactionCursor;
+import com.p2p.transfer_app.dto.TransactionPage;
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+import com.p2p.transfer_app.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionHistoryServiceTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private TransactionHistoryService transactionHistoryService;
+
+    @BeforeEach
+    void setUp() {
+        transactionHistoryService = new TransactionHistoryService(transactionRepository, 500);
+    }
+
+    private Transaction transaction(int minute) {
+        return Transaction.builder()
+                .id(UUID.randomUUID())
+                .fromAccountId(1L)
+                .toAccountId(2L)
+                .amount(100L)
+                .status(TransactionStatus.COMPLETED)
+                .createdAt(OffsetDateTime.of(2025, 1, 1, 12, minute, 0, 123_456_000, ZoneOffset.UTC))
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAccountTransactions_WithMoreRows_ShouldReturnCursorOfLastRow() {
+        Transaction newest = transaction(3);
+        Transaction middle = transaction(2);
+        doAnswer(invocation -> {
+            Consumer<Transaction> consumer = invocation.getArgument(3);
+            consumer.accept(newest);
+            consumer.accept(middle);
+            consumer.accept(transaction(1));
+            return null;
+        }).when(transactionRepository).streamByAccountId(eq(1L), isNull(), eq(3), any(Consumer.class));
+
+        TransactionPage page = transactionHistoryService.getAccountTransactions(1L, null, 2);
+
+        assertEquals(2, page.getTransactions().size());
+        TransactionCursor cursor = TransactionCursor.decode(page.getNextCursor());
+        assertEquals(middle.getId(), cursor.getId());
+        assertEquals(middle.getCreatedAt().toInstant(), cursor.getCreatedAt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAccountTransactions_OnLastPage_ShouldReturnNullCursor() {
+        TransactionCursor after = new TransactionCursor(transaction(5).getCreatedAt().toInstant(), UUID.randomUUID());
+        doAnswer(invocation -> {
+            Consumer<Transaction> consumer = invocation.getArgument(3);
+            consumer.accept(transaction(4));
+            return null;
+        }).when(transactionRepository).streamByAccountId(eq(1L), eq(after), eq(11), any(Consumer.class));
+
+        TransactionPage page = transactionHistoryService.getAccountTransactions(1L, after.encode(), 10);
+
+        assertEquals(1, page.getTransactions().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getAccountTransactions_WithInvalidCursorOrLimit_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            transactionHistoryService.getAccountTransactions(1L, "not-a-cursor", 10);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            transactionHistoryService.getAccountTransactions(1L, null, 501);
+        });
+        verifyNoInteractions(transactionRepository);
+    }
+}
@@ -0,0 +1,188 @@
+package com.p2p.transfer_app.service;
+
+import com.p2p.transfer_app.dto.BatchTransferMode;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.model.UserBalanceSummary;
+import com.p2p.transfer_app.repository.AccountRepository;
+import com.p2p.transfer_app.repository.UserBalanceSummaryRepository;
+import com.p2p.transfer_app.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:user_summary;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "transfer.mode=CONDITIONAL",
+        "user.summary.verify-interval=PT1H"
+})
+public class UserBalanceSummaryServiceTest {
+
+    @Autowired
+    private UserBalanceSummaryService summaryService;
+
+    @Autowired
+    private UserBalanceSummaryRepository summaryRepository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private BatchTransferService batchTransferService;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StripedBalanceService stripedBalanceService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void getSummary_AfterOpenTransferAndClose_ShouldMatchActiveAccounts() {
+        User alice = user();
+        User bob = user();
+        Account aliceFirst = accountService.openNewAccount(alice.getId(), 1_000L);
+        Account aliceSecond = accountService.openNewAccount(alice.getId(), 500L);
+        Account bobAccount = accountService.openNewAccount(bob.getId(), 200L);
+
+        accountService.transferMoney(transfer(aliceFirst, bobAccount, 300L));
+        accountService.transferMoney(transfer(aliceFirst, aliceSecond, 100L));
+        batchTransferService.transferBatch(List.of(transfer(bobAccount, aliceSecond, 50L)), BatchTransferMode.BEST_EFFORT, bob.getId());
+        accountService.closeAccount(aliceSecond.getId());
+
+        UserBalanceSummary aliceSummary = summaryService.getSummary(alice.getId());
+        assertEquals(600L, aliceSummary.getTotalBalance());
+        assertEquals(1, aliceSummary.getAccountCount());
+        assertNotNull(aliceSummary.getLastActivityAt());
+
+        UserBalanceSummary bobSummary = summaryService.getSummary(bob.getId());
+        assertEquals(450L, bobSummary.getTotalBalance());
+        assertEquals(1, bobSummary.getAccountCount());
+        assertTrue(summaryRepository.findDriftedUserIds(alice.getId(), bob.getId()).isEmpty());
+    }
+
+    @Test
+    void getSummary_ForUserWithAccountsCreatedDirectly_ShouldBuildRowFromAccounts() {
+        User user = user();
+        accountRepository.save(new Account(null, "SUM" + UUID.randomUUID().toString().substring(0, 17), 700L, user.getId()));
+        assertTrue(summaryRepository.findByUserId(user.getId()).isEmpty());
+
+        UserBalanceSummary summary = summaryService.getSummary(user.getId());
+
+        assertEquals(700L, summary.getTotalBalance());
+        assertEquals(1, summary.getAccountCount());
+        assertTrue(summaryRepository.findByUserId(user.getId()).isPresent());
+    }
+
+    @Test
+    void getSummary_ForUnknownUser_ShouldThrowNotFound() {
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> summaryService.getSummary(Long.MAX_VALUE));
+
+        assertEquals("Пользователь не найден", exception.getMessage());
+    }
+
+    @Test
+    void verify_WhenBalanceChangedOutsideApplication_ShouldRepairRowAndCountDrift() {
+        User user = user();
+        Account account = accountService.openNewAccount(user.getId(), 1_000L);
+        accountService.openNewAccount(user.getId(), 0L);
+        double before = meterRegistry.counter("user.summary.drift").count();
+
+        jdbcTemplate.update("UPDATE accounts SET balance = 1500 WHERE id = ?", account.getId());
+        assertEquals(List.of(user.getId()), summaryRepository.findDriftedUserIds(user.getId(), user.getId()));
+
+        summaryService.verify();
+
+        assertEquals(1500L, summaryService.getSummary(user.getId()).getTotalBalance());
+        assertEquals(2, summaryService.getSummary(user.getId()).getAccountCount());
+        assertTrue(summaryRepository.findDriftedUserIds(user.getId(), user.getId()).isEmpty());
+        assertTrue(meterRegistry.counter("user.summary.drift").count() >= before + 1);
+    }
+
+    @Test
+    void transferMoney_ToStripedAccountWithSummaryRowLocked_ShouldNotWaitOnRow() throws Exception {
+        User merchantUser = user();
+        Account merchant = accountService.openNewAccount(merchantUser.getId(), 0L);
+        stripedBalanceService.designate(merchant.getId());
+        List<Account> sources = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            sources.add(accountService.openNewAccount(user().getId(), 1_000L));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(sources.size());
+        try (Connection connection = dataSource.getConnection()) {
+            // Строка итога держится заблокированной все время зачислений: если переводы пишут в нее, они упрутся в LOCK_TIMEOUT
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("SELECT total_balance FROM user_balance_summary WHERE user_id = ? FOR UPDATE")) {
+                statement.setLong(1, merchantUser.getId());
+                statement.executeQuery().close();
+            }
+            List<Future<?>> futures = new ArrayList<>();
+            for (Account source : sources) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        accountService.transferMoney(transfer(source, merchant, 10L));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            connection.rollback();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(600L, summaryService.getSummary(merchantUser.getId()).getTotalBalance());
+        assertTrue(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_balance_summary_slots WHERE user_id = ?",
+                Integer.class, merchantUser.getId()) > 1);
+        assertTrue(summaryRepository.findDriftedUserIds(merchantUser.getId(), merchantUser.getId()).isEmpty());
+
+        // Пересчет заменяет строку и обнуляет полосы, чтобы их сумма не учлась дважды
+        jdbcTemplate.update("UPDATE accounts SET balance = balance + 100 WHERE id = ?", merchant.getId());
+        summaryService.verify();
+        assertEquals(700L, summaryService.getSummary(merchantUser.getId()).getTotalBalance());
+        assertEquals(0L, jdbcTemplate.queryForObject("SELECT COALESCE(SUM(total_balance), 0) FROM user_balance_summary_slots WHERE user_id = ?",
+                Long.class, merchantUser.getId()));
+    }
+
+    private User user() {
+        return userRepository.save(new User(null, "summary-" + UUID.randomUUID(), "password"));
+    }
+
+    private static TransferRequest transfer(Account from, Account to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(from.getAccountNumber());
+        request.setToAccountNumber(to.getAccountNumber());
+        request.setAmount(amount);
+        return request;
+    }
+}
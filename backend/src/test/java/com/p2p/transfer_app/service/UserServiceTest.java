@@ -1,18 +1,31 @@
 package com.p2p.transfer_app.service;
 
+import com.p2p.transfer_app.cache.AccountLookupCache;
+import com.p2p.transfer_app.event.UserRegisteredEvent;
 import com.p2p.transfer_app.exception.AuthenticationException;
 import com.p2p.transfer_app.model.User;
 import com.p2p.transfer_app.repository.UserRepository;
+import com.p2p.transfer_app.security.PasswordHasher;
+import com.p2p.transfer_app.shard.ShardDirectory;
+import com.p2p.transfer_app.shard.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.time.Duration;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,11 +34,25 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private AccountLookupCache lookupCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ShardDirectory shardDirectory;
+
+    private final ShardRouter shardRouter = new ShardRouter(1, 1);
+
+    private PasswordHasher passwordHasher;
+
     private UserService userService;
 
     @BeforeEach
     void setUp() {
-        userService = new UserService(userRepository);
+        passwordHasher = new PasswordHasher(new SimpleMeterRegistry(), 1, 16, 4, 4, Duration.ZERO);
+        userService = new UserService(userRepository, lookupCache, eventPublisher, passwordHasher, shardRouter, shardDirectory);
     }
 
     @Test
@@ -46,7 +73,11 @@ public class UserServiceTest {
         assertEquals("testuser", result.getUsername());
         assertNotNull(result);
         
-        verify(userRepository).save(any(User.class));
+        ArgumentCaptor<User> saved = ArgumentCaptor.forClass(User.class);
+        verify(userRepository).save(saved.capture());
+        assertNotEquals(password, saved.getValue().getPasswordHash());
+        assertTrue(PasswordHasher.await(passwordHasher.matches(password, saved.getValue().getPasswordHash())));
+        verify(eventPublisher).publishEvent(any(UserRegisteredEvent.class));
     }
 
     @Test
@@ -57,7 +88,7 @@ public class UserServiceTest {
         User user = new User();
         user.setId(1L);
         user.setUsername("testuser");
-        user.setPasswordHash("password123");
+        user.setPasswordHash(PasswordHasher.await(passwordHasher.hash(password)));
         
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
 
@@ -68,6 +99,31 @@ public class UserServiceTest {
         assertEquals("testuser", result.getUsername());
         
         verify(userRepository).findByUsername("testuser");
+        verify(userRepository, never()).updatePasswordHash(anyLong(), anyString());
+    }
+
+    @Test
+    void authenticateUser_WithLegacyPlaintextPassword_ShouldRehash() {
+        User user = new User(1L, "testuser", "password123");
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+
+        userService.authenticateUser("testuser", "password123");
+
+        ArgumentCaptor<String> rehashed = ArgumentCaptor.forClass(String.class);
+        verify(userRepository).updatePasswordHash(eq(1L), rehashed.capture());
+        assertTrue(rehashed.getValue().startsWith("$2a$04$"));
+    }
+
+    @Test
+    void authenticateUser_WithOutdatedCost_ShouldRehash() {
+        PasswordHasher stronger = new PasswordHasher(new SimpleMeterRegistry(), 1, 16, 5, 5, Duration.ZERO);
+        userService = new UserService(userRepository, lookupCache, eventPublisher, stronger, shardRouter, shardDirectory);
+        User user = new User(1L, "testuser", PasswordHasher.await(passwordHasher.hash("password123")));
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
+
+        userService.authenticateUser("testuser", "password123");
+
+        verify(userRepository).updatePasswordHash(eq(1L), argThat(hash -> hash.startsWith("$2a$05$")));
     }
 
     @Test
@@ -93,7 +149,7 @@ public class UserServiceTest {
         User user = new User();
         user.setId(1L);
         user.setUsername("testuser");
-        user.setPasswordHash("correctpassword");
+        user.setPasswordHash(PasswordHasher.await(passwordHasher.hash("correctpassword")));
         
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(user));
 
@@ -0,0 +1,64 @@
+package com.p2p.transfer_app.shard;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistentHashRingTest {
+
+    @Test
+    void shardFor_SequentialKeys_ShouldSpreadEvenlyAcrossShards() {
+        ConsistentHashRing ring = new ConsistentHashRing(4, 128);
+        int[] counts = new int[4];
+        for (long key = 1; key <= 40_000; key++) {
+            counts[ring.shardFor(key)]++;
+        }
+
+        for (int count : counts) {
+            assertTrue(count > 7_000 && count < 13_000, "Неравномерное распределение: " + count);
+        }
+    }
+
+    @Test
+    void shardFor_AddingShard_ShouldMoveOnlyKeysToNewShard() {
+        ConsistentHashRing before = new ConsistentHashRing(4, 128);
+        ConsistentHashRing after = new ConsistentHashRing(5, 128);
+        int moved = 0;
+        for (long key = 1; key <= 40_000; key++) {
+            int from = before.shardFor(key);
+            int to = after.shardFor(key);
+            if (from != to) {
+                assertEquals(4, to);
+                moved++;
+            }
+        }
+
+        // Около 1/5 ключей переезжает на новый шард, остальные остаются на месте
+        assertTrue(moved > 5_000 && moved < 11_000, "Переехало ключей: " + moved);
+    }
+
+    @Test
+    void shardOfAccountNumber_ShouldDecodeShardEncodedInNewNumber() {
+        ShardRouter router = new ShardRouter(3, 16);
+
+        for (int shard = 0; shard < 3; shard++) {
+            String accountNumber = router.newAccountNumber(shard);
+            assertEquals(20, accountNumber.length());
+            assertEquals(shard, router.shardOfAccountNumber(accountNumber));
+            assertEquals(shard, router.shardOfAccountId(router.accountId(42, shard)));
+        }
+        assertTrue(router.isCrossShard(router.newAccountNumber(0), router.newAccountNumber(2)));
+        assertFalse(router.isCrossShard(router.newAccountNumber(1), router.newAccountNumber(1)));
+    }
+
+    @Test
+    void shardRouter_WithSingleShard_ShouldRouteEverythingToShardZero() {
+        ShardRouter router = new ShardRouter(1, 16);
+
+        assertFalse(router.isSharded());
+        assertEquals(0, router.shardOfUser(12345L));
+        assertEquals(0, router.shardOfAccountId(12345L));
+        assertEquals(0, router.shardOfAccountNumber("ACC001"));
+        assertFalse(router.isCrossShard("ACC001", "ACC003"));
+    }
+}
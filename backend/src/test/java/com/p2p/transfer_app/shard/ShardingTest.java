@@ -0,0 +1,293 @@
+package com.p2p.transfer_app.shard;
+
+import com.p2p.transfer_app.dto.StatementFormat;
+import com.p2p.transfer_app.dto.TransferRequest;
+import com.p2p.transfer_app.model.Account;
+import com.p2p.transfer_app.model.CrossShardTransfer;
+import com.p2p.transfer_app.model.User;
+import com.p2p.transfer_app.model.enums.CrossShardTransferStatus;
+import com.p2p.transfer_app.repository.CrossShardTransferRepository;
+import com.p2p.transfer_app.service.AccountService;
+import com.p2p.transfer_app.service.StatementService;
+import com.p2p.transfer_app.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Три независимые базы H2 в роли шардов; схема создается на каждой из них при старте
+@SpringBootTest(properties = {
+    "sharding.urls=jdbc:h2:mem:transfer_shard0;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000,"
+            + "jdbc:h2:mem:transfer_shard1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000,"
+            + "jdbc:h2:mem:transfer_shard2;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+    "sharding.username=sa",
+    "sharding.virtual-nodes=16",
+    "sharding.schema-locations=classpath:schema.sql",
+    "sharding.saga.retry-interval=PT1H",
+    "sharding.saga.retry-after=PT1M",
+    "spring.sql.init.mode=never",
+    "transfer.mode=CONDITIONAL"
+})
+public class ShardingTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    @Autowired
+    private CrossShardTransferCoordinator coordinator;
+
+    @Autowired
+    private StatementService statementService;
+
+    @Autowired
+    private CrossShardTransferRepository crossShardTransferRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate shard(int shard) {
+        return new JdbcTemplate(shardRoutingDataSource.getShard(shard));
+    }
+
+    // Регистрирует пользователей, пока не найдутся по одному на каждом шарде
+    private Map<Integer, User> usersOnEveryShard() {
+        Map<Integer, User> users = new HashMap<>();
+        for (int i = 0; i < 100 && users.size() < shardRouter.shardCount(); i++) {
+            User user = userService.registerUser("shard-" + UUID.randomUUID(), "password123");
+            users.putIfAbsent(shardRouter.shardOfUser(user.getId()), user);
+        }
+        assertEquals(shardRouter.shardCount(), users.size());
+        return users;
+    }
+
+    private long balance(Account account) {
+        return shard(shardRouter.shardOfAccountId(account.getId()))
+                .queryForObject("SELECT balance FROM accounts WHERE id = ?", Long.class, account.getId());
+    }
+
+    private String transactionStatus(int shard, UUID transactionId) {
+        return shard(shard).queryForObject("SELECT status FROM transactions WHERE id = ?", String.class, transactionId);
+    }
+
+    private String sagaStatus(int shard, UUID transactionId) {
+        return shard(shard).queryForObject("SELECT status FROM cross_shard_transfers WHERE id = ?", String.class, transactionId);
+    }
+
+    private static TransferRequest request(Account from, Account to, long amount) {
+        TransferRequest request = new TransferRequest();
+        request.setFromAccountNumber(from.getAccountNumber());
+        request.setToAccountNumber(to.getAccountNumber());
+        request.setAmount(amount);
+        return request;
+    }
+
+    @Test
+    void registerUser_ShouldStoreUserOnlyOnRingShard() {
+        Map<Integer, User> users = usersOnEveryShard();
+
+        users.forEach((shard, user) -> {
+            for (int other = 0; other < shardRouter.shardCount(); other++) {
+                Integer rows = shard(other).queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, user.getId());
+                assertEquals(other == shard ? 1 : 0, rows);
+            }
+            assertEquals(user.getId(), userService.authenticateUser(user.getUsername(), "password123").getId());
+        });
+        User any = users.get(0);
+        assertThrows(IllegalStateException.class, () -> userService.registerUser(any.getUsername(), "password123"));
+    }
+
+    @Test
+    void exportStatement_WithoutShardContext_ShouldReadAccountShard() {
+        usersOnEveryShard().forEach((shard, user) -> {
+            Account from = accountService.openNewAccount(user.getId(), 1000L);
+            Account to = accountService.openNewAccount(user.getId(), 0L);
+            accountService.transferMoney(request(from, to, 300L));
+
+            // Как в потоке асинхронной обработки запроса: ShardRoutingFilter уже очистил контекст
+            assertNull(ShardContext.current());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long rows = statementService.export(from.getId(), StatementFormat.CSV, Instant.EPOCH, Instant.now().plusSeconds(1), out);
+
+            String[] lines = out.toString(StandardCharsets.US_ASCII).split("\n");
+            assertEquals(1, rows);
+            assertEquals(2, lines.length);
+            assertTrue(lines[1].endsWith("," + to.getId() + ",-300,700"), lines[1]);
+        });
+    }
+
+    @Test
+    void openNewAccount_ShouldEncodeOwnerShardInNumberAndId() {
+        usersOnEveryShard().forEach((shard, user) -> {
+            Account account = accountService.openNewAccount(user.getId(), 100L);
+
+            assertEquals(shard, shardRouter.shardOfAccountNumber(account.getAccountNumber()));
+            assertEquals(shard, shardRouter.shardOfAccountId(account.getId()));
+            assertEquals(100L, balance(account));
+            assertEquals(account.getId(), accountService.getAccountByNumber(account.getAccountNumber()).getId());
+            assertEquals(user.getId(), accountService.getAccountOwnerId(account.getId()));
+        });
+    }
+
+    @Test
+    void transferMoney_WithinOneShard_ShouldStayLocal() {
+        User user = usersOnEveryShard().get(1);
+        Account from = accountService.openNewAccount(user.getId(), 1000L);
+        Account to = accountService.openNewAccount(user.getId(), 0L);
+
+        UUID transactionId = accountService.transferMoney(request(from, to, 300L));
+
+        assertEquals(700L, balance(from));
+        assertEquals(300L, balance(to));
+        assertEquals("COMPLETED", transactionStatus(1, transactionId));
+        assertEquals(0, shard(1).queryForObject("SELECT COUNT(*) FROM cross_shard_transfers WHERE id = ?", Integer.class, transactionId));
+    }
+
+    @Test
+    void transferMoney_AcrossShards_ShouldDebitAndCreditBothShards() {
+        Map<Integer, User> users = usersOnEveryShard();
+        Account from = accountService.openNewAccount(users.get(0).getId(), 1000L);
+        Account to = accountService.openNewAccount(users.get(2).getId(), 50L);
+
+        UUID transactionId = accountService.transferMoney(request(from, to, 400L));
+
+        assertEquals(600L, balance(from));
+        assertEquals(450L, balance(to));
+        assertEquals("COMPLETED", transactionStatus(0, transactionId));
+        assertEquals("COMPLETED", transactionStatus(2, transactionId));
+        assertEquals("COMPLETED", sagaStatus(0, transactionId));
+    }
+
+    @Test
+    void transferMoney_TargetClosedBeforeCommit_ShouldCompensateSource() {
+        Map<Integer, User> users = usersOnEveryShard();
+        Account from = accountService.openNewAccount(users.get(1).getId(), 1000L);
+        Account to = accountService.openNewAccount(users.get(2).getId(), 0L);
+
+        // Счет получателя закрывают между списанием и зачислением
+        UUID transactionId = new TransactionTemplate(transactionManager).execute(status -> {
+            UUID id = accountService.transferMoney(request(from, to, 250L));
+            shard(2).update("UPDATE accounts SET status = 'CLOSED' WHERE id = ?", to.getId());
+            return id;
+        });
+
+        assertEquals(1000L, balance(from));
+        assertEquals(0L, balance(to));
+        assertEquals("FAILED", transactionStatus(1, transactionId));
+        assertEquals("COMPENSATED", sagaStatus(1, transactionId));
+        assertEquals(0, shard(2).queryForObject("SELECT COUNT(*) FROM transactions WHERE id = ?", Integer.class, transactionId));
+    }
+
+    @Test
+    void retryPending_StalePendingSaga_ShouldCompleteItOnce() {
+        Map<Integer, User> users = usersOnEveryShard();
+        Account from = accountService.openNewAccount(users.get(2).getId(), 1000L);
+        Account to = accountService.openNewAccount(users.get(0).getId(), 0L);
+
+        // Сбой после фиксации списания: строка саги осталась в PENDING, зачисления не было
+        UUID transactionId = UUID.randomUUID();
+        Instant createdAt = Instant.now().minusSeconds(600);
+        shard(2).update("UPDATE accounts SET balance = balance - 100 WHERE id = ?", from.getId());
+        shard(2).update("INSERT INTO transactions (id, from_account_id, to_account_id, amount, status, created_at) VALUES (?, ?, ?, ?, 'PENDING', ?)",
+                transactionId, from.getId(), to.getId(), 100L, Timestamp.from(createdAt));
+        CrossShardTransfer transfer = CrossShardTransfer.builder()
+                .id(transactionId)
+                .fromAccountId(from.getId())
+                .toAccountId(to.getId())
+                .toShard(0)
+                .amount(100L)
+                .status(CrossShardTransferStatus.PENDING)
+                .createdAt(createdAt)
+                .build();
+        ShardContext.run(2, () -> crossShardTransferRepository.save(transfer));
+
+        coordinator.retryPending();
+
+        assertEquals(900L, balance(from));
+        assertEquals(100L, balance(to));
+        assertEquals("COMPLETED", transactionStatus(2, transactionId));
+        assertEquals("COMPLETED", sagaStatus(2, transactionId));
+
+        // Повторное завершение той же саги ничего не меняет
+        assertNull(coordinator.complete(transfer));
+        assertEquals(100L, balance(to));
+    }
+
+    @Test
+    void complete_RepeatedAfterTargetRowArchived_ShouldNotCreditTwice() {
+        Map<Integer, User> users = usersOnEveryShard();
+        Account from = accountService.openNewAccount(users.get(0).getId(), 1000L);
+        Account to = accountService.openNewAccount(users.get(1).getId(), 0L);
+        UUID transactionId = accountService.transferMoney(request(from, to, 300L));
+        CrossShardTransfer transfer = CrossShardTransfer.builder()
+                .id(transactionId)
+                .fromAccountId(from.getId())
+                .toAccountId(to.getId())
+                .toShard(1)
+                .amount(300L)
+                .status(CrossShardTransferStatus.PENDING)
+                .createdAt(shard(0).queryForObject("SELECT created_at FROM transactions WHERE id = ?", Timestamp.class, transactionId).toInstant())
+                .build();
+
+        // Строка перевода на шарде получателя ушла в архив, а сага на шарде источника повторяется после сбоя
+        shard(1).update("DELETE FROM transactions WHERE id = ?", transactionId);
+        shard(0).update("UPDATE cross_shard_transfers SET status = 'PENDING' WHERE id = ?", transactionId);
+
+        assertEquals(CrossShardTransferStatus.COMPLETED, coordinator.complete(transfer));
+        assertEquals(700L, balance(from));
+        assertEquals(300L, balance(to));
+        assertEquals(1, shard(1).queryForObject("SELECT COUNT(*) FROM cross_shard_credits WHERE transfer_id = ?", Integer.class, transactionId));
+    }
+
+    @Test
+    void complete_WithTargetAndSourceClosed_ShouldLeaveSagaPending() {
+        Map<Integer, User> users = usersOnEveryShard();
+        Account from = accountService.openNewAccount(users.get(2).getId(), 1000L);
+        Account to = accountService.openNewAccount(users.get(1).getId(), 0L);
+
+        // Списание зафиксировано, после чего закрыли и счет получателя, и счет-источник
+        UUID transactionId = UUID.randomUUID();
+        Instant createdAt = Instant.now();
+        shard(2).update("UPDATE accounts SET balance = balance - 250, status = 'CLOSED' WHERE id = ?", from.getId());
+        shard(2).update("INSERT INTO transactions (id, from_account_id, to_account_id, amount, status, created_at) VALUES (?, ?, ?, ?, 'PENDING', ?)",
+                transactionId, from.getId(), to.getId(), 250L, Timestamp.from(createdAt));
+        shard(1).update("UPDATE accounts SET status = 'CLOSED' WHERE id = ?", to.getId());
+        CrossShardTransfer transfer = CrossShardTransfer.builder()
+                .id(transactionId)
+                .fromAccountId(from.getId())
+                .toAccountId(to.getId())
+                .toShard(1)
+                .amount(250L)
+                .status(CrossShardTransferStatus.PENDING)
+                .createdAt(createdAt)
+                .build();
+        ShardContext.run(2, () -> crossShardTransferRepository.save(transfer));
+
+        // Вернуть сумму некуда: сага не помечается COMPENSATED, а ждет ручного разбора
+        assertEquals(CrossShardTransferStatus.PENDING, coordinator.complete(transfer));
+        assertEquals(750L, balance(from));
+        assertEquals("PENDING", transactionStatus(2, transactionId));
+        assertEquals("PENDING", sagaStatus(2, transactionId));
+        assertNotNull(shard(2).queryForObject("SELECT last_error FROM cross_shard_transfers WHERE id = ?", String.class, transactionId));
+    }
+}
@@ -0,0 +1,143 @@
+package com.p2p.transfer_app.stream;
+
+import com.p2p.transfer_app.cache.AccountLookupCache;
+import com.p2p.transfer_app.dto.BalanceUpdate;
+import com.p2p.transfer_app.dto.BalanceUpdateType;
+import com.p2p.transfer_app.event.TransferCompletedEvent;
+import com.p2p.transfer_app.model.Transaction;
+import com.p2p.transfer_app.model.enums.TransactionStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BalanceStreamRegistryTest {
+
+    @Mock
+    private AccountLookupCache lookupCache;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private BalanceStreamRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new BalanceStreamRegistry(lookupCache, meterRegistry, 3, Duration.ofMinutes(1), 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.destroy();
+    }
+
+    @Test
+    void onTransferCompleted_ShouldPushDeltasToBothOwners() throws Exception {
+        RecordingEmitter sender = new RecordingEmitter(1, null);
+        RecordingEmitter receiver = new RecordingEmitter(1, null);
+        registry.subscribe(1L, sender);
+        registry.subscribe(2L, receiver);
+        when(lookupCache.findOwnerId(10L)).thenReturn(Optional.of(1L));
+        when(lookupCache.findOwnerId(20L)).thenReturn(Optional.of(2L));
+
+        Transaction transaction = new Transaction(UUID.randomUUID(), 10L, 20L, 300L, TransactionStatus.COMPLETED, OffsetDateTime.now());
+        registry.onTransferCompleted(new TransferCompletedEvent(List.of(transaction)));
+
+        assertTrue(sender.await());
+        assertTrue(receiver.await());
+        assertEquals(1, sender.events.size());
+        assertEquals(-300L, sender.events.get(0).getDelta());
+        assertEquals(BalanceUpdateType.TRANSFER_OUT, sender.events.get(0).getType());
+        assertEquals(300L, receiver.events.get(0).getDelta());
+    }
+
+    @Test
+    void publish_ToSlowSubscriber_ShouldDropOldestUpdates() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(4, release);
+        registry.subscribe(1L, slow);
+
+        // Первое событие занимает поток рассылки, следующие копятся в буфере на три события
+        registry.publish(1L, update(0));
+        Thread.sleep(100);
+        for (int i = 1; i <= 5; i++) {
+            registry.publish(1L, update(i));
+        }
+        release.countDown();
+
+        assertTrue(slow.await());
+        assertEquals(4, slow.events.size());
+        assertEquals(List.of(0L, 3L, 4L, 5L), slow.events.stream().map(BalanceUpdate::getDelta).toList());
+        assertEquals(2.0, meterRegistry.get("balance.stream.dropped").counter().count());
+    }
+
+    @Test
+    void publish_WhenClientDisconnected_ShouldRemoveSubscriber() throws Exception {
+        registry.subscribe(1L, new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        });
+
+        registry.publish(1L, update(1));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("balance.stream.subscribers").gauge().value() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0.0, meterRegistry.get("balance.stream.subscribers").gauge().value());
+    }
+
+    private BalanceUpdate update(long delta) {
+        return new BalanceUpdate(BalanceUpdateType.TRANSFER_IN, 10L, null, delta, null);
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<BalanceUpdate> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch received;
+        private final CountDownLatch release;
+
+        RecordingEmitter(int expected, CountDownLatch release) {
+            this.received = new CountDownLatch(expected);
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                if (release != null) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            builder.build().stream()
+                    .filter(item -> item.getData() instanceof BalanceUpdate)
+                    .forEach(item -> events.add((BalanceUpdate) item.getData()));
+            received.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return received.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
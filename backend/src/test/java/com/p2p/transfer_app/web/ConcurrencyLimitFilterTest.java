@@ -0,0 +1,85 @@
+package com.p2p.transfer_app.web;
+
+import com.p2p.transfer_app.limit.AdaptiveConcurrencyLimit;
+import com.p2p.transfer_app.web.ConcurrencyLimitFilter.Bulkhead;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(Map.of(
+            Bulkhead.TRANSFERS, new AdaptiveConcurrencyLimit(2, 1, 10, 0, 0, 1.5, 0),
+            Bulkhead.READS, new AdaptiveConcurrencyLimit(2, 1, 10, 0, 0, 1.5, 0),
+            Bulkhead.AUTH, new AdaptiveConcurrencyLimit(2, 1, 10, 0, 0, 1.5, 0)), meterRegistry, 2);
+
+    private static MockHttpServletRequest request(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRequestURI(path);
+        return request;
+    }
+
+    @Test
+    void classify_ShouldSeparateTransfersReadsAndAuth() {
+        assertEquals(Bulkhead.TRANSFERS, ConcurrencyLimitFilter.classify(request("POST", "/api/accounts/transfer")));
+        assertEquals(Bulkhead.TRANSFERS, ConcurrencyLimitFilter.classify(request("POST", "/api/accounts/transfers/batch")));
+        assertEquals(Bulkhead.AUTH, ConcurrencyLimitFilter.classify(request("POST", "/api/users/login")));
+        assertEquals(Bulkhead.READS, ConcurrencyLimitFilter.classify(request("GET", "/api/accounts/user/1")));
+        assertNull(ConcurrencyLimitFilter.classify(request("GET", "/api/accounts/user/1/stream")));
+        assertNull(ConcurrencyLimitFilter.classify(request("DELETE", "/api/accounts/1")));
+    }
+
+    @Test
+    void doFilter_WhenTransfersSaturated_ShouldRejectTransfersAndServeReads() throws Exception {
+        CountDownLatch entered = new CountDownLatch(2);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> blockTransfer(entered, finish));
+            Future<?> second = executor.submit(() -> blockTransfer(entered, finish));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            MockHttpServletResponse rejected = new MockHttpServletResponse();
+            filter.doFilter(request("POST", "/api/accounts/transfer"), rejected, (req, res) -> fail("Перевод не должен выполняться"));
+            assertEquals(503, rejected.getStatus());
+            assertEquals("2", rejected.getHeader("Retry-After"));
+
+            MockHttpServletResponse read = new MockHttpServletResponse();
+            filter.doFilter(request("GET", "/api/accounts/user/1"), read, (req, res) -> ((MockHttpServletResponse) res).setStatus(200));
+            assertEquals(200, read.getStatus());
+
+            finish.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            finish.countDown();
+            executor.shutdownNow();
+        }
+        assertEquals(1.0, meterRegistry.get("http.concurrency.rejected").tag("bulkhead", "transfers").counter().count());
+        assertEquals(0.0, meterRegistry.get("http.concurrency.rejected").tag("bulkhead", "reads").counter().count());
+    }
+
+    private Void blockTransfer(CountDownLatch entered, CountDownLatch finish) throws Exception {
+        filter.doFilter(request("POST", "/api/accounts/transfer"), new MockHttpServletResponse(), (req, res) -> {
+            entered.countDown();
+            try {
+                finish.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return null;
+    }
+}
@@ -1,31 +1,198 @@
 -- Schema for testing
+DROP TABLE IF EXISTS user_balance_summary_slots;
+DROP TABLE IF EXISTS user_balance_summary;
+DROP TABLE IF EXISTS cross_shard_credits;
+DROP TABLE IF EXISTS cross_shard_transfers;
+DROP TABLE IF EXISTS account_directory;
+DROP TABLE IF EXISTS user_directory;
+DROP TABLE IF EXISTS account_archival;
+DROP TABLE IF EXISTS transactions_archive;
+DROP TABLE IF EXISTS replica_heartbeat;
+DROP TABLE IF EXISTS scheduled_transfers;
+DROP TABLE IF EXISTS transfer_journal_checkpoint;
+DROP TABLE IF EXISTS transfer_outbox;
+DROP TABLE IF EXISTS ledger_snapshots;
+DROP TABLE IF EXISTS ledger_entries;
+DROP TABLE IF EXISTS idempotency_keys;
+DROP TABLE IF EXISTS account_balance_slots;
 DROP TABLE IF EXISTS transactions;
 DROP TABLE IF EXISTS accounts;
 DROP TABLE IF EXISTS users;
 
 CREATE TABLE users (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     username VARCHAR(100) UNIQUE NOT NULL,
     password_hash VARCHAR(255) NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
 CREATE TABLE accounts (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     account_number VARCHAR(50) UNIQUE NOT NULL,
     balance BIGINT NOT NULL DEFAULT 0,
     user_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    closed_at TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
+-- В H2 одна таблица; в init.sql transactions секционирована по месяцам. Внешних ключей на accounts нет из-за переводов между шардами
 CREATE TABLE transactions (
-    id UUID PRIMARY KEY DEFAULT RANDOM_UUID(),
+    id UUID DEFAULT RANDOM_UUID() PRIMARY KEY,
     from_account_id BIGINT NOT NULL,
     to_account_id BIGINT NOT NULL,
     amount BIGINT NOT NULL,
     status VARCHAR(20) DEFAULT 'PENDING',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE account_balance_slots (
+    account_id BIGINT NOT NULL,
+    slot INTEGER NOT NULL,
+    balance BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (account_id, slot),
+    FOREIGN KEY (account_id) REFERENCES accounts(id)
+);
+
+CREATE INDEX idx_transactions_from_account_created ON transactions(from_account_id, created_at DESC, id DESC);
+CREATE INDEX idx_transactions_to_account_created ON transactions(to_account_id, created_at DESC, id DESC);
+
+CREATE TABLE idempotency_keys (
+    user_id BIGINT NOT NULL,
+    idempotency_key VARCHAR(100) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    transaction_id UUID NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uq_idempotency_keys_user_key UNIQUE (user_id, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_created_at ON idempotency_keys(created_at);
+
+CREATE TABLE ledger_entries (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    transaction_id UUID,
+    amount BIGINT NOT NULL,
+    entry_type VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE ledger_snapshots (
+    account_id BIGINT NOT NULL,
+    last_entry_id BIGINT NOT NULL,
+    balance BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (account_id, last_entry_id)
+);
+
+CREATE INDEX idx_ledger_entries_account_id ON ledger_entries(account_id, id);
+CREATE INDEX idx_ledger_entries_created_at ON ledger_entries(created_at);
+
+CREATE TABLE transfer_outbox (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    transaction_id UUID NOT NULL,
+    from_account_id BIGINT NOT NULL,
+    to_account_id BIGINT NOT NULL,
+    amount BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(500)
+);
+
+CREATE TABLE transfer_journal_checkpoint (
+    id INTEGER PRIMARY KEY,
+    applied_sequence BIGINT NOT NULL
+);
+
+CREATE TABLE scheduled_transfers (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    from_account_number VARCHAR(50) NOT NULL,
+    to_account_number VARCHAR(50) NOT NULL,
+    amount BIGINT NOT NULL,
+    next_run_at TIMESTAMP NOT NULL,
+    repeat_interval_seconds BIGINT,
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    claimed_until TIMESTAMP,
+    last_transaction_id UUID,
+    last_error VARCHAR(500),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    FOREIGN KEY (from_account_id) REFERENCES accounts(id),
-    FOREIGN KEY (to_account_id) REFERENCES accounts(id)
-); 
\ No newline at end of file
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_scheduled_transfers_due ON scheduled_transfers(status, next_run_at);
+CREATE INDEX idx_scheduled_transfers_user_id ON scheduled_transfers(user_id);
+
+CREATE TABLE replica_heartbeat (
+    id INT PRIMARY KEY,
+    beat_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE transactions_archive (
+    id UUID PRIMARY KEY,
+    from_account_id BIGINT NOT NULL,
+    to_account_id BIGINT NOT NULL,
+    amount BIGINT NOT NULL,
+    status VARCHAR(20),
+    created_at TIMESTAMP,
+    archived_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE account_archival (
+    account_id BIGINT PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    archived_rows BIGINT NOT NULL DEFAULT 0,
+    checkpoint_created_at TIMESTAMP,
+    checkpoint_id UUID,
+    requested_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+);
+
+CREATE TABLE user_directory (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username VARCHAR(100) UNIQUE NOT NULL
+);
+
+CREATE TABLE account_directory (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_number VARCHAR(50) UNIQUE NOT NULL
+);
+
+CREATE TABLE cross_shard_transfers (
+    id UUID PRIMARY KEY,
+    from_account_id BIGINT NOT NULL,
+    to_account_id BIGINT NOT NULL,
+    to_shard INT NOT NULL,
+    amount BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(500)
+);
+
+CREATE TABLE cross_shard_credits (
+    transfer_id UUID PRIMARY KEY,
+    to_account_id BIGINT NOT NULL,
+    amount BIGINT NOT NULL,
+    credited_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE user_balance_summary (
+    user_id BIGINT PRIMARY KEY,
+    total_balance BIGINT NOT NULL DEFAULT 0,
+    account_count INT NOT NULL DEFAULT 0,
+    last_activity_at TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE TABLE user_balance_summary_slots (
+    user_id BIGINT NOT NULL,
+    slot INT NOT NULL,
+    total_balance BIGINT NOT NULL DEFAULT 0,
+    last_activity_at TIMESTAMP,
+    PRIMARY KEY (user_id, slot),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
@@ -1,4 +1,4 @@
-import React, { useState } from 'react';
+import React, { useEffect, useState } from 'react';
 import axios from 'axios';
 import './App.css';
 
@@ -55,17 +55,24 @@ function App() {
     setter(prev => ({ ...prev, [name]: value }));
   };
 
+  // Токен из ответа на вход передается во всех запросах к счетам вместо userId
+  const signIn = async () => {
+    const response = await apiClient.post('/users/login', authForm);
+    const apiResponse = response.data;
+    const user = apiResponse.data;
+
+    apiClient.defaults.headers.common['Authorization'] = `Bearer ${user.token}`;
+    setCurrentUser(user);
+    return apiResponse;
+  };
+
   const handleLogin = async (e) => {
     e.preventDefault();
     try {
-      const response = await apiClient.post('/users/login', authForm);
-      const apiResponse = response.data;
+      const apiResponse = await signIn();
       const user = apiResponse.data;
       
-      setCurrentUser(user);
       log(`Добро пожаловать, ${user.username}!`, 'success', apiResponse.executionTimeMs);
-      
-      loadUserAccounts(user.userId);
     } catch (error) {
       handleApiError(error);
     }
@@ -78,11 +85,7 @@ function App() {
       const apiResponse = response.data;
       const user = apiResponse.data;
       
-      const normalizedUser = {
-        userId: user.id,
-        username: user.username
-      };
-      setCurrentUser(normalizedUser);
+      await signIn();
       log(`Регистрация успешна! Добро пожаловать, ${user.username}!`, 'success', apiResponse.executionTimeMs);
     } catch (error) {
       handleApiError(error);
@@ -90,6 +93,7 @@ function App() {
   };
 
   const handleLogout = () => {
+    delete apiClient.defaults.headers.common['Authorization'];
     setCurrentUser(null);
     setAccounts([]);
     log('Вы вышли из системы.');
@@ -107,6 +111,35 @@ function App() {
     }
   };
 
+  const applyBalanceUpdate = (update) => {
+    setAccounts(prev => {
+      switch (update.type) {
+        case 'OPENED':
+          return prev.some(account => account.id === update.accountId)
+            ? prev
+            : [...prev, { id: update.accountId, accountNumber: update.accountNumber, balance: update.delta, userId: currentUser.userId }];
+        case 'CLOSED':
+          return prev.filter(account => account.id !== update.accountId);
+        default:
+          return prev.map(account => account.id === update.accountId
+            ? { ...account, balance: account.balance + update.delta }
+            : account);
+      }
+    });
+  };
+
+  // Счета загружаются при каждом (пере)подключении потока, дальше балансы обновляются событиями без опроса сервера
+  useEffect(() => {
+    if (!currentUser || !currentUser.token) {
+      return undefined;
+    }
+    const source = new EventSource(`/api/accounts/user/${currentUser.userId}/stream?access_token=${encodeURIComponent(currentUser.token)}`);
+    source.onopen = () => loadUserAccounts(currentUser.userId);
+    source.addEventListener('balance', (event) => applyBalanceUpdate(JSON.parse(event.data)));
+    return () => source.close();
+    // eslint-disable-next-line react-hooks/exhaustive-deps
+  }, [currentUser]);
+
   const handleCreateAccount = async (e) => {
     e.preventDefault();
     try {
@@ -123,8 +156,6 @@ function App() {
       log(`Счет создан: ${account.accountNumber} с балансом ${(account.balance / 100).toFixed(2)} руб.`, 'success', apiResponse.executionTimeMs);
       
       setAccForm({ initialBalance: '' });
-      
-      loadUserAccounts(currentUser.userId);
     } catch (error) {
       handleApiError(error);
     }
@@ -135,7 +166,7 @@ function App() {
     try {
       const amountKopecks = Math.round(parseFloat(transferForm.amount) * 100);
       
-      const response = await apiClient.post(`/accounts/transfer?userId=${currentUser.userId}`, {
+      const response = await apiClient.post('/accounts/transfer', {
           fromAccountNumber: transferForm.fromAccountNumber,
           toAccountNumber: transferForm.toAccountNumber,
           amount: amountKopecks
@@ -147,8 +178,6 @@ function App() {
       log(message, 'success', apiResponse.executionTimeMs);
       
       setTransferForm({ fromAccountNumber: '', toAccountNumber: '', amount: '' });
-      
-      loadUserAccounts(currentUser.userId);
     } catch (error) {
       handleApiError(error);
     }
@@ -156,13 +185,11 @@ function App() {
   
   const handleDeleteAccount = async (accountId) => {
     try {
-      const response = await apiClient.delete(`/accounts/${accountId}?userId=${currentUser.userId}`);
+      const response = await apiClient.delete(`/accounts/${accountId}`);
       const apiResponse = response.data;
       const message = typeof apiResponse.data === 'object' ? JSON.stringify(apiResponse.data) : apiResponse.data;
       
       log(message, 'success', apiResponse.executionTimeMs);
-      
-      loadUserAccounts(currentUser.userId);
     } catch (error) {
       handleApiError(error);
     }
@@ -298,6 +325,13 @@ function App() {
                     >
                       Удалить счет
                     </button>
+                    <a
+                      href={`/api/accounts/${acc.id}/statement?format=csv&access_token=${encodeURIComponent(currentUser.token)}`}
+                      download
+                      style={{ marginLeft: '10px' }}
+                    >
+                      Выписка CSV
+                    </a>
                   </div>
                 ))
               )}
@@ -10,26 +10,180 @@ CREATE TABLE IF NOT EXISTS accounts (
     account_number VARCHAR(50) UNIQUE NOT NULL,
     balance BIGINT NOT NULL DEFAULT 0,
     user_id INTEGER NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    closed_at TIMESTAMP,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
+-- Секции по месяцам создает TransactionPartitionMaintainer; в секцию по умолчанию попадают строки, для которых секции еще нет.
+-- Внешних ключей на accounts нет: перевод между шардами ссылается на счет другой базы
 CREATE TABLE IF NOT EXISTS transactions (
-    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    id UUID NOT NULL DEFAULT gen_random_uuid(),
     from_account_id INTEGER NOT NULL,
     to_account_id INTEGER NOT NULL,
     amount BIGINT NOT NULL,
     status VARCHAR(20) DEFAULT 'PENDING',
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE IF NOT EXISTS transactions_default PARTITION OF transactions DEFAULT;
+
+CREATE TABLE IF NOT EXISTS account_balance_slots (
+    account_id INTEGER NOT NULL,
+    slot INTEGER NOT NULL,
+    balance BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (account_id, slot),
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    user_id INTEGER NOT NULL,
+    idempotency_key VARCHAR(100) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    transaction_id UUID NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uq_idempotency_keys_user_key UNIQUE (user_id, idempotency_key)
+);
+
+CREATE TABLE IF NOT EXISTS ledger_entries (
+    id BIGSERIAL PRIMARY KEY,
+    account_id INTEGER NOT NULL,
+    transaction_id UUID,
+    amount BIGINT NOT NULL,
+    entry_type VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS ledger_snapshots (
+    account_id INTEGER NOT NULL,
+    last_entry_id BIGINT NOT NULL,
+    balance BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (account_id, last_entry_id)
+);
+
+CREATE TABLE IF NOT EXISTS transfer_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    transaction_id UUID NOT NULL,
+    from_account_id INTEGER NOT NULL,
+    to_account_id INTEGER NOT NULL,
+    amount BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(500)
+);
+
+-- Номер последней записи журнала движка переводов, примененной к базе; меняется в транзакции группы
+CREATE TABLE IF NOT EXISTS transfer_journal_checkpoint (
+    id INTEGER PRIMARY KEY,
+    applied_sequence BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS scheduled_transfers (
+    id BIGSERIAL PRIMARY KEY,
+    user_id INTEGER NOT NULL,
+    from_account_number VARCHAR(50) NOT NULL,
+    to_account_number VARCHAR(50) NOT NULL,
+    amount BIGINT NOT NULL,
+    next_run_at TIMESTAMP NOT NULL,
+    repeat_interval_seconds BIGINT,
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    claimed_until TIMESTAMP,
+    last_transaction_id UUID,
+    last_error VARCHAR(500),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    FOREIGN KEY (from_account_id) REFERENCES accounts(id) ON DELETE CASCADE,
-    FOREIGN KEY (to_account_id) REFERENCES accounts(id) ON DELETE CASCADE
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS replica_heartbeat (
+    id INTEGER PRIMARY KEY,
+    beat_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS transactions_archive (
+    id UUID PRIMARY KEY,
+    from_account_id INTEGER NOT NULL,
+    to_account_id INTEGER NOT NULL,
+    amount BIGINT NOT NULL,
+    status VARCHAR(20),
+    created_at TIMESTAMP,
+    archived_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS account_archival (
+    account_id INTEGER PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    archived_rows BIGINT NOT NULL DEFAULT 0,
+    checkpoint_created_at TIMESTAMP,
+    checkpoint_id UUID,
+    requested_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+);
+
+-- Каталоги используются только на шарде 0: глобальные id пользователей и счетов и уникальность имен
+CREATE TABLE IF NOT EXISTS user_directory (
+    id SERIAL PRIMARY KEY,
+    username VARCHAR(100) UNIQUE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS account_directory (
+    id SERIAL PRIMARY KEY,
+    account_number VARCHAR(50) UNIQUE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS cross_shard_transfers (
+    id UUID PRIMARY KEY,
+    from_account_id INTEGER NOT NULL,
+    to_account_id INTEGER NOT NULL,
+    to_shard INTEGER NOT NULL,
+    amount BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(500)
+);
+
+-- Зачисления саг на шарде получателя: первичный ключ не дает повтору зачислить перевод второй раз
+CREATE TABLE IF NOT EXISTS cross_shard_credits (
+    transfer_id UUID PRIMARY KEY,
+    to_account_id INTEGER NOT NULL,
+    amount BIGINT NOT NULL,
+    credited_at TIMESTAMP NOT NULL
+);
+
+-- Проекция балансов пользователя: обновляется в транзакциях переводов, открытия и закрытия счетов
+CREATE TABLE IF NOT EXISTS user_balance_summary (
+    user_id INTEGER PRIMARY KEY,
+    total_balance BIGINT NOT NULL DEFAULT 0,
+    account_count INTEGER NOT NULL DEFAULT 0,
+    last_activity_at TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Полосы проекции для пользователей с полосатыми счетами: переводы по таким счетам пишут сюда, а не в строку выше
+CREATE TABLE IF NOT EXISTS user_balance_summary_slots (
+    user_id INTEGER NOT NULL,
+    slot INTEGER NOT NULL,
+    total_balance BIGINT NOT NULL DEFAULT 0,
+    last_activity_at TIMESTAMP,
+    PRIMARY KEY (user_id, slot),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
 CREATE INDEX IF NOT EXISTS idx_accounts_user_id ON accounts(user_id);
 CREATE INDEX IF NOT EXISTS idx_accounts_account_number ON accounts(account_number);
-CREATE INDEX IF NOT EXISTS idx_transactions_from_account ON transactions(from_account_id);
-CREATE INDEX IF NOT EXISTS idx_transactions_to_account ON transactions(to_account_id);
+CREATE INDEX IF NOT EXISTS idx_transactions_from_account_created ON transactions(from_account_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_to_account_created ON transactions(to_account_id, created_at DESC, id DESC);
 CREATE INDEX IF NOT EXISTS idx_transactions_status ON transactions(status);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_created_at ON idempotency_keys(created_at);
+CREATE INDEX IF NOT EXISTS idx_ledger_entries_account_id ON ledger_entries(account_id, id);
+CREATE INDEX IF NOT EXISTS idx_ledger_entries_created_at ON ledger_entries(created_at);
+CREATE INDEX IF NOT EXISTS idx_scheduled_transfers_due ON scheduled_transfers(next_run_at) WHERE status = 'ACTIVE';
+CREATE INDEX IF NOT EXISTS idx_scheduled_transfers_user_id ON scheduled_transfers(user_id);
 
 INSERT INTO users (username, password_hash) VALUES 
 ('testuser', '$2a$10$N.zmdr9k7uOCQb376NoUnuTJ8iYqiSfFzqeNVcQWJiWXy6iMKwKzS'),
@@ -40,4 +194,8 @@ INSERT INTO accounts (account_number, balance, user_id) VALUES
 ('ACC001', 100000, 1),
 ('ACC002', 50000, 1),
 ('ACC003', 200000, 2)
-ON CONFLICT (account_number) DO NOTHING; 
\ No newline at end of file
+ON CONFLICT (account_number) DO NOTHING; 
+CREATE INDEX IF NOT EXISTS idx_transactions_archive_from_account ON transactions_archive(from_account_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_transactions_archive_to_account ON transactions_archive(to_account_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_account_archival_pending ON account_archival(requested_at) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS idx_cross_shard_transfers_pending ON cross_shard_transfers(updated_at) WHERE status = 'PENDING';
@@ -5,6 +5,11 @@ echo "Запуск P2P transfer app..."
 echo "Остановка старых контейнеров..."
 docker-compose down -v
 
+if [ -z "$AUTH_TOKEN_SECRET" ]; then
+    echo "AUTH_TOKEN_SECRET не задан: сгенерирован случайный секрет, токены станут недействительны после перезапуска"
+    export AUTH_TOKEN_SECRET=$(openssl rand -hex 32)
+fi
+
 echo "Сборка и запуск контейнеров..."
 docker-compose up --build -d
 